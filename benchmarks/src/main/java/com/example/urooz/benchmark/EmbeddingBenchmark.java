@@ -0,0 +1,63 @@
+package com.example.urooz.benchmark;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All-MiniLM-L6-v2 embedding of {@value #SEGMENTS} judgment chunks, one call
+ * per chunk versus one batched call. Scores are per chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmbeddingBenchmark {
+
+    static final int SEGMENTS = 64;
+
+    private EmbeddingModel model;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setUp() {
+        model = new AllMiniLmL6V2EmbeddingModel();
+        segments = DocumentSplitters.recursive(500, 50)
+                .split(Document.from(JudgmentCorpus.text(42, 40)))
+                .subList(0, SEGMENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public void single(Blackhole blackhole) {
+        for (TextSegment segment : segments) {
+            blackhole.consume(model.embed(segment).content());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public List<Embedding> batch() {
+        return model.embedAll(segments).content();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.urooz.benchmark;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.List;
+
+/**
+ * Replaces Gemini with a local model that blocks its caller for
+ * {@code loadtest.llm.latency-ms} per call, like a remote call would, and
+ * returns a canned answer.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FakeLlmConfiguration {
+
+    private static final String ANSWER = "**Holding**\n\n* The appeal is dismissed on the facts recorded (page 1).";
+
+    @Bean
+    @Primary
+    public ChatLanguageModel fakeChatLanguageModel(@Value("${loadtest.llm.latency-ms:1000}") long latencyMs) {
+        return new ChatLanguageModel() {
+            @Override
+            public Response<AiMessage> generate(List<ChatMessage> messages) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the fake LLM", e);
+                }
+                int promptChars = messages.stream()
+                        .filter(UserMessage.class::isInstance)
+                        .mapToInt(message -> ((UserMessage) message).singleText().length())
+                        .sum();
+                return Response.from(AiMessage.from(ANSWER), new TokenUsage(promptChars / 4, ANSWER.length() / 4));
+            }
+        };
+    }
+}
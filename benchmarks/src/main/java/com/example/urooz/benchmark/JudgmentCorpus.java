@@ -0,0 +1,162 @@
+package com.example.urooz.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic judgment text with the features that
+ * matter for chunking and retrieval: a case header, numbered paragraphs of
+ * legal prose, statutory references and case citations, split into pages.
+ */
+public final class JudgmentCorpus {
+
+    static final int LINES_PER_PAGE = 45;
+    private static final int LINE_CHARS = 95;
+
+    private static final String[] PARTIES = {
+            "State of Maharashtra", "Union of India", "Ramesh Kumar", "Sunita Devi", "M/s Bharat Steels Ltd.",
+            "Commissioner of Income Tax", "State of Punjab", "Abdul Rahman", "Lakshmi Narayan", "Delhi Development Authority"};
+    private static final String[] COURTS = {
+            "SUPREME COURT OF INDIA", "HIGH COURT OF DELHI", "HIGH COURT OF BOMBAY", "HIGH COURT OF MADRAS"};
+    private static final String[] STATUTES = {
+            "Section 302 of the Indian Penal Code", "Section 498A IPC", "Article 21 of the Constitution",
+            "Section 138 of the Negotiable Instruments Act", "Order XXXIX Rule 1 CPC", "Section 9 of the Arbitration Act",
+            "Section 482 CrPC", "Article 226 of the Constitution"};
+    private static final String[] CITATIONS = {
+            "Kesavananda Bharati v. State of Kerala (1973) 4 SCC 225", "Maneka Gandhi v. Union of India AIR 1978 SC 597",
+            "Vishaka v. State of Rajasthan (1997) 6 SCC 241", "D.K. Basu v. State of West Bengal (1997) 1 SCC 416",
+            "Arnesh Kumar v. State of Bihar (2014) 8 SCC 273", "Lalita Kumari v. Govt. of U.P. (2014) 2 SCC 1"};
+    private static final String[] SUBJECTS = {
+            "The learned counsel for the appellant", "The respondent", "The trial court", "The High Court",
+            "This Court", "The prosecution", "The learned Additional Solicitor General", "The tribunal"};
+    private static final String[] VERBS = {
+            "submitted that", "contended that", "held that", "observed that", "failed to consider that",
+            "rightly concluded that", "placed reliance on the finding that"};
+    private static final String[] CLAUSES = {
+            "the evidence on record does not establish the charge beyond reasonable doubt",
+            "the impugned order suffers from non-application of mind",
+            "the limitation period began to run from the date of knowledge",
+            "the principles of natural justice were not complied with",
+            "the statutory presumption stands rebutted by the accused",
+            "the contract was terminated without issuing the notice required",
+            "the delay in lodging the FIR has been satisfactorily explained",
+            "the discretion was exercised on wholly irrelevant considerations",
+            "the appellant was denied a fair opportunity of hearing",
+            "the compensation awarded is neither just nor reasonable"};
+
+    private JudgmentCorpus() {
+    }
+
+    /**
+     * Generates one judgment.
+     *
+     * @param seed  Seed; equal seeds give equal text.
+     * @param pages Number of pages.
+     * @return Page texts, in order.
+     */
+    public static List<String> pages(long seed, int pages) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        lines.add("IN THE " + pick(random, COURTS));
+        lines.add("CIVIL APPEAL NO. " + (1000 + random.nextInt(9000)) + " OF " + (1990 + random.nextInt(35)));
+        lines.add(pick(random, PARTIES) + " ... Appellant");
+        lines.add("versus");
+        lines.add(pick(random, PARTIES) + " ... Respondent");
+        lines.add("");
+        lines.add("JUDGMENT");
+
+        int paragraph = 1;
+        while (lines.size() < pages * LINES_PER_PAGE) {
+            StringBuilder text = new StringBuilder().append(paragraph++).append(". ");
+            int sentences = 3 + random.nextInt(5);
+            for (int i = 0; i < sentences; i++) {
+                text.append(sentence(random)).append(' ');
+            }
+            wrap(text.toString().trim(), lines);
+            lines.add("");
+        }
+
+        List<String> result = new ArrayList<>(pages);
+        for (int page = 0; page < pages; page++) {
+            int from = page * LINES_PER_PAGE;
+            result.add(String.join("\n", lines.subList(from, Math.min(from + LINES_PER_PAGE, lines.size()))));
+        }
+        return result;
+    }
+
+    /** The judgment as extracted text, pages separated by form feeds. */
+    public static String text(long seed, int pages) {
+        return String.join("\f", pages(seed, pages));
+    }
+
+    /** Short legal questions for retrieval benchmarks. */
+    public static List<String> queries() {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < CLAUSES.length; i++) {
+            queries.add("Was it held that " + CLAUSES[i] + "?");
+            queries.add("What did the court decide under " + STATUTES[i % STATUTES.length] + "?");
+        }
+        return queries;
+    }
+
+    /** Writes the judgment as a text PDF. */
+    public static Path writePdf(Path file, long seed, int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (String pageText : pages(seed, pages)) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.TIMES_ROMAN, 10);
+                    content.setLeading(15);
+                    content.newLineAtOffset(50, 740);
+                    for (String line : pageText.split("\n")) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    private static String sentence(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> pick(random, SUBJECTS) + " " + pick(random, VERBS) + " " + pick(random, CLAUSES) + ".";
+            case 1 -> "Reliance was placed on " + pick(random, CITATIONS) + ", where it was held that "
+                    + pick(random, CLAUSES) + ".";
+            case 2 -> "Under " + pick(random, STATUTES) + ", " + pick(random, CLAUSES) + ".";
+            default -> pick(random, SUBJECTS) + " " + pick(random, VERBS) + " " + pick(random, CLAUSES)
+                    + " and that " + pick(random, CLAUSES) + ".";
+        };
+    }
+
+    private static void wrap(String text, List<String> lines) {
+        StringBuilder line = new StringBuilder();
+        for (String word : text.split(" ")) {
+            if (line.length() + word.length() + 1 > LINE_CHARS) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            if (!line.isEmpty()) {
+                line.append(' ');
+            }
+            line.append(word);
+        }
+        lines.add(line.toString());
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
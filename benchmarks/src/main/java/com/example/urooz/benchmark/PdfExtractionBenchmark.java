@@ -0,0 +1,64 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.service.PdfExtractionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction of a generated judgment PDF, with the page-range
+ * parallelism of the service configured as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfExtractionBenchmark {
+
+    @Param({"10", "100"})
+    public int pages;
+
+    @Param({"0"})
+    public int parallelism;
+
+    private PdfExtractionService service;
+    private Path pdf;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        service = new PdfExtractionService();
+        ReflectionTestUtils.setField(service, "parallelism", parallelism);
+        ReflectionTestUtils.setField(service, "pagesPerTask", 10);
+        ReflectionTestUtils.setField(service, "maxMainMemoryBytes", 16L * 1024 * 1024);
+        ReflectionTestUtils.invokeMethod(service, "startExecutor");
+        pdf = JudgmentCorpus.writePdf(Files.createTempFile("judgment-", ".pdf"), 42, pages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ReflectionTestUtils.invokeMethod(service, "stopExecutor");
+        Files.deleteIfExists(pdf);
+    }
+
+    @Benchmark
+    public String extractText() throws Exception {
+        return service.extractText(pdf, "judgment.pdf");
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.VectorQuantization;
+import com.example.urooz.service.embedding.hnsw.LocalVectorStore;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Recall against memory for the quantization modes of the embedded vector
+ * store, on a synthetic corpus of 384-dimensional unit vectors with a low
+ * intrinsic dimension (as sentence embeddings have).
+ * <p>
+ * For every mode and oversampling factor, each query asks the store for
+ * {@code k * oversampling} candidates (rescored from the float vectors, as
+ * {@code SearchService} does) and keeps the best {@code k}. Recall@k is
+ * measured against an exact scan; memory is what the HNSW search keeps
+ * resident per vector, i.e. the codes, or the float vectors without
+ * quantization. Qdrant's int8 and binary quantization have the same sizes.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.urooz.benchmark.QuantizationBenchmark \
+ *      --vectors=20000 --queries=200 --k=15 --oversampling=1,2,3,5
+ * </pre>
+ */
+public final class QuantizationBenchmark {
+
+    static final int DIMENSION = 384;
+    private static final int LATENT_DIMENSION = 24;
+
+    private record Result(VectorQuantization quantization, double oversampling, double recall, long[] latenciesNanos) {
+
+        double percentileMillis(double p) {
+            return latenciesNanos[(int) Math.ceil(p * latenciesNanos.length) - 1] / 1e6;
+        }
+    }
+
+    private QuantizationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int vectors = Integer.parseInt(options.getOrDefault("vectors", "20000"));
+        int queries = Integer.parseInt(options.getOrDefault("queries", "200"));
+        int k = Integer.parseInt(options.getOrDefault("k", "15"));
+        double[] oversampling = Arrays.stream(options.getOrDefault("oversampling", "1,2,3,5").split(","))
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+
+        Random random = new Random(7);
+        float[][] projection = projection(random);
+        List<KeyedSegment> segments = new ArrayList<>(vectors);
+        List<Embedding> embeddings = new ArrayList<>(vectors);
+        for (int i = 0; i < vectors; i++) {
+            segments.add(new KeyedSegment(String.valueOf(i),
+                    TextSegment.from("segment " + i, Metadata.from("document_id", "judgment-" + i / 20))));
+            embeddings.add(Embedding.from(embed(random, projection)));
+        }
+        List<float[]> queryVectors = new ArrayList<>(queries);
+        List<Set<String>> exact = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            float[] query = embed(random, projection);
+            queryVectors.add(query);
+            exact.add(bruteForce(embeddings, query, k));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (VectorQuantization quantization : VectorQuantization.values()) {
+            Path directory = Files.createTempDirectory("quantization-benchmark-");
+            LocalVectorStore store = open(directory, quantization);
+            try {
+                long buildStart = System.nanoTime();
+                for (int from = 0; from < vectors; from += 1000) {
+                    int to = Math.min(from + 1000, vectors);
+                    store.upsert(segments.subList(from, to), embeddings.subList(from, to));
+                }
+                System.out.printf("%s: indexed %d vectors in %d ms%n", quantization, vectors,
+                        (System.nanoTime() - buildStart) / 1_000_000);
+                for (double factor : quantization.enabled() ? oversampling : new double[]{1}) {
+                    results.add(measure(store, quantization, factor, queryVectors, exact, k));
+                }
+            } finally {
+                ReflectionTestUtils.invokeMethod(store, "close");
+                FileSystemUtils.deleteRecursively(directory);
+            }
+        }
+
+        System.out.printf("%n%d vectors, %d dimensions, %d queries, recall@%d%n", vectors, DIMENSION, queries, k);
+        System.out.printf("%-8s %12s %14s %14s %10s %10s %10s%n",
+                "mode", "oversample", "bytes/vector", "MB/1M vectors", "recall", "p50 ms", "p99 ms");
+        for (Result result : results) {
+            int bytes = result.quantization().bytesPerVector(DIMENSION);
+            System.out.printf("%-8s %12.1f %14d %14.0f %10.3f %10.3f %10.3f%n", result.quantization(),
+                    result.oversampling(), bytes, bytes * 1e6 / (1 << 20), result.recall(),
+                    result.percentileMillis(0.50), result.percentileMillis(0.99));
+        }
+    }
+
+    private static Result measure(LocalVectorStore store, VectorQuantization quantization, double oversampling,
+                                  List<float[]> queries, List<Set<String>> exact, int k) {
+        long[] latencies = new long[queries.size()];
+        double recall = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(queries.get(q)))
+                    .maxResults((int) Math.ceil(k * oversampling))
+                    .minScore(0.0)
+                    .build();
+            long start = System.nanoTime();
+            List<EmbeddingMatch<TextSegment>> matches = store.search(request).matches();
+            latencies[q] = System.nanoTime() - start;
+
+            Set<String> expected = exact.get(q);
+            recall += matches.stream().limit(k).filter(match -> expected.contains(match.embeddingId())).count()
+                    / (double) k;
+        }
+        Arrays.sort(latencies);
+        return new Result(quantization, oversampling, recall / queries.size(), latencies);
+    }
+
+    private static LocalVectorStore open(Path directory, VectorQuantization quantization) {
+        LocalVectorStore store = new LocalVectorStore();
+        ReflectionTestUtils.setField(store, "path", directory.toString());
+        ReflectionTestUtils.setField(store, "dimension", DIMENSION);
+        ReflectionTestUtils.setField(store, "m", 16);
+        ReflectionTestUtils.setField(store, "efConstruction", 100);
+        ReflectionTestUtils.setField(store, "efSearch", 64);
+        ReflectionTestUtils.setField(store, "checkpointOps", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(store, "quantization", quantization);
+        ReflectionTestUtils.invokeMethod(store, "open");
+        return store;
+    }
+
+    private static Set<String> bruteForce(List<Embedding> embeddings, float[] query, int k) {
+        float[] scores = new float[embeddings.size()];
+        for (int i = 0; i < scores.length; i++) {
+            float[] vector = embeddings.get(i).vector();
+            float sum = 0;
+            for (int d = 0; d < DIMENSION; d++) {
+                sum += vector[d] * query[d];
+            }
+            scores[i] = sum;
+        }
+        Set<String> best = new HashSet<>();
+        IntStream.range(0, scores.length).boxed()
+                .sorted((a, b) -> Float.compare(scores[b], scores[a]))
+                .limit(k)
+                .forEach(i -> best.add(String.valueOf(i)));
+        return best;
+    }
+
+    /** A random projection from the latent space to {@link #DIMENSION} dimensions. */
+    static float[][] projection(Random random) {
+        float[][] projection = new float[LATENT_DIMENSION][DIMENSION];
+        for (float[] row : projection) {
+            for (int i = 0; i < DIMENSION; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+        }
+        return projection;
+    }
+
+    /** A random latent point projected to {@link #DIMENSION}, plus a little noise, normalized. */
+    static float[] embed(Random random, float[][] projection) {
+        float[] vector = new float[DIMENSION];
+        for (float[] row : projection) {
+            float weight = (float) random.nextGaussian();
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] += weight * row[i];
+            }
+        }
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] += (float) random.nextGaussian() * 0.5f;
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.QueryCacheService;
+import com.example.urooz.service.SearchService;
+import com.example.urooz.service.VectorStoreService;
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.hnsw.LocalVectorStore;
+import com.example.urooz.service.lexical.Bm25Index;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link SearchService#search} (query embedding, dense retrieval,
+ * optional BM25 fusion and MMR selection, caches bypassed) over a generated
+ * corpus held in LangChain4j's in-memory store or the embedded HNSW store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"2000"})
+    public int segments;
+
+    @Param({"memory", "hnsw"})
+    public String store;
+
+    @Param({"false", "true"})
+    public boolean hybrid;
+
+    private Path directory;
+    private LocalVectorStore localStore;
+    private SearchService searchService;
+    private List<String> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("search-benchmark-");
+        EmbeddingModel model = new AllMiniLmL6V2EmbeddingModel();
+        List<KeyedSegment> corpus = corpus(segments);
+        List<Embedding> embeddings = new ArrayList<>(corpus.size());
+        for (int from = 0; from < corpus.size(); from += 256) {
+            List<TextSegment> batch = corpus.subList(from, Math.min(from + 256, corpus.size())).stream()
+                    .map(KeyedSegment::segment)
+                    .toList();
+            embeddings.addAll(model.embedAll(batch).content());
+        }
+
+        EmbeddingStore<TextSegment> embeddingStore;
+        if ("hnsw".equals(store)) {
+            localStore = new LocalVectorStore();
+            ReflectionTestUtils.setField(localStore, "path", directory.resolve("vectors").toString());
+            ReflectionTestUtils.setField(localStore, "dimension", 384);
+            ReflectionTestUtils.setField(localStore, "m", 16);
+            ReflectionTestUtils.setField(localStore, "efConstruction", 100);
+            ReflectionTestUtils.setField(localStore, "efSearch", 64);
+            ReflectionTestUtils.setField(localStore, "checkpointOps", Integer.MAX_VALUE);
+            ReflectionTestUtils.invokeMethod(localStore, "open");
+            localStore.upsert(corpus, embeddings);
+            embeddingStore = localStore;
+        } else {
+            InMemoryEmbeddingStore<TextSegment> memoryStore = new InMemoryEmbeddingStore<>();
+            for (int i = 0; i < corpus.size(); i++) {
+                memoryStore.add(corpus.get(i).id(), embeddings.get(i), corpus.get(i).segment());
+            }
+            embeddingStore = memoryStore;
+        }
+
+        Bm25Index lexicalIndex = new Bm25Index(null);
+        ReflectionTestUtils.setField(lexicalIndex, "path", directory.resolve("lexical-index.bin").toString());
+        ReflectionTestUtils.setField(lexicalIndex, "k1", 1.2);
+        ReflectionTestUtils.setField(lexicalIndex, "b", 0.75);
+        lexicalIndex.addAll(corpus);
+
+        // No MongoDB here: the metadata join finds nothing, and segments are grouped without titles.
+        JudgmentRepository judgments = (JudgmentRepository) Proxy.newProxyInstance(
+                JudgmentRepository.class.getClassLoader(), new Class<?>[]{JudgmentRepository.class},
+                (proxy, method, args) -> List.of());
+        StandardEnvironment environment = new StandardEnvironment();
+        searchService = new SearchService(embeddingStore, model, new QueryCacheService(new SimpleMeterRegistry()), lexicalIndex,
+                new StageMetrics(new SimpleMeterRegistry()), judgments, null,
+                new TenantService(new SimpleMeterRegistry(), null, null),
+                new DependencyGuards(environment, new SimpleMeterRegistry(), new BlockingIoThreads(environment)));
+        ReflectionTestUtils.setField(searchService, "maxResults", 15);
+        ReflectionTestUtils.setField(searchService, "minScore", 0.30);
+        ReflectionTestUtils.setField(searchService, "candidates", 40);
+        ReflectionTestUtils.setField(searchService, "maxSegmentsPerDocument", 4);
+        ReflectionTestUtils.setField(searchService, "mmrLambda", 0.7);
+        ReflectionTestUtils.setField(searchService, "hybridEnabled", hybrid);
+        ReflectionTestUtils.setField(searchService, "rrfK", 60);
+        queries = JudgmentCorpus.queries();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (localStore != null) {
+            ReflectionTestUtils.invokeMethod(localStore, "close");
+        }
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<String> search() {
+        String query = queries.get(next++ % queries.size());
+        return searchService.search(query, false);
+    }
+
+    /** Segments of as many generated ten-page judgments as needed, split as ingestion does. */
+    static List<KeyedSegment> corpus(int size) {
+        VectorStoreService planner = new VectorStoreService(null, null, null);
+        List<KeyedSegment> corpus = new ArrayList<>(size);
+        for (long seed = 0; corpus.size() < size; seed++) {
+            corpus.addAll(planner.plan("judgment-" + seed, "default", JudgmentCorpus.text(seed, 10), List.of()).toEmbed());
+        }
+        return corpus.subList(0, size);
+    }
+}
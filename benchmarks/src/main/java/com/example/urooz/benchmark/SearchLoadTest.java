@@ -0,0 +1,176 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.AssesmentApplication;
+import com.example.urooz.service.VectorStoreService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test of {@code GET /search} with platform and virtual
+ * request threads.
+ * <p>
+ * Each mode boots the application on a random port with the embedded vector
+ * store, a small synthetic corpus and {@link FakeLlmConfiguration} in place
+ * of Gemini, then keeps {@code concurrency} uncached searches in flight until
+ * {@code requests} have completed. Virtual threads need Java 21; on older
+ * runtimes that mode is skipped.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.urooz.benchmark.SearchLoadTest \
+ *      --mode=both --concurrency=400 --requests=4000 --llm-latency-ms=1000
+ * </pre>
+ */
+public final class SearchLoadTest {
+
+    private record Result(String mode, int concurrency, int requests, int errors, double seconds, long[] latenciesMs) {
+
+        double throughput() {
+            return requests / seconds;
+        }
+
+        long percentile(double p) {
+            return latenciesMs.length == 0 ? 0 : latenciesMs[(int) Math.ceil(p * latenciesMs.length) - 1];
+        }
+    }
+
+    private SearchLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String mode = options.getOrDefault("mode", "both");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "400"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", String.valueOf(concurrency * 10)));
+        long latencyMs = Long.parseLong(options.getOrDefault("llm-latency-ms", "1000"));
+        int documents = Integer.parseInt(options.getOrDefault("documents", "20"));
+
+        List<Result> results = new ArrayList<>();
+        for (String threads : "both".equals(mode) ? List.of("platform", "virtual") : List.of(mode)) {
+            boolean virtual = "virtual".equals(threads);
+            if (virtual && Runtime.version().feature() < 21) {
+                System.out.printf("Skipping virtual mode: Java %d has no virtual threads%n", Runtime.version().feature());
+                continue;
+            }
+            results.add(run(threads, virtual, concurrency, requests, latencyMs, documents));
+        }
+
+        System.out.printf("%nLLM latency %d ms, %d documents%n", latencyMs, documents);
+        System.out.printf("%-10s %12s %10s %8s %14s %10s %10s%n",
+                "mode", "concurrency", "requests", "errors", "req/s", "p50 ms", "p99 ms");
+        for (Result result : results) {
+            System.out.printf("%-10s %12d %10d %8d %14.1f %10d %10d%n", result.mode(), result.concurrency(),
+                    result.requests(), result.errors(), result.throughput(), result.percentile(0.50),
+                    result.percentile(0.99));
+        }
+    }
+
+    private static Result run(String mode, boolean virtual, int concurrency, int requests, long latencyMs,
+                              int documents) throws Exception {
+        Path directory = Files.createTempDirectory("search-load-");
+        // Passed as arguments so they take precedence over application.properties.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.threads.virtual.enabled", virtual);
+        properties.put("spring.config.on-not-found", "ignore");
+        properties.put("gemini.api.key", "load-test");
+        properties.put("loadtest.llm.latency-ms", latencyMs);
+        properties.put("vector.store", "local");
+        properties.put("vector.local.path", directory.resolve("vectors").toString());
+        properties.put("search.lexical.path", directory.resolve("lexical-index.bin").toString());
+        properties.put("search.lexical.rebuild-if-missing", false);
+        properties.put("logging.level.com.example.urooz", "WARN");
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AssesmentApplication.class,
+                FakeLlmConfiguration.class)
+                .logStartupInfo(false)
+                .run(properties.entrySet().stream()
+                        .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                        .toArray(String[]::new));
+        try {
+            VectorStoreService vectorStoreService = context.getBean(VectorStoreService.class);
+            for (int i = 0; i < documents; i++) {
+                vectorStoreService.embed(vectorStoreService.plan("load-" + i, "default", JudgmentCorpus.text(i, 4), List.of()))
+                        .join();
+            }
+
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            List<URI> uris = JudgmentCorpus.queries().stream()
+                    .map(query -> URI.create("http://localhost:" + port + "/api/v1/judgment/search?cache=false&query="
+                            + URLEncoder.encode(query, StandardCharsets.UTF_8)))
+                    .toList();
+
+            System.out.printf("%s: warming up%n", mode);
+            drive(mode, client, uris, Math.min(concurrency, 50), Math.min(requests, 200));
+            System.out.printf("%s: %d requests at concurrency %d%n", mode, requests, concurrency);
+            return drive(mode, client, uris, concurrency, requests);
+        } finally {
+            context.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static Result drive(String mode, HttpClient client, List<URI> uris, int concurrency, int requests)
+            throws InterruptedException {
+        Semaphore slots = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            slots.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(uris.get(i % uris.size()))
+                    .timeout(Duration.ofMinutes(2))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                latencies[index] = (System.nanoTime() - sent) / 1_000_000;
+                if (error != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                }
+                slots.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        return new Result(mode, concurrency, requests, errors.get(), seconds, latencies);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.service.VectorStoreService;
+import com.example.urooz.service.VectorStoreService.SegmentPlan;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunking of a generated judgment: the raw {@code recursive(500, 50)}
+ * splitter over the whole text, and {@link VectorStoreService#plan}, which
+ * splits page by page and derives segment IDs as ingestion does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplittingBenchmark {
+
+    @Param({"10", "100"})
+    public int pages;
+
+    private final DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
+    private final VectorStoreService vectorStoreService = new VectorStoreService(null, null, null);
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = JudgmentCorpus.text(42, pages);
+    }
+
+    @Benchmark
+    public List<TextSegment> recursiveSplitter() {
+        return splitter.split(Document.from(text));
+    }
+
+    @Benchmark
+    public SegmentPlan planSegments() {
+        return vectorStoreService.plan("benchmark", "default", text, List.of());
+    }
+}
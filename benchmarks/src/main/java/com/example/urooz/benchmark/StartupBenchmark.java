@@ -0,0 +1,197 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.AssesmentApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cold start of the application: time from launching the JVM until the
+ * readiness probe reports {@code UP}, and until the first {@code GET /search}
+ * sent after that succeeds, as a load balancer would route it.
+ * <p>
+ * Each run starts a fresh JVM with the embedded vector store and
+ * {@link FakeLlmConfiguration} in place of Gemini; MongoDB and Qdrant are
+ * not needed. With {@code --cds=true}, a training run first records a class
+ * data sharing archive ({@code -XX:ArchiveClassesAtExit} with
+ * {@code spring.context.exit=onRefresh}), and the measured runs load it.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.urooz.benchmark.StartupBenchmark \
+ *      --runs=5 --cds=false --jvm-args=-Xss1m
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+    private record Run(long readyMillis, long firstSearchMillis) {
+    }
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        if (options.containsKey("serve")) {
+            serve(options);
+            return;
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        boolean cds = Boolean.parseBoolean(options.getOrDefault("cds", "false"));
+        List<String> jvmArgs = new ArrayList<>(options.containsKey("jvm-args")
+                ? Arrays.asList(options.get("jvm-args").split(" "))
+                : List.of());
+
+        Path directory = Files.createTempDirectory("startup-benchmark-");
+        try {
+            if (cds) {
+                Path archive = directory.resolve("application.jsa");
+                List<String> training = new ArrayList<>(jvmArgs);
+                training.add("-XX:ArchiveClassesAtExit=" + archive);
+                training.add("-Dspring.context.exit=onRefresh");
+                long start = System.nanoTime();
+                Process process = launch(training, directory.resolve("training"), freePort());
+                if (process.waitFor() != 0 || !Files.exists(archive)) {
+                    throw new IllegalStateException("CDS training run failed, see " + directory.resolve("training.log"));
+                }
+                System.out.printf("CDS archive of %d KB written in %d ms%n", Files.size(archive) / 1024,
+                        (System.nanoTime() - start) / 1_000_000);
+                jvmArgs.add("-XX:SharedArchiveFile=" + archive);
+            }
+
+            List<Run> results = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                Run run = measure(jvmArgs, directory.resolve("run-" + i));
+                System.out.printf("run %d: ready after %d ms, first search after %d ms%n",
+                        i + 1, run.readyMillis(), run.firstSearchMillis());
+                results.add(run);
+            }
+
+            System.out.printf("%n%d runs%s, median%n", runs, cds ? " with a CDS archive" : "");
+            System.out.printf("%-14s %20s%n", "ready ms", "first search ms");
+            System.out.printf("%-14d %20d%n",
+                    median(results.stream().mapToLong(Run::readyMillis).toArray()),
+                    median(results.stream().mapToLong(Run::firstSearchMillis).toArray()));
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static Run measure(List<String> jvmArgs, Path directory) throws Exception {
+        int port = freePort();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        URI readiness = URI.create("http://localhost:" + port + "/actuator/health/readiness");
+        URI search = URI.create("http://localhost:" + port + "/api/v1/judgment/search?cache=false&query="
+                + "anticipatory%20bail%20under%20section%20438");
+
+        long start = System.nanoTime();
+        Process process = launch(jvmArgs, directory, port);
+        try {
+            while (status(client, readiness) != 200) {
+                if (!process.isAlive() || System.nanoTime() - start > START_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("Application did not become ready, see " + directory + ".log");
+                }
+                Thread.sleep(10);
+            }
+            long ready = System.nanoTime();
+            int status = status(client, search);
+            if (status != 200) {
+                throw new IllegalStateException("First search failed with status " + status + ", see "
+                        + directory + ".log");
+            }
+            long searched = System.nanoTime();
+            return new Run((ready - start) / 1_000_000, (searched - start) / 1_000_000);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static Process launch(List<String> jvmArgs, Path directory, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupBenchmark.class.getName());
+        command.add("--serve=true");
+        command.add("--port=" + port);
+        command.add("--directory=" + directory);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of(directory + ".log").toFile())
+                .start();
+    }
+
+    /** Runs the application in this JVM, as a child of the measuring process. */
+    private static void serve(Map<String, String> options) {
+        Path directory = Path.of(options.get("directory"));
+        // Passed as arguments so they take precedence over application.properties.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", options.get("port"));
+        properties.put("spring.config.on-not-found", "ignore");
+        properties.put("gemini.api.key", "startup-benchmark");
+        properties.put("loadtest.llm.latency-ms", 0);
+        properties.put("vector.store", "local");
+        properties.put("vector.local.path", directory.resolve("vectors").toString());
+        properties.put("embedding.cache.path", directory.resolve("embedding-cache").toString());
+        properties.put("search.lexical.path", directory.resolve("lexical-index.bin").toString());
+        properties.put("search.lexical.rebuild-if-missing", false);
+        properties.put("management.endpoint.health.probes.enabled", true);
+        properties.put("management.health.mongo.enabled", false);
+
+        new SpringApplicationBuilder(AssesmentApplication.class, FakeLlmConfiguration.class)
+                .run(properties.entrySet().stream()
+                        .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                        .toArray(String[]::new));
+    }
+
+    private static int status(HttpClient client, URI uri) throws InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(uri).timeout(START_TIMEOUT).GET().build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
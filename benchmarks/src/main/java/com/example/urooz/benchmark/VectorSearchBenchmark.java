@@ -0,0 +1,149 @@
+package com.example.urooz.benchmark;
+
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.hnsw.LocalVectorStore;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (including p99) of a top-{@value #K} search in the
+ * embedded HNSW store, for the whole corpus and for a tenant holding 1% of
+ * it, against a brute-force scan of the same float vectors. The corpus is
+ * {@link QuantizationBenchmark}'s synthetic 384-dimensional vectors.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar VectorSearch -p vectors=20000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    static final int K = 15;
+    private static final int QUERIES = 256;
+
+    @Param({"2000", "20000"})
+    public int vectors;
+
+    private Path directory;
+    private LocalVectorStore store;
+    private float[][] corpus;
+    private List<Embedding> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("vector-search-benchmark-");
+        Random random = new Random(7);
+        float[][] projection = QuantizationBenchmark.projection(random);
+        corpus = new float[vectors][];
+        List<KeyedSegment> segments = new ArrayList<>(vectors);
+        List<Embedding> embeddings = new ArrayList<>(vectors);
+        for (int i = 0; i < vectors; i++) {
+            corpus[i] = QuantizationBenchmark.embed(random, projection);
+            String tenant = i % 100 == 0 ? "small" : "large";
+            segments.add(new KeyedSegment(String.valueOf(i), TextSegment.from("segment " + i,
+                    Metadata.from("document_id", "judgment-" + i / 20).put(JudgmentFacets.TENANT, tenant))));
+            embeddings.add(Embedding.from(corpus[i]));
+        }
+        queries = new ArrayList<>(QUERIES);
+        for (int q = 0; q < QUERIES; q++) {
+            queries.add(Embedding.from(QuantizationBenchmark.embed(random, projection)));
+        }
+
+        store = new LocalVectorStore();
+        ReflectionTestUtils.setField(store, "path", directory.toString());
+        ReflectionTestUtils.setField(store, "dimension", QuantizationBenchmark.DIMENSION);
+        ReflectionTestUtils.setField(store, "m", 16);
+        ReflectionTestUtils.setField(store, "efConstruction", 100);
+        ReflectionTestUtils.setField(store, "efSearch", 64);
+        ReflectionTestUtils.setField(store, "checkpointOps", Integer.MAX_VALUE);
+        ReflectionTestUtils.invokeMethod(store, "open");
+        for (int from = 0; from < vectors; from += 1000) {
+            int to = Math.min(from + 1000, vectors);
+            store.upsert(segments.subList(from, to), embeddings.subList(from, to));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ReflectionTestUtils.invokeMethod(store, "close");
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<EmbeddingMatch<TextSegment>> hnsw() {
+        return store.search(request(null)).matches();
+    }
+
+    @Benchmark
+    public List<EmbeddingMatch<TextSegment>> hnswSmallTenant() {
+        return store.search(request("small")).matches();
+    }
+
+    @Benchmark
+    public int[] bruteForce() {
+        float[] query = queries.get(next++ % QUERIES).vector();
+        int[] best = new int[K];
+        float[] bestScores = new float[K];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < corpus.length; i++) {
+            float[] vector = corpus[i];
+            float score = 0;
+            for (int d = 0; d < vector.length; d++) {
+                score += vector[d] * query[d];
+            }
+            if (score > bestScores[K - 1]) {
+                int position = K - 1;
+                while (position > 0 && bestScores[position - 1] < score) {
+                    bestScores[position] = bestScores[position - 1];
+                    best[position] = best[position - 1];
+                    position--;
+                }
+                bestScores[position] = score;
+                best[position] = i;
+            }
+        }
+        return best;
+    }
+
+    private EmbeddingSearchRequest request(String tenant) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(queries.get(next++ % QUERIES))
+                .maxResults(K)
+                .minScore(0.0)
+                .filter(tenant == null ? null : new IsEqualTo(JudgmentFacets.TENANT, tenant))
+                .build();
+    }
+}
@@ -1,5 +1,13 @@
 package com.example.urooz.config;
 
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.embedding.GuardedEmbeddingStore;
+import com.example.urooz.service.embedding.IsolatedMiniLmEmbeddingModel;
+import com.example.urooz.service.embedding.LazyEmbeddingModel;
+import com.example.urooz.service.embedding.cache.EmbeddingCache;
+import com.example.urooz.service.llm.CancellableStreamingChatModel;
+import com.example.urooz.service.llm.GeminiStreamingChatModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -7,19 +15,41 @@ import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2Embedding
 import dev.langchain4j.model.googleai.GoogleAiGeminiChatModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.qdrant.QdrantEmbeddingStore;
+import io.qdrant.client.QdrantClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 /**
  * Configuration class for AI models and vector store components.
  */
 @Configuration
 public class AIConfig {
 
+    private static final String GEMINI_MODEL = "gemini-2.0-flash";
+
     @Value("${gemini.api.key}")
     private String apiKey;
 
+    @Value("${qdrant.collection:legal_judgments}")
+    private String qdrantCollection;
+
+    @Value("${gemini.timeout-ms:60000}")
+    private long timeoutMs;
+
+    @Value("${gemini.stream.base-url:" + GeminiStreamingChatModel.DEFAULT_BASE_URL + "}")
+    private String streamBaseUrl;
+
+    @Value("${gemini.stream.connect-timeout-ms:5000}")
+    private long streamConnectTimeoutMs;
+
+    @Value("${gemini.stream.response-timeout-ms:30000}")
+    private long streamResponseTimeoutMs;
+
     /**
      * Configures the Gemini Chat Model.
      */
@@ -30,28 +60,52 @@ public class AIConfig {
         }
         return GoogleAiGeminiChatModel.builder()
                 .apiKey(apiKey)
-                .modelName("gemini-2.0-flash")
+                .modelName(GEMINI_MODEL)
                 .temperature(0.0)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .maxRetries(0)
                 .build();
     }
 
     /**
-     * Configures the Embedding Model (AllMiniLM).
+     * Configures the streaming Gemini Chat Model used for Server-Sent Events answers.
      */
     @Bean
-    public EmbeddingModel embeddingModel() {
-        return new AllMiniLmL6V2EmbeddingModel();
+    public CancellableStreamingChatModel streamingChatModel(ObjectMapper objectMapper) {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("Google Gemini API Key is missing!");
+        }
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(streamConnectTimeoutMs))
+                .build();
+        return new GeminiStreamingChatModel(httpClient, objectMapper, streamBaseUrl, apiKey, GEMINI_MODEL, 0.0,
+                Duration.ofMillis(streamResponseTimeoutMs));
     }
 
     /**
-     * Configures the Qdrant Vector Store.
+     * Configures the Embedding Model (AllMiniLM), with segment batches served
+     * from the persistent embedding cache. The ONNX session is loaded on first
+     * use, normally by the startup warm-up.
      */
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore() {
-        return QdrantEmbeddingStore.builder()
-                .collectionName("legal_judgments")
-                .host("localhost")
-                .port(6334)
-                .build();
+    public EmbeddingModel embeddingModel(EmbeddingCache embeddingCache) {
+        // A lambda rather than a constructor reference: linking the reference initializes the class,
+        // whose static initializer loads the model.
+        return embeddingCache.wrap(IsolatedMiniLmEmbeddingModel.MODEL_ID,
+                new LazyEmbeddingModel(() -> new AllMiniLmL6V2EmbeddingModel()));
+    }
+
+    /**
+     * Configures the Qdrant Vector Store on the pooled gRPC client, guarded
+     * and with hedged searches. With {@code vector.store=local} the embedded
+     * {@code LocalVectorStore} is used instead.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+    public EmbeddingStore<TextSegment> embeddingStore(QdrantClient qdrantClient, DependencyGuards dependencyGuards) {
+        return new GuardedEmbeddingStore(QdrantEmbeddingStore.builder()
+                .client(qdrantClient)
+                .collectionName(qdrantCollection)
+                .build(), dependencyGuards.guard(DependencyGuards.QDRANT));
     }
 }
\ No newline at end of file
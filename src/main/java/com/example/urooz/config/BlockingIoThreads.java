@@ -0,0 +1,59 @@
+package com.example.urooz.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for internal workers that spend most of their time
+ * blocked on remote I/O (Gemini, MongoDB, Qdrant).
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true} on Java 21 or later, the
+ * same switch that moves Tomcat request handling onto virtual threads, these
+ * workers are virtual threads as well; otherwise they are named daemon
+ * platform threads. Executors keep their configured sizes either way, so
+ * concurrency limits towards the remote services are unchanged.
+ */
+@Component
+@Slf4j
+public class BlockingIoThreads {
+
+    private final boolean virtual;
+
+    public BlockingIoThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        if (virtual) {
+            log.info("Request handling and blocking I/O workers run on virtual threads");
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; using platform threads",
+                    Runtime.version().feature());
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Creates a factory for threads named {@code prefix-N}.
+     *
+     * @param prefix The thread name prefix, e.g. {@code ingest-extract}.
+     * @return A virtual or daemon platform thread factory.
+     */
+    public ThreadFactory factory(String prefix) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(prefix + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
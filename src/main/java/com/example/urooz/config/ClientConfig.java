@@ -0,0 +1,148 @@
+package com.example.urooz.config;
+
+import com.example.urooz.service.client.DependencyGuard;
+import com.example.urooz.service.client.DependencyGuards;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.QdrantGrpcClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection settings of the clients for Qdrant and MongoDB: pooled
+ * keep-alive connections with explicit connect and read timeouts, so a
+ * stalled dependency fails calls instead of holding their threads. Qdrant
+ * calls also pass through the Qdrant {@link DependencyGuard}.
+ */
+@Configuration
+public class ClientConfig {
+
+    /**
+     * Configures the Qdrant REST client (collection setup, segment writes,
+     * scrolls) on a shared pool of keep-alive connections.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+    public RestTemplate qdrantRestTemplate(DependencyGuards dependencyGuards,
+                                           @Value("${qdrant.rest.max-connections:50}") int maxConnections,
+                                           @Value("${qdrant.rest.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                           @Value("${qdrant.rest.read-timeout-ms:30000}") long readTimeoutMs,
+                                           @Value("${qdrant.rest.keep-alive-ms:60000}") long keepAliveMs) {
+        return pooledRestTemplate(maxConnections, connectTimeoutMs, readTimeoutMs, keepAliveMs,
+                dependencyGuards.guard(DependencyGuards.QDRANT));
+    }
+
+    /**
+     * Configures the Qdrant gRPC client used for searches, on one channel
+     * that keeps its connection alive between searches. Every call has a
+     * deadline.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+    public QdrantClient qdrantClient(@Value("${qdrant.grpc-host:localhost}") String host,
+                                     @Value("${qdrant.grpc-port:6334}") int port,
+                                     @Value("${qdrant.grpc.keep-alive-ms:30000}") long keepAliveMs,
+                                     @Value("${qdrant.grpc.timeout-ms:5000}") long timeoutMs) {
+        ManagedChannel channel = Grpc.newChannelBuilderForAddress(host, port, InsecureChannelCredentials.create())
+                .keepAliveTime(keepAliveMs, TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(Math.min(keepAliveMs, 10_000), TimeUnit.MILLISECONDS)
+                .keepAliveWithoutCalls(true)
+                .build();
+        return new QdrantClient(QdrantGrpcClient.newBuilder(channel, true)
+                .withTimeout(Duration.ofMillis(timeoutMs))
+                .build());
+    }
+
+    /**
+     * Sizes the MongoDB connection pool and sets the driver's timeouts; the
+     * driver's defaults wait up to 30 seconds for a server and indefinitely
+     * for a reply.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolAndTimeouts(
+            @Value("${mongo.pool.max-size:50}") int maxSize,
+            @Value("${mongo.pool.min-size:2}") int minSize,
+            @Value("${mongo.pool.max-wait-ms:2000}") long maxWaitMs,
+            @Value("${mongo.pool.max-idle-ms:300000}") long maxIdleMs,
+            @Value("${mongo.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${mongo.read-timeout-ms:15000}") int readTimeoutMs,
+            @Value("${mongo.server-selection-timeout-ms:5000}") long serverSelectionTimeoutMs) {
+        return settings -> settings
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(maxSize)
+                        .minSize(minSize)
+                        .maxWaitTime(maxWaitMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleMs, TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(serverSelectionTimeoutMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * A REST client on a pool of at most {@code maxConnections} keep-alive
+     * connections, each closed after {@code keepAliveMs} idle. Requests wait
+     * at most the connect timeout for a pooled connection and are not
+     * retried; every request passes through {@code guard}, and 5xx responses
+     * count as failures.
+     */
+    static RestTemplate pooledRestTemplate(int maxConnections, long connectTimeoutMs, long readTimeoutMs,
+                                           long keepAliveMs, DependencyGuard guard) {
+        PoolingHttpClientConnectionManager connections = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
+                .disableAutomaticRetries()
+                .build();
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            DependencyGuard.Permit permit = guard.acquire();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                if (response.getStatusCode().is5xxServerError()) {
+                    permit.failure();
+                } else {
+                    permit.success();
+                }
+                return response;
+            } catch (IOException | RuntimeException e) {
+                permit.failure();
+                throw e;
+            }
+        });
+        return restTemplate;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.urooz.config;
+
+import com.example.urooz.service.metrics.StageMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Tags stage metrics recorded on a request thread with the endpoint being
+ * served, e.g. {@code /search} or {@code /search/stream}.
+ */
+@Configuration
+public class EndpointTagInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    private static final String API_PREFIX = "/api/v1/judgment";
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns(API_PREFIX + "/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = pattern != null ? pattern.toString() : request.getRequestURI();
+        StageMetrics.setCurrentEndpoint(endpoint.startsWith(API_PREFIX) ? endpoint.substring(API_PREFIX.length()) : endpoint);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StageMetrics.clearCurrentEndpoint();
+    }
+}
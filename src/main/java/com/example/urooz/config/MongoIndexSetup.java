@@ -0,0 +1,68 @@
+package com.example.urooz.config;
+
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.service.JudgmentTextService;
+import com.example.urooz.service.tenant.TenantService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} and {@code @TextIndexed}
+ * on the judgments collection, then moves any text still stored inline on
+ * judgments into the text collection and assigns judgments stored before
+ * tenants existed to the default tenant. Runs on a background thread started
+ * with the context, alongside the Qdrant setup, so an unreachable MongoDB
+ * does not block startup; operations give up after the driver's server
+ * selection timeout.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIndexSetup {
+
+    private final MongoTemplate mongoTemplate;
+    private final JudgmentTextService judgmentTextService;
+    private final TenantService tenantService;
+
+    @PostConstruct
+    public void createIndexes() {
+        Thread thread = new Thread(this::ensureIndexes, "mongo-index-setup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void ensureIndexes() {
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(JudgmentMetadata.class);
+            new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                    .resolveIndexFor(JudgmentMetadata.class)
+                    .forEach(indexOps::ensureIndex);
+            log.info("MongoDB indexes ensured for collection 'judgments'.");
+        } catch (Exception e) {
+            log.error("Failed to create MongoDB indexes: Is MongoDB running? {}", e.getMessage());
+            return;
+        }
+        try {
+            int moved = judgmentTextService.moveInlineTexts();
+            if (moved > 0) {
+                log.info("Moved the inline text of {} judgments to collection 'judgment_texts'.", moved);
+            }
+        } catch (Exception e) {
+            log.error("Failed to move inline judgment texts: {}", e.getMessage());
+        }
+        try {
+            int adopted = tenantService.adoptUnassigned();
+            if (adopted > 0) {
+                log.info("Assigned {} judgments stored without a tenant to tenant '{}'.", adopted,
+                        tenantService.defaultTenant());
+            }
+        } catch (Exception e) {
+            log.error("Failed to assign judgments without a tenant: {}", e.getMessage());
+        }
+    }
+}
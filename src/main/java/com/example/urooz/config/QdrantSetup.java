@@ -1,58 +1,72 @@
 package com.example.urooz.config;
 
+import com.example.urooz.service.embedding.QdrantCollections;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.web.client.HttpClientErrorException;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Makes sure the Qdrant collection alias and its payload indexes exist. Runs
+ * on a background thread started with the context, alongside the rest of
+ * startup and the MongoDB index setup; the REST calls time out
+ * ({@code qdrant.rest.*}), so an unreachable Qdrant is reported within
+ * seconds. {@link StartupWarmup} waits for it before reporting ready.
+ */
 @Component
 @Slf4j
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
 public class QdrantSetup {
 
-    // Qdrant REST URL (Port 6333 use karega)
-    private final String QDRANT_URL = "http://localhost:6333/collections/legal_judgments";
+    private final QdrantCollections qdrantCollections;
+    private final String collection;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    public QdrantSetup(QdrantCollections qdrantCollections,
+                       @Value("${qdrant.collection:legal_judgments}") String collection) {
+        this.qdrantCollections = qdrantCollections;
+        this.collection = collection;
+    }
 
     @PostConstruct
     public void init() {
-        createCollectionIfNotExists();
+        Thread thread = new Thread(() -> {
+            try {
+                createCollectionIfNotExists();
+            } finally {
+                completion.complete(null);
+            }
+        }, "qdrant-setup");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private void createCollectionIfNotExists() {
-        RestTemplate restTemplate = new RestTemplate();
+    /** Completes when the setup has finished, whether or not Qdrant was reachable. */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
 
+    private void createCollectionIfNotExists() {
         try {
-            // 1. Check karo ki collection pehle se hai ya nahi
-            restTemplate.getForEntity(QDRANT_URL, String.class);
-            log.info("✅ Qdrant Collection 'legal_judgments' already exists.");
-
-        } catch (HttpClientErrorException.NotFound e) {
-            // 2. Agar 404 aaya (Nahi mili), toh create karo
-            log.info("⚠️ Collection not found. Creating 'legal_judgments'...");
-
-            Map<String, Object> body = new HashMap<>();
-
-            // "vectors" configuration
-            Map<String, Object> vectors = new HashMap<>();
-            vectors.put("size", 384); // AllMiniLM model ka vector size 384 hota hai
-            vectors.put("distance", "Cosine"); // Search ke liye Maths formula
-
-            body.put("vectors", vectors);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
+            // 1. Check karo ki collection (ya alias) pehle se hai ya nahi
+            if (qdrantCollections.exists(collection)) {
+                log.info("✅ Qdrant Collection '{}' already exists.", collection);
+                // Purani collections mein filter wale payload indexes nahi the, toh ab bana do
+                qdrantCollections.createPayloadIndexes(qdrantCollections.aliasTarget(collection).orElse(collection));
+                return;
+            }
 
+            // 2. Nahi mili, toh versioned collection banao aur naam ko uska alias banao,
+            // taaki rebuild baad mein alias switch karke ho sake
+            log.info("⚠️ Collection not found. Creating '{}'...", collection);
+            String versioned = collection + "_v1";
             try {
-                // PUT request bhej kar collection banao
-                restTemplate.put(QDRANT_URL, request);
-                log.info("✅ Successfully created Qdrant collection: legal_judgments");
+                qdrantCollections.create(versioned);
+                qdrantCollections.switchAlias(collection, versioned);
+                log.info("✅ Successfully created Qdrant collection: {}", collection);
             } catch (Exception ex) {
                 log.error("❌ Failed to create Qdrant collection: {}", ex.getMessage());
             }
@@ -60,4 +74,4 @@ public class QdrantSetup {
             log.error("❌ Error checking Qdrant status: Is Docker running? {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
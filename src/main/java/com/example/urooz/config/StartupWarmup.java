@@ -0,0 +1,104 @@
+package com.example.urooz.config;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the query embedding model on a background thread started with the
+ * context and runs a few queries through it, so the ONNX session exists and
+ * the embedding path is compiled before the first real search.
+ * <p>
+ * Reported as the {@code startupWarmup} health contributor, which is part of
+ * the readiness group: an instance reports ready once the warm-up and the
+ * Qdrant collection setup have finished. A model that cannot be loaded keeps
+ * it out of service.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StartupWarmup implements HealthIndicator {
+
+    private static final List<String> QUERIES = List.of(
+            "anticipatory bail under section 438 of the Code of Criminal Procedure",
+            "presumption of dowry death under section 113B of the Evidence Act",
+            "quashing an FIR under section 482 after the parties settled",
+            "market value compensation for compulsory land acquisition",
+            "AIR 1973 SC 1461 basic structure doctrine");
+
+    private final EmbeddingModel embeddingModel;
+    private final ObjectProvider<QdrantSetup> qdrantSetup;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.queries:5}")
+    private int queries;
+
+    @Value("${startup.warmup.setup-timeout-ms:15000}")
+    private long setupTimeoutMs;
+
+    private volatile Health health = Health.outOfService().withDetail("warmup", "running").build();
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            health = Health.up().withDetail("warmup", "disabled").build();
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "startup-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        try {
+            embeddingModel.embed(QUERIES.get(0));
+            long loaded = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                embeddingModel.embed(QUERIES.get(i % QUERIES.size()));
+            }
+            long warmed = System.nanoTime();
+
+            QdrantSetup setup = qdrantSetup.getIfAvailable();
+            if (setup != null) {
+                try {
+                    setup.completion().get(setupTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    log.warn("Qdrant setup still running after {} ms; reporting ready without it", setupTimeoutMs);
+                }
+            }
+
+            long modelMs = (loaded - start) / 1_000_000;
+            long queriesMs = (warmed - loaded) / 1_000_000;
+            health = Health.up()
+                    .withDetail("modelLoadMs", modelMs)
+                    .withDetail("warmupQueriesMs", queriesMs)
+                    .withDetail("totalMs", (System.nanoTime() - start) / 1_000_000)
+                    .build();
+            log.info("Startup warm-up done: embedding model loaded in {} ms, {} warm-up queries in {} ms",
+                    modelMs, queries, queriesMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Startup warm-up failed; this instance will not report ready", e);
+            health = Health.down(e).build();
+        }
+    }
+}
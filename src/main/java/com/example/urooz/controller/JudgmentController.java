@@ -1,24 +1,55 @@
 package com.example.urooz.controller;
 
+import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.model.BulkIngestionReport;
+import com.example.urooz.model.IngestionJob;
 import com.example.urooz.model.JudgmentMetadata;
-import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.model.JudgmentSummary;
+import com.example.urooz.model.ReindexJob;
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.SearchFilter;
+import com.example.urooz.model.SearchResult;
 import com.example.urooz.service.AnswerGeneratorService;
-import com.example.urooz.service.LlmExtractionService;
-import com.example.urooz.service.PdfExtractionService;
+import com.example.urooz.service.BulkIngestionService;
+import com.example.urooz.service.IngestionPipelineService;
+import com.example.urooz.service.JudgmentCatalogService;
+import com.example.urooz.service.ReindexService;
 import com.example.urooz.service.SearchService;
-import com.example.urooz.service.VectorStoreService;
+import com.example.urooz.service.llm.StreamingHandle;
+import com.example.urooz.service.tenant.TenantService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.web.PagedModel;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * REST Controller for handling judgment extraction and search operations.
+ * <p>
+ * Requests act for the tenant named in the {@value TenantService#HEADER}
+ * header, or the default tenant without it, and only see that tenant's
+ * judgments and ingestion jobs.
  */
 @RestController
 @RequestMapping("/api/v1/judgment")
@@ -27,53 +58,334 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class JudgmentController {
 
-    private final PdfExtractionService pdfExtractionService;
-    private final LlmExtractionService llmExtractionService;
-    private final JudgmentRepository judgmentRepository;
-    private final VectorStoreService vectorStoreService;
+    private final IngestionPipelineService ingestionPipelineService;
+    private final BulkIngestionService bulkIngestionService;
     private final SearchService searchService;
     private final AnswerGeneratorService answerGeneratorService;
+    private final JudgmentCatalogService judgmentCatalogService;
+    private final ObjectProvider<ReindexService> reindexService;
+    private final TenantService tenantService;
+
+    @Value("${search.stream.timeout-ms:60000}")
+    private long streamTimeoutMs;
 
     /**
-     * Extracts metadata from an uploaded PDF judgment file and saves it.
+     * Accepts a PDF judgment for asynchronous extraction and indexing.
      *
-     * @param file The PDF file containing the judgment.
-     * @return The saved judgment metadata.
+     * @param file     The PDF file containing the judgment.
+     * @param tenantId The tenant to store the judgment for.
+     * @return The queued ingestion job; poll its status URL for progress.
      */
     @PostMapping(value = "/extract", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<JudgmentMetadata> extractAndSave(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<IngestionJob> extractAndSave(
+            @RequestParam("file") MultipartFile file,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
         log.info("Processing judgment file: {}", file.getOriginalFilename());
 
-        String rawText = pdfExtractionService.extractText(file);
-        JudgmentMetadata metadata = llmExtractionService.extractMetadata(rawText);
-        metadata.setOriginalText(rawText);
+        IngestionJob job = ingestionPipelineService.submit(file, tenantService.resolve(tenantId));
+        URI statusUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/judgment/jobs/{jobId}")
+                .buildAndExpand(job.getJobId())
+                .toUri();
 
-        JudgmentMetadata savedData = judgmentRepository.save(metadata);
-        log.info("Judgment metadata persisted to database with ID: {}", savedData.getId());
+        return ResponseEntity.accepted().location(statusUri).body(job);
+    }
 
-        try {
-            vectorStoreService.processAndStore(rawText, savedData.getId());
-        } catch (Exception e) {
-            log.error("Failed to process and store vector embeddings for document ID: {}", savedData.getId(), e);
+    /**
+     * Ingests many judgments in one request, either as a multipart list of
+     * PDFs or as a zip archive of PDFs.
+     * <p>
+     * Unlike {@code /extract}, this runs the whole load on the request thread
+     * and only responds once every file is stored or has failed, so clients
+     * need a read timeout long enough for the batch. Use {@code --ingest.dir}
+     * for backfills that take longer than that.
+     *
+     * @param files    Optional list of PDF files.
+     * @param archive  Optional zip archive containing PDF files.
+     * @param tenantId The tenant to store the judgments for.
+     * @return Per-file timings and overall throughput.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkIngestionReport> bulkIngest(
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "archive", required = false) MultipartFile archive,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        String tenant = tenantService.resolve(tenantId);
+        if (archive != null && !archive.isEmpty()) {
+            log.info("Processing bulk zip archive: {}", archive.getOriginalFilename());
+            return ResponseEntity.ok(bulkIngestionService.ingestZip(archive, tenant));
         }
-        return ResponseEntity.ok(savedData);
+        if (files == null || files.isEmpty()) {
+            throw new FileProcessingException("Provide either 'files' or an 'archive' zip.");
+        }
+        log.info("Processing bulk upload of {} files", files.size());
+        return ResponseEntity.ok(bulkIngestionService.ingestUploads(files, tenant));
+    }
+
+    /**
+     * Reports per-stage progress of an ingestion job.
+     *
+     * @param jobId    The job identifier returned by the extract endpoint.
+     * @param tenantId The tenant that submitted the job.
+     * @return The job status, or 404 if the job is unknown, has expired or belongs to another tenant.
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJob> getJobStatus(
+            @PathVariable("jobId") String jobId,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        String tenant = tenantService.resolve(tenantId);
+        return ingestionPipelineService.getJob(jobId)
+                .filter(job -> tenant.equals(job.getTenantId()))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Starts rebuilding the vector store into a new collection, or resumes
+     * an unfinished rebuild. Searches keep using the current collection
+     * until the rebuild completes. The rebuild covers every tenant, so only
+     * tenants listed in {@code tenants.admin} may start it.
+     *
+     * @param tenantId The tenant making the request.
+     * @return The rebuild job, 404 if the vector store cannot be rebuilt, or 403 for other tenants.
+     */
+    @PostMapping("/reindex")
+    public ResponseEntity<ReindexJob> startReindex(
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        tenantService.resolveAdmin(tenantId);
+        ReindexService service = reindexService.getIfAvailable();
+        if (service == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ReindexJob job = service.start();
+        URI statusUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/judgment/reindex")
+                .build()
+                .toUri();
+        return ResponseEntity.accepted().location(statusUri).body(job);
+    }
+
+    /**
+     * Reports progress and throughput of the most recent rebuild, to tenants
+     * listed in {@code tenants.admin}.
+     *
+     * @param tenantId The tenant making the request.
+     * @return The rebuild job, 404 if none has been started, or 403 for other tenants.
+     */
+    @GetMapping("/reindex")
+    public ResponseEntity<ReindexJob> getReindexStatus(
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        tenantService.resolveAdmin(tenantId);
+        ReindexService service = reindexService.getIfAvailable();
+        return (service != null ? service.latest() : Optional.<ReindexJob>empty())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Lists stored judgments, newest first, without their analysis or text.
+     *
+     * @param court    Optional exact court name to filter by.
+     * @param page     Zero-based page number.
+     * @param size     Page size, capped at {@code judgments.page.max-size}.
+     * @param tenantId The tenant whose judgments are listed.
+     * @return One page of judgment summaries.
+     */
+    @GetMapping("/documents")
+    public PagedModel<JudgmentSummary> listDocuments(
+            @RequestParam(value = "court", required = false) String court,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        return new PagedModel<>(judgmentCatalogService.list(tenantService.resolve(tenantId), court, page, size));
+    }
+
+    /**
+     * Finds judgments by title, court or citation using the text index.
+     *
+     * @param q        Search terms.
+     * @param page     Zero-based page number.
+     * @param size     Page size, capped at {@code judgments.page.max-size}.
+     * @param tenantId The tenant whose judgments are searched.
+     * @return One page of judgment summaries, best matches first.
+     */
+    @GetMapping("/documents/search")
+    public PagedModel<JudgmentSummary> searchDocuments(
+            @RequestParam("q") String q,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        return new PagedModel<>(judgmentCatalogService.search(tenantService.resolve(tenantId), q, page, size));
+    }
+
+    /**
+     * Returns the extracted metadata of one judgment, without its text.
+     *
+     * @param id       The document ID.
+     * @param tenantId The tenant the document belongs to.
+     * @return The metadata, or 404 if the tenant has no such document.
+     */
+    @GetMapping("/documents/{id}")
+    public ResponseEntity<JudgmentMetadata> getDocument(
+            @PathVariable("id") String id,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        return judgmentCatalogService.get(tenantService.resolve(tenantId), id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Returns the full extracted text of one judgment.
+     *
+     * @param id       The document ID.
+     * @param tenantId The tenant the document belongs to.
+     * @return The text, or 404 if the tenant has no such document or none is stored for it.
+     */
+    @GetMapping(value = "/documents/{id}/text", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getDocumentText(
+            @PathVariable("id") String id,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        return judgmentCatalogService.text(tenantService.resolve(tenantId), id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     /**
      * Searches for relevant legal information based on a user query.
      *
-     * @param query The search query string.
-     * @return A map containing the AI-generated answer.
+     * @param query        The search query string.
+     * @param courts       Optional courts to search within; repeat the parameter for several.
+     * @param from         Optional first judgment date, as {@code YYYY-MM-DD}.
+     * @param to           Optional last judgment date, as {@code YYYY-MM-DD}.
+     * @param useCache     Set to {@code false} to bypass the query and answer caches.
+     * @param cacheControl A {@code Cache-Control: no-cache} header also bypasses the caches.
+     * @param tenantId     The tenant whose judgments are searched.
+     * @return The AI-generated answer, the judgments it was generated from,
+     *         numbered as cited in the answer, and judgment counts per court
+     *         and year among the retrieval candidates ({@code facets}), not
+     *         among every judgment the filter allows.
      */
     @GetMapping("/search")
-    public ResponseEntity<Map<String, String>> searchLegalQuery(@RequestParam("query") String query) {
+    public ResponseEntity<Map<String, Object>> searchLegalQuery(
+            @RequestParam("query") String query,
+            @RequestParam(value = "court", required = false) List<String> courts,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+            @RequestParam(value = "cache", defaultValue = "true") boolean useCache,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
         log.info("Processing search query: {}", query);
 
-        List<String> relevantChunks = searchService.search(query);
-        log.debug("Retrieved {} relevant text segments for query.", relevantChunks.size());
+        boolean cacheAllowed = useCache && (cacheControl == null || !cacheControl.contains("no-cache"));
+        SearchResult result = searchService.retrieve(query, tenantService.resolve(tenantId),
+                SearchFilter.of(courts, from, to), cacheAllowed);
+        List<RetrievedDocument> sources = result.documents();
+        log.debug("Retrieved segments from {} judgments for query.", sources.size());
 
-        String aiAnswer = answerGeneratorService.generateAnswer(query, relevantChunks);
+        String aiAnswer = answerGeneratorService.generateAnswer(query, sources, cacheAllowed);
 
-        return ResponseEntity.ok(Map.of("answer", aiAnswer));
+        return ResponseEntity.ok(Map.of("answer", aiAnswer, "sources", sources, "facets", result.facets()));
+    }
+
+    /**
+     * Streams the answer to a search query as Server-Sent Events. The
+     * retrieved judgments are sent first ({@code sources}) with their facet
+     * counts ({@code facets}), followed by answer tokens as they are generated
+     * ({@code token}) and a final {@code done} event. Client disconnects and
+     * timeouts cancel the upstream generation.
+     *
+     * @param query        The search query string.
+     * @param courts       Optional courts to search within; repeat the parameter for several.
+     * @param from         Optional first judgment date, as {@code YYYY-MM-DD}.
+     * @param to           Optional last judgment date, as {@code YYYY-MM-DD}.
+     * @param useCache     Set to {@code false} to bypass the query and answer caches.
+     * @param cacheControl A {@code Cache-Control: no-cache} header also bypasses the caches.
+     * @param tenantId     The tenant whose judgments are searched.
+     * @return The event stream.
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLegalQuery(
+            @RequestParam("query") String query,
+            @RequestParam(value = "court", required = false) List<String> courts,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+            @RequestParam(value = "cache", defaultValue = "true") boolean useCache,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            @RequestHeader(value = TenantService.HEADER, required = false) String tenantId) {
+        log.info("Processing streaming search query: {}", query);
+
+        boolean cacheAllowed = useCache && (cacheControl == null || !cacheControl.contains("no-cache"));
+        SearchResult result = searchService.retrieve(query, tenantService.resolve(tenantId),
+                SearchFilter.of(courts, from, to), cacheAllowed);
+        List<RetrievedDocument> sources = result.documents();
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        AtomicReference<StreamingHandle> upstream = new AtomicReference<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        Runnable cancelUpstream = () -> {
+            closed.set(true);
+            StreamingHandle handle = upstream.getAndSet(null);
+            if (handle != null) {
+                handle.cancel();
+            }
+        };
+        emitter.onTimeout(() -> {
+            log.warn("Streaming search timed out for query: {}", query);
+            cancelUpstream.run();
+            emitter.complete();
+        });
+        emitter.onError(error -> cancelUpstream.run());
+        emitter.onCompletion(cancelUpstream);
+
+        try {
+            emitter.send(SseEmitter.event().name("sources").data(sources, MediaType.APPLICATION_JSON));
+            emitter.send(SseEmitter.event().name("facets").data(result.facets(), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+
+        StreamingHandle handle = answerGeneratorService.streamAnswer(query, sources, cacheAllowed,
+                new StreamingResponseHandler<>() {
+                    @Override
+                    public void onNext(String token) {
+                        try {
+                            emitter.send(SseEmitter.event().name("token")
+                                    .data(Map.of("text", token), MediaType.APPLICATION_JSON));
+                        } catch (IOException | IllegalStateException e) {
+                            log.info("Client disconnected from streaming search; cancelling generation.");
+                            cancelUpstream.run();
+                        }
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                        try {
+                            emitter.send(SseEmitter.event().name("done").data(Map.of("status", "complete"),
+                                    MediaType.APPLICATION_JSON));
+                            emitter.complete();
+                        } catch (IOException | IllegalStateException e) {
+                            emitter.completeWithError(e);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        try {
+                            emitter.send(SseEmitter.event().name("error").data(Map.of("message",
+                                    "An error occurred while generating the answer. Please try again later."),
+                                    MediaType.APPLICATION_JSON));
+                            emitter.complete();
+                        } catch (IOException | IllegalStateException e) {
+                            emitter.completeWithError(e);
+                        }
+                    }
+                });
+        // The client may have gone, or the emitter timed out, before the handle was stored.
+        upstream.set(handle);
+        if (closed.get()) {
+            cancelUpstream.run();
+        }
+        return emitter;
     }
-}
\ No newline at end of file
+}
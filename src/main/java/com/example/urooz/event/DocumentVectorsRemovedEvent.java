@@ -0,0 +1,13 @@
+package com.example.urooz.event;
+
+import java.util.List;
+
+/**
+ * Published after stored segments of a document have been removed from the
+ * embedding store.
+ *
+ * @param documentId The identifier of the affected document.
+ * @param segmentIds The IDs of the removed segments.
+ */
+public record DocumentVectorsRemovedEvent(String documentId, List<String> segmentIds) {
+}
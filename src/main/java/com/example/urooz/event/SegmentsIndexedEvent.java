@@ -0,0 +1,18 @@
+package com.example.urooz.event;
+
+import com.example.urooz.service.embedding.KeyedSegment;
+import dev.langchain4j.data.embedding.Embedding;
+
+import java.util.List;
+
+/**
+ * Published after a batch of segment embeddings has been written to the
+ * embedding store, so that derived state (e.g. search caches and the lexical
+ * index) can be updated. Segments of a judgment that is not stored yet are
+ * announced once it is published.
+ *
+ * @param segments   The segments that were just stored.
+ * @param embeddings Their embeddings, in the same order.
+ */
+public record SegmentsIndexedEvent(List<KeyedSegment> segments, List<Embedding> embeddings) {
+}
@@ -0,0 +1,10 @@
+package com.example.urooz.event;
+
+/**
+ * Published after searches were switched to a rebuilt vector collection.
+ *
+ * @param collection      The collection now serving searches.
+ * @param segmentsChanged Whether any document was split into different segments than before.
+ */
+public record VectorCollectionSwitchedEvent(String collection, boolean segmentsChanged) {
+}
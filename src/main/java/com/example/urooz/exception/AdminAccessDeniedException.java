@@ -0,0 +1,11 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when a tenant that is not listed in {@code tenants.admin} calls an
+ * operator endpoint. Mapped to HTTP 403.
+ */
+public class AdminAccessDeniedException extends RuntimeException {
+    public AdminAccessDeniedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when a call to Qdrant, MongoDB or Gemini is refused without being
+ * sent, because the dependency's circuit breaker is open or its bulkhead is
+ * full. Mapped to HTTP 503 with a {@code Retry-After} header.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public DependencyUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when a request names a tenant ID that is not well-formed.
+ * Mapped to HTTP 400.
+ */
+public class InvalidTenantException extends RuntimeException {
+    public InvalidTenantException(String message) {
+        super(message);
+    }
+}
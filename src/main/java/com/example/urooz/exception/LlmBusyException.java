@@ -0,0 +1,16 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when an LLM call cannot be admitted or keeps being rate limited by
+ * the provider. Mapped to HTTP 429 so clients back off instead of retrying
+ * immediately.
+ */
+public class LlmBusyException extends RuntimeException {
+    public LlmBusyException(String message) {
+        super(message);
+    }
+
+    public LlmBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when an ingestion pipeline stage has no free queue capacity.
+ * Mapped to HTTP 429 so clients back off instead of piling on more work.
+ */
+public class PipelineBusyException extends RuntimeException {
+    public PipelineBusyException(String message) {
+        super(message);
+    }
+}
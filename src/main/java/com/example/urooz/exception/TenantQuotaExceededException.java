@@ -0,0 +1,11 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when a tenant already has as many documents in ingestion as its
+ * quota allows. Mapped to HTTP 429, like a saturated pipeline.
+ */
+public class TenantQuotaExceededException extends RuntimeException {
+    public TenantQuotaExceededException(String message) {
+        super(message);
+    }
+}
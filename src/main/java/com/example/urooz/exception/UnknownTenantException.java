@@ -0,0 +1,11 @@
+package com.example.urooz.exception;
+
+/**
+ * Thrown when a request names a tenant that is not configured in
+ * {@code tenants.allowed}. Mapped to HTTP 403.
+ */
+public class UnknownTenantException extends RuntimeException {
+    public UnknownTenantException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.urooz.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk ingestion run, with per-file stage timings and overall
+ * throughput. Persist and embed timings are measured per batch, so every file
+ * in a batch reports the same values for those stages. Duplicates count as
+ * succeeded.
+ */
+@Data
+public class BulkIngestionReport {
+
+    public enum FileStatus {
+        INDEXED, DUPLICATE, STORED_WITHOUT_EMBEDDINGS, FAILED
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class FileResult {
+        private String fileName;
+        private FileStatus status;
+        private String documentId;
+        private Long parseMs;
+        private Long extractMs;
+        private Long persistMs;
+        private Long embedMs;
+        private Integer reusedSegments;
+        private String error;
+    }
+
+    private int totalFiles;
+    private int succeeded;
+    private int failed;
+    private int duplicates;
+    private long totalMs;
+    private double docsPerSecond;
+    private List<FileResult> files = new ArrayList<>();
+}
@@ -0,0 +1,13 @@
+package com.example.urooz.model;
+
+import java.nio.file.Path;
+
+/**
+ * A single PDF queued for bulk ingestion.
+ *
+ * @param fileName  Display name used in the report.
+ * @param path      Location of the PDF on local disk.
+ * @param temporary Whether the file was spooled by us and must be deleted after parsing.
+ */
+public record BulkSource(String fileName, Path path, boolean temporary) {
+}
@@ -0,0 +1,204 @@
+package com.example.urooz.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the progress of a single judgment upload through the ingestion
+ * pipeline. Instances are mutated by the stage worker threads and read by the
+ * status endpoint, so every accessor is synchronized.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestionJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum StageState {
+        PENDING, QUEUED, RUNNING, DONE, FAILED, SKIPPED
+    }
+
+    @Getter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class StageProgress {
+        private StageState state = StageState.PENDING;
+        private Instant queuedAt;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private Long durationMs;
+
+        private StageProgress copy() {
+            StageProgress copy = new StageProgress();
+            copy.state = state;
+            copy.queuedAt = queuedAt;
+            copy.startedAt = startedAt;
+            copy.finishedAt = finishedAt;
+            copy.durationMs = durationMs;
+            return copy;
+        }
+    }
+
+    @Getter
+    private final String jobId;
+    @Getter
+    private final String fileName;
+    @Getter
+    private final String tenantId;
+    @Getter
+    private final Instant submittedAt = Instant.now();
+
+    private final Map<IngestionStage, StageProgress> stages = new EnumMap<>(IngestionStage.class);
+
+    private Status status = Status.QUEUED;
+    private IngestionStage currentStage;
+    private String documentId;
+    private String title;
+    private String court;
+    private String error;
+    private Instant completedAt;
+    private Boolean duplicate;
+    private Runnable onFinished;
+
+    public IngestionJob(String jobId, String fileName, String tenantId) {
+        this.jobId = jobId;
+        this.fileName = fileName;
+        this.tenantId = tenantId;
+        for (IngestionStage stage : IngestionStage.values()) {
+            stages.put(stage, new StageProgress());
+        }
+    }
+
+    public synchronized void markQueued(IngestionStage stage) {
+        StageProgress progress = stages.get(stage);
+        progress.state = StageState.QUEUED;
+        progress.queuedAt = Instant.now();
+        currentStage = stage;
+    }
+
+    public synchronized void markRunning(IngestionStage stage) {
+        StageProgress progress = stages.get(stage);
+        progress.state = StageState.RUNNING;
+        progress.startedAt = Instant.now();
+        currentStage = stage;
+        status = Status.RUNNING;
+    }
+
+    public synchronized void markDone(IngestionStage stage) {
+        StageProgress progress = stages.get(stage);
+        progress.state = StageState.DONE;
+        progress.finishedAt = Instant.now();
+        if (progress.startedAt != null) {
+            progress.durationMs = Duration.between(progress.startedAt, progress.finishedAt).toMillis();
+        }
+    }
+
+    public synchronized void markFailed(IngestionStage stage, String message) {
+        StageProgress progress = stages.get(stage);
+        progress.state = StageState.FAILED;
+        progress.finishedAt = Instant.now();
+        if (progress.startedAt != null) {
+            progress.durationMs = Duration.between(progress.startedAt, progress.finishedAt).toMillis();
+        }
+        currentStage = stage;
+        status = Status.FAILED;
+        error = message;
+        completedAt = progress.finishedAt;
+        finished();
+    }
+
+    public synchronized void markCompleted() {
+        status = Status.COMPLETED;
+        currentStage = null;
+        completedAt = Instant.now();
+        finished();
+    }
+
+    /**
+     * Runs a callback once the job completes or fails, e.g. to release what
+     * was reserved for it. Runs it right away if the job already finished.
+     */
+    public synchronized void onFinished(Runnable callback) {
+        onFinished = callback;
+        if (isFinished()) {
+            finished();
+        }
+    }
+
+    /**
+     * Completes the job without running its remaining stages because the
+     * upload is already indexed.
+     *
+     * @param existing The previously ingested document.
+     */
+    public synchronized void markDuplicate(JudgmentMetadata existing) {
+        recordDocument(existing);
+        stages.values().stream()
+                .filter(progress -> progress.state == StageState.PENDING || progress.state == StageState.QUEUED)
+                .forEach(progress -> progress.state = StageState.SKIPPED);
+        duplicate = true;
+        markCompleted();
+    }
+
+    public synchronized void recordDocument(JudgmentMetadata metadata) {
+        this.documentId = metadata.getId();
+        this.title = metadata.getTitle();
+        this.court = metadata.getCourt();
+    }
+
+    private void finished() {
+        Runnable callback = onFinished;
+        onFinished = null;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    public synchronized boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized IngestionStage getCurrentStage() {
+        return currentStage;
+    }
+
+    public synchronized Map<IngestionStage, StageProgress> getStages() {
+        Map<IngestionStage, StageProgress> snapshot = new LinkedHashMap<>();
+        stages.forEach((stage, progress) -> snapshot.put(stage, progress.copy()));
+        return snapshot;
+    }
+
+    public synchronized String getDocumentId() {
+        return documentId;
+    }
+
+    public synchronized String getTitle() {
+        return title;
+    }
+
+    public synchronized String getCourt() {
+        return court;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized Boolean getDuplicate() {
+        return duplicate;
+    }
+
+    public synchronized Instant getCompletedAt() {
+        return completedAt;
+    }
+}
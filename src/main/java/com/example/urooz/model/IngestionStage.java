@@ -0,0 +1,11 @@
+package com.example.urooz.model;
+
+/**
+ * Ordered stages of the asynchronous judgment ingestion pipeline.
+ */
+public enum IngestionStage {
+    PARSE,
+    EXTRACT,
+    PERSIST,
+    EMBED
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
@@ -14,21 +17,54 @@ import java.util.Map;
 @AllArgsConstructor
 
 @Document(collection = "judgments")
+// Listings are per tenant, newest first, optionally for one court.
+@CompoundIndex(name = "tenant_id", def = "{ 'tenantId': 1, '_id': -1 }")
+@CompoundIndex(name = "tenant_court_id", def = "{ 'tenantId': 1, 'court': 1, '_id': -1 }")
 public class JudgmentMetadata {
 
     @Id
     private String id;
 
+    /** The tenant the judgment belongs to; every read is restricted to the requesting tenant. */
+    private String tenantId;
+
+    // Full-text search covers title, court and citations; the text itself lives in JudgmentText.
+    @TextIndexed(weight = 3)
     private String title;
+    @Indexed
+    @TextIndexed
     private String court;
     private String date;
+    /** The judgment date as an epoch day, or null if it could not be parsed; used by search filters. */
+    @Indexed
+    private Long dateEpochDay;
 
     private String facts;
     private List<String> issues;
     private Map<String, Object> arguments;
     private String ratio;
     private String holding;
+    @TextIndexed(weight = 2)
     private List<String> citations;
 
-    private String originalText;
+    /** SHA-256 of the uploaded PDF bytes. */
+    @Indexed
+    private String contentHash;
+
+    /** SHA-256 of the normalized extracted text. */
+    @Indexed
+    private String textHash;
+
+    /** Hashes of the normalized text of each substantive page, used to find near-identical versions. */
+    @Indexed
+    private List<String> pageHashes;
+
+    /** Deterministic IDs of the document's points in the vector store; null if indexing did not finish. */
+    private List<String> segmentIds;
+
+    /** Segment IDs in the collection a rebuild is writing; they replace segmentIds once its alias switches. */
+    private List<String> stagedSegmentIds;
+
+    /** The rebuild (its versioned collection) that staged stagedSegmentIds. */
+    private String stagedFor;
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.example.urooz.model;
+
+/**
+ * The fields of a judgment shown in listings and search results.
+ *
+ * @param id    Document ID.
+ * @param title Case title.
+ * @param court Court that delivered the judgment.
+ * @param date  Judgment date as extracted.
+ */
+public record JudgmentSummary(String id, String title, String court, String date) {
+}
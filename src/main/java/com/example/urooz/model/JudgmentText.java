@@ -0,0 +1,28 @@
+package com.example.urooz.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Full extracted text of a judgment, kept apart from its metadata so that
+ * listing and search queries never read it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "judgment_texts")
+public class JudgmentText {
+
+    /** Same ID as the judgment's {@link JudgmentMetadata}. */
+    @Id
+    private String id;
+
+    /** UTF-8 text compressed with DEFLATE. */
+    private byte[] content;
+
+    /** Length of the uncompressed text in characters. */
+    private int length;
+}
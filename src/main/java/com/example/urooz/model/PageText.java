@@ -0,0 +1,10 @@
+package com.example.urooz.model;
+
+/**
+ * Text of a single PDF page.
+ *
+ * @param pageNumber One-based page number.
+ * @param text       Extracted text of the page.
+ */
+public record PageText(int pageNumber, String text) {
+}
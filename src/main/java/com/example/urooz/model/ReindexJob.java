@@ -0,0 +1,63 @@
+package com.example.urooz.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progress of a vector collection rebuild. Saved after every batch, so a
+ * rebuild interrupted by a crash resumes after the last stored document.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "reindex_jobs")
+public class ReindexJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /** Name of the versioned collection being built. */
+    @Id
+    private String id;
+
+    @Indexed
+    private Status status;
+
+    /** The alias switched to the new collection once it is complete. */
+    private String alias;
+
+    /** ID of the last judgment whose segments are stored in the new collection. */
+    private String lastDocumentId;
+
+    private long totalDocuments;
+    private long documents;
+    private long segments;
+
+    /** Whether any judgment was split into different segments than before. */
+    private boolean segmentsChanged;
+
+    /** Documents per second since the job was last started or resumed. */
+    private double docsPerSecond;
+
+    @Indexed
+    private Instant startedAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+    private String error;
+
+    public ReindexJob(String id, String alias, long totalDocuments) {
+        this.id = id;
+        this.alias = alias;
+        this.totalDocuments = totalDocuments;
+        this.status = Status.RUNNING;
+        this.startedAt = Instant.now();
+        this.updatedAt = startedAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.urooz.model;
+
+import java.util.List;
+
+/**
+ * The segments retrieved from one judgment, with the metadata needed to
+ * cite it. Title, court and date are {@code null} if the judgment's
+ * metadata could not be loaded.
+ *
+ * @param documentId Judgment ID, or {@code null} for segments stored without one.
+ * @param title      Case title.
+ * @param court      Court that delivered the judgment.
+ * @param date       Judgment date as extracted.
+ * @param score      Score of the best segment.
+ * @param segments   Retrieved segments, most relevant first.
+ */
+public record RetrievedDocument(String documentId, String title, String court, String date, double score,
+                                List<RetrievedSegment> segments) {
+}
@@ -0,0 +1,12 @@
+package com.example.urooz.model;
+
+/**
+ * A segment selected as context for an answer.
+ *
+ * @param id         Segment ID in the vector store.
+ * @param text       Segment text.
+ * @param pageNumber Page the segment starts on, or {@code null} if unknown.
+ * @param score      Fused retrieval score; higher is more relevant.
+ */
+public record RetrievedSegment(String id, String text, Integer pageNumber, double score) {
+}
@@ -0,0 +1,15 @@
+package com.example.urooz.model;
+
+import java.util.Map;
+
+/**
+ * How many of the judgments matching a search fall under each court and
+ * each year, so a client can offer filters without another request.
+ *
+ * @param courts Judgment counts by court, largest first.
+ * @param years  Judgment counts by year of the judgment date, newest first.
+ */
+public record SearchFacets(Map<String, Long> courts, Map<Integer, Long> years) {
+
+    public static final SearchFacets EMPTY = new SearchFacets(Map.of(), Map.of());
+}
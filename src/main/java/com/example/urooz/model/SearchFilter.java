@@ -0,0 +1,31 @@
+package com.example.urooz.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Restricts a search to judgments of some courts and a date range. The
+ * conditions are evaluated inside the vector and lexical searches, so the
+ * best matches among the allowed judgments are returned.
+ *
+ * @param courts       Exact court names to allow; empty allows every court.
+ * @param fromEpochDay First judgment date allowed, as an epoch day, or {@code null}.
+ * @param toEpochDay   Last judgment date allowed, as an epoch day, or {@code null}.
+ */
+public record SearchFilter(List<String> courts, Long fromEpochDay, Long toEpochDay) {
+
+    public static final SearchFilter NONE = new SearchFilter(List.of(), null, null);
+
+    public SearchFilter {
+        courts = courts != null ? courts.stream().filter(court -> !court.isBlank()).map(String::trim).toList()
+                : List.of();
+    }
+
+    public static SearchFilter of(List<String> courts, LocalDate from, LocalDate to) {
+        return new SearchFilter(courts, from != null ? from.toEpochDay() : null, to != null ? to.toEpochDay() : null);
+    }
+
+    public boolean isEmpty() {
+        return courts.isEmpty() && fromEpochDay == null && toEpochDay == null;
+    }
+}
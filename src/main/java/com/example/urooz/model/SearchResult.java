@@ -0,0 +1,13 @@
+package com.example.urooz.model;
+
+import java.util.List;
+
+/**
+ * Retrieved judgments and the facet counts of the retrieval candidates.
+ *
+ * @param documents Judgments in order of their most relevant segment.
+ * @param facets    Counts by court and year over every candidate judgment, not just those returned; judgments
+ *                  the filter allows that were not among the candidates are not counted.
+ */
+public record SearchResult(List<RetrievedDocument> documents, SearchFacets facets) {
+}
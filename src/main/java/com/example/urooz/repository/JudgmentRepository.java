@@ -1,12 +1,40 @@
 package com.example.urooz.repository;
 
 import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.JudgmentSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface JudgmentRepository extends MongoRepository<JudgmentMetadata, String> {
-    List<JudgmentMetadata> findByTitleContainingIgnoreCase(String title);
-}
\ No newline at end of file
+    // Listings are projected onto the summary fields.
+    Page<JudgmentSummary> findByTenantId(String tenantId, Pageable pageable);
+
+    Page<JudgmentSummary> findByTenantIdAndCourt(String tenantId, String court, Pageable pageable);
+
+    List<JudgmentSummary> findByIdIn(Collection<String> ids);
+
+    // Deduplication lookups stay within one tenant and only load what is needed to reuse an existing document.
+    String DEDUPE_FIELDS = "{ 'title': 1, 'court': 1, 'pageHashes': 1, 'segmentIds': 1 }";
+
+    @Query(value = "{ 'contentHash': ?0, 'tenantId': ?1 }", fields = DEDUPE_FIELDS)
+    List<JudgmentMetadata> findByContentHash(String contentHash, String tenantId, Pageable pageable);
+
+    @Query(value = "{ 'textHash': ?0, 'tenantId': ?1 }", fields = DEDUPE_FIELDS)
+    List<JudgmentMetadata> findByTextHash(String textHash, String tenantId, Pageable pageable);
+
+    @Query(value = "{ 'pageHashes': { '$in': ?0 }, 'tenantId': ?1 }", fields = DEDUPE_FIELDS)
+    List<JudgmentMetadata> findByPageHashesIn(Collection<String> pageHashes, String tenantId, Pageable pageable);
+
+    // Marks documents as not indexed without loading or rewriting them.
+    @Query("{ '_id': { '$in': ?0 } }")
+    @Update("{ '$unset': { 'segmentIds': '' } }")
+    void clearSegmentIds(Collection<String> ids);
+}
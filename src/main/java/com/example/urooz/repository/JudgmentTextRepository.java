@@ -0,0 +1,9 @@
+package com.example.urooz.repository;
+
+import com.example.urooz.model.JudgmentText;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JudgmentTextRepository extends MongoRepository<JudgmentText, String> {
+}
@@ -0,0 +1,17 @@
+package com.example.urooz.repository;
+
+import com.example.urooz.model.ReindexJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReindexJobRepository extends MongoRepository<ReindexJob, String> {
+
+    Optional<ReindexJob> findFirstByOrderByStartedAtDesc();
+
+    Optional<ReindexJob> findFirstByStatusNotOrderByStartedAtDesc(ReindexJob.Status status);
+
+    Optional<ReindexJob> findFirstByStatusOrderByStartedAtDesc(ReindexJob.Status status);
+}
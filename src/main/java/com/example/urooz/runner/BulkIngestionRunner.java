@@ -0,0 +1,63 @@
+package com.example.urooz.runner;
+
+import com.example.urooz.model.BulkIngestionReport;
+import com.example.urooz.service.BulkIngestionService;
+import com.example.urooz.service.tenant.TenantService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command-line bulk ingestion mode. Starting the application with
+ * {@code --ingest.dir=/path/to/pdfs} walks the directory, ingests every PDF
+ * and logs the report, storing the judgments for {@code --ingest.tenant}
+ * (the default tenant if omitted). Unless {@code --ingest.exit=false} is
+ * passed, the application shuts down once the run finishes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BulkIngestionRunner implements ApplicationRunner {
+
+    private static final String DIR_OPTION = "ingest.dir";
+    private static final String EXIT_OPTION = "ingest.exit";
+    private static final String TENANT_OPTION = "ingest.tenant";
+
+    private final BulkIngestionService bulkIngestionService;
+    private final TenantService tenantService;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(DIR_OPTION)) {
+            return;
+        }
+
+        Path directory = Path.of(args.getOptionValues(DIR_OPTION).get(0));
+        List<String> tenantOption = args.getOptionValues(TENANT_OPTION);
+        String tenant = tenantService.resolve(tenantOption != null ? tenantOption.get(0) : null);
+        log.info("Bulk ingestion mode: walking directory {} for tenant {}", directory.toAbsolutePath(), tenant);
+
+        BulkIngestionReport report = bulkIngestionService.ingestDirectory(directory, tenant);
+        report.getFiles().forEach(file -> log.info("{} -> {} (parse {} ms, extract {} ms, persist {} ms, embed {} ms){}",
+                file.getFileName(), file.getStatus(), file.getParseMs(), file.getExtractMs(),
+                file.getPersistMs(), file.getEmbedMs(), file.getError() != null ? " error: " + file.getError() : ""));
+        log.info("Bulk ingestion summary: {} files, {} succeeded, {} failed, {} ms, {} docs/sec",
+                report.getTotalFiles(), report.getSucceeded(), report.getFailed(), report.getTotalMs(),
+                String.format(Locale.ROOT, "%.2f", report.getDocsPerSecond()));
+
+        List<String> exit = args.getOptionValues(EXIT_OPTION);
+        if (exit == null || !"false".equalsIgnoreCase(exit.get(0))) {
+            int exitCode = report.getFailed() == 0 ? 0 : 1;
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+}
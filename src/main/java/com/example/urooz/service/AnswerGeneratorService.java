@@ -1,8 +1,18 @@
 package com.example.urooz.service;
 
-import dev.langchain4j.model.chat.ChatLanguageModel;
+import com.example.urooz.exception.LlmBusyException;
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.service.llm.LlmGateway;
+import com.example.urooz.service.llm.LlmGateway.Lane;
+import com.example.urooz.service.llm.StreamingHandle;
+import com.example.urooz.service.retrieval.ContextBuilder;
+import com.example.urooz.service.metrics.StageMetrics;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.input.Prompt;
 import dev.langchain4j.model.input.PromptTemplate;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -10,17 +20,27 @@ import org.springframework.stereotype.Service;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service responsible for generating AI-based answers using retrieved legal
- * context.
+ * context. The context is assembled by {@link ContextBuilder} within a token
+ * budget, one numbered block per judgment, so the answer can cite it as
+ * {@code [n]}.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AnswerGeneratorService {
 
-    private final ChatLanguageModel chatLanguageModel;
+    private final LlmGateway llmGateway;
+    private final QueryCacheService queryCacheService;
+    private final StageMetrics stageMetrics;
+    private final ContextBuilder contextBuilder;
+
+    private static final String NO_CONTEXT_ANSWER =
+            "No relevant information found in the provided documents to answer this specific question.";
 
     private static final String ANSWER_PROMPT = """
             You are a Legal AI Assistant specializing in Indian Case Law.
@@ -31,7 +51,7 @@ public class AnswerGeneratorService {
             1. Structure your answer with clear Headings and Bullet points.
             2. Do not hallucinate. If the answer is not in the context, state that the relevant information is not found in the documents.
             3. Maintain a professional legal tone while ensuring clarity.
-            4. Cite the page number or paragraph if available in the text.
+            4. Cite the sources you rely on by their number in square brackets, e.g. [1], with the page number where shown.
 
             ---
             LEGAL CONTEXT:
@@ -43,37 +63,156 @@ public class AnswerGeneratorService {
             YOUR STRUCTURED ANSWER:
             """;
 
+    private static final PromptTemplate ANSWER_TEMPLATE = PromptTemplate.from(ANSWER_PROMPT);
+
     /**
      * Generates a structured answer using the LLM based on user query and relevant
      * document chunks.
      *
-     * @param userQuery      The question asked by the user.
-     * @param relevantChunks List of relevant text segments retrieved from the
-     *                       vector store.
+     * @param userQuery The question asked by the user.
+     * @param documents Judgments and segments retrieved for the question.
      * @return The generated answer string.
      */
-    public String generateAnswer(String userQuery, List<String> relevantChunks) {
+    public String generateAnswer(String userQuery, List<RetrievedDocument> documents) {
+        return generateAnswer(userQuery, documents, true);
+    }
+
+    /**
+     * Generates a structured answer, reusing a cached answer when the same
+     * question was already answered from exactly the same context.
+     *
+     * @param userQuery The question asked by the user.
+     * @param documents Judgments and segments retrieved for the question.
+     * @param useCache  Whether a cached answer may be returned.
+     * @return The generated answer string.
+     */
+    public String generateAnswer(String userQuery, List<RetrievedDocument> documents, boolean useCache) {
         log.info("Generating AI answer for query: {}", userQuery);
+        List<String> relevantChunks = contextBuilder.build(documents);
 
         if (relevantChunks.isEmpty()) {
             log.warn("No relevant chunks found for query: {}", userQuery);
-            return "No relevant information found in the provided documents to answer this specific question.";
+            return NO_CONTEXT_ANSWER;
         }
 
-        String joinedContext = String.join("\n\n", relevantChunks);
-
-        PromptTemplate template = PromptTemplate.from(ANSWER_PROMPT);
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("context", joinedContext);
-        variables.put("question", userQuery);
+        boolean cacheable = useCache && queryCacheService.isEnabled();
+        String cacheKey = queryCacheService.normalize(userQuery);
+        if (cacheable) {
+            Optional<String> cached = queryCacheService.getAnswer(cacheKey, relevantChunks);
+            if (cached.isPresent()) {
+                log.debug("Answer cache hit for query: {}", cacheKey);
+                return cached.get();
+            }
+        }
 
-        Prompt prompt = template.apply(variables);
+        Prompt prompt = buildPrompt(userQuery, relevantChunks);
 
         try {
-            return chatLanguageModel.generate(prompt.text());
+            String answer = stageMetrics.time(StageMetrics.ANSWER_GENERATION,
+                    () -> llmGateway.generate("answer", Lane.INTERACTIVE, prompt.text())).content().text();
+            if (cacheable) {
+                queryCacheService.putAnswer(cacheKey, relevantChunks, answer);
+            }
+            return answer;
+        } catch (LlmBusyException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error occurred during AI answer generation", e);
             return "An error occurred while generating the answer. Please try again later.";
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams a structured answer token by token. A cached answer, if present,
+     * is delivered as a single token followed by completion.
+     *
+     * @param userQuery The question asked by the user.
+     * @param documents Judgments and segments retrieved for the question.
+     * @param useCache  Whether cached answers may be used and stored.
+     * @param handler   Receives answer tokens, then completion or an error.
+     * @return A handle that cancels the upstream generation.
+     */
+    public StreamingHandle streamAnswer(String userQuery, List<RetrievedDocument> documents, boolean useCache,
+                                        StreamingResponseHandler<AiMessage> handler) {
+        log.info("Streaming AI answer for query: {}", userQuery);
+        List<String> relevantChunks = contextBuilder.build(documents);
+
+        if (relevantChunks.isEmpty()) {
+            log.warn("No relevant chunks found for query: {}", userQuery);
+            handler.onNext(NO_CONTEXT_ANSWER);
+            handler.onComplete(Response.from(AiMessage.from(NO_CONTEXT_ANSWER)));
+            return () -> { };
+        }
+
+        boolean cacheable = useCache && queryCacheService.isEnabled();
+        String cacheKey = queryCacheService.normalize(userQuery);
+        if (cacheable) {
+            Optional<String> cached = queryCacheService.getAnswer(cacheKey, relevantChunks);
+            if (cached.isPresent()) {
+                handler.onNext(cached.get());
+                handler.onComplete(Response.from(AiMessage.from(cached.get())));
+                return () -> { };
+            }
+        }
+
+        Prompt prompt = buildPrompt(userQuery, relevantChunks);
+        // The callbacks run on the model's threads, so the endpoint is captured here.
+        Timer timer = stageMetrics.timer(StageMetrics.ANSWER_GENERATION, StageMetrics.currentEndpoint());
+        Timer.Sample sample = Timer.start();
+        AtomicBoolean finished = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                sample.stop(timer);
+            }
+        };
+
+        StreamingHandle upstream;
+        try {
+            upstream = llmGateway.stream("answer", Lane.INTERACTIVE, prompt.text(), new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    finish.run();
+                    if (cacheable) {
+                        queryCacheService.putAnswer(cacheKey, relevantChunks, response.content().text());
+                    }
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    finish.run();
+                    log.error("Error occurred during streaming AI answer generation", error);
+                    handler.onError(error);
+                }
+            });
+        } catch (LlmBusyException e) {
+            // The event stream is already open, so report it as an error event rather than an HTTP status.
+            finish.run();
+            log.warn("Streaming answer not admitted: {}", e.getMessage());
+            handler.onError(e);
+            return () -> { };
+        } catch (RuntimeException e) {
+            finish.run();
+            throw e;
+        }
+        return () -> {
+            finish.run();
+            upstream.cancel();
+        };
+    }
+
+    private Prompt buildPrompt(String userQuery, List<String> relevantChunks) {
+        String joinedContext = String.join("\n\n", relevantChunks);
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("context", joinedContext);
+        variables.put("question", userQuery);
+
+        return ANSWER_TEMPLATE.apply(variables);
+    }
+}
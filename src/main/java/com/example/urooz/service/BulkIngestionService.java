@@ -0,0 +1,530 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.model.BulkIngestionReport;
+import com.example.urooz.model.BulkIngestionReport.FileResult;
+import com.example.urooz.model.BulkIngestionReport.FileStatus;
+import com.example.urooz.model.BulkSource;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.VectorStoreService.SegmentPlan;
+import com.example.urooz.service.dedupe.DeduplicationService;
+import com.example.urooz.service.dedupe.DeduplicationService.Fingerprint;
+import com.example.urooz.service.dedupe.DeduplicationService.Match;
+import com.example.urooz.service.dedupe.DeduplicationService.MatchType;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Service for backfilling many judgments at once.
+ * <p>
+ * PDF parsing fans out across all cores, LLM extraction runs with a bounded
+ * number of concurrent calls, and finished documents are persisted with
+ * {@code saveAll} and embedded together in batches of up to
+ * {@code bulk.batch-size}. Files that are already indexed are reported as
+ * duplicates without being extracted, and new versions of existing
+ * documents only re-embed their changed segments.
+ * <p>
+ * All documents of a run belong to one tenant, and each counts against the
+ * tenant's ingestion quota ({@link TenantService}) from parsing until it is
+ * embedded, so a large backfill proceeds at the pace its quota allows.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BulkIngestionService {
+
+    private final PdfExtractionService pdfExtractionService;
+    private final LlmExtractionService llmExtractionService;
+    private final JudgmentRepository judgmentRepository;
+    private final JudgmentTextService judgmentTextService;
+    private final VectorStoreService vectorStoreService;
+    private final DeduplicationService deduplicationService;
+    private final TenantService tenantService;
+    private final StageMetrics stageMetrics;
+    private final BlockingIoThreads blockingIoThreads;
+
+    @Value("${bulk.parse-threads:0}")
+    private int parseThreads;
+
+    @Value("${bulk.extract-concurrency:4}")
+    private int extractConcurrency;
+
+    @Value("${bulk.batch-size:50}")
+    private int batchSize;
+
+    @Value("${bulk.max-in-flight:200}")
+    private int maxInFlight;
+
+    @Value("${bulk.max-batch-wait-ms:2000}")
+    private long maxBatchWaitMs;
+
+    @Value("${bulk.zip.max-entries:10000}")
+    private int maxZipEntries;
+
+    @Value("${bulk.zip.max-entry-bytes:52428800}")
+    private long maxZipEntryBytes;
+
+    @Value("${bulk.zip.max-total-bytes:1073741824}")
+    private long maxZipTotalBytes;
+
+    private ExecutorService parseExecutor;
+    private ExecutorService extractExecutor;
+
+    @PostConstruct
+    void startExecutors() {
+        int threads = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+        parseExecutor = Executors.newFixedThreadPool(threads);
+        extractExecutor = Executors.newFixedThreadPool(extractConcurrency, blockingIoThreads.factory("bulk-extract"));
+    }
+
+    @PreDestroy
+    void stopExecutors() {
+        parseExecutor.shutdownNow();
+        extractExecutor.shutdownNow();
+    }
+
+    /**
+     * Ingests a list of uploaded PDFs.
+     *
+     * @param files  The uploaded PDF files.
+     * @param tenant The tenant the judgments are stored for.
+     * @return The bulk ingestion report.
+     */
+    public BulkIngestionReport ingestUploads(List<MultipartFile> files, String tenant) {
+        List<BulkSource> sources = new ArrayList<>();
+        for (MultipartFile file : files) {
+            if (file.isEmpty()) {
+                log.warn("Skipping empty upload: {}", file.getOriginalFilename());
+                continue;
+            }
+            try {
+                Path spooled = Files.createTempFile("bulk-", ".pdf");
+                file.transferTo(spooled);
+                sources.add(new BulkSource(file.getOriginalFilename(), spooled, true));
+            } catch (IOException e) {
+                deleteTemporary(sources);
+                throw new FileProcessingException("Error buffering uploaded file: " + file.getOriginalFilename(), e);
+            }
+        }
+        return ingest(sources, tenant);
+    }
+
+    /**
+     * Ingests every PDF contained in an uploaded zip archive. The archive is
+     * rejected once it has more than {@code bulk.zip.max-entries} entries, a
+     * PDF inflates to more than {@code bulk.zip.max-entry-bytes}, or all PDFs
+     * together inflate to more than {@code bulk.zip.max-total-bytes}.
+     *
+     * @param archive The uploaded zip file.
+     * @param tenant  The tenant the judgments are stored for.
+     * @return The bulk ingestion report.
+     */
+    public BulkIngestionReport ingestZip(MultipartFile archive, String tenant) {
+        List<BulkSource> sources = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            ZipEntry entry;
+            int entries = 0;
+            long remaining = maxZipTotalBytes;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > maxZipEntries) {
+                    throw new FileProcessingException("Zip archive " + archive.getOriginalFilename()
+                            + " has more than " + maxZipEntries + " entries");
+                }
+                if (entry.isDirectory() || !isPdf(entry.getName())) {
+                    continue;
+                }
+                // Entry names are only used for display; content always goes to a fresh temp file.
+                Path spooled = Files.createTempFile("bulk-", ".pdf");
+                sources.add(new BulkSource(entry.getName(), spooled, true));
+                remaining -= spool(zip, spooled, entry.getName(), remaining);
+            }
+        } catch (IOException e) {
+            deleteTemporary(sources);
+            throw new FileProcessingException("Error reading zip archive: " + archive.getOriginalFilename(), e);
+        } catch (FileProcessingException e) {
+            deleteTemporary(sources);
+            throw e;
+        }
+        return ingest(sources, tenant);
+    }
+
+    /**
+     * Inflates the current zip entry into a file, stopping as soon as it
+     * exceeds the per-entry limit or the archive's remaining byte budget,
+     * since the sizes in the entry headers cannot be trusted.
+     *
+     * @return The number of bytes written.
+     */
+    private long spool(ZipInputStream zip, Path target, String entryName, long remaining) throws IOException {
+        long limit = Math.min(maxZipEntryBytes, remaining);
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = zip.read(buffer)) != -1) {
+                written += read;
+                if (written > limit) {
+                    throw new FileProcessingException(written > maxZipEntryBytes
+                            ? "Zip entry " + entryName + " is larger than " + maxZipEntryBytes + " bytes"
+                            : "Zip archive inflates to more than " + maxZipTotalBytes + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Ingests every PDF found under a local directory, recursively.
+     *
+     * @param directory Root directory to walk.
+     * @param tenant    The tenant the judgments are stored for.
+     * @return The bulk ingestion report.
+     */
+    public BulkIngestionReport ingestDirectory(Path directory, String tenant) {
+        if (!Files.isDirectory(directory)) {
+            throw new FileProcessingException("Not a directory: " + directory);
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<BulkSource> sources = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> isPdf(path.getFileName().toString()))
+                    .sorted()
+                    .map(path -> new BulkSource(directory.relativize(path).toString(), path, false))
+                    .toList();
+            return ingest(sources, tenant);
+        } catch (IOException e) {
+            throw new FileProcessingException("Error walking directory: " + directory, e);
+        }
+    }
+
+    /**
+     * Runs parse and extraction concurrently for all sources, then persists and
+     * embeds the results in batches as they complete.
+     *
+     * @param sources PDFs to ingest.
+     * @param tenant  The tenant the judgments are stored for.
+     * @return The bulk ingestion report.
+     */
+    public BulkIngestionReport ingest(List<BulkSource> sources, String tenant) {
+        log.info("Starting bulk ingestion of {} files for tenant {}", sources.size(), tenant);
+        long startTime = System.currentTimeMillis();
+
+        // Caps the number of parsed-but-not-yet-persisted texts held in memory.
+        Semaphore inFlight = new Semaphore(Math.max(maxInFlight, batchSize));
+        // Documents of this run holding a place in the tenant's quota.
+        AtomicInteger reserved = new AtomicInteger();
+        IntConsumer done = documents -> {
+            inFlight.release(documents);
+            reserved.addAndGet(-documents);
+            tenantService.releaseIngestion(tenant, documents);
+        };
+        BlockingQueue<Extracted> completed = new LinkedBlockingQueue<>();
+
+        Thread feeder = new Thread(() -> {
+            int next = 0;
+            boolean holdsReservation = false;
+            try {
+                for (; next < sources.size(); next++) {
+                    inFlight.acquire();
+                    tenantService.awaitIngestion(tenant);
+                    reserved.incrementAndGet();
+                    holdsReservation = true;
+                    submit(sources.get(next), tenant, completed);
+                    holdsReservation = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Every source must still be reported, or the loop below would wait for it forever.
+                log.error("Bulk ingestion stopped feeding files after {} of {}", next, sources.size(), e);
+                for (int i = next; i < sources.size(); i++) {
+                    BulkSource source = sources.get(i);
+                    if (source.temporary()) {
+                        deleteQuietly(source.path());
+                    }
+                    FileResult result = new FileResult();
+                    result.setFileName(source.fileName());
+                    result.setStatus(FileStatus.FAILED);
+                    result.setError("Not processed: " + e.getMessage());
+                    completed.add(new Extracted(result, null, null, null, i == next && holdsReservation));
+                }
+            }
+        }, "bulk-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+
+        BulkIngestionReport report = new BulkIngestionReport();
+        List<Extracted> batch = new ArrayList<>(batchSize);
+        try {
+            int received = 0;
+            while (received < sources.size()) {
+                // A partial batch is stored once no document has completed for a while, since
+                // the documents it holds may be all the tenant's quota lets in.
+                Extracted extracted = batch.isEmpty()
+                        ? completed.take()
+                        : completed.poll(maxBatchWaitMs, TimeUnit.MILLISECONDS);
+                if (extracted == null) {
+                    done.accept(flush(batch));
+                    continue;
+                }
+                received++;
+                report.getFiles().add(extracted.result());
+                if (extracted.metadata() != null) {
+                    batch.add(extracted);
+                } else if (extracted.reserved()) {
+                    done.accept(1);
+                }
+                if (batch.size() >= batchSize) {
+                    done.accept(flush(batch));
+                }
+            }
+            done.accept(flush(batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            feeder.interrupt();
+            throw new IllegalStateException("Bulk ingestion interrupted", e);
+        } finally {
+            tenantService.releaseIngestion(tenant, reserved.getAndSet(0));
+        }
+
+        long totalMs = System.currentTimeMillis() - startTime;
+        int failed = (int) report.getFiles().stream().filter(f -> f.getStatus() == FileStatus.FAILED).count();
+        report.setTotalFiles(sources.size());
+        report.setFailed(failed);
+        report.setSucceeded(sources.size() - failed);
+        report.setDuplicates((int) report.getFiles().stream().filter(f -> f.getStatus() == FileStatus.DUPLICATE).count());
+        report.setTotalMs(totalMs);
+        report.setDocsPerSecond(totalMs > 0 ? report.getSucceeded() * 1000.0 / totalMs : 0);
+
+        log.info("Bulk ingestion finished: {} succeeded ({} duplicates), {} failed in {} ms ({} docs/sec)",
+                report.getSucceeded(), report.getDuplicates(), failed, totalMs, String.format(Locale.ROOT, "%.2f", report.getDocsPerSecond()));
+        return report;
+    }
+
+    /**
+     * Parses and extracts one PDF in the background, then hands the result,
+     * or a failed one, to the batching loop.
+     */
+    private void submit(BulkSource source, String tenant, BlockingQueue<Extracted> completed) {
+        FileResult result = new FileResult();
+        result.setFileName(source.fileName());
+        CompletableFuture
+                .supplyAsync(() -> parse(source, tenant, result), parseExecutor)
+                .thenApplyAsync(parsed -> extract(parsed, tenant, result), extractExecutor)
+                .whenComplete((extracted, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        result.setStatus(FileStatus.FAILED);
+                        result.setError(cause.getMessage());
+                        log.error("Bulk ingestion failed for file: {}", source.fileName(), cause);
+                    }
+                    completed.add(error == null ? extracted : new Extracted(result, null, null, null));
+                });
+    }
+
+    /**
+     * Parses one PDF and classifies it against the stored documents.
+     *
+     * @return The parsed text, or {@code null} if the file is a duplicate.
+     */
+    private Parsed parse(BulkSource source, String tenant, FileResult result) {
+        long start = System.currentTimeMillis();
+        try {
+            String contentHash = deduplicationService.hashFile(source.path());
+            Optional<JudgmentMetadata> sameContent = deduplicationService.findByContent(tenant, contentHash);
+            if (sameContent.isPresent()) {
+                markDuplicate(result, sameContent.get());
+                return null;
+            }
+
+            String rawText = stageMetrics.time(StageMetrics.PDF_PARSE, StageMetrics.BULK,
+                    () -> pdfExtractionService.extractText(source.path(), source.fileName()));
+            Fingerprint fingerprint = deduplicationService.fingerprint(contentHash, rawText);
+            Match match = deduplicationService.match(tenant, fingerprint);
+            if (match.type() == MatchType.EXACT) {
+                markDuplicate(result, match.existing());
+                return null;
+            }
+            return new Parsed(rawText, fingerprint, match.type() == MatchType.NEAR ? match.existing() : null);
+        } finally {
+            result.setParseMs(System.currentTimeMillis() - start);
+            if (source.temporary()) {
+                deleteQuietly(source.path());
+            }
+        }
+    }
+
+    private Extracted extract(Parsed parsed, String tenant, FileResult result) {
+        if (parsed == null) {
+            return new Extracted(result, null, null, null);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            JudgmentMetadata metadata = stageMetrics.time(StageMetrics.LLM_EXTRACTION, StageMetrics.BULK,
+                    () -> llmExtractionService.extractMetadata(parsed.text()));
+            deduplicationService.apply(metadata, parsed.fingerprint());
+
+            JudgmentMetadata previous = parsed.previousVersion();
+            SegmentPlan plan = stageMetrics.time(StageMetrics.SPLITTING, StageMetrics.BULK, () -> previous != null
+                    ? vectorStoreService.plan(previous.getId(), tenant, parsed.text(),
+                            previous.getSegmentIds() != null ? previous.getSegmentIds() : List.of())
+                    : vectorStoreService.plan(new ObjectId().toHexString(), tenant, parsed.text(), List.of()));
+            metadata.setId(plan.documentId());
+            metadata.setTenantId(tenant);
+            metadata.setSegmentIds(plan.segmentIds());
+            metadata.setDateEpochDay(JudgmentFacets.epochDay(metadata.getDate()));
+            return new Extracted(result, metadata, parsed.text(), plan);
+        } finally {
+            result.setExtractMs(System.currentTimeMillis() - start);
+        }
+    }
+
+    private static void markDuplicate(FileResult result, JudgmentMetadata existing) {
+        result.setStatus(FileStatus.DUPLICATE);
+        result.setDocumentId(existing.getId());
+        log.info("Skipping {}: already indexed as document ID: {}", result.getFileName(), existing.getId());
+    }
+
+    /**
+     * Persists and embeds one batch, then clears it.
+     *
+     * @return The number of documents that left the batch.
+     */
+    private int flush(List<Extracted> batch) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+
+        long persistStart = System.currentTimeMillis();
+        List<JudgmentMetadata> saved;
+        try {
+            saved = stageMetrics.time(StageMetrics.MONGO_SAVE, StageMetrics.BULK, () -> {
+                judgmentTextService.saveAll(batch.stream()
+                        .collect(Collectors.toMap(item -> item.metadata().getId(), Extracted::text, (a, b) -> b)));
+                return judgmentRepository.saveAll(batch.stream().map(Extracted::metadata).toList());
+            });
+        } catch (Exception e) {
+            log.error("Failed to persist batch of {} judgments", batch.size(), e);
+            batch.forEach(item -> {
+                item.result().setStatus(FileStatus.FAILED);
+                item.result().setError("Persist failed: " + e.getMessage());
+            });
+            batch.clear();
+            return size;
+        }
+        long persistMs = System.currentTimeMillis() - persistStart;
+
+        for (int i = 0; i < batch.size(); i++) {
+            FileResult result = batch.get(i).result();
+            result.setDocumentId(saved.get(i).getId());
+            result.setPersistMs(persistMs);
+        }
+
+        long embedStart = System.currentTimeMillis();
+        List<SegmentPlan> plans = batch.stream().map(Extracted::plan).toList();
+        FileStatus status = FileStatus.INDEXED;
+        String error = null;
+        try {
+            stageMetrics.time(StageMetrics.EMBEDDING, StageMetrics.BULK, () -> {
+                vectorStoreService.embedAll(plans);
+                return null;
+            });
+            vectorStoreService.applyFacets(saved);
+            plans.forEach(vectorStoreService::removeStale);
+        } catch (Exception e) {
+            log.error("Failed to store vector embeddings for batch of {} judgments", saved.size(), e);
+            status = FileStatus.STORED_WITHOUT_EMBEDDINGS;
+            error = "Embedding failed: " + e.getMessage();
+            markUnindexed(saved);
+        }
+        long embedMs = System.currentTimeMillis() - embedStart;
+
+        for (Extracted item : batch) {
+            item.result().setStatus(status);
+            item.result().setError(error);
+            item.result().setEmbedMs(embedMs);
+            item.result().setReusedSegments(item.plan().reusedCount());
+        }
+        batch.clear();
+        return size;
+    }
+
+    /**
+     * Clears the segment IDs of documents whose embeddings did not finish, so
+     * the next run re-indexes them instead of skipping them as duplicates.
+     */
+    private void markUnindexed(List<JudgmentMetadata> saved) {
+        try {
+            judgmentRepository.clearSegmentIds(saved.stream().map(JudgmentMetadata::getId).toList());
+        } catch (Exception e) {
+            log.error("Failed to mark batch of {} judgments as not indexed", saved.size(), e);
+        }
+    }
+
+    private static boolean isPdf(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    private static void deleteTemporary(List<BulkSource> sources) {
+        sources.stream().filter(BulkSource::temporary).forEach(source -> deleteQuietly(source.path()));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file: {}", path);
+        }
+    }
+
+    private record Parsed(String text, Fingerprint fingerprint, JudgmentMetadata previousVersion) {
+    }
+
+    /**
+     * A document leaving parse and extraction.
+     *
+     * @param reserved Whether it holds a place in the tenant's quota; only
+     *                 files the feeder gave up on before submitting do not.
+     */
+    private record Extracted(FileResult result, JudgmentMetadata metadata, String text, SegmentPlan plan,
+                             boolean reserved) {
+
+        Extracted(FileResult result, JudgmentMetadata metadata, String text, SegmentPlan plan) {
+            this(result, metadata, text, plan, true);
+        }
+    }
+}
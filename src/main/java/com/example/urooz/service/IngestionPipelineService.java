@@ -0,0 +1,467 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.exception.PipelineBusyException;
+import com.example.urooz.exception.TenantQuotaExceededException;
+import com.example.urooz.model.IngestionJob;
+import com.example.urooz.model.IngestionStage;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.VectorStoreService.SegmentPlan;
+import com.example.urooz.service.dedupe.DeduplicationService;
+import com.example.urooz.service.dedupe.DeduplicationService.Fingerprint;
+import com.example.urooz.service.dedupe.DeduplicationService.Fingerprinter;
+import com.example.urooz.service.dedupe.DeduplicationService.Match;
+import com.example.urooz.service.dedupe.DeduplicationService.MatchType;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged, asynchronous ingestion pipeline for uploaded judgments.
+ * <p>
+ * Each stage (parse, LLM extract, persist, embed) runs on its own fixed-size
+ * executor with a bounded queue, so a slow stage only ever fills its own
+ * queue. New uploads are refused with a {@link PipelineBusyException} while
+ * any stage is saturated; hand-offs between stages block the upstream worker
+ * for a bounded time, which propagates backpressure back to admission.
+ * <p>
+ * Uploads whose bytes match an indexed document complete as duplicates
+ * before they are parsed. Otherwise each page is fingerprinted, split and
+ * queued for embedding under a new document ID as soon as it is parsed, so
+ * embedding overlaps with parsing and LLM extraction; the embed stage only
+ * waits for it. The segments are stored {@link JudgmentFacets#PENDING}, and
+ * the embed stage publishes them once the metadata is persisted and the
+ * facets are applied, so searches never see a half-ingested judgment. If the
+ * whole text matches an indexed document, the streamed segments are dropped
+ * and the job completes as a duplicate; a near-identical text is stored as a
+ * new version of the existing document, and only its changed segments are
+ * embedded again under its ID (from the embedding cache). If the job fails,
+ * the segments it added are removed again.
+ * <p>
+ * Each job counts against its tenant's ingestion quota
+ * ({@link TenantService}) from admission until it completes or fails.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IngestionPipelineService {
+
+    private final PdfExtractionService pdfExtractionService;
+    private final LlmExtractionService llmExtractionService;
+    private final JudgmentRepository judgmentRepository;
+    private final JudgmentTextService judgmentTextService;
+    private final VectorStoreService vectorStoreService;
+    private final DeduplicationService deduplicationService;
+    private final TenantService tenantService;
+    private final StageMetrics stageMetrics;
+    private final MeterRegistry meterRegistry;
+    private final BlockingIoThreads blockingIoThreads;
+    private final Environment environment;
+
+    @Value("${pipeline.handoff-timeout-ms:30000}")
+    private long handoffTimeoutMs;
+
+    @Value("${pipeline.jobs.retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private final Map<IngestionStage, ThreadPoolExecutor> executors = new EnumMap<>(IngestionStage.class);
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void startExecutors() {
+        for (IngestionStage stage : IngestionStage.values()) {
+            String key = stage.name().toLowerCase();
+            int threads = environment.getProperty("pipeline." + key + ".threads", Integer.class, 2);
+            int queueCapacity = environment.getProperty("pipeline." + key + ".queue-capacity", Integer.class, 50);
+
+            // Parsing is CPU-bound; the other stages mostly wait on Gemini, MongoDB and the vector store.
+            ThreadFactory threadFactory = stage == IngestionStage.PARSE
+                    ? namedThreads("ingest-" + key)
+                    : blockingIoThreads.factory("ingest-" + key);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+            executor.prestartAllCoreThreads();
+            executors.put(stage, executor);
+            Gauge.builder("pipeline.queue.size", executor, pool -> pool.getQueue().size())
+                    .description("Jobs waiting for an ingestion stage")
+                    .tag("stage", key)
+                    .register(meterRegistry);
+            Gauge.builder("pipeline.active", executor, ThreadPoolExecutor::getActiveCount)
+                    .description("Jobs being processed by an ingestion stage")
+                    .tag("stage", key)
+                    .register(meterRegistry);
+            log.info("Ingestion stage {} started with {} threads and queue capacity {}", stage, threads, queueCapacity);
+        }
+    }
+
+    @PreDestroy
+    void stopExecutors() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * Accepts an upload for asynchronous processing and returns immediately.
+     *
+     * @param file   The uploaded PDF judgment.
+     * @param tenant The tenant the judgment is stored for.
+     * @return The newly created job, already queued for parsing.
+     * @throws PipelineBusyException        if any stage queue is full.
+     * @throws TenantQuotaExceededException if the tenant already has its quota of documents in ingestion.
+     * @throws FileProcessingException      if the upload is empty or cannot be spooled.
+     */
+    public IngestionJob submit(MultipartFile file, String tenant) {
+        pdfExtractionService.validate(file);
+        evictExpiredJobs();
+
+        for (Map.Entry<IngestionStage, ThreadPoolExecutor> entry : executors.entrySet()) {
+            if (entry.getValue().getQueue().remainingCapacity() == 0) {
+                throw new PipelineBusyException("Ingestion stage " + entry.getKey() + " is at capacity. Retry later.");
+            }
+        }
+
+        Path spooled = spool(file);
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), file.getOriginalFilename(), tenant);
+
+        String contentHash;
+        Optional<JudgmentMetadata> existing;
+        try {
+            contentHash = deduplicationService.hashFile(spooled);
+            existing = deduplicationService.findByContent(tenant, contentHash);
+        } catch (RuntimeException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+        if (existing.isPresent()) {
+            deleteQuietly(spooled);
+            job.markDuplicate(existing.get());
+            jobs.put(job.getJobId(), job);
+            log.info("Upload {} is identical to document ID: {}", job.getFileName(), existing.get().getId());
+            return job;
+        }
+
+        try {
+            tenantService.reserveIngestion(tenant);
+        } catch (TenantQuotaExceededException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+        job.onFinished(() -> tenantService.releaseIngestion(tenant, 1));
+
+        jobs.put(job.getJobId(), job);
+        job.markQueued(IngestionStage.PARSE);
+        try {
+            executors.get(IngestionStage.PARSE).execute(() -> runStage(job, IngestionStage.PARSE,
+                    () -> parse(job, spooled, contentHash)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            deleteQuietly(spooled);
+            tenantService.releaseIngestion(tenant, 1);
+            throw new PipelineBusyException("Ingestion stage PARSE is at capacity. Retry later.");
+        }
+
+        log.info("Accepted ingestion job {} for file: {}", job.getJobId(), job.getFileName());
+        return job;
+    }
+
+    /**
+     * Looks up a job by its identifier.
+     *
+     * @param jobId The job identifier returned by {@link #submit(MultipartFile, String)}.
+     * @return The job, if it is still retained.
+     */
+    public Optional<IngestionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private Runnable parse(IngestionJob job, Path spooled, String contentHash) {
+        String docId = new ObjectId().toHexString();
+        StringBuilder text = new StringBuilder();
+        Fingerprinter fingerprinter = deduplicationService.fingerprinter(contentHash);
+        List<String> segmentIds = new ArrayList<>();
+        List<KeyedSegment> toEmbed = new ArrayList<>();
+        List<CompletableFuture<Void>> pageIndexing = new ArrayList<>();
+        AtomicLong splitNanos = new AtomicLong();
+        long embedStart = System.nanoTime();
+        int pages;
+        try {
+            pages = stageMetrics.time(StageMetrics.PDF_PARSE, StageMetrics.EXTRACT,
+                    () -> pdfExtractionService.extractPages(spooled, job.getFileName(), page -> {
+                        if (!pageIndexing.isEmpty()) {
+                            text.append(PdfExtractionService.PAGE_BREAK);
+                        }
+                        text.append(page.text());
+                        fingerprinter.addPage(page.text());
+                        long splitStart = System.nanoTime();
+                        SegmentPlan pagePlan = vectorStoreService.planPage(docId, job.getTenantId(), page.pageNumber(),
+                                page.text());
+                        splitNanos.addAndGet(System.nanoTime() - splitStart);
+                        segmentIds.addAll(pagePlan.segmentIds());
+                        toEmbed.addAll(pagePlan.toEmbed());
+                        pageIndexing.add(vectorStoreService.embed(pagePlan));
+                    }));
+        } catch (RuntimeException e) {
+            discardVectors(new SegmentPlan(docId, segmentIds, toEmbed, List.of()), allOf(pageIndexing));
+            throw e;
+        } finally {
+            deleteQuietly(spooled);
+        }
+        stageMetrics.timer(StageMetrics.SPLITTING, StageMetrics.EXTRACT).record(splitNanos.get(), TimeUnit.NANOSECONDS);
+        String rawText = text.toString();
+        SegmentPlan streamed = new SegmentPlan(docId, List.copyOf(segmentIds), toEmbed, List.of());
+        CompletableFuture<Void> streamedIndexing = allOf(pageIndexing);
+
+        Fingerprint fingerprint = fingerprinter.finish();
+        Match match;
+        try {
+            match = deduplicationService.match(job.getTenantId(), fingerprint);
+        } catch (RuntimeException e) {
+            discardVectors(streamed, streamedIndexing);
+            throw e;
+        }
+        if (match.type() == MatchType.EXACT) {
+            discardVectors(streamed, streamedIndexing);
+            return () -> {
+                job.markDuplicate(match.existing());
+                log.info("Ingestion job {} matched the text of document ID: {}", job.getJobId(), match.existing().getId());
+            };
+        }
+
+        SegmentPlan plan = streamed;
+        CompletableFuture<Void> indexing = streamedIndexing;
+        if (match.type() == MatchType.NEAR) {
+            // A new version is indexed under the stored document's ID. Its changed segments are embedded once
+            // the streamed pages are stored, so their vectors come from the embedding cache.
+            discardVectors(streamed, streamedIndexing);
+            SegmentPlan version = stageMetrics.time(StageMetrics.SPLITTING, StageMetrics.EXTRACT,
+                    () -> vectorStoreService.planPending(match.existing().getId(), job.getTenantId(), rawText,
+                            previousSegmentIds(match.existing())));
+            plan = version;
+            indexing = streamedIndexing.handle((ignored, error) -> null)
+                    .thenComposeAsync(ignored -> vectorStoreService.embed(version));
+        }
+        indexing.whenComplete((ignored, error) ->
+                stageMetrics.recordSince(StageMetrics.EMBEDDING, StageMetrics.EXTRACT, embedStart));
+        log.info("Parsed {} pages of {}; queued {} segments for embedding for Doc ID: {} ({} reused)", pages,
+                job.getFileName(), plan.toEmbed().size(), plan.documentId(), plan.reusedCount());
+
+        SegmentPlan indexed = plan;
+        CompletableFuture<Void> indexedFuture = indexing;
+        return () -> handOff(job, IngestionStage.EXTRACT,
+                () -> extract(job, rawText, fingerprint, indexed, indexedFuture),
+                () -> discardVectors(indexed, indexedFuture));
+    }
+
+    private Runnable extract(IngestionJob job, String rawText, Fingerprint fingerprint, SegmentPlan plan,
+                             CompletableFuture<Void> indexing) {
+        JudgmentMetadata metadata;
+        try {
+            metadata = stageMetrics.time(StageMetrics.LLM_EXTRACTION, StageMetrics.EXTRACT,
+                    () -> llmExtractionService.extractMetadata(rawText));
+        } catch (RuntimeException e) {
+            discardVectors(plan, indexing);
+            throw e;
+        }
+        metadata.setId(plan.documentId());
+        metadata.setTenantId(job.getTenantId());
+        metadata.setSegmentIds(plan.segmentIds());
+        metadata.setDateEpochDay(JudgmentFacets.epochDay(metadata.getDate()));
+        deduplicationService.apply(metadata, fingerprint);
+        return () -> handOff(job, IngestionStage.PERSIST, () -> persist(job, metadata, rawText, plan, indexing),
+                () -> discardVectors(plan, indexing));
+    }
+
+    private Runnable persist(IngestionJob job, JudgmentMetadata metadata, String rawText, SegmentPlan plan,
+                             CompletableFuture<Void> indexing) {
+        JudgmentMetadata savedData;
+        try {
+            savedData = stageMetrics.time(StageMetrics.MONGO_SAVE, StageMetrics.EXTRACT, () -> {
+                judgmentTextService.save(metadata.getId(), rawText);
+                return judgmentRepository.save(metadata);
+            });
+        } catch (RuntimeException e) {
+            discardVectors(plan, indexing);
+            throw e;
+        }
+        job.recordDocument(savedData);
+        log.info("Judgment metadata persisted to database with ID: {}", savedData.getId());
+        return () -> handOff(job, IngestionStage.EMBED, () -> embed(job, savedData, plan, indexing), () -> {
+            markUnindexed(savedData.getId());
+            discardVectors(plan, indexing);
+        });
+    }
+
+    private Runnable embed(IngestionJob job, JudgmentMetadata savedData, SegmentPlan plan,
+                           CompletableFuture<Void> indexing) {
+        try {
+            indexing.join();
+            vectorStoreService.applyFacets(List.of(savedData));
+            vectorStoreService.publish(savedData.getId());
+        } catch (CompletionException e) {
+            markUnindexed(savedData.getId());
+            discardVectors(plan, indexing);
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } catch (RuntimeException e) {
+            markUnindexed(savedData.getId());
+            discardVectors(plan, indexing);
+            throw e;
+        }
+        vectorStoreService.removeStale(plan);
+        log.info("Vector embeddings stored for Doc ID: {} ({} reused, {} removed)",
+                savedData.getId(), plan.reusedCount(), plan.staleIds().size());
+        return () -> {
+            job.markCompleted();
+            log.info("Ingestion job {} completed for document ID: {}", job.getJobId(), savedData.getId());
+        };
+    }
+
+    /**
+     * Removes the segments a version added once their in-flight indexing has
+     * settled, because the version will never be published.
+     */
+    private void discardVectors(SegmentPlan plan, CompletableFuture<Void> indexing) {
+        indexing.whenCompleteAsync((ignored, error) -> {
+            try {
+                vectorStoreService.discard(plan);
+            } catch (Exception e) {
+                log.error("Failed to remove orphaned vectors for Doc ID: {}", plan.documentId(), e);
+            }
+        });
+    }
+
+    /**
+     * Clears the stored segment IDs of a persisted document whose embeddings
+     * did not finish, so a re-upload re-indexes it instead of being skipped
+     * as a duplicate.
+     */
+    private void markUnindexed(String docId) {
+        try {
+            judgmentRepository.clearSegmentIds(List.of(docId));
+        } catch (Exception e) {
+            log.error("Failed to mark Doc ID {} as not indexed", docId, e);
+        }
+    }
+
+    private static List<String> previousSegmentIds(JudgmentMetadata existing) {
+        return existing.getSegmentIds() != null ? existing.getSegmentIds() : List.of();
+    }
+
+    /**
+     * Queues the next stage of a job, waiting up to the configured hand-off
+     * timeout for space. Blocking here is deliberate: it stalls the upstream
+     * stage so its own queue fills and admission starts returning 429.
+     * {@code onDropped} runs if the job has to be abandoned instead.
+     */
+    private void handOff(IngestionJob job, IngestionStage stage, StageTask task, Runnable onDropped) {
+        job.markQueued(stage);
+        Runnable runnable = () -> runStage(job, stage, task);
+        try {
+            boolean accepted = executors.get(stage).getQueue().offer(runnable, handoffTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!accepted) {
+                job.markFailed(stage, "Stage " + stage + " queue stayed full for " + handoffTimeoutMs + " ms");
+                log.warn("Ingestion job {} dropped: stage {} is saturated", job.getJobId(), stage);
+                onDropped.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.markFailed(stage, "Interrupted while waiting for stage " + stage);
+            onDropped.run();
+        }
+    }
+
+    /**
+     * Runs one stage of a job. The stage returns its continuation, which is
+     * only invoked after the stage is recorded as done so that per-stage
+     * timings do not include time spent waiting on the next queue.
+     */
+    private void runStage(IngestionJob job, IngestionStage stage, StageTask task) {
+        job.markRunning(stage);
+        Runnable next;
+        try {
+            next = task.run();
+        } catch (Exception e) {
+            log.error("Ingestion job {} failed in stage {}", job.getJobId(), stage, e);
+            job.markFailed(stage, e.getMessage());
+            return;
+        }
+        job.markDone(stage);
+        next.run();
+    }
+
+    private Path spool(MultipartFile file) {
+        try {
+            Path spooled = Files.createTempFile("judgment-", ".pdf");
+            file.transferTo(spooled);
+            return spooled;
+        } catch (IOException e) {
+            log.error("Failed to spool upload: {}", file.getOriginalFilename(), e);
+            throw new FileProcessingException("Error buffering uploaded file", e);
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobRetentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished()
+                && job.getCompletedAt() != null && job.getCompletedAt().isBefore(cutoff));
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file: {}", path);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        Runnable run() throws Exception;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.urooz.service;
+
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.JudgmentSummary;
+import com.example.urooz.model.SearchFilter;
+import com.example.urooz.repository.JudgmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of the stored judgments. Listings and searches read only the
+ * {@link JudgmentSummary} fields and are served by indexes: the tenant and
+ * court indexes for listings and the text index over title, court and
+ * citations for searches. Every read is restricted to one tenant's
+ * judgments; a judgment of another tenant is reported as not found.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class JudgmentCatalogService {
+
+    private final JudgmentRepository judgmentRepository;
+    private final JudgmentTextService judgmentTextService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${judgments.page.max-size:100}")
+    private int maxPageSize;
+
+    /**
+     * Lists a tenant's judgments, newest first.
+     *
+     * @param court Optional exact court name to filter by.
+     */
+    public Page<JudgmentSummary> list(String tenant, String court, int page, int size) {
+        Pageable pageable = pageable(page, size, Sort.by(Sort.Direction.DESC, "id"));
+        return court == null || court.isBlank()
+                ? judgmentRepository.findByTenantId(tenant, pageable)
+                : judgmentRepository.findByTenantIdAndCourt(tenant, court, pageable);
+    }
+
+    /**
+     * Full-text search over title, court and citations, best matches first.
+     *
+     * @param terms Search terms; quoted phrases and {@code -negations} follow MongoDB text search syntax.
+     */
+    public Page<JudgmentSummary> search(String tenant, String terms, int page, int size) {
+        Pageable pageable = pageable(page, size, Sort.unsorted());
+        if (terms == null || terms.isBlank()) {
+            return Page.empty(pageable);
+        }
+
+        Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(terms)).sortByScore()
+                .addCriteria(Criteria.where("tenantId").is(tenant))
+                .with(pageable);
+        query.fields().include("title", "court", "date");
+        List<JudgmentSummary> content = mongoTemplate.find(query, JudgmentSummary.class,
+                mongoTemplate.getCollectionName(JudgmentMetadata.class));
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(Query.of(query).limit(-1).skip(-1), JudgmentMetadata.class));
+    }
+
+    /**
+     * The IDs of a tenant's judgments that a search filter allows, read from
+     * the tenant, court and date indexes.
+     */
+    public Set<String> ids(String tenant, SearchFilter filter) {
+        Query query = Query.query(Criteria.where("tenantId").is(tenant));
+        if (!filter.courts().isEmpty()) {
+            query.addCriteria(Criteria.where("court").in(filter.courts()));
+        }
+        if (filter.fromEpochDay() != null || filter.toEpochDay() != null) {
+            Criteria date = Criteria.where("dateEpochDay");
+            if (filter.fromEpochDay() != null) {
+                date.gte(filter.fromEpochDay());
+            }
+            if (filter.toEpochDay() != null) {
+                date.lte(filter.toEpochDay());
+            }
+            query.addCriteria(date);
+        }
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(JudgmentMetadata.class))
+                .stream()
+                .map(document -> String.valueOf(document.get("_id")))
+                .collect(Collectors.toSet());
+    }
+
+    public Optional<JudgmentMetadata> get(String tenant, String id) {
+        return judgmentRepository.findById(id).filter(judgment -> tenant.equals(judgment.getTenantId()));
+    }
+
+    public Optional<String> text(String tenant, String id) {
+        boolean owned = mongoTemplate.exists(Query.query(Criteria.where("_id").is(id).and("tenantId").is(tenant)),
+                JudgmentMetadata.class);
+        return owned ? judgmentTextService.load(id) : Optional.empty();
+    }
+
+    private Pageable pageable(int page, int size, Sort sort) {
+        return PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, maxPageSize)), sort);
+    }
+}
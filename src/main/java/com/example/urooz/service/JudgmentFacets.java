@@ -0,0 +1,110 @@
+package com.example.urooz.service;
+
+import com.example.urooz.model.JudgmentMetadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The judgment fields stored on every vector store segment so searches can
+ * be filtered inside the vector search, and parsing of the extracted,
+ * free-form judgment dates they are based on. {@link #TENANT} is set on
+ * segments as soon as they are split; the others once the judgment's
+ * metadata is extracted. Segments uploaded before their judgment is stored
+ * carry {@link #PENDING} until it is, and searches skip them meanwhile.
+ */
+public final class JudgmentFacets {
+
+    public static final String COURT = "court";
+    public static final String DATE = "date_epoch_day";
+    public static final String TITLE = "title";
+    public static final String TENANT = "tenant_id";
+    public static final String PENDING = "pending";
+
+    private static final Pattern ORDINAL = Pattern.compile("(?i)\\b(\\d{1,2})(st|nd|rd|th)\\b");
+    private static final Pattern YEAR = Pattern.compile("\\b(1[89]\\d{2}|20\\d{2})\\b");
+    private static final List<DateTimeFormatter> FORMATS = List.of(
+            "uuuu-M-d", "d-M-uuuu", "d/M/uuuu", "d.M.uuuu",
+            "d MMMM uuuu", "d MMM uuuu", "MMMM d uuuu", "MMM d uuuu").stream()
+            .map(pattern -> new DateTimeFormatterBuilder()
+                    .parseCaseInsensitive()
+                    .appendPattern(pattern)
+                    .toFormatter(Locale.ENGLISH)
+                    .withResolverStyle(ResolverStyle.STRICT))
+            .toList();
+
+    private JudgmentFacets() {
+    }
+
+    /** Whether a segment belongs to a judgment that is not stored yet. */
+    public static boolean isPending(TextSegment segment) {
+        return Boolean.parseBoolean(segment.metadata().getString(PENDING));
+    }
+
+    /**
+     * The segment metadata for a judgment: tenant, court, date as an epoch
+     * day and title, leaving out those that are unknown.
+     */
+    public static Map<String, Object> of(JudgmentMetadata metadata) {
+        Map<String, Object> facets = new LinkedHashMap<>();
+        if (metadata.getTenantId() != null) {
+            facets.put(TENANT, metadata.getTenantId());
+        }
+        if (metadata.getCourt() != null && !metadata.getCourt().isBlank()) {
+            facets.put(COURT, metadata.getCourt().trim());
+        }
+        Long epochDay = metadata.getDateEpochDay() != null ? metadata.getDateEpochDay() : epochDay(metadata.getDate());
+        if (epochDay != null) {
+            facets.put(DATE, epochDay);
+        }
+        if (metadata.getTitle() != null && !metadata.getTitle().isBlank()) {
+            facets.put(TITLE, metadata.getTitle().trim());
+        }
+        return facets;
+    }
+
+    /**
+     * Parses an extracted judgment date such as {@code 2019-03-12},
+     * {@code 12/03/2019}, {@code 12th March, 2019} or {@code March 12, 2019}.
+     * Numeric dates other than ISO are read day first, as Indian courts write them.
+     *
+     * @return The epoch day, or {@code null} if the text is not a complete date.
+     */
+    public static Long epochDay(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+        String normalized = ORDINAL.matcher(date.trim()).replaceAll("$1")
+                .replace(",", " ")
+                .replaceAll("\\s+", " ")
+                .trim();
+        for (DateTimeFormatter format : FORMATS) {
+            try {
+                return LocalDate.parse(normalized, format).toEpochDay();
+            } catch (DateTimeParseException ignored) {
+                // Try the next format.
+            }
+        }
+        return null;
+    }
+
+    /** The year of an extracted judgment date, also when only the year is known. */
+    public static Integer year(String date) {
+        Long epochDay = epochDay(date);
+        if (epochDay != null) {
+            return LocalDate.ofEpochDay(epochDay).getYear();
+        }
+        Matcher matcher = date != null ? YEAR.matcher(date) : null;
+        return matcher != null && matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+}
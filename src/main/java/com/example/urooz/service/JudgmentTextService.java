@@ -0,0 +1,149 @@
+package com.example.urooz.service;
+
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.JudgmentText;
+import com.example.urooz.repository.JudgmentTextRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores the full text of judgments DEFLATE-compressed in the
+ * {@code judgment_texts} collection, keyed by document ID. Judgment text
+ * compresses several-fold and is only read when a client asks for it.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class JudgmentTextService {
+
+    /** Field under which older versions stored the text on the judgment itself. */
+    static final String INLINE_FIELD = "originalText";
+
+    private final JudgmentTextRepository judgmentTextRepository;
+    private final MongoTemplate mongoTemplate;
+
+    public void save(String documentId, String text) {
+        judgmentTextRepository.save(toDocument(documentId, text));
+    }
+
+    /**
+     * Stores the texts of many documents in one batch.
+     *
+     * @param texts Text by document ID.
+     */
+    public void saveAll(Map<String, String> texts) {
+        judgmentTextRepository.saveAll(texts.entrySet().stream()
+                .map(entry -> toDocument(entry.getKey(), entry.getValue()))
+                .toList());
+    }
+
+    public long count() {
+        return judgmentTextRepository.count();
+    }
+
+    /**
+     * Streams stored texts in document ID order through a cursor. Texts are
+     * returned compressed; see {@link #text(JudgmentText)}.
+     *
+     * @param afterId   Only texts with a greater ID are returned, or all if {@code null}.
+     * @param batchSize Documents fetched per cursor round trip.
+     */
+    public Stream<JudgmentText> streamAfter(String afterId, int batchSize) {
+        Query query = afterId != null ? Query.query(Criteria.where("_id").gt(afterId)) : new Query();
+        query.with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, JudgmentText.class);
+    }
+
+    public static String text(JudgmentText stored) {
+        return decompress(stored.getContent(), stored.getLength());
+    }
+
+    public Optional<String> load(String documentId) {
+        return judgmentTextRepository.findById(documentId)
+                .map(JudgmentTextService::text);
+    }
+
+    /**
+     * Moves texts still stored inline on judgments into the text collection
+     * and removes them from the judgments.
+     *
+     * @return The number of judgments migrated.
+     */
+    public int moveInlineTexts() {
+        Query query = Query.query(Criteria.where(INLINE_FIELD).exists(true));
+        query.fields().include(INLINE_FIELD);
+        String collection = mongoTemplate.getCollectionName(JudgmentMetadata.class);
+        int moved = 0;
+        try (Stream<Document> judgments = mongoTemplate.stream(query, Document.class, collection)) {
+            for (Document judgment : (Iterable<Document>) judgments::iterator) {
+                Object id = judgment.get("_id");
+                String text = judgment.getString(INLINE_FIELD);
+                if (text != null) {
+                    save(id.toString(), text);
+                }
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                        new Update().unset(INLINE_FIELD), collection);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private static JudgmentText toDocument(String documentId, String text) {
+        return new JudgmentText(documentId, compress(text), text.length());
+    }
+
+    static byte[] compress(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 3));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(byte[] content, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(content);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, length));
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated judgment text");
+                }
+                output.write(buffer, 0, read);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt judgment text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
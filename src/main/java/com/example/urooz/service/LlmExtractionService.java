@@ -1,28 +1,86 @@
 package com.example.urooz.service;
 
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.exception.LlmBusyException;
 import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.service.llm.LlmGateway;
+import com.example.urooz.service.llm.LlmGateway.Lane;
+import com.example.urooz.service.llm.StreamingJsonObjectReader;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.input.Prompt;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import dev.langchain4j.model.input.PromptTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service responsible for interacting with the LLM to extract structured legal
  * data from raw text.
+ * <p>
+ * Judgments that fit in one token-budgeted window are extracted with a single
+ * call. Longer ones are split into overlapping windows (preferring page and
+ * paragraph boundaries) that are extracted concurrently, with at most
+ * {@code llm.extraction.max-in-flight} calls in flight across the whole
+ * service, and the partial results are merged in window order.
+ * <p>
+ * Each call asks for JSON constrained by a response schema and parses it with
+ * a {@link StreamingJsonObjectReader} as it streams in, so prose around the
+ * object is ignored and a truncated response still yields the fields that
+ * were completed. The remaining fields are then asked for on their own, up
+ * to {@code llm.extraction.repair-attempts} times, instead of repeating the
+ * whole extraction: the repair prompt carries the fields already read and at
+ * most {@code llm.extraction.repair-context-tokens} of the text, taken from
+ * the passages where the missing fields usually appear.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LlmExtractionService {
 
-    private final ChatLanguageModel chatLanguageModel;
+    private final LlmGateway llmGateway;
     private final ObjectMapper objectMapper;
+    private final BlockingIoThreads blockingIoThreads;
+
+    @Value("${llm.extraction.window-tokens:6000}")
+    private int windowTokens;
+
+    @Value("${llm.extraction.overlap-tokens:200}")
+    private int overlapTokens;
+
+    @Value("${llm.extraction.chars-per-token:4}")
+    private int charsPerToken;
+
+    @Value("${llm.extraction.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${llm.extraction.repair-attempts:1}")
+    private int repairAttempts;
+
+    @Value("${llm.extraction.repair-context-tokens:1500}")
+    private int repairContextTokens;
+
+    private ExecutorService windowExecutor;
 
     private static final String EXTRACTION_PROMPT = """
             Act as a legal domain expert. Analyze the following legal judgment text.
@@ -30,7 +88,7 @@ public class LlmExtractionService {
             Extract the following fields and return the output STRICTLY in JSON format:
             1. title (Case Title)
             2. court (Court Name)
-            3. date (Judgment Date)
+            3. date (Judgment Date, as YYYY-MM-DD)
             4. facts (Brief summary of facts)
             5. issues (List of legal issues raised)
             6. arguments (Map with keys 'petitioner' and 'respondent')
@@ -44,6 +102,84 @@ public class LlmExtractionService {
             {{text}}
             """;
 
+    private static final String WINDOW_EXTRACTION_PROMPT = """
+            Act as a legal domain expert. The following text is part {{part}} of {{parts}} of a longer legal judgment.
+
+            Extract the following fields from THIS PART ONLY and return the output STRICTLY in JSON format.
+            Use null (or an empty list) for any field that does not appear in this part:
+            1. title (Case Title)
+            2. court (Court Name)
+            3. date (Judgment Date, as YYYY-MM-DD)
+            4. facts (Brief summary of facts)
+            5. issues (List of legal issues raised)
+            6. arguments (Map with keys 'petitioner' and 'respondent')
+            7. ratio (The ratio decidendi)
+            8. holding (The final verdict/holding)
+            9. citations (List of cases cited)
+
+            Return raw JSON only. Do not use markdown blocks.
+
+            TEXT TO ANALYZE:
+            {{text}}
+            """;
+
+    private static final String REPAIR_PROMPT = """
+            Act as a legal domain expert. These fields were already extracted from a legal judgment:
+            {{extracted}}
+
+            Extract ONLY the following fields from the excerpt below and return the output STRICTLY in JSON format.
+            Use null (or an empty list) for any field that does not appear in the excerpt:
+            {{fields}}
+
+            Return raw JSON only. Do not use markdown blocks.
+
+            EXCERPT TO ANALYZE:
+            {{text}}
+            """;
+
+    /** Marks where the middle of the text was left out of a repair excerpt. */
+    static final String OMITTED = "\n\n[...]\n\n";
+
+    private static final PromptTemplate EXTRACTION_TEMPLATE = PromptTemplate.from(EXTRACTION_PROMPT);
+    private static final PromptTemplate WINDOW_EXTRACTION_TEMPLATE = PromptTemplate.from(WINDOW_EXTRACTION_PROMPT);
+    private static final PromptTemplate REPAIR_TEMPLATE = PromptTemplate.from(REPAIR_PROMPT);
+
+    /** Where in a judgment a field is usually found. */
+    private enum Placement { OPENING, CLOSING, THROUGHOUT }
+
+    /** An extracted field with its prompt description, JSON type and usual placement. */
+    private record Field(String name, String description, JsonNodeType type, Placement placement) {
+
+        boolean accepts(JsonNode value) {
+            return value.isNull() || value.getNodeType() == type;
+        }
+    }
+
+    /** Extracted fields in generation order: short case details first, so a cut-off response keeps them. */
+    private static final List<Field> FIELDS = List.of(
+            new Field("title", "Case Title", JsonNodeType.STRING, Placement.OPENING),
+            new Field("court", "Court Name", JsonNodeType.STRING, Placement.OPENING),
+            new Field("date", "Judgment Date, as YYYY-MM-DD", JsonNodeType.STRING, Placement.OPENING),
+            new Field("facts", "Brief summary of facts", JsonNodeType.STRING, Placement.OPENING),
+            new Field("issues", "List of legal issues raised", JsonNodeType.ARRAY, Placement.THROUGHOUT),
+            new Field("arguments", "Map with keys 'petitioner' and 'respondent'", JsonNodeType.OBJECT,
+                    Placement.THROUGHOUT),
+            new Field("ratio", "The ratio decidendi", JsonNodeType.STRING, Placement.CLOSING),
+            new Field("holding", "The final verdict/holding", JsonNodeType.STRING, Placement.CLOSING),
+            new Field("citations", "List of cases cited", JsonNodeType.ARRAY, Placement.THROUGHOUT));
+
+    private static final ObjectNode RESPONSE_SCHEMA = responseSchema(FIELDS);
+
+    @PostConstruct
+    void startExecutor() {
+        windowExecutor = Executors.newFixedThreadPool(maxInFlight, blockingIoThreads.factory("llm-extract"));
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        windowExecutor.shutdownNow();
+    }
+
     /**
      * Sends raw text to the LLM and parses the JSON response into JudgmentMetadata.
      *
@@ -51,27 +187,260 @@ public class LlmExtractionService {
      * @return Structured JudgmentMetadata object.
      */
     public JudgmentMetadata extractMetadata(String rawText) {
-        log.info("Initiating metadata extraction using LLM. Text length: {}", rawText.length());
+        List<String> windows = splitIntoWindows(rawText, windowTokens * charsPerToken, overlapTokens * charsPerToken);
+        log.info("Initiating metadata extraction using LLM. Text length: {}, windows: {}",
+                rawText.length(), windows.size());
 
-        // Cap text length to avoid token limits.
-        String truncatedText = rawText.length() > 20000 ? rawText.substring(0, 20000) : rawText;
+        if (windows.size() <= 1) {
+            return extract(EXTRACTION_TEMPLATE.apply(Map.of("text", rawText)).text(), rawText);
+        }
 
-        PromptTemplate template = PromptTemplate.from(EXTRACTION_PROMPT);
-        Prompt prompt = template.apply(Map.of("text", truncatedText));
+        List<CompletableFuture<JudgmentMetadata>> partials = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            String window = windows.get(i);
+            String prompt = WINDOW_EXTRACTION_TEMPLATE
+                    .apply(Map.of("part", i + 1, "parts", windows.size(), "text", window)).text();
+            partials.add(CompletableFuture.supplyAsync(() -> extract(prompt, window), windowExecutor));
+        }
 
         try {
-            String jsonResponse = chatLanguageModel.generate(prompt.text());
-            log.debug("LLM Response received: {}", jsonResponse);
+            return merge(partials.stream().map(CompletableFuture::join).toList());
+        } catch (CompletionException e) {
+            partials.forEach(partial -> partial.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Runs one extraction prompt, then re-asks for whatever fields a cut-off
+     * or failed response did not complete. A response that yielded nothing
+     * is retried as it was; otherwise the repair sends the fields read so
+     * far and an excerpt of the text. Fields with the wrong JSON type are
+     * dropped. Fails only if no field could be read at all.
+     */
+    private JudgmentMetadata extract(String prompt, String text) {
+        ObjectNode extracted = objectMapper.createObjectNode();
+        List<Field> wanted = FIELDS;
+        ObjectNode schema = RESPONSE_SCHEMA;
+        RuntimeException failure = null;
+        boolean complete = false;
+
+        for (int attempt = 0; ; attempt++) {
+            StreamingJsonObjectReader reader = new StreamingJsonObjectReader(objectMapper);
+            try {
+                llmGateway.generateJson("extraction", Lane.BACKGROUND, prompt, schema, reader::feed);
+            } catch (LlmBusyException e) {
+                if (extracted.isEmpty()) {
+                    throw e;
+                }
+                log.warn("LLM busy while re-asking for missing fields, keeping {} fields", extracted.size());
+                break;
+            } catch (RuntimeException e) {
+                failure = e;
+                log.warn("LLM extraction response failed after {} fields: {}", reader.fields().size(), e.getMessage());
+            }
+            for (Field field : wanted) {
+                JsonNode value = reader.fields().get(field.name());
+                if (value != null && field.accepts(value)) {
+                    extracted.set(field.name(), value);
+                } else if (value != null) {
+                    log.warn("Dropping extracted field '{}' of unexpected type {}", field.name(), value.getNodeType());
+                }
+            }
 
-            String cleanJson = jsonResponse.replace("```json", "").replace("```", "").trim();
-            return objectMapper.readValue(cleanJson, JudgmentMetadata.class);
+            complete = reader.isComplete();
+            List<Field> missing = FIELDS.stream().filter(field -> !extracted.has(field.name())).toList();
+            if (complete || missing.isEmpty() || attempt >= repairAttempts) {
+                break;
+            }
+            log.info("LLM extraction response was incomplete, re-asking for {} of {} fields",
+                    missing.size(), FIELDS.size());
+            failure = null;
+            if (extracted.isEmpty()) {
+                continue;
+            }
+            wanted = missing;
+            schema = responseSchema(missing);
+            prompt = REPAIR_TEMPLATE.apply(Map.of(
+                    "extracted", extracted.toString(),
+                    "fields", describe(missing),
+                    "text", excerpt(text, missing, repairContextTokens * charsPerToken))).text();
+        }
 
+        if (extracted.isEmpty() && failure != null) {
+            log.error("Error occurred during LLM extraction", failure);
+            throw new RuntimeException("LLM Extraction failed", failure);
+        }
+        if (extracted.isEmpty() && !complete) {
+            log.error("No JSON object found in LLM response");
+            throw new RuntimeException("Invalid JSON structure received from AI service");
+        }
+        try {
+            return objectMapper.treeToValue(extracted, JudgmentMetadata.class);
         } catch (JsonProcessingException e) {
-            log.error("Failed to parse JSON response from LLM", e);
+            log.error("Failed to map JSON response from LLM", e);
             throw new RuntimeException("Invalid JSON structure received from AI service", e);
-        } catch (Exception e) {
-            log.error("Error occurred during LLM extraction", e);
-            throw new RuntimeException("LLM Extraction failed", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds the Gemini response schema for the given fields: every field is
+     * required but nullable, and {@code propertyOrdering} keeps the order of
+     * {@link #FIELDS} rather than Gemini's default alphabetical order.
+     */
+    private static ObjectNode responseSchema(Collection<Field> fields) {
+        ObjectNode schema = JsonNodeFactory.instance.objectNode().put("type", "OBJECT");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode ordering = schema.putArray("propertyOrdering");
+        for (Field field : fields) {
+            ObjectNode property = properties.putObject(field.name()).put("nullable", true);
+            switch (field.type()) {
+                case ARRAY -> property.put("type", "ARRAY").putObject("items").put("type", "STRING");
+                case OBJECT -> {
+                    ObjectNode sides = property.put("type", "OBJECT").putObject("properties");
+                    sides.putObject("petitioner").put("type", "STRING").put("nullable", true);
+                    sides.putObject("respondent").put("type", "STRING").put("nullable", true);
+                }
+                default -> property.put("type", "STRING");
+            }
+            ordering.add(field.name());
+        }
+        schema.set("required", ordering.deepCopy());
+        return schema;
+    }
+
+    private static String describe(List<Field> fields) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            description.append(i + 1).append(". ").append(fields.get(i).name())
+                    .append(" (").append(fields.get(i).description()).append(")\n");
+        }
+        return description.toString().stripTrailing();
+    }
+
+    /**
+     * Cuts text down to about {@code maxChars} for a repair prompt: its
+     * opening when only case details and facts are missing, its closing when
+     * only ratio and holding are, and otherwise both halves around an
+     * {@link #OMITTED} marker. Text within the budget is returned whole.
+     */
+    private static String excerpt(String text, List<Field> missing, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        boolean opening = missing.stream().anyMatch(field -> field.placement() != Placement.CLOSING);
+        boolean closing = missing.stream().anyMatch(field -> field.placement() != Placement.OPENING);
+        int budget = opening && closing ? maxChars / 2 : maxChars;
+        String head = opening ? text.substring(0, breakBefore(text, budget / 2, budget)) : "";
+        int tailStart = text.length() - budget;
+        String tail = closing ? text.substring(breakAfter(text, tailStart, tailStart + budget / 2)) : "";
+        return opening && closing ? head + OMITTED + tail : head + tail;
+    }
+
+    /**
+     * Splits text into windows of at most {@code maxChars}, ending each window
+     * at the last page, paragraph, line or word break in its second half and
+     * starting the next one {@code overlapChars} earlier.
+     */
+    static List<String> splitIntoWindows(String text, int maxChars, int overlapChars) {
+        List<String> windows = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + maxChars, text.length());
+            if (end < text.length()) {
+                end = breakBefore(text, start + maxChars / 2, end);
+            }
+            windows.add(text.substring(start, end));
+            if (end >= text.length()) {
+                break;
+            }
+            start = Math.max(end - overlapChars, start + 1);
+        }
+        return windows;
+    }
+
+    private static int breakBefore(String text, int earliest, int end) {
+        for (String separator : List.of(PdfExtractionService.PAGE_BREAK, "\n\n", "\n", " ")) {
+            int index = text.lastIndexOf(separator, end - separator.length());
+            if (index >= earliest) {
+                return index + separator.length();
+            }
+        }
+        return end;
+    }
+
+    private static int breakAfter(String text, int start, int latest) {
+        for (String separator : List.of(PdfExtractionService.PAGE_BREAK, "\n\n", "\n", " ")) {
+            int index = text.indexOf(separator, start);
+            if (index >= 0 && index + separator.length() <= latest) {
+                return index + separator.length();
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Merges per-window results in window order. Case details and facts come
+     * from the earliest window that has them, ratio and holding from the
+     * latest, and issues, citations and arguments are unioned.
+     */
+    static JudgmentMetadata merge(List<JudgmentMetadata> partials) {
+        JudgmentMetadata merged = new JudgmentMetadata();
+        Set<String> issueKeys = new LinkedHashSet<>();
+        Set<String> citationKeys = new LinkedHashSet<>();
+        List<String> issues = new ArrayList<>();
+        List<String> citations = new ArrayList<>();
+        Map<String, Object> arguments = new LinkedHashMap<>();
+
+        for (JudgmentMetadata partial : partials) {
+            merged.setTitle(firstPresent(merged.getTitle(), partial.getTitle()));
+            merged.setCourt(firstPresent(merged.getCourt(), partial.getCourt()));
+            merged.setDate(firstPresent(merged.getDate(), partial.getDate()));
+            merged.setFacts(firstPresent(merged.getFacts(), partial.getFacts()));
+            merged.setRatio(firstPresent(partial.getRatio(), merged.getRatio()));
+            merged.setHolding(firstPresent(partial.getHolding(), merged.getHolding()));
+            addDistinct(partial.getIssues(), issues, issueKeys);
+            addDistinct(partial.getCitations(), citations, citationKeys);
+            if (partial.getArguments() != null) {
+                partial.getArguments().forEach((side, argument) -> mergeArgument(arguments, side, argument));
+            }
+        }
+
+        merged.setIssues(issues);
+        merged.setCitations(citations);
+        merged.setArguments(arguments);
+        return merged;
+    }
+
+    private static String firstPresent(String preferred, String fallback) {
+        return preferred != null && !preferred.isBlank() ? preferred : fallback;
+    }
+
+    private static void addDistinct(List<String> values, List<String> target, Set<String> seenKeys) {
+        if (values == null) {
+            return;
+        }
+        for (String value : values) {
+            if (value != null && !value.isBlank() && seenKeys.add(dedupeKey(value))) {
+                target.add(value.trim());
+            }
+        }
+    }
+
+    private static void mergeArgument(Map<String, Object> arguments, String side, Object argument) {
+        if (argument == null || (argument instanceof String text && text.isBlank())) {
+            return;
+        }
+        Object existing = arguments.get(side);
+        if (existing == null) {
+            arguments.put(side, argument);
+        } else if (existing instanceof String previous && argument instanceof String next
+                && !dedupeKey(previous).contains(dedupeKey(next))) {
+            arguments.put(side, previous + "\n\n" + next);
+        }
+    }
+
+    private static String dedupeKey(String value) {
+        return value.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+}
@@ -1,22 +1,76 @@
 package com.example.urooz.service;
 
 import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.model.PageText;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Service responsible for parsing raw PDF files and extracting text content.
  * Utilizes Apache PDFBox for reliable text stripping.
+ * <p>
+ * PDFs are always read from a file on disk with a mixed memory setting, so
+ * PDFBox keeps at most {@code pdf.max-main-memory-bytes} of each document's
+ * buffers on the heap and spills the rest to scratch files. Large documents
+ * are split into page ranges that are stripped in parallel, each by its own
+ * {@link PDDocument} instance since PDFBox documents are not thread-safe.
  */
 @Service
 @Slf4j
 public class PdfExtractionService {
 
+    /** Separator placed between pages in the full document text. */
+    public static final String PAGE_BREAK = "\f";
+
+    @Value("${pdf.parallelism:0}")
+    private int parallelism;
+
+    @Value("${pdf.pages-per-task:10}")
+    private int pagesPerTask;
+
+    @Value("${pdf.max-main-memory-bytes:16777216}")
+    private long maxMainMemoryBytes;
+
+    private ExecutorService pageExecutor;
+    private int threads;
+
+    @PostConstruct
+    void startExecutor() {
+        threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        pageExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-pages-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        pageExecutor.shutdownNow();
+    }
+
     /**
      * Extracts raw text from a given PDF MultipartFile.
      *
@@ -26,41 +80,141 @@ public class PdfExtractionService {
      *                                 unreadable.
      */
     public String extractText(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            log.error("Upload attempt failed: File is null or empty.");
-            throw new FileProcessingException("Uploaded file cannot be empty.");
-        }
+        validate(file);
 
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.equals("application/pdf")) {
-            log.warn("Invalid file type uploaded: {}", contentType);
+        Path spooled = null;
+        try {
+            spooled = Files.createTempFile("judgment-", ".pdf");
+            file.transferTo(spooled);
+            return extractText(spooled, file.getOriginalFilename());
+        } catch (IOException e) {
+            log.error("Failed to spool uploaded file: {}", file.getOriginalFilename(), e);
+            throw new FileProcessingException("Error reading uploaded file", e);
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Could not delete temporary file: {}", spooled);
+                }
+            }
         }
+    }
 
-        log.info("Starting PDF extraction for file: {}", file.getOriginalFilename());
-        long startTime = System.currentTimeMillis();
+    /**
+     * Extracts raw text from a PDF that has already been spooled to disk.
+     * Pages are separated by {@link #PAGE_BREAK}.
+     *
+     * @param path     Location of the PDF file.
+     * @param fileName Original file name, used for logging only.
+     * @return A String containing the full text of the PDF.
+     * @throws FileProcessingException if the file is unreadable.
+     */
+    public String extractText(Path path, String fileName) {
+        List<String> pages = new ArrayList<>();
+        extractPages(path, fileName, page -> pages.add(page.text()));
+        return String.join(PAGE_BREAK, pages);
+    }
 
-        try (PDDocument document = PDDocument.load(file.getInputStream())) {
+    /**
+     * Extracts text page by page, delivering pages to the consumer in order
+     * as soon as their range is parsed. At most one range per worker thread is
+     * parsed ahead of the consumer, which bounds the text buffered in memory.
+     *
+     * @param path     Location of the PDF file.
+     * @param fileName Original file name, used for logging only.
+     * @param consumer Receives each page, in page order, on the calling thread.
+     * @return The number of pages in the document.
+     * @throws FileProcessingException if the file is unreadable.
+     */
+    public int extractPages(Path path, String fileName, Consumer<PageText> consumer) {
+        log.info("Starting PDF extraction for file: {}", fileName);
+        long startTime = System.currentTimeMillis();
 
+        int pageCount;
+        try (PDDocument document = load(path)) {
             if (document.isEncrypted()) {
                 log.warn("The uploaded PDF is encrypted. Attempting to parse...");
             }
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerTask) {
+                stripRange(document, 1, pageCount).forEach(consumer);
+                logCompletion(pageCount, startTime);
+                return pageCount;
+            }
+        } catch (IOException e) {
+            log.error("Failed to parse PDF file: {}", fileName, e);
+            throw new FileProcessingException("Error parsing PDF content", e);
+        }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
-
-            if (text != null) {
-                text = text.trim();
+        Deque<Future<List<PageText>>> window = new ArrayDeque<>();
+        int nextStart = 1;
+        try {
+            while (nextStart <= pageCount || !window.isEmpty()) {
+                while (nextStart <= pageCount && window.size() < threads) {
+                    int start = nextStart;
+                    int end = Math.min(start + pagesPerTask - 1, pageCount);
+                    window.add(pageExecutor.submit(() -> stripRange(path, start, end)));
+                    nextStart = end + 1;
+                }
+                window.poll().get().forEach(consumer);
             }
+        } catch (ExecutionException e) {
+            log.error("Failed to parse PDF file: {}", fileName, e.getCause());
+            throw new FileProcessingException("Error parsing PDF content", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileProcessingException("Interrupted while parsing PDF content", e);
+        } finally {
+            window.forEach(future -> future.cancel(true));
+        }
 
-            long duration = System.currentTimeMillis() - startTime;
-            log.info("Successfully extracted {} characters in {} ms.",
-                    text != null ? text.length() : 0, duration);
+        logCompletion(pageCount, startTime);
+        return pageCount;
+    }
 
-            return text;
+    /**
+     * Rejects uploads that can never be parsed so callers fail fast on the
+     * request thread.
+     *
+     * @param file The uploaded PDF file.
+     * @throws FileProcessingException if the file is null or empty.
+     */
+    public void validate(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            log.error("Upload attempt failed: File is null or empty.");
+            throw new FileProcessingException("Uploaded file cannot be empty.");
+        }
 
-        } catch (IOException e) {
-            log.error("Failed to parse PDF file: {}", file.getOriginalFilename(), e);
-            throw new FileProcessingException("Error parsing PDF content", e);
+        String contentType = file.getContentType();
+        if (contentType == null || !contentType.equals("application/pdf")) {
+            log.warn("Invalid file type uploaded: {}", contentType);
+        }
+    }
+
+    private PDDocument load(Path path) throws IOException {
+        return PDDocument.load(path.toFile(), MemoryUsageSetting.setupMixed(maxMainMemoryBytes));
+    }
+
+    private List<PageText> stripRange(Path path, int startPage, int endPage) throws IOException {
+        try (PDDocument document = load(path)) {
+            return stripRange(document, startPage, endPage);
         }
     }
-}
\ No newline at end of file
+
+    private static List<PageText> stripRange(PDDocument document, int startPage, int endPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        List<PageText> pages = new ArrayList<>(endPage - startPage + 1);
+        for (int page = startPage; page <= endPage; page++) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            pages.add(new PageText(page, stripper.getText(document).trim()));
+        }
+        return pages;
+    }
+
+    private static void logCompletion(int pageCount, long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("Successfully extracted {} pages in {} ms.", pageCount, duration);
+    }
+}
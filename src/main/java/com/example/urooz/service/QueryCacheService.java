@@ -0,0 +1,283 @@
+package com.example.urooz.service;
+
+import com.example.urooz.event.DocumentVectorsRemovedEvent;
+import com.example.urooz.event.SegmentsIndexedEvent;
+import com.example.urooz.event.VectorCollectionSwitchedEvent;
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.SearchFacets;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.lexical.LegalTokenizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level cache for the search path.
+ * <p>
+ * The query cache maps a tenant and normalized query text to the query
+ * embedding and the segments last retrieved for it. The answer cache maps a query plus a hash of
+ * the retrieved chunk set to the generated answer, so it can never serve an
+ * answer built from a different context. Both are bounded W-TinyLFU caches.
+ * <p>
+ * When new segments are indexed, only the retrieval results that the new
+ * segments could have changed are dropped: a cached result is affected if a
+ * new segment scores above its weakest hit, or if it had spare slots and the
+ * new segment clears the minimum score. Query embeddings are always kept.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class QueryCacheService {
+
+    /**
+     * Cached state for one normalized query.
+     *
+     * @param embedding   The query embedding.
+     * @param results     Retrieved judgments and segments, or {@code null} if retrieval must be redone.
+     * @param segmentIds  Embedding-store IDs of the retrieved chunks.
+     * @param lowestScore Relevance score of the weakest dense match.
+     * @param terms       Lexical query terms, empty if lexical retrieval was not used.
+     * @param facets      Court and year counts over the candidates, cached with the results.
+     */
+    public record QueryEntry(Embedding embedding, List<RetrievedDocument> results, List<String> segmentIds,
+                             double lowestScore, Set<String> terms, SearchFacets facets) {
+
+        public QueryEntry(Embedding embedding, List<RetrievedDocument> results, List<String> segmentIds,
+                          double lowestScore, Set<String> terms) {
+            this(embedding, results, segmentIds, lowestScore, terms, null);
+        }
+
+        public boolean hasResults() {
+            return results != null;
+        }
+
+        QueryEntry withoutResults() {
+            return new QueryEntry(embedding, null, null, 0, terms);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.cache.query.max-size:10000}")
+    private long queryCacheSize;
+
+    @Value("${search.cache.answer.max-size:2000}")
+    private long answerCacheSize;
+
+    @Value("${search.cache.selective-invalidation-max-pairs:500000}")
+    private long selectiveInvalidationMaxPairs;
+
+    @Value("${search.max-results:15}")
+    private int maxResults;
+
+    @Value("${search.min-score:0.30}")
+    private double minScore;
+
+    private Cache<String, QueryEntry> queryCache;
+    private Cache<String, String> answerCache;
+    private Counter invalidations;
+
+    /** Bumped on every index change so in-flight retrievals do not cache stale results. */
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        queryCache = Caffeine.newBuilder().maximumSize(queryCacheSize).recordStats().build();
+        answerCache = Caffeine.newBuilder().maximumSize(answerCacheSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, queryCache, "search.query");
+        CaffeineCacheMetrics.monitor(meterRegistry, answerCache, "search.answer");
+        invalidations = Counter.builder("search.cache.invalidations")
+                .description("Cached retrieval results dropped because the index changed")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Normalizes query text so trivially different phrasings share an entry.
+     *
+     * @param query Raw user query.
+     * @return Normalized cache key.
+     */
+    public String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .trim();
+        return normalized.replaceAll("[?.!\\s]+$", "");
+    }
+
+    /**
+     * The query cache key for a tenant's query; retrieval results are never
+     * shared between tenants.
+     *
+     * @param tenant The tenant searching.
+     * @param query  Raw user query.
+     * @return Cache key for {@link #getQuery} and {@link #putQuery}.
+     */
+    public String queryKey(String tenant, String query) {
+        return tenant + '|' + normalize(query);
+    }
+
+    public Optional<QueryEntry> getQuery(String key) {
+        return Optional.ofNullable(queryCache.getIfPresent(key));
+    }
+
+    /**
+     * Returns the current index generation; pass it back to
+     * {@link #putQuery} so results retrieved before a concurrent index change
+     * are not cached.
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public void putQuery(String key, QueryEntry entry, long retrievedAtGeneration) {
+        if (entry.hasResults() && retrievedAtGeneration != generation.get()) {
+            entry = entry.withoutResults();
+        }
+        queryCache.put(key, entry);
+    }
+
+    public Optional<String> getAnswer(String normalizedQuery, List<String> chunks) {
+        return Optional.ofNullable(answerCache.getIfPresent(answerKey(normalizedQuery, chunks)));
+    }
+
+    public void putAnswer(String normalizedQuery, List<String> chunks, String answer) {
+        answerCache.put(answerKey(normalizedQuery, chunks), answer);
+    }
+
+    /**
+     * Drops cached retrieval results that the newly indexed segments may have
+     * changed.
+     *
+     * @param event The batch of stored segments and embeddings.
+     */
+    @EventListener
+    public void onSegmentsIndexed(SegmentsIndexedEvent event) {
+        generation.incrementAndGet();
+        List<Embedding> added = event.embeddings();
+        long cached = queryCache.estimatedSize();
+        if (cached == 0 || added.isEmpty()) {
+            return;
+        }
+
+        if (cached * added.size() > selectiveInvalidationMaxPairs) {
+            queryCache.asMap().replaceAll((key, entry) -> entry.hasResults() ? entry.withoutResults() : entry);
+            invalidations.increment(cached);
+            log.debug("Dropped all cached retrieval results after indexing {} segments", added.size());
+            return;
+        }
+
+        List<Set<String>> addedTerms = event.segments().stream()
+                .map(KeyedSegment::segment)
+                .map(segment -> LegalTokenizer.distinctTerms(segment.text()))
+                .toList();
+        queryCache.asMap().replaceAll((key, entry) -> {
+            if (entry.hasResults() && (isAffected(entry, added) || sharesTerm(entry, addedTerms))) {
+                invalidations.increment();
+                return entry.withoutResults();
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Drops every cached retrieval result after a document's segments were
+     * removed. Cached entries do not record their source documents, and
+     * removals are rare, so this does not try to be selective.
+     *
+     * @param event The removed document.
+     */
+    @EventListener
+    public void onDocumentVectorsRemoved(DocumentVectorsRemovedEvent event) {
+        dropAllResults();
+    }
+
+    /**
+     * Drops every cached retrieval result once searches use a rebuilt
+     * collection, whose segments may differ.
+     *
+     * @param event The switch to the new collection.
+     */
+    @EventListener
+    public void onVectorCollectionSwitched(VectorCollectionSwitchedEvent event) {
+        dropAllResults();
+    }
+
+    private void dropAllResults() {
+        generation.incrementAndGet();
+        queryCache.asMap().replaceAll((key, entry) -> {
+            if (entry.hasResults()) {
+                invalidations.increment();
+                return entry.withoutResults();
+            }
+            return entry;
+        });
+    }
+
+    private boolean isAffected(QueryEntry entry, List<Embedding> added) {
+        boolean hasSpareSlots = entry.segmentIds().size() < maxResults;
+        for (Embedding embedding : added) {
+            double score = RelevanceScore.fromCosineSimilarity(CosineSimilarity.between(entry.embedding(), embedding));
+            if (score > entry.lowestScore() || (hasSpareSlots && score >= minScore)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sharesTerm(QueryEntry entry, List<Set<String>> addedTerms) {
+        if (entry.terms().isEmpty()) {
+            return false;
+        }
+        for (Set<String> terms : addedTerms) {
+            for (String term : entry.terms()) {
+                if (terms.contains(term)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String answerKey(String normalizedQuery, List<String> chunks) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String chunk : chunks) {
+                digest.update(chunk.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return normalizedQuery + "|" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
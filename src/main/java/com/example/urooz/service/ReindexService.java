@@ -0,0 +1,328 @@
+package com.example.urooz.service;
+
+import com.example.urooz.event.VectorCollectionSwitchedEvent;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.JudgmentText;
+import com.example.urooz.model.ReindexJob;
+import com.example.urooz.repository.ReindexJobRepository;
+import com.example.urooz.service.VectorStoreService.SegmentPlan;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.QdrantCollections;
+import com.example.urooz.service.embedding.QdrantSegmentStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds the vector store into a new versioned Qdrant collection and then
+ * switches the {@code qdrant.collection} alias to it, so searches keep being
+ * served from the old collection until the new one is complete.
+ * <p>
+ * Judgment texts are read from MongoDB with a cursor in ID order, in batches
+ * of {@code reindex.batch-size}. Each batch is split in parallel with the
+ * current chunking settings, embedded through the shared
+ * {@link EmbeddingEngine} (so unchanged text comes from the embedding cache)
+ * and stored in the new collection with the judgments' search facets
+ * ({@link JudgmentFacets}), and the job's position is saved. While
+ * the rebuild runs, live ingestion writes go to both collections. A job left
+ * running by a crash resumes on startup from its last saved document.
+ * <p>
+ * Judgments keep pointing at their live segments until the alias switches:
+ * new segment IDs are staged on the judgment ({@code stagedSegmentIds}) and
+ * only moved into {@code segmentIds} after the switch, so an unfinished
+ * rebuild never makes stale-segment cleanup delete the wrong points.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class ReindexService {
+
+    private static final DateTimeFormatter VERSION_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss", Locale.ROOT).withZone(ZoneOffset.UTC);
+
+    private final ReindexJobRepository reindexJobRepository;
+    private final JudgmentTextService judgmentTextService;
+    private final VectorStoreService vectorStoreService;
+    private final EmbeddingEngine embeddingEngine;
+    private final QdrantCollections qdrantCollections;
+    private final QdrantSegmentStore qdrantSegmentStore;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${qdrant.collection:legal_judgments}")
+    private String alias;
+
+    @Value("${tenants.default:default}")
+    private String defaultTenant;
+
+    @Value("${reindex.batch-size:50}")
+    private int batchSize;
+
+    @Value("${reindex.split-threads:0}")
+    private int splitThreads;
+
+    @Value("${reindex.keep-previous:false}")
+    private boolean keepPrevious;
+
+    @Value("${reindex.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    private ExecutorService runner;
+    private ExecutorService splitExecutor;
+    private ReindexJob running;
+
+    @PostConstruct
+    void startExecutors() {
+        runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reindex");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int threads = splitThreads > 0 ? splitThreads : Runtime.getRuntime().availableProcessors();
+        splitExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reindex-split");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopExecutors() {
+        runner.shutdownNow();
+        splitExecutor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void resumeInterrupted() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        try {
+            reindexJobRepository.findFirstByStatusOrderByStartedAtDesc(ReindexJob.Status.RUNNING).ifPresent(job -> {
+                log.info("Resuming interrupted rebuild of {} after document {}", job.getId(), job.getLastDocumentId());
+                start();
+            });
+        } catch (Exception e) {
+            log.warn("Could not check for an interrupted rebuild: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a rebuild, or resumes the latest one that did not complete.
+     * Returns the running job if a rebuild is already in progress.
+     *
+     * @return The job; poll {@link #latest()} for progress.
+     */
+    public synchronized ReindexJob start() {
+        if (running != null) {
+            return running;
+        }
+        ReindexJob job = reindexJobRepository.findFirstByStatusNotOrderByStartedAtDesc(ReindexJob.Status.COMPLETED)
+                .orElseGet(() -> new ReindexJob(alias + "_" + VERSION_FORMAT.format(Instant.now()), alias,
+                        judgmentTextService.count()));
+        job.setStatus(ReindexJob.Status.RUNNING);
+        job.setError(null);
+        job.setUpdatedAt(Instant.now());
+        ReindexJob saved = reindexJobRepository.save(job);
+        running = saved;
+        runner.execute(() -> run(saved));
+        return saved;
+    }
+
+    /** The most recent rebuild, running or finished. */
+    public Optional<ReindexJob> latest() {
+        return reindexJobRepository.findFirstByOrderByStartedAtDesc();
+    }
+
+    private void run(ReindexJob job) {
+        long runStart = System.nanoTime();
+        long runDocuments = 0;
+        QdrantSegmentStore target = qdrantSegmentStore.forCollection(job.getId());
+        try {
+            if (!qdrantCollections.exists(job.getId())) {
+                qdrantCollections.create(job.getId());
+            }
+            qdrantSegmentStore.mirrorTo(target);
+            log.info("Rebuilding vector collection {} from document {} ({} of {} done)", job.getId(),
+                    job.getLastDocumentId() != null ? job.getLastDocumentId() : "start", job.getDocuments(),
+                    job.getTotalDocuments());
+
+            try (Stream<JudgmentText> texts = judgmentTextService.streamAfter(job.getLastDocumentId(), batchSize)) {
+                Iterator<JudgmentText> iterator = texts.iterator();
+                List<JudgmentText> batch = new ArrayList<>(batchSize);
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() < batchSize && iterator.hasNext()) {
+                        continue;
+                    }
+                    reindexBatch(job, batch, target);
+                    runDocuments += batch.size();
+                    batch.clear();
+
+                    double seconds = (System.nanoTime() - runStart) / 1e9;
+                    job.setDocsPerSecond(seconds > 0 ? runDocuments / seconds : 0);
+                    job.setUpdatedAt(Instant.now());
+                    reindexJobRepository.save(job);
+                    log.info("Rebuild {}: {}/{} documents, {} segments, {} docs/sec", job.getId(),
+                            job.getDocuments(), job.getTotalDocuments(), job.getSegments(),
+                            String.format(Locale.ROOT, "%.2f", job.getDocsPerSecond()));
+                }
+            }
+
+            Optional<String> previous = qdrantCollections.switchAlias(alias, job.getId());
+            applyStagedSegmentIds(job);
+            qdrantSegmentStore.mirrorTo(null);
+            eventPublisher.publishEvent(new VectorCollectionSwitchedEvent(job.getId(), job.isSegmentsChanged()));
+            if (!keepPrevious) {
+                previous.filter(name -> !name.equals(job.getId())).ifPresent(qdrantCollections::delete);
+            }
+
+            job.setStatus(ReindexJob.Status.COMPLETED);
+            job.setCompletedAt(Instant.now());
+            job.setUpdatedAt(job.getCompletedAt());
+            reindexJobRepository.save(job);
+            log.info("Rebuild {} completed: {} documents, {} segments; searches now use it",
+                    job.getId(), job.getDocuments(), job.getSegments());
+        } catch (Exception e) {
+            qdrantSegmentStore.mirrorTo(null);
+            log.error("Rebuild {} failed after document {}", job.getId(), job.getLastDocumentId(), e);
+            job.setStatus(ReindexJob.Status.FAILED);
+            job.setError(e.getMessage());
+            job.setUpdatedAt(Instant.now());
+            try {
+                reindexJobRepository.save(job);
+            } catch (Exception saveError) {
+                log.error("Could not record failure of rebuild {}: {}", job.getId(), saveError.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                running = null;
+            }
+        }
+    }
+
+    private void reindexBatch(ReindexJob job, List<JudgmentText> batch, QdrantSegmentStore target) {
+        Query query = Query.query(Criteria.where("_id").in(batch.stream().map(JudgmentText::getId).toList()));
+        query.fields().include("tenantId", "title", "court", "date", "dateEpochDay", "segmentIds");
+        Map<String, JudgmentMetadata> judgments = mongoTemplate.find(query, JudgmentMetadata.class).stream()
+                .collect(Collectors.toMap(JudgmentMetadata::getId, judgment -> judgment));
+        // Judgments not yet assigned to a tenant belong to the default one.
+        judgments.values().stream().filter(judgment -> judgment.getTenantId() == null)
+                .forEach(judgment -> judgment.setTenantId(defaultTenant));
+
+        List<CompletableFuture<SegmentPlan>> splits = batch.stream()
+                .map(stored -> CompletableFuture.supplyAsync(() -> vectorStoreService.plan(stored.getId(),
+                        tenantOf(judgments.get(stored.getId())), JudgmentTextService.text(stored), List.of()),
+                        splitExecutor))
+                .toList();
+        List<SegmentPlan> plans = splits.stream().map(CompletableFuture::join).toList();
+
+        List<KeyedSegment> segments = new ArrayList<>();
+        plans.forEach(plan -> segments.addAll(plan.toEmbed()));
+        embeddingEngine.ingest(segments, target).join();
+
+        Map<String, Map<String, Object>> facets = new LinkedHashMap<>();
+        judgments.forEach((id, judgment) -> {
+            Map<String, Object> values = JudgmentFacets.of(judgment);
+            if (!values.isEmpty()) {
+                facets.put(id, values);
+            }
+        });
+        target.setMetadata(facets);
+
+        if (updateJudgments(job, plans, judgments)) {
+            job.setSegmentsChanged(true);
+        }
+        job.setLastDocumentId(batch.get(batch.size() - 1).getId());
+        job.setDocuments(job.getDocuments() + batch.size());
+        job.setSegments(job.getSegments() + segments.size());
+    }
+
+    private String tenantOf(JudgmentMetadata judgment) {
+        return judgment != null ? judgment.getTenantId() : defaultTenant;
+    }
+
+    /**
+     * Stages the new segment IDs on the judgments whose segments changed, and
+     * stores the parsed date on judgments stored before dates were parsed.
+     *
+     * @return Whether any judgment's segments changed.
+     */
+    private boolean updateJudgments(ReindexJob job, List<SegmentPlan> plans, Map<String, JudgmentMetadata> judgments) {
+        BulkOperations updates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, JudgmentMetadata.class);
+        boolean segmentsChanged = false;
+        int count = 0;
+        for (SegmentPlan plan : plans) {
+            JudgmentMetadata judgment = judgments.get(plan.documentId());
+            if (judgment == null) {
+                continue;
+            }
+            Update update = new Update();
+            if (!Objects.equals(judgment.getSegmentIds(), plan.segmentIds())) {
+                update.set("stagedSegmentIds", plan.segmentIds()).set("stagedFor", job.getId());
+                segmentsChanged = true;
+            }
+            Long epochDay = JudgmentFacets.epochDay(judgment.getDate());
+            if (judgment.getDateEpochDay() == null && epochDay != null) {
+                update.set("dateEpochDay", epochDay);
+            }
+            if (!update.getUpdateObject().isEmpty()) {
+                updates.updateOne(Query.query(Criteria.where("_id").is(plan.documentId())), update);
+                count++;
+            }
+        }
+        if (count > 0) {
+            updates.execute();
+        }
+        return segmentsChanged;
+    }
+
+    /**
+     * Moves the segment IDs this rebuild staged into place, once searches use
+     * its collection, and drops any left by an abandoned rebuild. A judgment
+     * re-ingested meanwhile was saved whole, without a staged value.
+     */
+    private void applyStagedSegmentIds(ReindexJob job) {
+        AggregationUpdate apply = AggregationUpdate.update()
+                .set("segmentIds").toValueOf(Fields.field("stagedSegmentIds"))
+                .unset("stagedSegmentIds", "stagedFor");
+        long applied = mongoTemplate.updateMulti(Query.query(Criteria.where("stagedFor").is(job.getId())), apply,
+                JudgmentMetadata.class).getModifiedCount();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("stagedFor").exists(true)),
+                new Update().unset("stagedSegmentIds").unset("stagedFor"), JudgmentMetadata.class);
+        log.info("Rebuild {}: applied new segment IDs to {} judgments", job.getId(), applied);
+    }
+}
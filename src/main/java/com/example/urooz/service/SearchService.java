@@ -1,19 +1,97 @@
 package com.example.urooz.service;
 
+import com.example.urooz.model.JudgmentSummary;
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.RetrievedSegment;
+import com.example.urooz.model.SearchFacets;
+import com.example.urooz.model.SearchFilter;
+import com.example.urooz.model.SearchResult;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.QueryCacheService.QueryEntry;
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.embedding.VectorQuantization;
+import com.example.urooz.service.lexical.Bm25Index;
+import com.example.urooz.service.lexical.Bm25Index.LexicalHit;
+import com.example.urooz.service.lexical.LegalTokenizer;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.retrieval.MmrSelector;
+import com.example.urooz.service.tenant.TenantService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.logical.And;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service to handle semantic search operations using vector embeddings.
+ * <p>
+ * With {@code search.hybrid.enabled}, the dense matches are fused with the
+ * top BM25 matches of the lexical index by reciprocal rank fusion, so exact
+ * section numbers and citations are found even when they embed poorly.
+ * <p>
+ * The best {@code search.candidates} segments of each retriever are narrowed
+ * to {@code search.max-results} by maximal marginal relevance
+ * ({@link MmrSelector}), taking at most
+ * {@code search.max-segments-per-document} from one judgment. The result is
+ * grouped by judgment, and titles, courts and dates are joined from MongoDB
+ * in a single query so answers can cite their sources.
+ * <p>
+ * When the vector index is quantized ({@code vector.quantization.type}),
+ * {@code vector.quantization.oversampling} times as many dense candidates are
+ * fetched and re-ranked by their full-precision cosine similarity before the
+ * best are kept, recovering the recall lost to the compressed codes.
+ * <p>
+ * Searches can be restricted to courts and a date range ({@link SearchFilter}).
+ * The filter is part of the vector search request, evaluated by the store
+ * against the indexed segment payload ({@link JudgmentFacets}), so the
+ * nearest allowed segments are found rather than the nearest segments
+ * filtered afterwards. Each result carries judgment counts per court and
+ * year over the fused candidates, for narrowing it further. They count the
+ * judgments retrieval found, not every judgment the filter allows.
+ * <p>
+ * The lexical index holds no facets, so a filtered hybrid search restricts
+ * it to the judgment IDs the filter allows in MongoDB. Those IDs are cached
+ * per tenant and filter until the index changes (the query cache
+ * generation), so repeated filtered searches do not re-read them.
+ * <p>
+ * Every search is confined to one tenant's judgments: the tenant is part of
+ * the vector store filter ({@code tenant_id}), of the lexical search and of
+ * the query cache key, and its retrieval latency is recorded per tenant
+ * ({@link TenantService}).
+ * <p>
+ * The MongoDB lookups only enrich the results, so they pass through
+ * MongoDB's circuit breaker ({@link DependencyGuards}): while it is open,
+ * searches return segments without titles and facets at once instead of
+ * waiting for a failing database.
  */
 @Service
 @Slf4j
@@ -22,6 +100,64 @@ public class SearchService {
 
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final EmbeddingModel embeddingModel;
+    private final QueryCacheService queryCacheService;
+    private final Bm25Index lexicalIndex;
+    private final StageMetrics stageMetrics;
+    private final JudgmentRepository judgmentRepository;
+    private final JudgmentCatalogService judgmentCatalogService;
+    private final TenantService tenantService;
+    private final DependencyGuards dependencyGuards;
+
+    @Value("${search.max-results:15}")
+    private int maxResults;
+
+    @Value("${search.min-score:0.30}")
+    private double minScore;
+
+    @Value("${search.candidates:40}")
+    private int candidates;
+
+    @Value("${search.max-segments-per-document:4}")
+    private int maxSegmentsPerDocument;
+
+    @Value("${search.mmr.lambda:0.7}")
+    private double mmrLambda;
+
+    @Value("${search.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+
+    @Value("${search.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${vector.quantization.type:none}")
+    private VectorQuantization quantization = VectorQuantization.NONE;
+
+    @Value("${vector.quantization.oversampling:3.0}")
+    private double oversampling = 3.0;
+
+    /** Upper bound on the judgment IDs held by the allowed-judgments cache, summed over its filters. */
+    private static final long ALLOWED_IDS_CACHE_WEIGHT = 1_000_000;
+
+    /** Judgment IDs a filter allowed, and the query cache generation they were read at. */
+    private record AllowedJudgments(long generation, Set<String> ids) {
+    }
+
+    private record FilterKey(String tenant, SearchFilter filter) {
+    }
+
+    private final Cache<FilterKey, AllowedJudgments> allowedJudgments = Caffeine.newBuilder()
+            .maximumWeight(ALLOWED_IDS_CACHE_WEIGHT)
+            .weigher((FilterKey key, AllowedJudgments allowed) -> allowed.ids().size() + 1)
+            .build();
+
+    /** A fused retrieval candidate; {@code embedding} is {@code null} for lexical-only hits. */
+    private record Candidate(String id, String text, String documentId, Integer pageNumber, Embedding embedding,
+                             double score) {
+
+        Candidate withScore(double newScore) {
+            return new Candidate(id, text, documentId, pageNumber, embedding, newScore);
+        }
+    }
 
     /**
      * Performs a semantic search for the given query.
@@ -30,20 +166,314 @@ public class SearchService {
      * @return A list of relevant text segments.
      */
     public List<String> search(String query) {
+        return search(query, true);
+    }
+
+    /**
+     * Performs a semantic search for the given query, optionally bypassing the
+     * query cache.
+     *
+     * @param query    The search query.
+     * @param useCache Whether cached embeddings and results may be used.
+     * @return A list of relevant text segments, grouped by judgment.
+     */
+    public List<String> search(String query, boolean useCache) {
+        return retrieve(query, useCache).stream()
+                .flatMap(document -> document.segments().stream())
+                .map(RetrievedSegment::text)
+                .toList();
+    }
+
+    /**
+     * Retrieves the segments of the default tenant's judgments relevant to a
+     * query, grouped by judgment.
+     *
+     * @param query    The search query.
+     * @param useCache Whether cached embeddings and results may be used.
+     * @return Judgments in order of their most relevant segment, each with its selected segments.
+     */
+    public List<RetrievedDocument> retrieve(String query, boolean useCache) {
+        return retrieve(query, tenantService.defaultTenant(), SearchFilter.NONE, useCache).documents();
+    }
+
+    /**
+     * Retrieves the segments relevant to a query among a tenant's judgments
+     * that a filter allows, grouped by judgment, with facet counts over the
+     * retrieval candidates.
+     *
+     * @param query    The search query.
+     * @param tenant   The tenant whose judgments are searched.
+     * @param filter   Courts and date range to search within.
+     * @param useCache Whether cached embeddings and results may be used.
+     * @return Judgments in order of their most relevant segment, each with its selected segments.
+     */
+    public SearchResult retrieve(String query, String tenant, SearchFilter filter, boolean useCache) {
+        return tenantService.timeSearch(tenant, () -> retrieveSegments(query, tenant, filter, useCache));
+    }
+
+    private SearchResult retrieveSegments(String query, String tenant, SearchFilter filter, boolean useCache) {
         log.info("Initiating semantic search for query: {}", query);
 
-        var queryEmbedding = embeddingModel.embed(query).content();
+        boolean cacheable = useCache && queryCacheService.isEnabled();
+        // Filtered results are not cached: a judgment's facets reach its segments
+        // only after they are indexed, which does not invalidate cached results.
+        boolean cacheResults = cacheable && filter.isEmpty();
+        String cacheKey = queryCacheService.queryKey(tenant, query);
+        Optional<QueryEntry> cached = cacheable ? queryCacheService.getQuery(cacheKey) : Optional.empty();
 
+        if (cacheResults && cached.isPresent() && cached.get().hasResults()) {
+            log.debug("Query cache hit with results for: {}", cacheKey);
+            SearchFacets facets = cached.get().facets();
+            return new SearchResult(cached.get().results(), facets != null ? facets : SearchFacets.EMPTY);
+        }
+
+        Embedding queryEmbedding = cached.map(QueryEntry::embedding)
+                .orElseGet(() -> stageMetrics.time(StageMetrics.QUERY_EMBEDDING,
+                        () -> embeddingModel.embed(query).content()));
+        long generation = queryCacheService.currentGeneration();
+        int poolSize = Math.max(candidates, maxResults);
+
+        boolean rescore = quantization.enabled() && oversampling > 1;
         EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
                 .queryEmbedding(queryEmbedding)
-                .maxResults(15)
-                .minScore(0.30)
+                .maxResults(rescore ? (int) Math.ceil(poolSize * oversampling) : poolSize)
+                .minScore(minScore)
+                .filter(toFilter(tenant, filter))
                 .build();
 
-        EmbeddingSearchResult<TextSegment> result = embeddingStore.search(request);
+        List<EmbeddingMatch<TextSegment>> matches = stageMetrics.time(StageMetrics.VECTOR_SEARCH, () -> {
+            EmbeddingSearchResult<TextSegment> result = embeddingStore.search(request);
+            return rescore ? rescore(queryEmbedding, result.matches(), poolSize) : result.matches();
+        });
+
+        List<LexicalHit> lexicalHits = hybridEnabled
+                ? stageMetrics.time(StageMetrics.LEXICAL_SEARCH,
+                        () -> lexicalHits(query, tenant, filter, poolSize, generation))
+                : List.of();
+        List<Candidate> fused = fuse(matches, lexicalHits);
+        List<Candidate> selected = diversify(fused);
+
+        Map<String, JudgmentSummary> summaries = summaries(fused.stream().map(Candidate::documentId).toList());
+        List<RetrievedDocument> documents = group(selected, summaries != null ? summaries : Map.of());
+        SearchFacets facets = summaries != null ? facets(fused, summaries) : SearchFacets.EMPTY;
+
+        if (cacheable) {
+            Set<String> terms = hybridEnabled ? LegalTokenizer.distinctTerms(query) : Set.of();
+            if (cacheResults && summaries != null) {
+                double lowestScore = matches.size() < poolSize ? minScore : matches.get(matches.size() - 1).score();
+                List<String> segmentIds = selected.stream().map(Candidate::id).toList();
+                queryCacheService.putQuery(cacheKey,
+                        new QueryEntry(queryEmbedding, documents, segmentIds, lowestScore, terms, facets), generation);
+            } else if (cached.isEmpty()) {
+                // Results without source metadata are not cached, so the next request retries the join;
+                // filtered results only keep the embedding.
+                queryCacheService.putQuery(cacheKey, new QueryEntry(queryEmbedding, null, null, 0, terms), generation);
+            }
+        }
+        return new SearchResult(documents, facets);
+    }
+
+    /**
+     * The vector store filter for a tenant's search: the tenant, courts and
+     * the date range are matched against the indexed segment payload, so the
+     * nearest neighbours are searched among the allowed segments only.
+     * Segments of judgments still being ingested are left out.
+     */
+    private static Filter toFilter(String tenant, SearchFilter filter) {
+        List<Filter> conditions = new ArrayList<>();
+        conditions.add(new IsEqualTo(JudgmentFacets.TENANT, tenant));
+        conditions.add(new IsNotEqualTo(JudgmentFacets.PENDING, "true"));
+        if (!filter.courts().isEmpty()) {
+            conditions.add(new IsIn(JudgmentFacets.COURT, filter.courts()));
+        }
+        if (filter.fromEpochDay() != null) {
+            conditions.add(new IsGreaterThanOrEqualTo(JudgmentFacets.DATE, filter.fromEpochDay()));
+        }
+        if (filter.toEpochDay() != null) {
+            conditions.add(new IsLessThanOrEqualTo(JudgmentFacets.DATE, filter.toEpochDay()));
+        }
+        return conditions.stream().reduce(And::new).orElseThrow();
+    }
+
+    /**
+     * BM25 matches among a tenant's judgments that a filter allows. The
+     * lexical index holds no facets, so the allowed judgments are looked up
+     * in MongoDB, once per filter and index generation.
+     */
+    private List<LexicalHit> lexicalHits(String query, String tenant, SearchFilter filter, int limit,
+                                         long generation) {
+        if (filter.isEmpty()) {
+            return lexicalIndex.search(query, limit, tenant, documentId -> true);
+        }
+        FilterKey key = new FilterKey(tenant, filter);
+        AllowedJudgments cached = allowedJudgments.getIfPresent(key);
+        Set<String> allowed;
+        if (cached != null && cached.generation() == generation) {
+            allowed = cached.ids();
+        } else {
+            try {
+                allowed = dependencyGuards.guard(DependencyGuards.MONGO)
+                        .call(() -> judgmentCatalogService.ids(tenant, filter));
+            } catch (Exception e) {
+                log.warn("Could not look up the judgments matching {}, searching without lexical matches: {}",
+                        filter, e.getMessage());
+                return List.of();
+            }
+            // Stored under the generation read before the lookup, so a judgment indexed meanwhile forces a reload.
+            allowedJudgments.put(key, new AllowedJudgments(generation, Set.copyOf(allowed)));
+        }
+        return allowed.isEmpty() ? List.of() : lexicalIndex.search(query, limit, tenant, allowed::contains);
+    }
+
+    /**
+     * Re-ranks oversampled matches of a quantized index by the cosine
+     * similarity of their full-precision vectors to the query.
+     *
+     * @return The best {@code limit} matches above {@code search.min-score}, best first.
+     */
+    private List<EmbeddingMatch<TextSegment>> rescore(Embedding query, List<EmbeddingMatch<TextSegment>> matches,
+                                                      int limit) {
+        return matches.stream()
+                .map(match -> match.embedding() == null ? match : new EmbeddingMatch<>(
+                        RelevanceScore.fromCosineSimilarity(CosineSimilarity.between(query, match.embedding())),
+                        match.embeddingId(), match.embedding(), match.embedded()))
+                .filter(match -> match.score() >= minScore)
+                .sorted(Comparator.comparingDouble(EmbeddingMatch<TextSegment>::score).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Reciprocal rank fusion: each segment scores {@code 1 / (rrfK + rank)} in
+     * every list it appears in. Without lexical hits the dense scores are kept.
+     *
+     * @return All candidates, best first.
+     */
+    private List<Candidate> fuse(List<EmbeddingMatch<TextSegment>> matches, List<LexicalHit> lexicalHits) {
+        Map<String, Candidate> candidatesById = new LinkedHashMap<>();
+        if (lexicalHits.isEmpty()) {
+            matches.forEach(match -> candidatesById.putIfAbsent(match.embeddingId(), candidate(match)));
+            return List.copyOf(candidatesById.values());
+        }
+
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (int rank = 0; rank < matches.size(); rank++) {
+            EmbeddingMatch<TextSegment> match = matches.get(rank);
+            candidatesById.putIfAbsent(match.embeddingId(), candidate(match));
+            scores.merge(match.embeddingId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < lexicalHits.size(); rank++) {
+            LexicalHit hit = lexicalHits.get(rank);
+            candidatesById.putIfAbsent(hit.id(),
+                    new Candidate(hit.id(), hit.text(), hit.documentId(), hit.pageNumber(), null, 0));
+            scores.merge(hit.id(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        log.debug("Fused {} dense and {} lexical matches into {} candidates",
+                matches.size(), lexicalHits.size(), ranked.size());
+        return ranked.stream()
+                .map(entry -> candidatesById.get(entry.getKey()).withScore(entry.getValue()))
+                .toList();
+    }
+
+    private List<Candidate> diversify(List<Candidate> fused) {
+        if (fused.isEmpty()) {
+            return fused;
+        }
+        double best = fused.stream().mapToDouble(Candidate::score).max().orElse(1);
+        boolean needsTerms = mmrLambda < 1 && fused.stream().anyMatch(candidate -> candidate.embedding() == null);
+        List<MmrSelector.Candidate> input = fused.stream()
+                .map(candidate -> new MmrSelector.Candidate(candidate.documentId(),
+                        best > 0 ? candidate.score() / best : 0, candidate.embedding(),
+                        needsTerms ? LegalTokenizer.distinctTerms(candidate.text()) : Set.of()))
+                .toList();
+        return MmrSelector.select(input, maxResults, maxSegmentsPerDocument, mmrLambda).stream()
+                .map(fused::get)
+                .toList();
+    }
+
+    /**
+     * Loads the summary fields of the given judgments in one query.
+     *
+     * @return Summaries by judgment ID, or {@code null} if they could not be loaded.
+     */
+    private Map<String, JudgmentSummary> summaries(Collection<String> documentIds) {
+        List<String> ids = documentIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return stageMetrics.time(StageMetrics.METADATA_JOIN, () -> dependencyGuards.guard(DependencyGuards.MONGO)
+                            .call(() -> judgmentRepository.findByIdIn(ids))).stream()
+                    .collect(Collectors.toMap(JudgmentSummary::id, summary -> summary, (first, second) -> first));
+        } catch (Exception e) {
+            log.warn("Could not load metadata of {} retrieved judgments: {}", ids.size(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Counts the distinct judgments among the candidates per court and per
+     * year, largest court first and newest year first.
+     */
+    private static SearchFacets facets(List<Candidate> candidates, Map<String, JudgmentSummary> summaries) {
+        Map<String, Long> courts = new HashMap<>();
+        Map<Integer, Long> years = new HashMap<>();
+        candidates.stream()
+                .map(Candidate::documentId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .forEach(summary -> {
+                    if (summary.court() != null && !summary.court().isBlank()) {
+                        courts.merge(summary.court().trim(), 1L, Long::sum);
+                    }
+                    Integer year = JudgmentFacets.year(summary.date());
+                    if (year != null) {
+                        years.merge(year, 1L, Long::sum);
+                    }
+                });
+        return new SearchFacets(
+                sorted(courts, Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey())),
+                sorted(years, Map.Entry.<Integer, Long>comparingByKey().reversed()));
+    }
+
+    private static <K> Map<K, Long> sorted(Map<K, Long> counts, Comparator<Map.Entry<K, Long>> order) {
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream().sorted(order).forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private static List<RetrievedDocument> group(List<Candidate> selected, Map<String, JudgmentSummary> summaries) {
+        Map<String, List<Candidate>> byDocument = new LinkedHashMap<>();
+        selected.forEach(candidate ->
+                byDocument.computeIfAbsent(candidate.documentId(), id -> new ArrayList<>()).add(candidate));
+
+        List<RetrievedDocument> documents = new ArrayList<>(byDocument.size());
+        byDocument.forEach((documentId, segments) -> {
+            JudgmentSummary summary = documentId != null ? summaries.get(documentId) : null;
+            documents.add(new RetrievedDocument(documentId,
+                    summary != null ? summary.title() : null,
+                    summary != null ? summary.court() : null,
+                    summary != null ? summary.date() : null,
+                    segments.stream().mapToDouble(Candidate::score).max().orElse(0),
+                    segments.stream()
+                            .map(c -> new RetrievedSegment(c.id(), c.text(), c.pageNumber(), c.score()))
+                            .toList()));
+        });
+        return documents;
+    }
 
-        return result.matches().stream()
-                .map(match -> match.embedded().text())
-                .collect(Collectors.toList());
+    private static Candidate candidate(EmbeddingMatch<TextSegment> match) {
+        Map<String, Object> metadata = match.embedded().metadata().toMap();
+        Object documentId = metadata.get("document_id");
+        return new Candidate(match.embeddingId(), match.embedded().text(),
+                documentId != null ? documentId.toString() : null,
+                metadata.get("page_number") instanceof Number page ? page.intValue() : null,
+                match.embedding(), match.score());
     }
-}
\ No newline at end of file
+}
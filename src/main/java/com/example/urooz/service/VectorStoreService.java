@@ -1,53 +1,263 @@
 package com.example.urooz.service;
 
+import com.example.urooz.event.DocumentVectorsRemovedEvent;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.SegmentStore;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
 /**
  * Service responsible for processing documents and storing their vector
  * embeddings.
+ * <p>
+ * Text is chunked page by page so every segment carries the
+ * {@code page_number} it came from alongside its {@code document_id} and
+ * the {@code tenant_id} of the tenant that owns the document. Each
+ * segment is stored under a deterministic ID derived from the document ID,
+ * page number, position on the page and segment text, so re-indexing a new version of a document
+ * only embeds the segments that changed and deletes the ones that vanished.
+ * <p>
+ * Segments are embedded while the judgment's metadata is still being
+ * extracted, so its court, date and title ({@link JudgmentFacets}) are added
+ * to all of its segments by {@link #applyFacets} once it is persisted. Plans
+ * made for an upload ({@link #planPage}, {@link #planPending}) mark their new
+ * segments {@link JudgmentFacets#PENDING}, which keeps them out of searches
+ * until {@link #publish} is called.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class VectorStoreService {
 
-    private final EmbeddingModel embeddingModel;
-    private final EmbeddingStore<TextSegment> embeddingStore;
+    /**
+     * What has to change in the vector store to index one document version.
+     *
+     * @param documentId The document the segments belong to.
+     * @param segmentIds IDs of every segment of this version, in document order.
+     * @param toEmbed    Segments not already stored from the previous version.
+     * @param staleIds   IDs from the previous version that no longer occur.
+     */
+    public record SegmentPlan(String documentId, List<String> segmentIds, List<KeyedSegment> toEmbed,
+                              List<String> staleIds) {
+
+        public int reusedCount() {
+            return segmentIds.size() - toEmbed.size();
+        }
+    }
+
+    private static final Pattern PAGE_BREAK = Pattern.compile(Pattern.quote(PdfExtractionService.PAGE_BREAK));
+
+    private final EmbeddingEngine embeddingEngine;
+    private final SegmentStore segmentStore;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
 
     /**
-     * Processes text content, splits it into segments, and stores embeddings in the
-     * vector database.
+     * Splits a document into segments and works out which of them are not yet
+     * stored. Does not touch the vector store.
      *
-     * @param text  The raw text content of the document.
-     * @param docId The unique identifier of the document.
+     * @param docId       The unique identifier of the document.
+     * @param tenant      The tenant that owns the document.
+     * @param text        The raw text, with pages separated by {@link PdfExtractionService#PAGE_BREAK}.
+     * @param previousIds Segment IDs stored for the previous version, or empty for a new document.
+     * @return The plan to pass to {@link #embed(SegmentPlan)}.
      */
-    public void processAndStore(String text, String docId) {
-        log.info("Starting vector embedding processing for Document ID: {}", docId);
+    public SegmentPlan plan(String docId, String tenant, String text, Collection<String> previousIds) {
+        return plan(docId, tenant, text, previousIds, false);
+    }
 
-        if (text == null || text.isEmpty()) {
-            log.warn("Vector storage skipped: Document text is null or empty.");
-            return;
+    /**
+     * Like {@link #plan(String, String, String, Collection)}, for a version
+     * whose metadata is not persisted yet: its new segments stay out of
+     * searches until {@link #publish}.
+     */
+    public SegmentPlan planPending(String docId, String tenant, String text, Collection<String> previousIds) {
+        return plan(docId, tenant, text, previousIds, true);
+    }
+
+    /**
+     * Splits one page of a new, not yet persisted document, so it can be
+     * embedded while later pages are still being parsed. Its segments stay
+     * out of searches until {@link #publish}.
+     *
+     * @param docId      The identifier the document will be persisted under.
+     * @param tenant     The tenant that owns the document.
+     * @param pageNumber One-based page number.
+     * @param text       Text of the page.
+     * @return The plan for this page alone; its segments have the same IDs as in a plan of the whole text.
+     */
+    public SegmentPlan planPage(String docId, String tenant, int pageNumber, String text) {
+        List<String> ids = new ArrayList<>();
+        List<KeyedSegment> toEmbed = new ArrayList<>();
+        if (text != null && !text.isBlank()) {
+            addPage(docId, tenant, pageNumber, text, true, Set.of(), ids, toEmbed);
+        }
+        return new SegmentPlan(docId, ids, toEmbed, List.of());
+    }
+
+    private SegmentPlan plan(String docId, String tenant, String text, Collection<String> previousIds,
+                             boolean pending) {
+        Set<String> previous = new HashSet<>(previousIds);
+        Set<String> current = new LinkedHashSet<>();
+        List<KeyedSegment> toEmbed = new ArrayList<>();
+
+        if (text != null) {
+            String[] pages = PAGE_BREAK.split(text);
+            for (int i = 0; i < pages.length; i++) {
+                if (!pages[i].isBlank()) {
+                    addPage(docId, tenant, i + 1, pages[i], pending, previous, current, toEmbed);
+                }
+            }
+        }
+
+        List<String> stale = previous.stream().filter(id -> !current.contains(id)).sorted().toList();
+        return new SegmentPlan(docId, List.copyOf(current), toEmbed, stale);
+    }
+
+    private void addPage(String docId, String tenant, int pageNumber, String text, boolean pending,
+                         Set<String> previous, Collection<String> current, List<KeyedSegment> toEmbed) {
+        List<TextSegment> segments = splitPage(pageNumber, text, docId, tenant, pending);
+        for (int index = 0; index < segments.size(); index++) {
+            TextSegment segment = segments.get(index);
+            String id = segmentId(docId, pageNumber, index, segment.text());
+            current.add(id);
+            if (!previous.contains(id)) {
+                toEmbed.add(new KeyedSegment(id, segment));
+            }
+        }
+    }
+
+    /**
+     * Queues a plan's new segments for embedding without waiting.
+     *
+     * @param plan The plan from {@link #plan}.
+     * @return A future completed once the new segments are stored.
+     */
+    public CompletableFuture<Void> embed(SegmentPlan plan) {
+        log.debug("Queued {} segments for embedding for Doc ID: {} ({} reused)",
+                plan.toEmbed().size(), plan.documentId(), plan.reusedCount());
+        return embeddingEngine.ingest(plan.toEmbed());
+    }
+
+    /**
+     * Embeds the new segments of several documents together, so they share
+     * micro-batches and upserts, and waits for them to be stored.
+     *
+     * @param plans Plans for documents whose metadata is already persisted.
+     */
+    public void embedAll(List<SegmentPlan> plans) {
+        List<KeyedSegment> segments = new ArrayList<>();
+        plans.forEach(plan -> segments.addAll(plan.toEmbed()));
+
+        embeddingEngine.ingest(segments).join();
+
+        log.info("Vector embeddings stored for {} documents ({} segments).", plans.size(), segments.size());
+    }
+
+    /**
+     * Stores each judgment's court, date and title on all of its segments so
+     * searches can filter on them. Call once the segments are stored.
+     *
+     * @param judgments Persisted judgments.
+     */
+    public void applyFacets(Collection<JudgmentMetadata> judgments) {
+        Map<String, Map<String, Object>> facets = new LinkedHashMap<>();
+        for (JudgmentMetadata judgment : judgments) {
+            Map<String, Object> values = JudgmentFacets.of(judgment);
+            if (!values.isEmpty()) {
+                facets.put(judgment.getId(), values);
+            }
         }
+        segmentStore.setMetadata(facets);
+    }
 
-        Document document = Document.from(text, Metadata.from("document_id", docId));
+    /**
+     * Makes a document's pending segments searchable. Call once its metadata
+     * is persisted and {@link #applyFacets} has run, so its segments are
+     * never found without their facets.
+     *
+     * @param docId The persisted judgment.
+     */
+    public void publish(String docId) {
+        segmentStore.setMetadata(Map.of(docId, Map.of(JudgmentFacets.PENDING, "false")));
+        embeddingEngine.publish(docId);
+    }
 
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(DocumentSplitters.recursive(500, 50))
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .build();
+    /**
+     * Moves all segments of the given documents to a tenant.
+     *
+     * @param documentIds Judgments whose segments should be reassigned.
+     * @param tenant      The tenant that owns them.
+     */
+    public void assignTenant(Collection<String> documentIds, String tenant) {
+        Map<String, Map<String, Object>> metadata = new LinkedHashMap<>();
+        documentIds.forEach(id -> metadata.put(id, Map.of(JudgmentFacets.TENANT, tenant)));
+        segmentStore.setMetadata(metadata);
+    }
 
-        ingestor.ingest(document);
+    /**
+     * Deletes the segments of the previous version that the new version no
+     * longer contains. Call only once the new version is fully stored.
+     *
+     * @param plan The applied plan.
+     */
+    public void removeStale(SegmentPlan plan) {
+        remove(plan.documentId(), plan.staleIds());
+    }
+
+    /**
+     * Deletes the segments a plan added, e.g. after ingestion of that version
+     * failed. Segments shared with the previous version are kept.
+     *
+     * @param plan The plan whose segments should be rolled back.
+     */
+    public void discard(SegmentPlan plan) {
+        remove(plan.documentId(), plan.toEmbed().stream().map(KeyedSegment::id).toList());
+    }
+
+    private void remove(String docId, List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        segmentStore.delete(ids);
+        eventPublisher.publishEvent(new DocumentVectorsRemovedEvent(docId, ids));
+        log.info("Removed {} vector embeddings for Doc ID: {}", ids.size(), docId);
+    }
+
+    private List<TextSegment> splitPage(int pageNumber, String text, String docId, String tenant, boolean pending) {
+        Metadata metadata = Metadata.from("document_id", docId).put("page_number", pageNumber)
+                .put(JudgmentFacets.TENANT, tenant);
+        if (pending) {
+            metadata.put(JudgmentFacets.PENDING, "true");
+        }
+        return splitter.split(Document.from(text, metadata));
+    }
 
-        log.info("Vector embeddings successfully stored in Qdrant for Doc ID: {}", docId);
+    private static String segmentId(String docId, int pageNumber, int index, String text) {
+        String key = docId + '\u0000' + pageNumber + '\u0000' + index + '\u0000' + text;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
     }
-}
\ No newline at end of file
+}
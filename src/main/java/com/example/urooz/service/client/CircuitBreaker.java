@@ -0,0 +1,133 @@
+package com.example.urooz.service.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker for calls to one remote dependency.
+ * <p>
+ * While closed it records the outcomes of the last {@code window} calls.
+ * Once at least {@code minCalls} are recorded and the share of failures
+ * reaches {@code failureRate}, it opens and rejects every call for
+ * {@code openMs}. After that it is half-open: a single trial call is let
+ * through, and its success closes the breaker while its failure opens it
+ * again. Outcomes of calls admitted before the last state change are
+ * ignored.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    /** How a call was admitted. */
+    enum Admission {
+        REJECTED,
+        NORMAL,
+        TRIAL
+    }
+
+    private final boolean[] failed;
+    private final int minCalls;
+    private final double failureRate;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int window, int minCalls, double failureRate, long openMs) {
+        this.failed = new boolean[Math.max(1, window)];
+        this.minCalls = Math.max(1, Math.min(minCalls, failed.length));
+        this.failureRate = failureRate;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    synchronized Admission tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return Admission.REJECTED;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return Admission.REJECTED;
+            }
+            trialInFlight = true;
+            return Admission.TRIAL;
+        }
+        return Admission.NORMAL;
+    }
+
+    synchronized void onSuccess(Admission admission) {
+        if (admission == Admission.TRIAL && state == State.HALF_OPEN) {
+            close();
+        } else if (admission == Admission.NORMAL && state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure(Admission admission) {
+        if (admission == Admission.TRIAL && state == State.HALF_OPEN) {
+            open();
+        } else if (admission == Admission.NORMAL && state == State.CLOSED) {
+            record(true);
+            if (recorded >= minCalls && failures >= failureRate * recorded) {
+                open();
+            }
+        }
+    }
+
+    /** Forgets a call that ended without saying anything about the dependency, e.g. because it was cancelled. */
+    synchronized void onIgnored(Admission admission) {
+        if (admission == Admission.TRIAL && state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /** Milliseconds until an open breaker lets a trial call through, or 0. */
+    synchronized long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (System.nanoTime() - openedAt)));
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failed.length) {
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        trialInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
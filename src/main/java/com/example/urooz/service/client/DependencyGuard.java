@@ -0,0 +1,317 @@
+package com.example.urooz.service.client;
+
+import com.example.urooz.exception.DependencyUnavailableException;
+import com.example.urooz.service.client.CircuitBreaker.Admission;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Guards the calls to one remote dependency.
+ * <p>
+ * A call first passes the dependency's {@link CircuitBreaker}, which fails
+ * it at once while the dependency keeps failing, and then its bulkhead,
+ * which caps the calls in flight so a slow dependency ties up at most
+ * {@code maxConcurrent} threads. Refused calls fail with
+ * {@link DependencyUnavailableException}. Read-only calls can be hedged: if
+ * the call has not answered after {@code hedgeDelayMs}, the same call is
+ * sent again and the first answer wins. Hedges are only sent while the
+ * breaker is closed and the bulkhead has room, so they never add load to a
+ * struggling dependency.
+ * <p>
+ * Every call is timed in {@code client.calls} (tags {@code client} and
+ * {@code outcome}); refused calls are counted in {@code client.rejected},
+ * hedges in {@code client.hedges}, and {@code client.circuit.state} and
+ * {@code client.in-flight} gauge the breaker (0 closed, 1 half-open,
+ * 2 open) and the bulkhead.
+ */
+@Slf4j
+public class DependencyGuard implements AutoCloseable {
+
+    /**
+     * Settings of a guard.
+     *
+     * @param maxConcurrent Calls allowed in flight at once, or 0 for no bulkhead.
+     * @param maxWaitMs     How long a call waits for room in the bulkhead.
+     * @param window        Number of recent calls the breaker looks at.
+     * @param minCalls      Calls the breaker needs to see before it may open.
+     * @param failureRate   Share of failed calls that opens the breaker.
+     * @param openMs        How long an open breaker refuses calls.
+     * @param hedgeDelayMs  Delay before a hedged call is sent again, or 0 for no hedging.
+     */
+    public record Settings(int maxConcurrent, long maxWaitMs, int window, int minCalls, double failureRate,
+                           long openMs, long hedgeDelayMs) {
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final CircuitBreaker breaker;
+    private final Semaphore bulkhead;
+    private final ExecutorService hedgeExecutor;
+
+    private final Timer successes;
+    private final Timer failures;
+    private final Counter circuitOpen;
+    private final Counter bulkheadFull;
+    private final Counter hedges;
+
+    public DependencyGuard(String name, Settings settings, MeterRegistry meterRegistry, ThreadFactory hedgeThreads) {
+        this.name = name;
+        this.settings = settings;
+        this.breaker = new CircuitBreaker(settings.window(), settings.minCalls(), settings.failureRate(),
+                settings.openMs());
+        this.bulkhead = settings.maxConcurrent() > 0 ? new Semaphore(settings.maxConcurrent(), true) : null;
+        // Each attempt holds a bulkhead slot, which bounds the threads the pool grows to.
+        this.hedgeExecutor = settings.hedgeDelayMs() > 0 ? Executors.newCachedThreadPool(hedgeThreads) : null;
+
+        successes = callTimer(meterRegistry, "success");
+        failures = callTimer(meterRegistry, "failure");
+        circuitOpen = rejectedCounter(meterRegistry, "circuit_open");
+        bulkheadFull = rejectedCounter(meterRegistry, "bulkhead_full");
+        hedges = Counter.builder("client.hedges")
+                .description("Calls sent a second time because the first had not answered yet")
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("client.circuit.state", breaker, b -> b.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("client", name)
+                .register(meterRegistry);
+        if (bulkhead != null) {
+            Gauge.builder("client.in-flight", bulkhead, b -> settings.maxConcurrent() - b.availablePermits())
+                    .description("Calls holding a bulkhead slot")
+                    .tag("client", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Admits one call. The caller reports how it ended through the permit.
+     *
+     * @throws DependencyUnavailableException if the breaker is open or the bulkhead stays full.
+     */
+    public Permit acquire() {
+        Admission admission = breaker.tryAcquire();
+        if (admission == Admission.REJECTED) {
+            circuitOpen.increment();
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(breaker.remainingOpenMillis() + 999));
+            throw new DependencyUnavailableException("The circuit breaker for " + name
+                    + " is open after repeated failures. Retry later.", retryAfter);
+        }
+        if (bulkhead != null) {
+            boolean acquired;
+            try {
+                acquired = bulkhead.tryAcquire(settings.maxWaitMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                breaker.onIgnored(admission);
+                bulkheadFull.increment();
+                throw new DependencyUnavailableException(name + " already has " + settings.maxConcurrent()
+                        + " calls in flight. Retry later.", 1);
+            }
+        }
+        return new Permit(admission);
+    }
+
+    /**
+     * Runs a call; any exception it throws counts as a failure of the dependency.
+     *
+     * @throws DependencyUnavailableException if the call is refused.
+     */
+    public <T> T call(Supplier<T> call) {
+        Permit permit = acquire();
+        try {
+            T result = call.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException e) {
+            permit.failure();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a read-only call, sending it a second time if it has not answered
+     * within the hedge delay, and returns the first answer. A failure is only
+     * thrown once every attempt has failed; the attempt still running when
+     * the other answers is cancelled.
+     *
+     * @throws DependencyUnavailableException if the call is refused.
+     */
+    public <T> T hedged(Supplier<T> call) {
+        if (hedgeExecutor == null) {
+            return call(call);
+        }
+        Permit first = acquire();
+        CompletionService<T> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        AtomicBoolean settled = new AtomicBoolean();
+        List<Future<T>> futures = new ArrayList<>(2);
+        try {
+            futures.add(submit(attempts, call, first, settled));
+            Future<T> completed = attempts.poll(settings.hedgeDelayMs(), TimeUnit.MILLISECONDS);
+            if (completed == null) {
+                Permit second = tryAcquireHedge();
+                if (second != null) {
+                    hedges.increment();
+                    log.debug("{} call still running after {} ms, hedging", name, settings.hedgeDelayMs());
+                    futures.add(submit(attempts, call, second, settled));
+                }
+                completed = attempts.take();
+            }
+            for (int remaining = futures.size(); ; remaining--) {
+                try {
+                    return completed.get();
+                } catch (ExecutionException e) {
+                    if (remaining == 1) {
+                        throw e.getCause() instanceof RuntimeException cause
+                                ? cause : new IllegalStateException(e.getCause());
+                    }
+                }
+                completed = attempts.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        } finally {
+            settled.set(true);
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    /** Submits one attempt; if the executor refuses it, its permit is given back. */
+    private <T> Future<T> submit(CompletionService<T> attempts, Supplier<T> call, Permit permit,
+                                 AtomicBoolean settled) {
+        try {
+            return attempts.submit(() -> attempt(call, permit, settled));
+        } catch (RejectedExecutionException e) {
+            permit.abandon();
+            throw e;
+        }
+    }
+
+    private <T> T attempt(Supplier<T> call, Permit permit, AtomicBoolean settled) {
+        try {
+            T result = call.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException e) {
+            // A loser cancelled after the other attempt answered says nothing about the dependency.
+            if (settled.get()) {
+                permit.abandon();
+            } else {
+                permit.failure();
+            }
+            throw e;
+        }
+    }
+
+    /** A permit for a hedge, only while the breaker is closed and the bulkhead has room right now. */
+    private Permit tryAcquireHedge() {
+        if (breaker.state() != CircuitBreaker.State.CLOSED) {
+            return null;
+        }
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            return null;
+        }
+        Admission admission = breaker.tryAcquire();
+        if (admission != Admission.NORMAL) {
+            breaker.onIgnored(admission);
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            return null;
+        }
+        return new Permit(admission);
+    }
+
+    private Timer callTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("client.calls")
+                .description("Latency of calls to a remote dependency")
+                .tag("client", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("client.rejected")
+                .description("Calls refused without being sent")
+                .tag("client", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /** An admitted call. Exactly one of its methods takes effect. */
+    public final class Permit {
+
+        private final Admission admission;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Admission admission) {
+            this.admission = admission;
+        }
+
+        /** The dependency answered, even if with an error of the caller's making. */
+        public void success() {
+            if (release()) {
+                successes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                breaker.onSuccess(admission);
+            }
+        }
+
+        /** The dependency failed, timed out or could not be reached. */
+        public void failure() {
+            if (release()) {
+                failures.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                breaker.onFailure(admission);
+            }
+        }
+
+        /** The call was cancelled before it said anything about the dependency. */
+        public void abandon() {
+            if (release()) {
+                breaker.onIgnored(admission);
+            }
+        }
+
+        private boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.urooz.service.client;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.service.client.DependencyGuard.Settings;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link DependencyGuard} per remote dependency, configured under
+ * {@code clients.<name>.*}. Every client of a dependency shares its guard,
+ * so Qdrant's REST writes and gRPC searches trip the same breaker and fill
+ * the same bulkhead.
+ */
+@Component
+@RequiredArgsConstructor
+public class DependencyGuards {
+
+    public static final String QDRANT = "qdrant";
+    public static final String MONGO = "mongo";
+    public static final String GEMINI = "gemini";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final BlockingIoThreads blockingIoThreads;
+
+    private final Map<String, DependencyGuard> guards = new ConcurrentHashMap<>();
+
+    public DependencyGuard guard(String name) {
+        return guards.computeIfAbsent(name, this::create);
+    }
+
+    @PreDestroy
+    void stop() {
+        guards.values().forEach(DependencyGuard::close);
+    }
+
+    private DependencyGuard create(String name) {
+        String prefix = "clients." + name + ".";
+        Settings settings = new Settings(
+                environment.getProperty(prefix + "max-concurrent", Integer.class, 0),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 1000L),
+                environment.getProperty(prefix + "breaker.window", Integer.class, 20),
+                environment.getProperty(prefix + "breaker.min-calls", Integer.class, 10),
+                environment.getProperty(prefix + "breaker.failure-rate", Double.class, 0.5),
+                environment.getProperty(prefix + "breaker.open-ms", Long.class, 10000L),
+                environment.getProperty(prefix + "hedge-delay-ms", Long.class, 0L));
+        return new DependencyGuard(name, settings, meterRegistry, blockingIoThreads.factory(name + "-call"));
+    }
+}
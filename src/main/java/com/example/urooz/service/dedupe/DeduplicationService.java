@@ -0,0 +1,265 @@
+package com.example.urooz.service.dedupe;
+
+import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.PdfExtractionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed lookup of previously ingested judgments.
+ * <p>
+ * A document is identified by the SHA-256 of its PDF bytes and of its
+ * normalized text. Near-identical texts (e.g. a corrected re-issue of a
+ * judgment) are found by the share of substantive pages whose normalized
+ * text is unchanged. Only documents of the same tenant are compared, so a
+ * judgment uploaded by two tenants is stored for each. Documents whose indexing never finished
+ * ({@code segmentIds == null}) are never treated as exact duplicates, so a
+ * re-upload repairs them.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DeduplicationService {
+
+    public enum MatchType {
+        /** Same text as an indexed document; nothing needs to be done. */
+        EXACT,
+        /** A new version of an existing document; only changed segments are re-embedded. */
+        NEAR,
+        /** Not seen before. */
+        NEW
+    }
+
+    /**
+     * Hashes identifying one ingested document.
+     *
+     * @param contentHash SHA-256 of the PDF bytes.
+     * @param textHash    SHA-256 of the normalized text.
+     * @param pageHashes  Hashes of the normalized substantive pages, without duplicates.
+     */
+    public record Fingerprint(String contentHash, String textHash, List<String> pageHashes) {
+    }
+
+    /**
+     * Result of looking a fingerprint up.
+     *
+     * @param type     How the document relates to what is already stored.
+     * @param existing The stored document for {@code EXACT} and {@code NEAR} matches.
+     */
+    public record Match(MatchType type, JudgmentMetadata existing) {
+    }
+
+    private static final Pattern PAGE_BREAK = Pattern.compile(Pattern.quote(PdfExtractionService.PAGE_BREAK));
+    private static final int MAX_CANDIDATES = 20;
+
+    private final JudgmentRepository judgmentRepository;
+
+    @Value("${dedupe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dedupe.min-page-chars:400}")
+    private int minPageChars;
+
+    @Value("${dedupe.near-duplicate-min-overlap:0.8}")
+    private double nearDuplicateMinOverlap;
+
+    /**
+     * Hashes the raw bytes of a spooled PDF.
+     *
+     * @param path Location of the PDF file.
+     * @return The hex-encoded SHA-256 of the file.
+     */
+    public String hashFile(Path path) {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new FileProcessingException("Error reading file for hashing: " + path.getFileName(), e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Finds an indexed document of the tenant uploaded with exactly the same bytes.
+     *
+     * @param tenant      The tenant uploading the document.
+     * @param contentHash The hash returned by {@link #hashFile(Path)}.
+     * @return The existing document, if any.
+     */
+    public Optional<JudgmentMetadata> findByContent(String tenant, String contentHash) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return judgmentRepository.findByContentHash(contentHash, tenant, PageRequest.of(0, 1)).stream()
+                .filter(existing -> existing.getSegmentIds() != null)
+                .findFirst();
+    }
+
+    /**
+     * Computes the text hashes of a parsed document.
+     *
+     * @param contentHash The hash of the PDF bytes.
+     * @param text        The raw text, with pages separated by {@link PdfExtractionService#PAGE_BREAK}.
+     * @return The fingerprint to match and store.
+     */
+    public Fingerprint fingerprint(String contentHash, String text) {
+        Fingerprinter fingerprinter = fingerprinter(contentHash);
+        for (String page : PAGE_BREAK.split(text)) {
+            fingerprinter.addPage(page);
+        }
+        return fingerprinter.finish();
+    }
+
+    /**
+     * Starts a fingerprint that is fed one page at a time while a document is
+     * parsed, so its text never has to be split again.
+     *
+     * @param contentHash The hash of the PDF bytes.
+     * @return An empty fingerprinter; add every page in order, then call {@link Fingerprinter#finish()}.
+     */
+    public Fingerprinter fingerprinter(String contentHash) {
+        return new Fingerprinter(contentHash);
+    }
+
+    /**
+     * Hashes the pages of one document as they arrive. Gives the same
+     * fingerprint as {@link #fingerprint(String, String)} on the joined text,
+     * which leaves out trailing empty pages.
+     */
+    public final class Fingerprinter {
+
+        private final String contentHash;
+        private final MessageDigest textDigest = sha256();
+        private final Set<String> pageHashes = new LinkedHashSet<>();
+        private int pages;
+        private int emptyPages;
+
+        private Fingerprinter(String contentHash) {
+            this.contentHash = contentHash;
+        }
+
+        /** Adds the next page of the document. */
+        public void addPage(String page) {
+            if (page.isEmpty()) {
+                emptyPages++;
+                return;
+            }
+            for (; emptyPages > 0; emptyPages--) {
+                hashPage("");
+            }
+            hashPage(page);
+        }
+
+        /** The fingerprint of the pages added so far. */
+        public Fingerprint finish() {
+            if (pages == 0) {
+                hashPage("");
+            }
+            return new Fingerprint(contentHash, HexFormat.of().formatHex(textDigest.digest()), new ArrayList<>(pageHashes));
+        }
+
+        private void hashPage(String page) {
+            String normalized = normalize(page);
+            textDigest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            textDigest.update((byte) '\f');
+            if (normalized.length() >= minPageChars) {
+                pageHashes.add(HexFormat.of().formatHex(sha256().digest(normalized.getBytes(StandardCharsets.UTF_8)), 0, 16));
+            }
+            pages++;
+        }
+    }
+
+    /**
+     * Classifies a parsed document against the tenant's stored ones.
+     *
+     * @param tenant      The tenant uploading the document.
+     * @param fingerprint Hashes of the parsed document.
+     * @return The match; {@code NEW} if deduplication is disabled.
+     */
+    public Match match(String tenant, Fingerprint fingerprint) {
+        if (!enabled) {
+            return new Match(MatchType.NEW, null);
+        }
+
+        List<JudgmentMetadata> sameText = judgmentRepository.findByTextHash(fingerprint.textHash(), tenant,
+                PageRequest.of(0, 1));
+        if (!sameText.isEmpty()) {
+            JudgmentMetadata existing = sameText.get(0);
+            return new Match(existing.getSegmentIds() != null ? MatchType.EXACT : MatchType.NEAR, existing);
+        }
+        if (fingerprint.pageHashes().isEmpty()) {
+            return new Match(MatchType.NEW, null);
+        }
+
+        List<JudgmentMetadata> candidates = judgmentRepository.findByPageHashesIn(fingerprint.pageHashes(), tenant,
+                PageRequest.of(0, MAX_CANDIDATES, Sort.by("id")));
+        return candidates.stream()
+                .filter(candidate -> overlap(fingerprint.pageHashes(), candidate.getPageHashes()) >= nearDuplicateMinOverlap)
+                .max(Comparator.comparingDouble(candidate -> overlap(fingerprint.pageHashes(), candidate.getPageHashes())))
+                .map(candidate -> new Match(MatchType.NEAR, candidate))
+                .orElse(new Match(MatchType.NEW, null));
+    }
+
+    /**
+     * Stores the fingerprint on a document about to be persisted.
+     */
+    public void apply(JudgmentMetadata metadata, Fingerprint fingerprint) {
+        metadata.setContentHash(fingerprint.contentHash());
+        metadata.setTextHash(fingerprint.textHash());
+        metadata.setPageHashes(fingerprint.pageHashes());
+    }
+
+    /** Shared pages relative to the longer of the two documents. */
+    static double overlap(List<String> pages, List<String> otherPages) {
+        if (otherPages == null || otherPages.isEmpty()) {
+            return 0;
+        }
+        Set<String> shared = new HashSet<>(pages);
+        shared.retainAll(otherPages);
+        return (double) shared.size() / Math.max(pages.size(), otherPages.size());
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
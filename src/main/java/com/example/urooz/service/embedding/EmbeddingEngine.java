@@ -0,0 +1,294 @@
+package com.example.urooz.service.embedding;
+
+import com.example.urooz.event.DocumentVectorsRemovedEvent;
+import com.example.urooz.event.SegmentsIndexedEvent;
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.cache.EmbeddingCache;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, batched embedding engine for ingestion.
+ * <p>
+ * Segments submitted by any number of concurrently ingested documents are put
+ * on one bounded queue. A fixed pool of workers, each owning its own ONNX
+ * session, drains the queue into micro-batches of up to {@code batch-size}
+ * segments (waiting at most {@code max-wait-ms} for a batch to fill), embeds
+ * the batch and writes it to the vector store with a single upsert under the
+ * segments' own IDs. Segments whose text was embedded before are read from
+ * the {@link EmbeddingCache} instead of being run through the model.
+ * <p>
+ * A {@link SegmentsIndexedEvent} announces segments once searches can find
+ * them. For {@link JudgmentFacets#PENDING} segments it is held back, per
+ * document, until {@link #publish(String)}, and dropped if the segments are
+ * removed first.
+ * <p>
+ * A worker loads its session with its first batch rather than at startup,
+ * since searches do not need it.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingEngine {
+
+    private final SegmentStore segmentStore;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmbeddingCache embeddingCache;
+
+    @Value("${embedding.engine.workers:2}")
+    private int workers;
+
+    @Value("${embedding.engine.threads-per-worker:0}")
+    private int threadsPerWorker;
+
+    @Value("${embedding.engine.pin-threads:false}")
+    private boolean pinThreads;
+
+    @Value("${embedding.engine.batch-size:64}")
+    private int batchSize;
+
+    @Value("${embedding.engine.max-wait-ms:20}")
+    private long maxWaitMs;
+
+    @Value("${embedding.engine.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingSegment> queue;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final Map<String, Unpublished> unpublished = new ConcurrentHashMap<>();
+
+    private Counter segmentCounter;
+    private Counter batchCounter;
+    private DistributionSummary batchFill;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        int threads = threadsPerWorker > 0
+                ? threadsPerWorker
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+
+        segmentCounter = Counter.builder("embedding.engine.segments")
+                .description("Segments embedded and stored by the engine")
+                .register(meterRegistry);
+        batchCounter = Counter.builder("embedding.engine.batches")
+                .description("Micro-batches processed by the engine")
+                .register(meterRegistry);
+        batchFill = DistributionSummary.builder("embedding.engine.batch.fill")
+                .description("Fraction of the configured batch size used by each micro-batch")
+                .register(meterRegistry);
+        batchTimer = Timer.builder("embedding.engine.batch.duration")
+                .description("Time to embed and upsert one micro-batch")
+                .register(meterRegistry);
+        Gauge.builder("embedding.engine.queue.size", () -> queue.size())
+                .description("Segments waiting to be embedded")
+                .register(meterRegistry);
+        Gauge.builder("embedding.engine.workers.busy", busyWorkers::get)
+                .description("Workers currently embedding a batch")
+                .register(meterRegistry);
+
+        for (int i = 0; i < workers; i++) {
+            int firstCore = pinThreads ? i * threads : -1;
+            EmbeddingModel model = embeddingCache.wrap(IsolatedMiniLmEmbeddingModel.MODEL_ID,
+                    new LazyEmbeddingModel(() -> new IsolatedMiniLmEmbeddingModel(threads, firstCore)));
+            Thread thread = new Thread(() -> runWorker(model), "embedding-worker-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+        log.info("Embedding engine started: {} workers x {} ONNX threads, batch size {}, max wait {} ms",
+                workers, threads, batchSize, maxWaitMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        workerThreads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Queues segments for embedding and storage. Blocks while the engine queue
+     * is full, which throttles producers to the engine's throughput.
+     *
+     * @param segments Segments to embed, typically from one document.
+     * @return A future completed once every segment has been stored.
+     */
+    public CompletableFuture<Void> ingest(List<KeyedSegment> segments) {
+        return ingest(segments, segmentStore);
+    }
+
+    /**
+     * Queues segments for embedding and storage in another store, e.g. a
+     * collection being rebuilt. No {@link SegmentsIndexedEvent} is published
+     * for them, since searches do not read that store yet.
+     *
+     * @param segments Segments to embed.
+     * @param target   The store to write them to.
+     * @return A future completed once every segment has been stored.
+     */
+    public CompletableFuture<Void> ingest(List<KeyedSegment> segments, SegmentStore target) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(segments.size());
+        try {
+            for (KeyedSegment segment : segments) {
+                PendingSegment pending = new PendingSegment(segment, target, new CompletableFuture<>());
+                queue.put(pending);
+                futures.add(pending.future());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Announces the stored pending segments of a document, once it has been
+     * published, so derived state such as the lexical index picks them up.
+     *
+     * @param documentId The published judgment.
+     */
+    public void publish(String documentId) {
+        Unpublished held = unpublished.remove(documentId);
+        if (held != null) {
+            eventPublisher.publishEvent(new SegmentsIndexedEvent(held.segments(), held.embeddings()));
+        }
+    }
+
+    @EventListener
+    public void onDocumentVectorsRemoved(DocumentVectorsRemovedEvent event) {
+        Set<String> removed = new HashSet<>(event.segmentIds());
+        unpublished.computeIfPresent(event.documentId(), (id, held) -> {
+            Unpublished kept = new Unpublished(new ArrayList<>(), new ArrayList<>());
+            for (int i = 0; i < held.segments().size(); i++) {
+                if (!removed.contains(held.segments().get(i).id())) {
+                    kept.add(held.segments().get(i), held.embeddings().get(i));
+                }
+            }
+            return kept.segments().isEmpty() ? null : kept;
+        });
+    }
+
+    private void runWorker(EmbeddingModel model) {
+        List<PendingSegment> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingSegment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(model, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(EmbeddingModel model, List<PendingSegment> batch) {
+        busyWorkers.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            List<TextSegment> texts = batch.stream().map(pending -> pending.segment().segment()).toList();
+            List<Embedding> embeddings = model.embedAll(texts).content();
+            Map<SegmentStore, List<Integer>> byStore = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                byStore.computeIfAbsent(batch.get(i).target(), store -> new ArrayList<>()).add(i);
+            }
+            byStore.forEach((store, indexes) -> {
+                List<KeyedSegment> segments = indexes.stream().map(i -> batch.get(i).segment()).toList();
+                List<Embedding> stored = indexes.stream().map(embeddings::get).toList();
+                store.upsert(segments, stored);
+                if (store == segmentStore) {
+                    announce(segments, stored);
+                }
+            });
+            segmentCounter.increment(batch.size());
+            batchCounter.increment();
+            batchFill.record((double) batch.size() / batchSize);
+
+            // Completed last, so a caller woken by its future sees the batch counted.
+            batch.forEach(pending -> pending.future().complete(null));
+        } catch (Exception e) {
+            log.error("Embedding batch of {} segments failed", batch.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            busyWorkers.decrementAndGet();
+        }
+    }
+
+    /** Publishes the event for searchable segments and holds back the pending ones. */
+    private void announce(List<KeyedSegment> segments, List<Embedding> embeddings) {
+        List<KeyedSegment> searchable = new ArrayList<>(segments.size());
+        List<Embedding> searchableEmbeddings = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            KeyedSegment segment = segments.get(i);
+            if (JudgmentFacets.isPending(segment.segment())) {
+                Embedding embedding = embeddings.get(i);
+                unpublished.compute(segment.segment().metadata().getString("document_id"), (id, held) -> {
+                    Unpublished target = held != null ? held : new Unpublished(new ArrayList<>(), new ArrayList<>());
+                    target.add(segment, embedding);
+                    return target;
+                });
+            } else {
+                searchable.add(segment);
+                searchableEmbeddings.add(embeddings.get(i));
+            }
+        }
+        if (!searchable.isEmpty()) {
+            eventPublisher.publishEvent(new SegmentsIndexedEvent(searchable, searchableEmbeddings));
+        }
+    }
+
+    private record PendingSegment(KeyedSegment segment, SegmentStore target, CompletableFuture<Void> future) {
+    }
+
+    /** Stored segments of a document that is not published yet, with their embeddings. */
+    private record Unpublished(List<KeyedSegment> segments, List<Embedding> embeddings) {
+
+        void add(KeyedSegment segment, Embedding embedding) {
+            segments.add(segment);
+            embeddings.add(embedding);
+        }
+    }
+}
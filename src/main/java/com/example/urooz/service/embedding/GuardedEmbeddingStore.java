@@ -0,0 +1,86 @@
+package com.example.urooz.service.embedding;
+
+import com.example.urooz.service.client.DependencyGuard;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link EmbeddingStore} that sends every call to a remote store through
+ * its {@link DependencyGuard}. Searches only read, so they are hedged: a
+ * search that has not answered within the guard's hedge delay is sent
+ * again, and the first result wins.
+ */
+public class GuardedEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final DependencyGuard guard;
+
+    public GuardedEmbeddingStore(EmbeddingStore<TextSegment> delegate, DependencyGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return guard.hedged(() -> delegate.search(request));
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return guard.call(() -> delegate.add(embedding));
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        run(() -> delegate.add(id, embedding));
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        return guard.call(() -> delegate.add(embedding, segment));
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return guard.call(() -> delegate.addAll(embeddings));
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        return guard.call(() -> delegate.addAll(embeddings, segments));
+    }
+
+    @Override
+    public void remove(String id) {
+        run(() -> delegate.remove(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        run(() -> delegate.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        run(() -> delegate.removeAll(filter));
+    }
+
+    @Override
+    public void removeAll() {
+        run(delegate::removeAll);
+    }
+
+    private void run(Runnable call) {
+        guard.call(() -> {
+            call.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.urooz.service.embedding;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import dev.langchain4j.model.embedding.onnx.AbstractInProcessEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxBertBiEncoder;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.StringJoiner;
+
+/**
+ * All-MiniLM-L6-v2 embedding model backed by its own ONNX Runtime session.
+ * <p>
+ * {@code AllMiniLmL6V2EmbeddingModel} shares one static session across every
+ * instance. This variant loads the same model files from the classpath into a
+ * dedicated session with an explicit intra-op thread count (and optional
+ * core affinity), and runs {@code embedAll} on the calling thread so that a
+ * pool of instances can be driven by one worker thread each.
+ */
+public class IsolatedMiniLmEmbeddingModel extends AbstractInProcessEmbeddingModel {
+
+    /** Identifies the model's weights, shared with {@code AllMiniLmL6V2EmbeddingModel}. */
+    public static final String MODEL_ID = "all-minilm-l6-v2";
+
+    private static final String MODEL_RESOURCE = MODEL_ID + ".onnx";
+    private static final String TOKENIZER_RESOURCE = MODEL_ID + "-tokenizer.json";
+
+    private final OnnxBertBiEncoder encoder;
+
+    /**
+     * @param intraOpThreads Number of ONNX Runtime intra-op threads for this session.
+     * @param firstCore      Zero-based index of the first logical core to pin the
+     *                       session's extra intra-op threads to, or -1 to leave
+     *                       scheduling to the OS.
+     */
+    public IsolatedMiniLmEmbeddingModel(int intraOpThreads, int firstCore) {
+        super(Runnable::run);
+        this.encoder = createEncoder(intraOpThreads, firstCore);
+    }
+
+    @Override
+    protected OnnxBertBiEncoder model() {
+        return encoder;
+    }
+
+    @Override
+    protected Integer knownDimension() {
+        return 384;
+    }
+
+    private static OnnxBertBiEncoder createEncoder(int intraOpThreads, int firstCore) {
+        ClassLoader classLoader = IsolatedMiniLmEmbeddingModel.class.getClassLoader();
+        try (InputStream model = classLoader.getResourceAsStream(MODEL_RESOURCE);
+             InputStream tokenizer = classLoader.getResourceAsStream(TOKENIZER_RESOURCE)) {
+            if (model == null || tokenizer == null) {
+                throw new IllegalStateException("MiniLM model files not found on the classpath");
+            }
+
+            OrtEnvironment environment = OrtEnvironment.getEnvironment();
+            OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+            options.setIntraOpNumThreads(intraOpThreads);
+            if (firstCore >= 0 && intraOpThreads > 1) {
+                // The calling thread acts as the first intra-op thread; only the
+                // remaining threads can be pinned. ORT numbers cores from 1.
+                StringJoiner affinities = new StringJoiner(";");
+                for (int i = 1; i < intraOpThreads; i++) {
+                    affinities.add(String.valueOf(firstCore + i + 1));
+                }
+                options.addConfigEntry("session.intra_op_thread_affinities", affinities.toString());
+            }
+
+            OrtSession session = environment.createSession(model.readAllBytes(), options);
+            return new OnnxBertBiEncoder(environment, session, tokenizer, PoolingMode.MEAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read MiniLM model files", e);
+        } catch (OrtException e) {
+            throw new IllegalStateException("Failed to create ONNX Runtime session", e);
+        }
+    }
+}
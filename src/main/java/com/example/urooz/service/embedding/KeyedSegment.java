@@ -0,0 +1,12 @@
+package com.example.urooz.service.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+/**
+ * A text segment together with the ID of its point in the vector store.
+ *
+ * @param id      Deterministic point ID (a UUID string).
+ * @param segment The segment text and metadata.
+ */
+public record KeyedSegment(String id, TextSegment segment) {
+}
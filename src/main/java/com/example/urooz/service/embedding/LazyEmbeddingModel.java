@@ -0,0 +1,67 @@
+package com.example.urooz.service.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * {@link EmbeddingModel} that creates the wrapped model on first use, so
+ * loading ONNX sessions does not hold up application startup. Concurrent
+ * first calls wait for one load; a failed load is retried by the next call.
+ */
+public class LazyEmbeddingModel implements EmbeddingModel {
+
+    private final Supplier<? extends EmbeddingModel> factory;
+    private volatile EmbeddingModel delegate;
+
+    public LazyEmbeddingModel(Supplier<? extends EmbeddingModel> factory) {
+        this.factory = factory;
+    }
+
+    /** Loads the wrapped model now, if it is not loaded yet. */
+    public void load() {
+        delegate();
+    }
+
+    public boolean isLoaded() {
+        return delegate != null;
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return delegate().embed(text);
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return delegate().embed(textSegment);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return delegate().embedAll(textSegments);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate().dimension();
+    }
+
+    private EmbeddingModel delegate() {
+        EmbeddingModel model = delegate;
+        if (model == null) {
+            synchronized (this) {
+                model = delegate;
+                if (model == null) {
+                    model = factory.get();
+                    delegate = model;
+                }
+            }
+        }
+        return model;
+    }
+}
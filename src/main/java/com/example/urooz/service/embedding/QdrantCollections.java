@@ -0,0 +1,147 @@
+package com.example.urooz.service.embedding;
+
+import com.example.urooz.service.JudgmentFacets;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Creates, deletes and aliases Qdrant collections through the REST API.
+ * <p>
+ * The configured {@code qdrant.collection} name is an alias for a versioned
+ * collection ({@code <name>_v1}, then one per rebuild), so searches and
+ * writes that use the alias can be switched to a rebuilt collection in one
+ * atomic alias update. Installations that predate aliases have a plain
+ * collection under that name; {@link #switchAlias} replaces it with the alias.
+ * <p>
+ * With {@code vector.quantization.type} set, new collections keep int8 or
+ * binary codes in RAM for the HNSW search and move the float vectors to
+ * disk, where they are only read to rescore candidates.
+ * <p>
+ * Every collection gets payload indexes on the fields searches filter on:
+ * {@code document_id} and {@code court} (keyword), {@code date_epoch_day}
+ * (integer ranges) and {@code title} (full text). {@code tenant_id} is
+ * indexed as a tenant key, so Qdrant stores each tenant's points together
+ * and a search filtered to one tenant reads only that tenant's data.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class QdrantCollections {
+
+    private final RestTemplate restTemplate;
+    private final String baseUrl;
+
+    @Value("${qdrant.vector-size:384}")
+    private int vectorSize;
+
+    @Value("${qdrant.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${qdrant.hnsw.ef-construct:100}")
+    private int hnswEfConstruct;
+
+    @Value("${vector.quantization.type:none}")
+    private VectorQuantization quantization = VectorQuantization.NONE;
+
+    @Value("${qdrant.quantization.quantile:0.99}")
+    private double quantile;
+
+    public QdrantCollections(RestTemplate qdrantRestTemplate,
+                             @Value("${qdrant.url:http://localhost:6333}") String qdrantUrl) {
+        this.restTemplate = qdrantRestTemplate;
+        this.baseUrl = qdrantUrl + "/collections";
+    }
+
+    /** Whether a collection or alias with this name exists. */
+    public boolean exists(String name) {
+        try {
+            restTemplate.getForEntity(baseUrl + "/" + name, String.class);
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        }
+    }
+
+    /** Creates a collection for cosine-scored vectors with the configured size, HNSW and quantization settings. */
+    public void create(String name) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("vectors", Map.of("size", vectorSize, "distance", "Cosine", "on_disk", quantization.enabled()));
+        body.put("hnsw_config", Map.of("m", hnswM, "ef_construct", hnswEfConstruct));
+        switch (quantization) {
+            case INT8 -> body.put("quantization_config",
+                    Map.of("scalar", Map.of("type", "int8", "quantile", quantile, "always_ram", true)));
+            case BINARY -> body.put("quantization_config", Map.of("binary", Map.of("always_ram", true)));
+            case NONE -> {
+            }
+        }
+        restTemplate.put(baseUrl + "/" + name, body);
+        log.info("Created Qdrant collection {} (size {}, m {}, ef_construct {}, quantization {})", name, vectorSize,
+                hnswM, hnswEfConstruct, quantization);
+        createPayloadIndexes(name);
+    }
+
+    /** Creates the payload indexes for filtered search; indexes that already exist are left as they are. */
+    public void createPayloadIndexes(String name) {
+        Map<String, Object> schemas = new LinkedHashMap<>();
+        schemas.put("document_id", "keyword");
+        schemas.put(JudgmentFacets.TENANT, Map.of("type", "keyword", "is_tenant", true));
+        schemas.put(JudgmentFacets.COURT, "keyword");
+        schemas.put(JudgmentFacets.DATE, "integer");
+        schemas.put(JudgmentFacets.TITLE, Map.of("type", "text", "tokenizer", "word", "lowercase", true));
+        schemas.put(JudgmentFacets.PENDING, "keyword");
+        schemas.forEach((field, schema) -> restTemplate.put(baseUrl + "/" + name + "/index?wait=true",
+                Map.of("field_name", field, "field_schema", schema)));
+        log.info("Qdrant collection {} has payload indexes on {}", name, schemas.keySet());
+    }
+
+    public void delete(String name) {
+        restTemplate.delete(baseUrl + "/" + name);
+        log.info("Deleted Qdrant collection {}", name);
+    }
+
+    /** Returns the collection an alias points to, or empty if no such alias exists. */
+    @SuppressWarnings("unchecked")
+    public Optional<String> aliasTarget(String alias) {
+        Map<String, Object> response = restTemplate.getForObject(baseUrl + "/aliases", Map.class);
+        Map<String, Object> result = (Map<String, Object>) response.get("result");
+        for (Map<String, Object> entry : (List<Map<String, Object>>) result.get("aliases")) {
+            if (alias.equals(entry.get("alias_name"))) {
+                return Optional.of(String.valueOf(entry.get("collection_name")));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Points an alias at a collection. Moving an existing alias is a single
+     * atomic update, so readers never see a missing collection. A plain
+     * collection with the alias's name is deleted first, which leaves a
+     * short gap once, on the first switch of a pre-alias installation.
+     *
+     * @return The collection the alias pointed to before, if any.
+     */
+    public Optional<String> switchAlias(String alias, String collection) {
+        Optional<String> previous = aliasTarget(alias);
+        List<Map<String, Object>> actions = new ArrayList<>();
+        if (previous.isPresent()) {
+            actions.add(Map.of("delete_alias", Map.of("alias_name", alias)));
+        } else if (exists(alias)) {
+            log.warn("Replacing plain Qdrant collection {} with an alias; searches fail until it is created", alias);
+            delete(alias);
+        }
+        actions.add(Map.of("create_alias", Map.of("collection_name", collection, "alias_name", alias)));
+        restTemplate.postForEntity(baseUrl + "/aliases", Map.of("actions", actions), String.class);
+        log.info("Qdrant alias {} now points to {} (was {})", alias, collection, previous.orElse("none"));
+        return previous;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.urooz.service.embedding;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes segment points to Qdrant under caller-chosen IDs and reads them back.
+ * <p>
+ * LangChain4j's {@code QdrantEmbeddingStore} only inserts under random IDs and
+ * cannot delete, so writes go through the Qdrant REST API instead. Points use
+ * the same payload layout as {@code QdrantEmbeddingStore} (segment text under
+ * {@code text_segment}, metadata entries alongside), so they are searched
+ * through the regular embedding store.
+ * <p>
+ * While a collection is being rebuilt, {@link #mirrorTo} makes every write
+ * also go to the new collection, so documents ingested during the
+ * rebuild are not lost when the alias is switched.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class QdrantSegmentStore implements SegmentStore {
+
+    private static final String TEXT_KEY = "text_segment";
+
+    private final RestTemplate restTemplate;
+    private final String qdrantUrl;
+    private final String pointsUrl;
+    private volatile QdrantSegmentStore mirror;
+
+    public QdrantSegmentStore(RestTemplate qdrantRestTemplate,
+                              @Value("${qdrant.url:http://localhost:6333}") String qdrantUrl,
+                              @Value("${qdrant.collection:legal_judgments}") String collection) {
+        this.restTemplate = qdrantRestTemplate;
+        this.qdrantUrl = qdrantUrl;
+        this.pointsUrl = qdrantUrl + "/collections/" + collection + "/points";
+    }
+
+    /** Returns a store that writes to another collection of the same Qdrant instance. */
+    public QdrantSegmentStore forCollection(String collection) {
+        return new QdrantSegmentStore(restTemplate, qdrantUrl, collection);
+    }
+
+    /**
+     * Also applies every later write to {@code target}, or stops doing so
+     * when {@code target} is {@code null}.
+     */
+    public void mirrorTo(QdrantSegmentStore target) {
+        mirror = target;
+    }
+
+    @Override
+    public void upsert(List<KeyedSegment> segments, List<Embedding> embeddings) {
+        write(segments, embeddings);
+        QdrantSegmentStore target = mirror;
+        if (target != null) {
+            target.write(segments, embeddings);
+        }
+    }
+
+    private void write(List<KeyedSegment> segments, List<Embedding> embeddings) {
+        List<Map<String, Object>> points = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            KeyedSegment keyed = segments.get(i);
+            Map<String, Object> payload = new LinkedHashMap<>(keyed.segment().metadata().toMap());
+            payload.put(TEXT_KEY, keyed.segment().text());
+            points.add(Map.of("id", keyed.id(), "vector", embeddings.get(i).vectorAsList(), "payload", payload));
+        }
+        restTemplate.put(pointsUrl + "?wait=true", Map.of("points", points));
+    }
+
+    @Override
+    public void delete(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        restTemplate.postForEntity(pointsUrl + "/delete?wait=true", Map.of("points", ids), String.class);
+        QdrantSegmentStore target = mirror;
+        if (target != null) {
+            target.delete(ids);
+        }
+        log.debug("Deleted {} points from Qdrant", ids.size());
+    }
+
+    /** Sets the payload of every point of each document in one batch request, filtered by {@code document_id}. */
+    @Override
+    public void setMetadata(Map<String, Map<String, Object>> metadataByDocument) {
+        if (metadataByDocument.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> operations = new ArrayList<>(metadataByDocument.size());
+        metadataByDocument.forEach((documentId, metadata) -> operations.add(Map.of("set_payload", Map.of(
+                "payload", metadata,
+                "filter", Map.of("must", List.of(Map.of("key", "document_id", "match", Map.of("value", documentId))))))));
+        restTemplate.postForEntity(pointsUrl + "/batch?wait=true", Map.of("operations", operations), String.class);
+        QdrantSegmentStore target = mirror;
+        if (target != null) {
+            target.setMetadata(metadataByDocument);
+        }
+        log.debug("Set payload on the points of {} documents", metadataByDocument.size());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void scroll(int pageSize, Consumer<List<KeyedSegment>> consumer) {
+        Object offset = null;
+        do {
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("limit", pageSize);
+            request.put("with_payload", true);
+            request.put("with_vector", false);
+            if (offset != null) {
+                request.put("offset", offset);
+            }
+            Map<String, Object> response = restTemplate.postForObject(pointsUrl + "/scroll", request, Map.class);
+            Map<String, Object> result = (Map<String, Object>) response.get("result");
+            List<Map<String, Object>> points = (List<Map<String, Object>>) result.get("points");
+
+            List<KeyedSegment> segments = new ArrayList<>(points.size());
+            for (Map<String, Object> point : points) {
+                Map<String, Object> payload = new LinkedHashMap<>((Map<String, Object>) point.get("payload"));
+                Object text = payload.remove(TEXT_KEY);
+                if (text != null) {
+                    segments.add(new KeyedSegment(String.valueOf(point.get("id")),
+                            TextSegment.from(text.toString(), Metadata.from(payload))));
+                }
+            }
+            consumer.accept(segments);
+            offset = result.get("next_page_offset");
+        } while (offset != null);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.urooz.service.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Write side of the vector store: stores segments under caller-chosen IDs so
+ * re-indexing can reuse and delete individual segments. Searches go through
+ * the {@code EmbeddingStore} bean of the same backend.
+ */
+public interface SegmentStore {
+
+    /**
+     * Inserts or replaces segments.
+     *
+     * @param segments   Segments with their IDs.
+     * @param embeddings Embeddings in the same order as {@code segments}.
+     */
+    void upsert(List<KeyedSegment> segments, List<Embedding> embeddings);
+
+    /**
+     * Deletes segments by ID. Unknown IDs are ignored.
+     *
+     * @param ids Segment IDs to delete.
+     */
+    void delete(Collection<String> ids);
+
+    /**
+     * Adds or replaces metadata entries on every stored segment of each
+     * document, e.g. the judgment fields that searches filter on.
+     *
+     * @param metadataByDocument Entries to set, by {@code document_id}.
+     */
+    void setMetadata(Map<String, Map<String, Object>> metadataByDocument);
+
+    /**
+     * Reads every stored segment, page by page, without embeddings.
+     *
+     * @param pageSize Segments per page.
+     * @param consumer Receives each page of segments.
+     */
+    void scroll(int pageSize, Consumer<List<KeyedSegment>> consumer);
+}
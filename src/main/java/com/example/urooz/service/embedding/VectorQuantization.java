@@ -0,0 +1,31 @@
+package com.example.urooz.service.embedding;
+
+/**
+ * How stored vectors are compressed for the search index
+ * ({@code vector.quantization.type}). Full-precision vectors are always kept
+ * as well, so quantized candidates can be rescored exactly.
+ */
+public enum VectorQuantization {
+
+    /** Float32 only, 4 bytes per dimension. */
+    NONE,
+
+    /** One signed byte per dimension with a per-vector scale, about 4x smaller. */
+    INT8,
+
+    /** One sign bit per dimension, 32x smaller; needs more oversampling. */
+    BINARY;
+
+    public boolean enabled() {
+        return this != NONE;
+    }
+
+    /** Bytes the quantized index holds per vector, excluding the full-precision copy. */
+    public int bytesPerVector(int dimension) {
+        return switch (this) {
+            case NONE -> dimension * Float.BYTES;
+            case INT8 -> dimension + Float.BYTES;
+            case BINARY -> (dimension + Long.SIZE - 1) / Long.SIZE * Long.BYTES;
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.urooz.service.embedding.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link EmbeddingModel} that looks each segment up in an
+ * {@link EmbeddingCache} file and sends only the misses to the wrapped model,
+ * in one batch, then stores their vectors. Single-text {@code embed} calls
+ * (search queries) bypass the cache: they are one-off, and the query result
+ * cache already covers repeats.
+ */
+@Slf4j
+class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingCache cache;
+    private final String modelId;
+    private final EmbeddingModel delegate;
+
+    CachingEmbeddingModel(EmbeddingCache cache, String modelId, EmbeddingModel delegate) {
+        this.cache = cache;
+        this.modelId = modelId;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return delegate.embed(text);
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return delegate.embed(textSegment);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        EmbeddingFile file = cache.file(modelId, delegate.dimension());
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        ContentHash[] hashes = new ContentHash[textSegments.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < textSegments.size(); i++) {
+            hashes[i] = ContentHash.of(textSegments.get(i).text());
+            float[] vector = file.get(hashes[i]);
+            if (vector != null) {
+                embeddings[i] = Embedding.from(vector);
+            } else {
+                missing.add(i);
+            }
+        }
+        cache.record(textSegments.size() - missing.size(), missing.size());
+        if (missing.isEmpty()) {
+            return Response.from(Arrays.asList(embeddings));
+        }
+
+        Response<List<Embedding>> computed = delegate.embedAll(missing.stream().map(textSegments::get).toList());
+        for (int i = 0; i < missing.size(); i++) {
+            int index = missing.get(i);
+            embeddings[index] = computed.content().get(i);
+            try {
+                file.put(hashes[index], embeddings[index].vector());
+            } catch (IOException e) {
+                log.warn("Failed to store embedding in cache for {}: {}", modelId, e.getMessage());
+            }
+        }
+        return Response.from(Arrays.asList(embeddings), computed.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
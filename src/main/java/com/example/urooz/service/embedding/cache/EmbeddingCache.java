@@ -0,0 +1,104 @@
+package com.example.urooz.service.embedding.cache;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of segment embeddings keyed by (model id, content hash),
+ * so re-indexing unchanged text reads vectors from disk instead of running
+ * the model again.
+ * <p>
+ * Each model gets its own {@link EmbeddingFile} under
+ * {@code embedding.cache.path}, opened on first use. Models are wrapped with
+ * {@link #wrap}; callers that embed the same model in several sessions (the
+ * engine's workers and the query model) share one file.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.cache.path:data/embedding-cache}")
+    private String path;
+
+    @Value("${embedding.cache.max-entries:1000000}")
+    private int maxEntries;
+
+    private final Map<String, EmbeddingFile> files = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void start() {
+        hits = Counter.builder("embedding.cache.hits")
+                .description("Segment embeddings served from the persistent cache")
+                .register(meterRegistry);
+        misses = Counter.builder("embedding.cache.misses")
+                .description("Segment embeddings computed by the model")
+                .register(meterRegistry);
+        Gauge.builder("embedding.cache.entries", files, open -> open.values().stream()
+                        .mapToInt(EmbeddingFile::size).sum())
+                .description("Embeddings stored in the persistent cache")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void close() {
+        files.forEach((modelId, file) -> {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Failed to close embedding cache for {}", modelId, e);
+            }
+        });
+    }
+
+    /**
+     * Wraps a model so that segment batches are served from the cache where
+     * possible. Returns the model itself when the cache is disabled.
+     *
+     * @param modelId Identifies the model's weights; models with the same ID must produce the same vectors.
+     * @param model   The model computing cache misses.
+     */
+    public EmbeddingModel wrap(String modelId, EmbeddingModel model) {
+        return enabled ? new CachingEmbeddingModel(this, modelId, model) : model;
+    }
+
+    EmbeddingFile file(String modelId, int dimension) {
+        return files.computeIfAbsent(modelId, id -> {
+            try {
+                EmbeddingFile file = new EmbeddingFile(Path.of(path), id, dimension, maxEntries);
+                log.info("Embedding cache for {} opened at {} with {} entries", id,
+                        Path.of(path).toAbsolutePath(), file.size());
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open embedding cache for " + id, e);
+            }
+        });
+    }
+
+    void record(int hitCount, int missCount) {
+        hits.increment(hitCount);
+        misses.increment(missCount);
+    }
+}
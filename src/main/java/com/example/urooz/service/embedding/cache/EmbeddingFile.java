@@ -0,0 +1,129 @@
+package com.example.urooz.service.embedding.cache;
+
+import com.example.urooz.service.embedding.hnsw.MappedVectors;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only embedding cache for one model, stored in two files.
+ * <p>
+ * {@code <model>.f32} holds the packed float32 vectors in a
+ * {@link MappedVectors}, one slot per entry. {@code <model>.keys} holds one
+ * record per slot: the 128-bit content hash and a CRC32 of the vector. On
+ * open only the key file is read to rebuild the in-memory hash index, so
+ * startup does not touch the vectors. A torn last key record is cut off, and
+ * a vector whose CRC does not match (e.g. after a power loss) is treated as
+ * a miss. Methods are synchronized; lookups are cheap next to inference.
+ */
+final class EmbeddingFile implements Closeable {
+
+    private static final int KEY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+    private final MappedVectors vectors;
+    private final FileChannel keys;
+    private final int maxEntries;
+    private final Map<ContentHash, Integer> slots = new HashMap<>();
+    private int[] crcs = new int[1024];
+    private int count;
+
+    EmbeddingFile(Path directory, String modelId, int dimension, int maxEntries) throws IOException {
+        Files.createDirectories(directory);
+        this.maxEntries = maxEntries;
+        this.vectors = new MappedVectors(directory.resolve(modelId + ".f32"), dimension);
+        this.keys = FileChannel.open(directory.resolve(modelId + ".keys"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        readKeys();
+        vectors.ensureMapped(count);
+    }
+
+    synchronized int size() {
+        return slots.size();
+    }
+
+    /** Returns the cached vector, or {@code null} if absent or damaged. */
+    synchronized float[] get(ContentHash hash) {
+        Integer slot = slots.get(hash);
+        if (slot == null) {
+            return null;
+        }
+        float[] vector = vectors.get(slot);
+        return checksum(vector) == crcs[slot] ? vector : null;
+    }
+
+    /**
+     * Appends a vector unless the hash is already present or the file is full.
+     *
+     * @return Whether the vector was stored.
+     */
+    synchronized boolean put(ContentHash hash, float[] vector) throws IOException {
+        if (slots.containsKey(hash) || count >= maxEntries || vector.length != vectors.dimension()) {
+            return false;
+        }
+        int slot = count;
+        int crc = checksum(vector);
+        // The vector goes in first, so a key never points at a slot that was not written.
+        vectors.set(slot, vector);
+        ByteBuffer record = ByteBuffer.allocate(KEY_BYTES)
+                .putLong(hash.high()).putLong(hash.low()).putInt(crc).flip();
+        long position = (long) slot * KEY_BYTES;
+        while (record.hasRemaining()) {
+            position += keys.write(record, position);
+        }
+        slots.put(hash, slot);
+        crcs = ensureCapacity(crcs, slot + 1);
+        crcs[slot] = crc;
+        count++;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        vectors.force();
+        keys.force(false);
+        keys.close();
+        vectors.close();
+    }
+
+    private void readKeys() throws IOException {
+        long complete = Math.min(keys.size() / KEY_BYTES, maxEntries);
+        // Not closed: closing the stream would close the channel.
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(keys), 1 << 16));
+        for (; count < complete; count++) {
+            ContentHash hash = new ContentHash(in.readLong(), in.readLong());
+            crcs = ensureCapacity(crcs, count + 1);
+            crcs[count] = in.readInt();
+            slots.putIfAbsent(hash, count);
+        }
+        keys.truncate((long) count * KEY_BYTES);
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        if (size <= array.length) {
+            return array;
+        }
+        int[] grown = new int[Math.max(size, array.length * 2)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int checksum(float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(vector);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
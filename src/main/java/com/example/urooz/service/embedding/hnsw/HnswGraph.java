@@ -0,0 +1,380 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over the unit vectors in a
+ * {@link MappedVectors}, scored by dot product (cosine similarity).
+ * <p>
+ * Nodes are vector slots. Each node keeps up to {@code m} links per upper
+ * layer and {@code 2m} on layer 0, chosen with the diversity heuristic from
+ * the HNSW paper. Nodes are never removed; callers exclude deleted slots
+ * through the search predicate so they still route searches. Callers
+ * synchronize writes against searches.
+ */
+final class HnswGraph {
+
+    /** A node and its similarity to the query. */
+    record Scored(int node, float score) {
+    }
+
+    /** Similarity of a node to a fixed query, e.g. over quantized codes instead of the float vectors. */
+    @FunctionalInterface
+    interface NodeScorer {
+        float score(int node);
+    }
+
+    private static final Comparator<Scored> BY_SCORE = Comparator.comparingDouble(Scored::score);
+
+    private final MappedVectors vectors;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    /** links[node][level] = {count, neighbour...}. */
+    private int[][][] links = new int[1024][][];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(MappedVectors vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Links a slot whose unit vector is already stored.
+     *
+     * @param node   The slot, one past the highest inserted slot.
+     * @param vector The slot's vector.
+     */
+    void insert(int node, float[] vector) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node >= links.length) {
+            links = Arrays.copyOf(links, Math.max(node + 1, links.length * 2));
+        }
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxLinks(l)];
+        }
+        size = Math.max(size, node + 1);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        NodeScorer scorer = other -> vectors.dot(other, vector);
+        Scored entry = greedyDescend(scorer, level);
+        List<Scored> entries = List.of(entry);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(scorer, entries, efConstruction, l);
+            for (Scored neighbour : selectNeighbours(candidates, m)) {
+                append(node, l, neighbour.node());
+                connect(neighbour.node(), l, node, neighbour.score());
+            }
+            entries = candidates;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Approximate nearest neighbours.
+     *
+     * @param query  Unit query vector.
+     * @param k      Maximum number of results.
+     * @param ef     Size of the dynamic candidate list; larger is slower and more accurate.
+     * @param accept Which nodes may be returned; rejected nodes are still traversed.
+     * @return Up to {@code k} accepted nodes, best first.
+     */
+    List<Scored> search(float[] query, int k, int ef, IntPredicate accept) {
+        return search(node -> vectors.dot(node, query), k, ef, accept);
+    }
+
+    /**
+     * Approximate nearest neighbours under a custom similarity; the graph is
+     * still the one built from the float vectors.
+     * <p>
+     * The beam holds only accepted nodes, so rejected nodes are traversed
+     * without taking its places: under a selective predicate the walk goes
+     * on until it has {@code ef} accepted nodes, widening in one pass rather
+     * than through repeated searches.
+     *
+     * @param scorer Similarity of each node to the query.
+     * @param k      Maximum number of results.
+     * @param ef     Size of the dynamic candidate list.
+     * @param accept Which nodes may be returned; rejected nodes are still traversed.
+     * @return Up to {@code k} accepted nodes, best first by {@code scorer}.
+     */
+    List<Scored> search(NodeScorer scorer, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        ef = Math.max(ef, k);
+        Scored entry = greedyDescend(scorer, 0);
+        Visited seen = visited.get();
+        seen.reset(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Scored> accepted = new PriorityQueue<>(ef + 1, BY_SCORE);
+        seen.add(entry.node());
+        candidates.add(entry);
+        if (accept.test(entry.node())) {
+            accepted.add(entry);
+        }
+
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (accepted.size() >= ef && current.score() < accepted.peek().score()) {
+                break;
+            }
+            int[] neighbours = links[current.node()][0];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!seen.add(neighbour)) {
+                    continue;
+                }
+                float score = scorer.score(neighbour);
+                if (accepted.size() < ef || score > accepted.peek().score()) {
+                    Scored scored = new Scored(neighbour, score);
+                    candidates.add(scored);
+                    if (accept.test(neighbour)) {
+                        accepted.add(scored);
+                        if (accepted.size() > ef) {
+                            accepted.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Scored> results = new ArrayList<>(accepted);
+        results.sort(BY_SCORE.reversed());
+        return results.subList(0, Math.min(k, results.size()));
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            int[][] nodeLinks = links[node];
+            out.writeByte(nodeLinks.length);
+            for (int[] level : nodeLinks) {
+                out.writeShort(level[0]);
+                for (int i = 1; i <= level[0]; i++) {
+                    out.writeInt(level[i]);
+                }
+            }
+        }
+    }
+
+    void read(DataInputStream in) throws IOException {
+        size = in.readInt();
+        entryPoint = in.readInt();
+        maxLevel = in.readInt();
+        links = new int[Math.max(1024, size)][][];
+        for (int node = 0; node < size; node++) {
+            int levels = in.readUnsignedByte();
+            links[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] level = new int[1 + maxLinks(l)];
+                level[0] = in.readUnsignedShort();
+                for (int i = 1; i <= level[0]; i++) {
+                    level[i] = in.readInt();
+                }
+                links[node][l] = level;
+            }
+        }
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    /** Greedy walk from the entry point down to {@code targetLevel + 1}. */
+    private Scored greedyDescend(NodeScorer scorer, int targetLevel) {
+        int current = entryPoint;
+        float best = scorer.score(current);
+        for (int l = maxLevel; l > targetLevel; l--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                int[] neighbours = links[current][l];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    float score = scorer.score(neighbours[i]);
+                    if (score > best) {
+                        best = score;
+                        current = neighbours[i];
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return new Scored(current, best);
+    }
+
+    /** Beam search on one layer; returns up to {@code ef} nodes, best first. */
+    private List<Scored> searchLayer(NodeScorer scorer, List<Scored> entries, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset(size);
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Scored> results = new PriorityQueue<>(ef + 1, BY_SCORE);
+        for (Scored entry : entries) {
+            seen.add(entry.node());
+            candidates.add(entry);
+            results.add(entry);
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            int[][] nodeLinks = links[current.node()];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!seen.add(neighbour)) {
+                    continue;
+                }
+                float score = scorer.score(neighbour);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Scored scored = new Scored(neighbour, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SCORE.reversed());
+        return sorted;
+    }
+
+    /**
+     * Diversity heuristic: keep a candidate only if it is closer to the base
+     * node than to every neighbour already kept, then top up with the closest
+     * skipped candidates.
+     */
+    private List<Scored> selectNeighbours(List<Scored> candidates, int max) {
+        if (candidates.size() <= max) {
+            return candidates;
+        }
+        List<Scored> selected = new ArrayList<>(max);
+        List<float[]> selectedVectors = new ArrayList<>(max);
+        List<Scored> skipped = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            float[] vector = vectors.get(candidate.node());
+            boolean diverse = true;
+            for (float[] kept : selectedVectors) {
+                if (dot(vector, kept) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(vector);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void append(int node, int level, int neighbour) {
+        int[] list = links[node][level];
+        list[++list[0]] = neighbour;
+    }
+
+    /** Adds a back link, re-selecting the node's neighbours if it is full. */
+    private void connect(int node, int level, int neighbour, float score) {
+        int[] list = links[node][level];
+        if (list[0] < list.length - 1) {
+            list[++list[0]] = neighbour;
+            return;
+        }
+        float[] base = vectors.get(node);
+        List<Scored> candidates = new ArrayList<>(list[0] + 1);
+        candidates.add(new Scored(neighbour, score));
+        for (int i = 1; i <= list[0]; i++) {
+            candidates.add(new Scored(list[i], vectors.dot(list[i], base)));
+        }
+        candidates.sort(BY_SCORE.reversed());
+        List<Scored> selected = selectNeighbours(candidates, list.length - 1);
+        list[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            list[i + 1] = selected.get(i).node();
+        }
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /** Per-thread visited set cleared in O(1) by bumping an epoch. */
+    private static final class Visited {
+
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean add(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
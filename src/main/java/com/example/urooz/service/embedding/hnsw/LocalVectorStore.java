@@ -0,0 +1,986 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.SegmentStore;
+import com.example.urooz.service.embedding.VectorQuantization;
+import com.example.urooz.service.embedding.hnsw.HnswGraph.NodeScorer;
+import com.example.urooz.service.embedding.hnsw.HnswGraph.Scored;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded vector store selected with {@code vector.store=local}, so no
+ * Qdrant container is needed and searches stay in-process.
+ * <p>
+ * Vectors are normalized and kept in a memory-mapped file, indexed by an
+ * {@link HnswGraph} ({@code vector.local.m}, {@code vector.local.ef-search}).
+ * Searches filtered on {@code document_id} scan that document's segments
+ * exactly. Searches filtered on a {@code tenant_id} that holds at most
+ * {@code vector.local.exact-search-share} of the slots scan that tenant's
+ * segments exactly too; other filtered searches keep widening the HNSW beam
+ * until enough segments match.
+ * <p>
+ * With {@code vector.quantization.type} set, HNSW searches score int8 or
+ * binary codes held on the heap ({@link QuantizedVectors}) instead of paging
+ * through the float file, and only the returned hits are rescored from the
+ * float vectors, so reported scores stay exact.
+ * <p>
+ * Every write is appended to a CRC-checked write-ahead log and forced to disk
+ * before it is applied. Every {@code vector.local.checkpoint-ops} operations
+ * (and on shutdown) the segments and graph are written to a snapshot by
+ * atomic rename and the log is restarted under a new generation. On startup
+ * the snapshot is loaded and the log replayed up to its last intact record.
+ * <p>
+ * Deletes and replaced segments leave tombstoned slots behind. Once they
+ * make up {@code vector.local.compact-deleted-share} of the slots, the
+ * checkpoint compacts instead: the live vectors are copied to a new vector
+ * file and re-indexed in a new graph while searches continue, and the
+ * snapshot naming the new file replaces the old one under the write lock.
+ * Writes wait while a checkpoint or compaction runs, so one always installs
+ * what it copied.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "vector.store", havingValue = "local")
+public class LocalVectorStore implements EmbeddingStore<TextSegment>, SegmentStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x484e5357;
+    private static final int WAL_MAGIC = 0x57414c31;
+    private static final int VERSION = 2;
+    private static final int VERSION_WITH_FIXED_VECTOR_FILE = 1;
+    private static final String DEFAULT_VECTOR_FILE = "vectors.f32";
+    private static final int WAL_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_SET_METADATA = 3;
+    private static final String DOCUMENT_ID = "document_id";
+
+    @Value("${vector.local.path:data/vectors}")
+    private String path;
+
+    @Value("${vector.local.dimension:384}")
+    private int dimension;
+
+    @Value("${vector.local.m:16}")
+    private int m;
+
+    @Value("${vector.local.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${vector.local.ef-search:64}")
+    private int efSearch;
+
+    @Value("${vector.local.exact-search-share:0.1}")
+    private double exactSearchShare = 0.1;
+
+    @Value("${vector.local.checkpoint-ops:20000}")
+    private int checkpointOps;
+
+    @Value("${vector.local.compact-deleted-share:0.2}")
+    private double compactDeletedShare = 0.2;
+
+    @Value("${vector.quantization.type:none}")
+    private VectorQuantization quantization = VectorQuantization.NONE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Taken by writers before the write lock, and held by checkpoints and compactions to keep writers out. */
+    private final ReentrantLock writers = new ReentrantLock();
+    private final AtomicBoolean checkpointPending = new AtomicBoolean();
+
+    /** A compacted copy of the store, built while searches continue and installed under the write lock. */
+    private record Compaction(String vectorFile, MappedVectors vectors, HnswGraph graph, QuantizedVectors quantized,
+                              String[] ids, TextSegment[] segments, long[] sequences, int slotCount, Path snapshot) {
+    }
+
+    private Path directory;
+    private String vectorFile = DEFAULT_VECTOR_FILE;
+    private MappedVectors vectors;
+    private HnswGraph graph;
+    private QuantizedVectors quantized;
+    private FileChannel wal;
+    private long generation;
+    private int opsSinceCheckpoint;
+    private ExecutorService checkpointer;
+
+    private String[] ids = new String[1024];
+    private TextSegment[] segments = new TextSegment[1024];
+    /** Insertion order of each slot, kept by compaction, so scrolls can resume after slots are renumbered. */
+    private long[] sequences = new long[1024];
+    private long nextSequence;
+    private int slotCount;
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final Map<String, Set<Integer>> slotsByDocument = new HashMap<>();
+    private final Map<String, Set<Integer>> slotsByTenant = new HashMap<>();
+
+    @PostConstruct
+    void open() throws IOException {
+        long startTime = System.currentTimeMillis();
+        directory = Path.of(path);
+        Files.createDirectories(directory);
+        quantized = quantization.enabled() ? new QuantizedVectors(quantization, dimension) : null;
+
+        Path snapshot = directory.resolve("index.snapshot");
+        if (Files.exists(snapshot)) {
+            readSnapshot(snapshot);
+        } else {
+            vectors = new MappedVectors(directory.resolve(vectorFile), dimension);
+            graph = new HnswGraph(vectors, m, efConstruction);
+        }
+        deleteUnusedVectorFiles();
+        if (quantized != null) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                quantized.set(slot, vectors.get(slot));
+            }
+        }
+        int replayed = openWal();
+
+        checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vector-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Local vector store opened at {}: {} segments ({} replayed from log, quantization {}) in {} ms",
+                directory.toAbsolutePath(), slotsById.size(), replayed, quantization, System.currentTimeMillis() - startTime);
+    }
+
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        checkpointer.shutdown();
+        checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        writers.lock();
+        lock.writeLock().lock();
+        try {
+            if (needsCompaction()) {
+                install(compact());
+            } else if (opsSinceCheckpoint > 0) {
+                checkpoint();
+            }
+            wal.close();
+            vectors.close();
+        } finally {
+            lock.writeLock().unlock();
+            writers.unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(List<KeyedSegment> keyedSegments, List<Embedding> embeddings) {
+        List<String> segmentIds = keyedSegments.stream().map(KeyedSegment::id).toList();
+        List<TextSegment> textSegments = keyedSegments.stream().map(KeyedSegment::segment).toList();
+        write(segmentIds, embeddings, textSegments);
+    }
+
+    @Override
+    public void delete(Collection<String> segmentIds) {
+        if (segmentIds.isEmpty()) {
+            return;
+        }
+        writers.lock();
+        lock.writeLock().lock();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_DELETE);
+            out.writeInt(segmentIds.size());
+            for (String id : segmentIds) {
+                writeString(out, id);
+            }
+            appendToWal(List.of(bytes.toByteArray()));
+            segmentIds.forEach(this::applyDelete);
+            afterWrite(segmentIds.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write vector store log", e);
+        } finally {
+            lock.writeLock().unlock();
+            writers.unlock();
+        }
+    }
+
+    @Override
+    public void setMetadata(Map<String, Map<String, Object>> metadataByDocument) {
+        if (metadataByDocument.isEmpty()) {
+            return;
+        }
+        writers.lock();
+        lock.writeLock().lock();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_SET_METADATA);
+            out.writeInt(metadataByDocument.size());
+            for (Map.Entry<String, Map<String, Object>> entry : metadataByDocument.entrySet()) {
+                writeString(out, entry.getKey());
+                writeMetadata(out, entry.getValue());
+            }
+            appendToWal(List.of(bytes.toByteArray()));
+            metadataByDocument.forEach(this::applySetMetadata);
+            afterWrite(metadataByDocument.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write vector store log", e);
+        } finally {
+            lock.writeLock().unlock();
+            writers.unlock();
+        }
+    }
+
+    @Override
+    public void scroll(int pageSize, Consumer<List<KeyedSegment>> consumer) {
+        // Resumes after the last sequence seen rather than a slot, which a compaction may renumber between pages.
+        long after = -1;
+        while (true) {
+            List<KeyedSegment> page = new ArrayList<>(pageSize);
+            lock.readLock().lock();
+            try {
+                int found = Arrays.binarySearch(sequences, 0, slotCount, after + 1);
+                int from = found >= 0 ? found : -found - 1;
+                while (from < slotCount && page.size() < pageSize) {
+                    if (!deleted.get(from) && segments[from] != null) {
+                        page.add(new KeyedSegment(ids[from], segments[from]));
+                    }
+                    after = sequences[from];
+                    from++;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (page.isEmpty()) {
+                return;
+            }
+            consumer.accept(page);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return addAll(List.of(embedding)).get(0);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        write(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return addAll(List.of(embedding), List.of(textSegment)).get(0);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> newIds = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+        write(newIds, embeddings, textSegments);
+        return newIds;
+    }
+
+    @Override
+    public void remove(String id) {
+        delete(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> segmentIds) {
+        delete(segmentIds);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delete(liveIds(slot -> segments[slot] != null && filter.test(segments[slot].metadata())));
+    }
+
+    @Override
+    public void removeAll() {
+        delete(liveIds(slot -> true));
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        float[] query = normalize(request.queryEmbedding().vector());
+        int k = request.maxResults();
+        Filter filter = request.filter();
+
+        lock.readLock().lock();
+        try {
+            List<Scored> hits;
+            Set<Integer> documentSlots = documentSlots(filter);
+            if (documentSlots != null) {
+                hits = exactSearch(query, k, documentSlots);
+            } else if (filter == null) {
+                hits = rescore(query, graph.search(scorer(query), k, Math.max(efSearch, k), slot -> !deleted.get(slot)));
+            } else {
+                IntPredicate accept = slot -> !deleted.get(slot) && segments[slot] != null
+                        && filter.test(segments[slot].metadata());
+                Set<Integer> tenantSlots = tenantSlots(filter);
+                if (tenantSlots != null && tenantSlots.size() <= slotCount * exactSearchShare) {
+                    hits = exactSearch(query, k, tenantSlots, accept);
+                } else {
+                    hits = rescore(query, graph.search(scorer(query), k, Math.max(efSearch, k), accept));
+                }
+            }
+
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(hits.size());
+            for (Scored hit : hits) {
+                double score = RelevanceScore.fromCosineSimilarity(hit.score());
+                if (score < request.minScore()) {
+                    break;
+                }
+                matches.add(new EmbeddingMatch<>(score, ids[hit.node()],
+                        Embedding.from(vectors.get(hit.node())), segments[hit.node()]));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Slots to scan exactly for a filter on {@code document_id}, or {@code null} for any other filter. */
+    private Set<Integer> documentSlots(Filter filter) {
+        if (filter instanceof IsEqualTo equalTo && DOCUMENT_ID.equals(equalTo.key())) {
+            return slotsByDocument.getOrDefault(String.valueOf(equalTo.comparisonValue()), Set.of());
+        }
+        if (filter instanceof IsIn in && DOCUMENT_ID.equals(in.key())) {
+            Set<Integer> slots = new LinkedHashSet<>();
+            in.comparisonValues().forEach(value -> slots.addAll(slotsByDocument.getOrDefault(String.valueOf(value), Set.of())));
+            return slots;
+        }
+        return null;
+    }
+
+    /** Slots of the tenant a filter requires, alone or in a conjunction, or {@code null} if it names none. */
+    private Set<Integer> tenantSlots(Filter filter) {
+        if (filter instanceof IsEqualTo equalTo && JudgmentFacets.TENANT.equals(equalTo.key())) {
+            return slotsByTenant.getOrDefault(String.valueOf(equalTo.comparisonValue()), Set.of());
+        }
+        if (filter instanceof And and) {
+            Set<Integer> slots = tenantSlots(and.left());
+            return slots != null ? slots : tenantSlots(and.right());
+        }
+        return null;
+    }
+
+    private List<Scored> exactSearch(float[] query, int k, Collection<Integer> slots) {
+        return exactSearch(query, k, slots, slot -> true);
+    }
+
+    private List<Scored> exactSearch(float[] query, int k, Collection<Integer> slots, IntPredicate accept) {
+        List<Scored> scored = new ArrayList<>(slots.size());
+        for (int slot : slots) {
+            if (accept.test(slot)) {
+                scored.add(new Scored(slot, vectors.dot(slot, query)));
+            }
+        }
+        scored.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return scored.subList(0, Math.min(k, scored.size()));
+    }
+
+    private NodeScorer scorer(float[] query) {
+        return quantized != null ? quantized.scorer(query) : slot -> vectors.dot(slot, query);
+    }
+
+    /** Replaces approximate scores from quantized codes with exact ones from the float vectors. */
+    private List<Scored> rescore(float[] query, List<Scored> hits) {
+        if (quantized == null) {
+            return hits;
+        }
+        List<Scored> rescored = new ArrayList<>(hits.size());
+        for (Scored hit : hits) {
+            rescored.add(new Scored(hit.node(), vectors.dot(hit.node(), query)));
+        }
+        rescored.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return rescored;
+    }
+
+    private List<String> liveIds(IntPredicate predicate) {
+        lock.readLock().lock();
+        try {
+            List<String> matching = new ArrayList<>();
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (!deleted.get(slot) && predicate.test(slot)) {
+                    matching.add(ids[slot]);
+                }
+            }
+            return matching;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(List<String> segmentIds, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (segmentIds.isEmpty()) {
+            return;
+        }
+        List<float[]> normalized = new ArrayList<>(embeddings.size());
+        List<byte[]> records = new ArrayList<>(segmentIds.size());
+        try {
+            for (int i = 0; i < segmentIds.size(); i++) {
+                float[] vector = normalize(embeddings.get(i).vector());
+                normalized.add(vector);
+                records.add(upsertRecord(segmentIds.get(i), vector, textSegments == null ? null : textSegments.get(i)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        writers.lock();
+        lock.writeLock().lock();
+        try {
+            appendToWal(records);
+            for (int i = 0; i < segmentIds.size(); i++) {
+                applyUpsert(segmentIds.get(i), normalized.get(i), textSegments == null ? null : textSegments.get(i));
+            }
+            afterWrite(segmentIds.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write vector store log", e);
+        } finally {
+            lock.writeLock().unlock();
+            writers.unlock();
+        }
+    }
+
+    private void afterWrite(int ops) {
+        opsSinceCheckpoint += ops;
+        if (opsSinceCheckpoint >= checkpointOps && checkpointPending.compareAndSet(false, true)) {
+            checkpointer.execute(() -> {
+                // Searches continue while the snapshot is written; writers wait until it is installed.
+                writers.lock();
+                try {
+                    if (needsCompaction()) {
+                        Compaction compaction = compact();
+                        lock.writeLock().lock();
+                        try {
+                            install(compaction);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    } else {
+                        checkpoint();
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to checkpoint local vector store", e);
+                } finally {
+                    writers.unlock();
+                    checkpointPending.set(false);
+                }
+            });
+        }
+    }
+
+    private void applyUpsert(String id, float[] vector, TextSegment segment) throws IOException {
+        applyDelete(id);
+        int slot = slotCount;
+        if (slot == ids.length) {
+            ids = Arrays.copyOf(ids, slot * 2);
+            segments = Arrays.copyOf(segments, slot * 2);
+            sequences = Arrays.copyOf(sequences, slot * 2);
+        }
+        vectors.set(slot, vector);
+        if (quantized != null) {
+            quantized.set(slot, vector);
+        }
+        ids[slot] = id;
+        segments[slot] = segment;
+        sequences[slot] = nextSequence++;
+        slotCount++;
+        graph.insert(slot, vector);
+        slotsById.put(id, slot);
+        index(slot);
+    }
+
+    private void applyDelete(String id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        deleted.set(slot);
+        unindex(slotsByDocument, metadataValue(segments[slot], DOCUMENT_ID), slot);
+        unindex(slotsByTenant, metadataValue(segments[slot], JudgmentFacets.TENANT), slot);
+    }
+
+    private void applySetMetadata(String documentId, Map<String, Object> entries) {
+        for (int slot : slotsByDocument.getOrDefault(documentId, Set.of())) {
+            unindex(slotsByTenant, metadataValue(segments[slot], JudgmentFacets.TENANT), slot);
+            Map<String, Object> merged = new HashMap<>(segments[slot].metadata().toMap());
+            merged.putAll(entries);
+            segments[slot] = TextSegment.from(segments[slot].text(), Metadata.from(merged));
+            String tenant = metadataValue(segments[slot], JudgmentFacets.TENANT);
+            if (tenant != null) {
+                slotsByTenant.computeIfAbsent(tenant, key -> new LinkedHashSet<>()).add(slot);
+            }
+        }
+    }
+
+    /** Adds a live slot to the per-document and per-tenant slot sets. */
+    private void index(int slot) {
+        String documentId = metadataValue(segments[slot], DOCUMENT_ID);
+        if (documentId != null) {
+            slotsByDocument.computeIfAbsent(documentId, key -> new LinkedHashSet<>()).add(slot);
+        }
+        String tenant = metadataValue(segments[slot], JudgmentFacets.TENANT);
+        if (tenant != null) {
+            slotsByTenant.computeIfAbsent(tenant, key -> new LinkedHashSet<>()).add(slot);
+        }
+    }
+
+    private static void unindex(Map<String, Set<Integer>> slotsByKey, String key, int slot) {
+        if (key == null) {
+            return;
+        }
+        Set<Integer> slots = slotsByKey.get(key);
+        if (slots != null) {
+            slots.remove(slot);
+            if (slots.isEmpty()) {
+                slotsByKey.remove(key);
+            }
+        }
+    }
+
+    private static String metadataValue(TextSegment segment, String key) {
+        if (segment == null) {
+            return null;
+        }
+        Object value = segment.metadata().toMap().get(key);
+        return value == null ? null : value.toString();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    // --- write-ahead log ---
+
+    private byte[] upsertRecord(String id, float[] vector, TextSegment segment) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(dimension * Float.BYTES + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_UPSERT);
+        writeString(out, id);
+        for (float value : vector) {
+            out.writeFloat(value);
+        }
+        writeSegment(out, segment);
+        return bytes.toByteArray();
+    }
+
+    private void appendToWal(List<byte[]> records) throws IOException {
+        int total = records.stream().mapToInt(record -> record.length + 2 * Integer.BYTES).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+        wal.force(false);
+    }
+
+    /** Opens the log, replaying it if it belongs to the loaded snapshot; returns the number of replayed records. */
+    private int openWal() throws IOException {
+        wal = FileChannel.open(directory.resolve("vectors.wal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_BYTES);
+        wal.read(header, 0);
+        header.flip();
+        if (header.remaining() < WAL_HEADER_BYTES || header.getInt() != WAL_MAGIC || header.getLong() != generation) {
+            // Empty, or a log the snapshot already contains (crash between snapshot and log rotation).
+            resetWal();
+            return 0;
+        }
+
+        long position = WAL_HEADER_BYTES;
+        long size = wal.size();
+        int replayed = 0;
+        ByteBuffer prefix = ByteBuffer.allocate(2 * Integer.BYTES);
+        CRC32 crc = new CRC32();
+        while (position + prefix.capacity() <= size) {
+            prefix.clear();
+            wal.read(prefix, position);
+            prefix.flip();
+            int length = prefix.getInt();
+            int checksum = prefix.getInt();
+            if (length <= 0 || position + prefix.capacity() + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            wal.read(record, position + prefix.capacity());
+            crc.reset();
+            crc.update(record.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            replay(record.array());
+            position += prefix.capacity() + length;
+            replayed++;
+        }
+        if (position < size) {
+            log.warn("Discarding {} bytes of incomplete vector store log", size - position);
+            wal.truncate(position);
+        }
+        wal.position(position);
+        opsSinceCheckpoint = replayed;
+        return replayed;
+    }
+
+    private void replay(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte op = in.readByte();
+        if (op == OP_UPSERT) {
+            String id = readString(in);
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = in.readFloat();
+            }
+            applyUpsert(id, vector, readSegment(in));
+        } else if (op == OP_DELETE) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applyDelete(readString(in));
+            }
+        } else if (op == OP_SET_METADATA) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applySetMetadata(readString(in), readMetadata(in));
+            }
+        }
+    }
+
+    private void resetWal() throws IOException {
+        wal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_BYTES).putInt(WAL_MAGIC).putLong(generation);
+        header.flip();
+        wal.write(header, 0);
+        wal.position(WAL_HEADER_BYTES);
+        wal.force(true);
+    }
+
+    // --- snapshots ---
+
+    /** Writes a snapshot and starts a new log generation. Callers hold a lock that excludes writers. */
+    void checkpoint() throws IOException {
+        long startTime = System.currentTimeMillis();
+        vectors.force();
+        Path temp = writeSnapshot(vectorFile, ids, segments, slotCount, deleted, graph);
+        Files.move(temp, directory.resolve("index.snapshot"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        generation++;
+        resetWal();
+        opsSinceCheckpoint = 0;
+        log.info("Local vector store checkpointed {} segments in {} ms",
+                slotsById.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private boolean needsCompaction() {
+        int tombstones = slotCount - slotsById.size();
+        return compactDeletedShare > 0 && tombstones > 0 && tombstones >= slotCount * compactDeletedShare;
+    }
+
+    /**
+     * Copies the live slots, in order, to a new vector file and graph, and
+     * writes the snapshot that describes them. Callers keep writers out until
+     * the copy is installed; searches may run meanwhile.
+     */
+    private Compaction compact() throws IOException {
+        String file = "vectors-" + (generation + 1) + ".f32";
+        Files.deleteIfExists(directory.resolve(file));
+        MappedVectors newVectors = new MappedVectors(directory.resolve(file), dimension);
+        HnswGraph newGraph = new HnswGraph(newVectors, m, efConstruction);
+        QuantizedVectors newQuantized = quantization.enabled() ? new QuantizedVectors(quantization, dimension) : null;
+        int live = slotsById.size();
+        String[] newIds = new String[Math.max(1024, live)];
+        TextSegment[] newSegments = new TextSegment[newIds.length];
+        long[] newSequences = new long[newIds.length];
+        int next = 0;
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (deleted.get(slot)) {
+                    continue;
+                }
+                float[] vector = vectors.get(slot);
+                newVectors.set(next, vector);
+                if (newQuantized != null) {
+                    newQuantized.set(next, vector);
+                }
+                newIds[next] = ids[slot];
+                newSegments[next] = segments[slot];
+                newSequences[next] = sequences[slot];
+                newGraph.insert(next, vector);
+                next++;
+            }
+            newVectors.force();
+            Path snapshot = writeSnapshot(file, newIds, newSegments, next, new BitSet(), newGraph);
+            return new Compaction(file, newVectors, newGraph, newQuantized, newIds, newSegments, newSequences, next,
+                    snapshot);
+        } catch (IOException | RuntimeException e) {
+            newVectors.close();
+            Files.deleteIfExists(directory.resolve(file));
+            throw e;
+        }
+    }
+
+    /**
+     * Switches to a compacted copy and starts a new log generation. Callers
+     * hold the write lock, and have kept writers out since the copy was made.
+     */
+    private void install(Compaction compaction) throws IOException {
+        Files.move(compaction.snapshot(), directory.resolve("index.snapshot"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        int tombstones = slotCount - compaction.slotCount();
+        MappedVectors oldVectors = vectors;
+        String oldFile = vectorFile;
+
+        vectorFile = compaction.vectorFile();
+        vectors = compaction.vectors();
+        graph = compaction.graph();
+        quantized = compaction.quantized();
+        ids = compaction.ids();
+        segments = compaction.segments();
+        sequences = compaction.sequences();
+        slotCount = compaction.slotCount();
+        deleted.clear();
+        slotsById.clear();
+        slotsByDocument.clear();
+        slotsByTenant.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            slotsById.put(ids[slot], slot);
+            index(slot);
+        }
+
+        generation++;
+        resetWal();
+        opsSinceCheckpoint = 0;
+        oldVectors.close();
+        Files.deleteIfExists(directory.resolve(oldFile));
+        log.info("Local vector store compacted to {} segments, dropping {} deleted slots", slotCount, tombstones);
+    }
+
+    /** Writes a snapshot of the given slots to a temporary file, forced to disk, and returns it. */
+    private Path writeSnapshot(String file, String[] slotIds, TextSegment[] slotSegments, int slots,
+                               BitSet deletedSlots, HnswGraph slotGraph) throws IOException {
+        Path temp = Files.createTempFile(directory, "index-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimension);
+            out.writeLong(generation + 1);
+            writeString(out, file);
+            out.writeInt(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                boolean live = !deletedSlots.get(slot);
+                out.writeBoolean(live);
+                if (live) {
+                    writeString(out, slotIds[slot]);
+                    writeSegment(out, slotSegments[slot]);
+                }
+            }
+            slotGraph.write(out);
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return temp;
+    }
+
+    private void readSnapshot(Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_WITH_FIXED_VECTOR_FILE) {
+                throw new IOException("Unsupported vector store snapshot " + snapshot);
+            }
+            int storedDimension = in.readInt();
+            if (storedDimension != dimension) {
+                throw new IllegalStateException("Vector store at " + directory + " holds " + storedDimension
+                        + "-dimensional vectors, but vector.local.dimension is " + dimension);
+            }
+            generation = in.readLong();
+            vectorFile = version == VERSION ? readString(in) : DEFAULT_VECTOR_FILE;
+            vectors = new MappedVectors(directory.resolve(vectorFile), dimension);
+            graph = new HnswGraph(vectors, m, efConstruction);
+            slotCount = in.readInt();
+            ids = new String[Math.max(1024, slotCount)];
+            segments = new TextSegment[ids.length];
+            sequences = new long[ids.length];
+            for (int slot = 0; slot < slotCount; slot++) {
+                sequences[slot] = slot;
+                if (in.readBoolean()) {
+                    ids[slot] = readString(in);
+                    segments[slot] = readSegment(in);
+                    slotsById.put(ids[slot], slot);
+                    index(slot);
+                } else {
+                    deleted.set(slot);
+                }
+            }
+            graph.read(in);
+        }
+        nextSequence = slotCount;
+        vectors.ensureMapped(slotCount);
+    }
+
+    /** Deletes vector files left by a compaction that crashed before or after switching files. */
+    private void deleteUnusedVectorFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "vectors*.f32")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(vectorFile)) {
+                    log.info("Deleting unused vector file {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    // --- serialization ---
+
+    private static void writeSegment(DataOutputStream out, TextSegment segment) throws IOException {
+        out.writeBoolean(segment != null);
+        if (segment == null) {
+            return;
+        }
+        writeString(out, segment.text());
+        writeMetadata(out, segment.metadata().toMap());
+    }
+
+    private static void writeMetadata(DataOutputStream out, Map<String, Object> metadata) throws IOException {
+        out.writeInt(metadata.size());
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer number) {
+                out.writeByte('I');
+                out.writeInt(number);
+            } else if (value instanceof Long number) {
+                out.writeByte('L');
+                out.writeLong(number);
+            } else if (value instanceof Float number) {
+                out.writeByte('F');
+                out.writeFloat(number);
+            } else if (value instanceof Double number) {
+                out.writeByte('D');
+                out.writeDouble(number);
+            } else if (value instanceof UUID uuid) {
+                out.writeByte('U');
+                writeString(out, uuid.toString());
+            } else {
+                out.writeByte('S');
+                writeString(out, String.valueOf(value));
+            }
+        }
+    }
+
+    private static TextSegment readSegment(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String text = readString(in);
+        return TextSegment.from(text, Metadata.from(readMetadata(in)));
+    }
+
+    private static Map<String, Object> readMetadata(DataInputStream in) throws IOException {
+        int entries = in.readInt();
+        Map<String, Object> metadata = new HashMap<>(entries * 2);
+        for (int i = 0; i < entries; i++) {
+            String key = readString(in);
+            Object value = switch (in.readByte()) {
+                case 'I' -> in.readInt();
+                case 'L' -> in.readLong();
+                case 'F' -> in.readFloat();
+                case 'D' -> in.readDouble();
+                case 'U' -> UUID.fromString(readString(in));
+                default -> readString(in);
+            };
+            metadata.put(key, value);
+        }
+        return metadata;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+}
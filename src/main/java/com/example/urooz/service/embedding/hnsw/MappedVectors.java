@@ -0,0 +1,106 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-dimension float vectors in a memory-mapped file, addressed by slot.
+ * <p>
+ * The file is mapped in chunks of {@link #SLOTS_PER_CHUNK} vectors, so it
+ * grows without remapping what is already mapped and no single mapping hits
+ * the 2 GB limit. Vectors live in the page cache, not on the Java heap.
+ * Callers synchronize access.
+ */
+public final class MappedVectors implements Closeable {
+
+    static final int SLOTS_PER_CHUNK = 16384;
+
+    private final FileChannel channel;
+    private final int dimension;
+    private final long chunkBytes;
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+    private final List<FloatBuffer> chunks = new ArrayList<>();
+    private final ThreadLocal<float[]> scratch;
+
+    public MappedVectors(Path file, int dimension) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dimension = dimension;
+        this.chunkBytes = (long) SLOTS_PER_CHUNK * dimension * Float.BYTES;
+        this.scratch = ThreadLocal.withInitial(() -> new float[dimension]);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public void set(int slot, float[] vector) throws IOException {
+        chunk(slot).put(offset(slot), vector);
+    }
+
+    public float[] get(int slot) {
+        float[] vector = new float[dimension];
+        chunks.get(slot / SLOTS_PER_CHUNK).get(offset(slot), vector);
+        return vector;
+    }
+
+    float dot(int slot, float[] query) {
+        // One bulk copy is much cheaper than per-element reads through the buffer.
+        float[] vector = scratch.get();
+        chunks.get(slot / SLOTS_PER_CHUNK).get(offset(slot), vector);
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            sum0 += vector[i] * query[i];
+            sum1 += vector[i + 1] * query[i + 1];
+            sum2 += vector[i + 2] * query[i + 2];
+            sum3 += vector[i + 3] * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            sum0 += vector[i] * query[i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    /** Maps every chunk needed for {@code slots} vectors, e.g. after reopening the file. */
+    public void ensureMapped(int slots) throws IOException {
+        if (slots > 0) {
+            chunk(slots - 1);
+        }
+    }
+
+    /** Flushes written vectors to disk. */
+    public void force() {
+        mapped.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private FloatBuffer chunk(int slot) throws IOException {
+        int index = slot / SLOTS_PER_CHUNK;
+        while (chunks.size() <= index) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, chunks.size() * chunkBytes, chunkBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.add(buffer);
+            chunks.add(buffer.asFloatBuffer());
+        }
+        return chunks.get(index);
+    }
+
+    private int offset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * dimension;
+    }
+}
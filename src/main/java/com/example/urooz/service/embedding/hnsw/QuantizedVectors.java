@@ -0,0 +1,116 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import com.example.urooz.service.embedding.VectorQuantization;
+import com.example.urooz.service.embedding.hnsw.HnswGraph.NodeScorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Heap copy of the unit vectors in a {@link MappedVectors}, compressed to
+ * int8 or sign bits, that HNSW searches traverse instead of the float file.
+ * <p>
+ * INT8 stores each vector scaled by its largest absolute component, and
+ * scores the float query against the bytes (asymmetric distance), so only
+ * the stored side loses precision. BINARY stores one sign bit per dimension
+ * and scores by Hamming distance to the query's signs. Scores are
+ * approximate; callers rescore the best candidates from the float vectors.
+ * Codes are rebuilt from the vector file on startup. Callers synchronize
+ * writes against searches.
+ */
+final class QuantizedVectors {
+
+    private static final int SLOTS_PER_CHUNK = MappedVectors.SLOTS_PER_CHUNK;
+
+    private final VectorQuantization quantization;
+    private final int dimension;
+    private final int words;
+    private final List<byte[]> bytes = new ArrayList<>();
+    private final List<long[]> bits = new ArrayList<>();
+    private float[] scales = new float[1024];
+
+    QuantizedVectors(VectorQuantization quantization, int dimension) {
+        if (!quantization.enabled()) {
+            throw new IllegalArgumentException("No quantization to apply: " + quantization);
+        }
+        this.quantization = quantization;
+        this.dimension = dimension;
+        this.words = (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    void set(int slot, float[] vector) {
+        int chunk = slot / SLOTS_PER_CHUNK;
+        int index = slot % SLOTS_PER_CHUNK;
+        if (quantization == VectorQuantization.INT8) {
+            while (bytes.size() <= chunk) {
+                bytes.add(new byte[SLOTS_PER_CHUNK * dimension]);
+            }
+            float max = 0;
+            for (float value : vector) {
+                max = Math.max(max, Math.abs(value));
+            }
+            float scale = max == 0 ? 0 : max / 127;
+            byte[] codes = bytes.get(chunk);
+            int offset = index * dimension;
+            for (int i = 0; i < dimension; i++) {
+                codes[offset + i] = (byte) (scale == 0 ? 0 : Math.round(vector[i] / scale));
+            }
+            if (slot >= scales.length) {
+                scales = Arrays.copyOf(scales, Math.max(slot + 1, scales.length * 2));
+            }
+            scales[slot] = scale;
+        } else {
+            while (bits.size() <= chunk) {
+                bits.add(new long[SLOTS_PER_CHUNK * words]);
+            }
+            long[] signs = signs(vector);
+            System.arraycopy(signs, 0, bits.get(chunk), index * words, words);
+        }
+    }
+
+    /** Scores slots against a unit query; higher is more similar, roughly on the cosine scale. */
+    NodeScorer scorer(float[] query) {
+        if (quantization == VectorQuantization.INT8) {
+            return slot -> {
+                byte[] codes = bytes.get(slot / SLOTS_PER_CHUNK);
+                int offset = (slot % SLOTS_PER_CHUNK) * dimension;
+                float sum0 = 0;
+                float sum1 = 0;
+                float sum2 = 0;
+                float sum3 = 0;
+                int i = 0;
+                for (; i + 3 < dimension; i += 4) {
+                    sum0 += codes[offset + i] * query[i];
+                    sum1 += codes[offset + i + 1] * query[i + 1];
+                    sum2 += codes[offset + i + 2] * query[i + 2];
+                    sum3 += codes[offset + i + 3] * query[i + 3];
+                }
+                for (; i < dimension; i++) {
+                    sum0 += codes[offset + i] * query[i];
+                }
+                return (sum0 + sum1 + sum2 + sum3) * scales[slot];
+            };
+        }
+        long[] querySigns = signs(query);
+        return slot -> {
+            long[] codes = bits.get(slot / SLOTS_PER_CHUNK);
+            int offset = (slot % SLOTS_PER_CHUNK) * words;
+            int distance = 0;
+            for (int w = 0; w < words; w++) {
+                distance += Long.bitCount(codes[offset + w] ^ querySigns[w]);
+            }
+            return 1 - 2f * distance / dimension;
+        };
+    }
+
+    private long[] signs(float[] vector) {
+        long[] signs = new long[words];
+        for (int i = 0; i < dimension; i++) {
+            if (vector[i] > 0) {
+                signs[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+        return signs;
+    }
+}
@@ -0,0 +1,571 @@
+package com.example.urooz.service.lexical;
+
+import com.example.urooz.event.DocumentVectorsRemovedEvent;
+import com.example.urooz.event.SegmentsIndexedEvent;
+import com.example.urooz.event.VectorCollectionSwitchedEvent;
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.SegmentStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-process BM25 inverted index over stored segments, used next to dense
+ * retrieval so that exact legal tokens (section numbers, citations) are found.
+ * <p>
+ * Segments get dense internal document numbers in insertion order, so each
+ * posting list is an append-only byte array of varint-encoded document-number
+ * deltas and term frequencies. Removed segments are tombstoned and dropped
+ * when the index is compacted. The index follows ingestion through
+ * {@link SegmentsIndexedEvent} and {@link DocumentVectorsRemovedEvent}, is
+ * written to {@code search.lexical.path} in the background, and is read back
+ * on startup (or rebuilt from the vector store if the file is missing).
+ * <p>
+ * Each segment records the tenant in its {@code tenant_id} metadata, and
+ * searches only return segments of the requesting tenant. Segments without
+ * one were stored before tenants existed and belong to {@code tenants.default}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class Bm25Index {
+
+    /**
+     * A lexical match.
+     *
+     * @param id         The segment ID, identical to its point ID in the vector store.
+     * @param text       The segment text.
+     * @param documentId The judgment the segment belongs to, or {@code null} if unknown.
+     * @param pageNumber The page the segment starts on, or {@code null} if unknown.
+     * @param score      The BM25 score.
+     */
+    public record LexicalHit(String id, String text, String documentId, Integer pageNumber, double score) {
+    }
+
+    private static final int MAGIC = 0x424d3235;
+    private static final int VERSION = 3;
+    private static final int VERSION_WITHOUT_TENANTS = 2;
+    private static final int NO_PAGE = -1;
+    private static final double COMPACT_DELETED_RATIO = 0.2;
+
+    private final SegmentStore segmentStore;
+
+    @Value("${search.lexical.path:data/lexical-index.bin}")
+    private String path;
+
+    @Value("${search.lexical.flush-interval-seconds:30}")
+    private long flushIntervalSeconds;
+
+    @Value("${search.lexical.rebuild-if-missing:true}")
+    private boolean rebuildIfMissing;
+
+    @Value("${search.lexical.k1:1.2}")
+    private double k1;
+
+    @Value("${search.lexical.b:0.75}")
+    private double b;
+
+    @Value("${tenants.default:default}")
+    private String defaultTenant = "default";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private String[] ids = new String[1024];
+    private String[] texts = new String[1024];
+    private String[] documentIds = new String[1024];
+    private String[] tenants = new String[1024];
+    private int[] pages = new int[1024];
+    private int[] lengths = new int[1024];
+    private int docCount;
+    private BitSet deleted = new BitSet();
+    private int liveCount;
+    private long liveLength;
+    private Map<String, Integer> docsById = new HashMap<>();
+    private Map<String, PostingList> postings = new HashMap<>();
+
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void start() {
+        Path file = Path.of(path);
+        if (Files.exists(file)) {
+            long startTime = System.currentTimeMillis();
+            try {
+                load(file);
+                log.info("Lexical index loaded: {} segments, {} terms in {} ms",
+                        liveCount, postings.size(), System.currentTimeMillis() - startTime);
+            } catch (IOException e) {
+                log.error("Failed to load lexical index from {}; {}", file,
+                        rebuildIfMissing ? "rebuilding it" : "starting empty", e);
+                clear();
+                if (rebuildIfMissing) {
+                    startRebuild();
+                }
+            }
+        } else if (rebuildIfMissing) {
+            startRebuild();
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lexical-index-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void startRebuild() {
+        Thread rebuild = new Thread(this::rebuildFromStore, "lexical-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    @EventListener
+    public void onSegmentsIndexed(SegmentsIndexedEvent event) {
+        addAll(event.segments());
+    }
+
+    @EventListener
+    public void onDocumentVectorsRemoved(DocumentVectorsRemovedEvent event) {
+        removeAll(event.segmentIds());
+    }
+
+    /**
+     * Rebuilds the index from the new collection when a rebuild split
+     * documents into different segments; otherwise every indexed ID is still
+     * valid and nothing changes.
+     */
+    @EventListener
+    public void onVectorCollectionSwitched(VectorCollectionSwitchedEvent event) {
+        if (!event.segmentsChanged()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        startRebuild();
+    }
+
+    /**
+     * Adds segments, replacing any indexed segment with the same ID.
+     *
+     * @param segments The segments to index.
+     */
+    public void addAll(Collection<KeyedSegment> segments) {
+        lock.writeLock().lock();
+        try {
+            for (KeyedSegment segment : segments) {
+                Map<String, Object> metadata = segment.segment().metadata().toMap();
+                Object documentId = metadata.get("document_id");
+                Object tenant = metadata.get("tenant_id");
+                add(segment.id(), segment.segment().text(), documentId != null ? documentId.toString() : null,
+                        tenant != null ? tenant.toString() : defaultTenant,
+                        metadata.get("page_number") instanceof Number page ? page.intValue() : NO_PAGE);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes segments by ID. Unknown IDs are ignored.
+     *
+     * @param segmentIds The segment IDs to remove.
+     */
+    public void removeAll(Collection<String> segmentIds) {
+        lock.writeLock().lock();
+        try {
+            segmentIds.forEach(this::remove);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every segment containing a query term with BM25, across all
+     * tenants.
+     *
+     * @param query The raw query text.
+     * @param limit Maximum number of hits.
+     * @return Hits ordered by descending score.
+     */
+    public List<LexicalHit> search(String query, int limit) {
+        return search(query, limit, null, documentId -> true);
+    }
+
+    /**
+     * Top BM25 matches among a tenant's segments of the accepted judgments,
+     * so a narrow filter still yields up to {@code limit} hits.
+     *
+     * @param query          The search query.
+     * @param limit          Maximum number of hits.
+     * @param tenant         The tenant whose segments may be returned, or {@code null} for all.
+     * @param acceptDocument Which {@code document_id}s may be returned.
+     * @return Hits, best first.
+     */
+    public List<LexicalHit> search(String query, int limit, String tenant, Predicate<String> acceptDocument) {
+        List<String> terms = new ArrayList<>(LegalTokenizer.distinctTerms(query));
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0 || terms.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) liveLength / liveCount;
+            float[] scores = new float[docCount];
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list != null) {
+                    list.score(scores, idf(list.docFreq), averageLength);
+                }
+            }
+            return topHits(scores, limit, tenant, acceptDocument);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Writes the index to disk if it changed since the last write. */
+    public void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        if (deleted.cardinality() > docCount * COMPACT_DELETED_RATIO) {
+            compact();
+        }
+        Path file = Path.of(path);
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "lexical-index-", ".tmp");
+        lock.readLock().lock();
+        try {
+            dirty = false;
+            write(temp);
+        } catch (IOException e) {
+            dirty = true;
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to write lexical index to {}", path, e);
+        }
+    }
+
+    private void rebuildFromStore() {
+        log.info("Rebuilding lexical index from the vector store...");
+        try {
+            // Segments of judgments still being ingested are added once they are published.
+            segmentStore.scroll(1000, segments -> addAll(segments.stream()
+                    .filter(segment -> !JudgmentFacets.isPending(segment.segment()))
+                    .toList()));
+            log.info("Lexical index rebuilt with {} segments", size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild lexical index from the vector store: {}", e.getMessage());
+        }
+    }
+
+    /** Document frequencies include tombstoned segments until compaction, so N does too. */
+    private double idf(int docFreq) {
+        return Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private List<LexicalHit> topHits(float[] scores, int limit, String tenant, Predicate<String> acceptDocument) {
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1,
+                (x, y) -> scores[x] != scores[y] ? Float.compare(scores[x], scores[y]) : Integer.compare(y, x));
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] > 0 && !deleted.get(doc) && (tenant == null || tenant.equals(tenants[doc]))
+                    && acceptDocument.test(documentIds[doc])) {
+                top.add(doc);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+        LexicalHit[] hits = new LexicalHit[top.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            int doc = top.poll();
+            hits[i] = new LexicalHit(ids[doc], texts[doc], documentIds[doc],
+                    pages[doc] != NO_PAGE ? pages[doc] : null, scores[doc]);
+        }
+        return Arrays.asList(hits);
+    }
+
+    private void add(String id, String text, String documentId, String tenant, int page) {
+        remove(id);
+        List<String> tokens = LegalTokenizer.tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+
+        int doc = docCount++;
+        ensureCapacity(docCount);
+        ids[doc] = id;
+        texts[doc] = text;
+        documentIds[doc] = documentId;
+        // Interned, since a handful of tenant IDs are shared by every segment.
+        tenants[doc] = tenant.intern();
+        pages[doc] = page;
+        lengths[doc] = tokens.size();
+        frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new PostingList()).add(doc, frequency));
+
+        docsById.put(id, doc);
+        liveCount++;
+        liveLength += tokens.size();
+    }
+
+    private void remove(String id) {
+        Integer doc = docsById.remove(id);
+        if (doc != null) {
+            deleted.set(doc);
+            texts[doc] = null;
+            documentIds[doc] = null;
+            tenants[doc] = null;
+            liveCount--;
+            liveLength -= lengths[doc];
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int newLength = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newLength);
+            texts = Arrays.copyOf(texts, newLength);
+            documentIds = Arrays.copyOf(documentIds, newLength);
+            tenants = Arrays.copyOf(tenants, newLength);
+            pages = Arrays.copyOf(pages, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+        }
+    }
+
+    /** Rebuilds the index without tombstoned segments. */
+    private void compact() {
+        lock.writeLock().lock();
+        try {
+            String[] oldIds = ids;
+            String[] oldTexts = texts;
+            String[] oldDocumentIds = documentIds;
+            String[] oldTenants = tenants;
+            int[] oldPages = pages;
+            int oldCount = docCount;
+            BitSet oldDeleted = deleted;
+            clear();
+            for (int doc = 0; doc < oldCount; doc++) {
+                if (!oldDeleted.get(doc)) {
+                    add(oldIds[doc], oldTexts[doc], oldDocumentIds[doc], oldTenants[doc], oldPages[doc]);
+                }
+            }
+            log.info("Lexical index compacted to {} segments", liveCount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        ids = new String[1024];
+        texts = new String[1024];
+        documentIds = new String[1024];
+        tenants = new String[1024];
+        pages = new int[1024];
+        lengths = new int[1024];
+        docCount = 0;
+        deleted = new BitSet();
+        liveCount = 0;
+        liveLength = 0;
+        docsById = new HashMap<>();
+        postings = new HashMap<>();
+    }
+
+    private void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            for (int doc = 0; doc < docCount; doc++) {
+                boolean live = !deleted.get(doc);
+                out.writeBoolean(live);
+                if (live) {
+                    writeString(out, ids[doc]);
+                    writeString(out, texts[doc]);
+                    writeString(out, documentIds[doc] != null ? documentIds[doc] : "");
+                    writeString(out, tenants[doc]);
+                    out.writeInt(pages[doc]);
+                    out.writeInt(lengths[doc]);
+                }
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+                writeString(out, entry.getKey());
+                PostingList list = entry.getValue();
+                out.writeInt(list.docFreq);
+                out.writeInt(list.lastDoc);
+                out.writeInt(list.size);
+                out.write(list.data, 0, list.size);
+            }
+        }
+    }
+
+    private void load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unsupported lexical index format");
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != VERSION_WITHOUT_TENANTS) {
+                throw new IOException("Unsupported lexical index format");
+            }
+            clear();
+            int count = in.readInt();
+            ensureCapacity(count);
+            for (int doc = 0; doc < count; doc++) {
+                if (in.readBoolean()) {
+                    ids[doc] = readString(in);
+                    texts[doc] = readString(in);
+                    String documentId = readString(in);
+                    documentIds[doc] = documentId.isEmpty() ? null : documentId;
+                    tenants[doc] = version == VERSION ? readString(in).intern() : defaultTenant;
+                    pages[doc] = in.readInt();
+                    lengths[doc] = in.readInt();
+                    docsById.put(ids[doc], doc);
+                    liveCount++;
+                    liveLength += lengths[doc];
+                } else {
+                    deleted.set(doc);
+                }
+            }
+            docCount = count;
+            int terms = in.readInt();
+            postings = new HashMap<>(terms * 2);
+            for (int i = 0; i < terms; i++) {
+                String term = readString(in);
+                PostingList list = new PostingList();
+                list.docFreq = in.readInt();
+                list.lastDoc = in.readInt();
+                list.size = in.readInt();
+                list.data = in.readNBytes(list.size);
+                postings.put(term, list);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Append-only postings for one term: varint document-number deltas, each
+     * followed by a varint term frequency.
+     */
+    private final class PostingList {
+
+        private byte[] data = new byte[8];
+        private int size;
+        private int docFreq;
+        private int lastDoc = -1;
+
+        void add(int doc, int frequency) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(frequency);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        void score(float[] scores, double idf, double averageLength) {
+            int position = 0;
+            int doc = -1;
+            while (position < size) {
+                int delta = 0;
+                int shift = 0;
+                byte current;
+                do {
+                    current = data[position++];
+                    delta |= (current & 0x7f) << shift;
+                    shift += 7;
+                } while (current < 0);
+                int frequency = 0;
+                shift = 0;
+                do {
+                    current = data[position++];
+                    frequency |= (current & 0x7f) << shift;
+                    shift += 7;
+                } while (current < 0);
+
+                doc += delta;
+                double norm = k1 * (1 - b + b * lengths[doc] / averageLength);
+                scores[doc] += (float) (idf * frequency * (k1 + 1) / (frequency + norm));
+            }
+        }
+
+        private void writeVarInt(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            }
+            while ((value & ~0x7f) != 0) {
+                data[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.urooz.service.lexical;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tokenizer for lexical retrieval over judgments.
+ * <p>
+ * Splits on anything that is not a letter or digit and lowercases, keeping
+ * numbers and short alphanumeric tokens so that section numbers
+ * ({@code 302}, {@code 498a}) and citation parts ({@code scc}, {@code air},
+ * {@code 1973}) stay searchable. Only common English function words are
+ * dropped.
+ */
+public final class LegalTokenizer {
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "been", "but", "by", "for", "from", "had", "has", "have",
+            "he", "her", "his", "if", "in", "into", "is", "it", "its", "of", "on", "or", "she", "so", "such",
+            "that", "the", "their", "them", "then", "there", "these", "they", "this", "those", "to", "was",
+            "were", "what", "when", "which", "who", "will", "with", "would");
+
+    private LegalTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                String token = current.toString();
+                if (!STOPWORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                current.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    public static Set<String> distinctTerms(String text) {
+        return new LinkedHashSet<>(tokenize(text));
+    }
+}
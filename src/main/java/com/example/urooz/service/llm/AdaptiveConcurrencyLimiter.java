@@ -0,0 +1,163 @@
+package com.example.urooz.service.llm;
+
+import com.example.urooz.service.llm.LlmGateway.Lane;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit shared by all LLM calls, with priority lanes.
+ * <p>
+ * The limit grows by {@code 1 / limit} for every successful call made while
+ * at least half of it was in use (roughly one extra slot per round trip) and
+ * is multiplied by {@code backoffRatio} when the provider signals overload.
+ * Only calls admitted before the last decrease can trigger another, so one
+ * burst of 429s shrinks the limit once rather than once per failed call.
+ * <p>
+ * Interactive callers are admitted whenever a slot is free. Background
+ * callers wait while any interactive caller is waiting and may only use
+ * {@code backgroundShare} of the limit, so interactive traffic always finds
+ * headroom.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    enum Outcome {
+        SUCCESS,
+        OVERLOAD,
+        IGNORE
+    }
+
+    final class Permit {
+
+        private final long epoch;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /** Returns the slot; only the first call has an effect. */
+        void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(this, outcome);
+            }
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double backgroundShare;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Condition> available = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> waiting = new EnumMap<>(Lane.class);
+
+    private double limit;
+    private int inUse;
+    private long epoch;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                               double backgroundShare) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.backgroundShare = backgroundShare;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        for (Lane lane : Lane.values()) {
+            available.put(lane, lock.newCondition());
+            waiting.put(lane, 0);
+        }
+    }
+
+    /**
+     * Waits for a slot in the given lane.
+     *
+     * @return The permit, or {@code null} if none became free within the timeout.
+     */
+    Permit acquire(Lane lane, long timeoutMs) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            waiting.merge(lane, 1, Integer::sum);
+            try {
+                while (!admissible(lane)) {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining = available.get(lane).awaitNanos(remaining);
+                }
+            } finally {
+                waiting.merge(lane, -1, Integer::sum);
+                signalWaiters();
+            }
+            inUse++;
+            return new Permit(epoch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting(Lane lane) {
+        lock.lock();
+        try {
+            return waiting.get(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, Outcome outcome) {
+        lock.lock();
+        try {
+            inUse--;
+            if (outcome == Outcome.SUCCESS && inUse + 1 >= limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            } else if (outcome == Outcome.OVERLOAD && permit.epoch == epoch) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                epoch++;
+            }
+            signalWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean admissible(Lane lane) {
+        int capacity = (int) limit;
+        if (lane == Lane.INTERACTIVE) {
+            return inUse < capacity;
+        }
+        return waiting.get(Lane.INTERACTIVE) == 0 && inUse < Math.max(1, (int) (capacity * backgroundShare));
+    }
+
+    private void signalWaiters() {
+        if (waiting.get(Lane.INTERACTIVE) > 0) {
+            available.get(Lane.INTERACTIVE).signal();
+        } else if (waiting.get(Lane.BACKGROUND) > 0) {
+            available.get(Lane.BACKGROUND).signal();
+        }
+    }
+}
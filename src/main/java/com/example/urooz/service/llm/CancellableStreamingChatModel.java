@@ -0,0 +1,58 @@
+package com.example.urooz.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+
+import java.util.List;
+
+/**
+ * A {@link StreamingChatLanguageModel} whose generations can be aborted, so
+ * that client disconnects and timeouts stop the upstream call instead of
+ * letting it run to completion.
+ */
+public interface CancellableStreamingChatModel extends StreamingChatLanguageModel {
+
+    /**
+     * Starts a streaming generation.
+     *
+     * @param messages The conversation to send.
+     * @param handler  Receives partial tokens, then completion or an error.
+     * @return A handle that cancels the generation.
+     */
+    StreamingHandle stream(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler);
+
+    /**
+     * Starts a streaming generation whose output is JSON matching the given
+     * schema. Models without constrained decoding ignore the schema and rely
+     * on the prompt alone.
+     *
+     * @param messages       The conversation to send.
+     * @param responseSchema The response schema, in the OpenAPI subset Gemini accepts.
+     * @param handler        Receives partial tokens, then completion or an error.
+     * @return A handle that cancels the generation.
+     */
+    default StreamingHandle stream(List<ChatMessage> messages, JsonNode responseSchema,
+                                   StreamingResponseHandler<AiMessage> handler) {
+        return stream(messages, handler);
+    }
+
+    /**
+     * Starts a streaming generation for a single user prompt.
+     *
+     * @param prompt  The prompt text.
+     * @param handler Receives partial tokens, then completion or an error.
+     * @return A handle that cancels the generation.
+     */
+    default StreamingHandle stream(String prompt, StreamingResponseHandler<AiMessage> handler) {
+        return stream(List.of(UserMessage.from(prompt)), handler);
+    }
+
+    @Override
+    default void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        stream(messages, handler);
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.urooz.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming client for the Gemini {@code streamGenerateContent} API using
+ * Server-Sent Events. LangChain4j 0.35 has no streaming Gemini model, so this
+ * talks to the REST endpoint directly with the JDK HTTP client and forwards
+ * each text part to the handler as soon as its event arrives. A response
+ * schema, when given, is sent as {@code generationConfig.responseSchema} so
+ * the model's output is constrained to JSON of that shape.
+ */
+@Slf4j
+public class GeminiStreamingChatModel implements CancellableStreamingChatModel {
+
+    public static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final String apiKey;
+    private final String modelName;
+    private final double temperature;
+    private final Duration timeout;
+
+    public GeminiStreamingChatModel(HttpClient httpClient, ObjectMapper objectMapper, String baseUrl,
+                                    String apiKey, String modelName, double temperature, Duration timeout) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.modelName = modelName;
+        this.temperature = temperature;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public StreamingHandle stream(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        return stream(messages, null, handler);
+    }
+
+    @Override
+    public StreamingHandle stream(List<ChatMessage> messages, JsonNode responseSchema,
+                                  StreamingResponseHandler<AiMessage> handler) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/models/" + modelName + ":streamGenerateContent?alt=sse&key="
+                        + URLEncoder.encode(apiKey, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(toRequestBody(messages, responseSchema)))
+                .build();
+
+        EventSubscriber subscriber = new EventSubscriber(handler);
+        CompletableFuture<HttpResponse<Void>> call = httpClient.sendAsync(request, responseInfo -> {
+            if (responseInfo.statusCode() == 200) {
+                return HttpResponse.BodySubscribers.fromLineSubscriber(subscriber);
+            }
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                    body -> {
+                        subscriber.fail(new IllegalStateException(
+                                "Gemini streaming call failed with HTTP " + responseInfo.statusCode() + ": " + body));
+                        return null;
+                    });
+        });
+        call.whenComplete((response, error) -> {
+            if (error != null) {
+                subscriber.fail(error);
+            }
+        });
+
+        return () -> {
+            subscriber.cancel();
+            call.cancel(true);
+        };
+    }
+
+    private String toRequestBody(List<ChatMessage> messages, JsonNode responseSchema) {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode contents = body.putArray("contents");
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                body.putObject("systemInstruction").putArray("parts").addObject().put("text", systemMessage.text());
+            } else if (message instanceof UserMessage userMessage) {
+                ObjectNode content = contents.addObject().put("role", "user");
+                content.putArray("parts").addObject().put("text", userMessage.singleText());
+            } else if (message instanceof AiMessage aiMessage) {
+                ObjectNode content = contents.addObject().put("role", "model");
+                content.putArray("parts").addObject().put("text", aiMessage.text());
+            }
+        }
+        ObjectNode generationConfig = body.putObject("generationConfig").put("temperature", temperature);
+        if (responseSchema != null) {
+            generationConfig.put("responseMimeType", "application/json");
+            generationConfig.set("responseSchema", responseSchema);
+        }
+        return body.toString();
+    }
+
+    /**
+     * Parses {@code data:} lines of the SSE body and forwards text parts.
+     * Guarantees exactly one terminal callback, and none after cancellation.
+     */
+    private final class EventSubscriber implements Flow.Subscriber<String> {
+
+        private final StreamingResponseHandler<AiMessage> handler;
+        private final StringBuilder answer = new StringBuilder();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+        private TokenUsage tokenUsage;
+        private FinishReason finishReason;
+
+        private EventSubscriber(StreamingResponseHandler<AiMessage> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (finished.get()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (finished.get() || !line.startsWith("data:")) {
+                return;
+            }
+            try {
+                JsonNode event = objectMapper.readTree(line.substring(5).trim());
+                JsonNode candidate = event.path("candidates").path(0);
+                for (JsonNode part : candidate.path("content").path("parts")) {
+                    String text = part.path("text").asText("");
+                    if (!text.isEmpty()) {
+                        answer.append(text);
+                        handler.onNext(text);
+                    }
+                }
+                if (candidate.hasNonNull("finishReason")) {
+                    finishReason = toFinishReason(candidate.get("finishReason").asText());
+                }
+                JsonNode usage = event.path("usageMetadata");
+                if (!usage.isMissingNode()) {
+                    tokenUsage = new TokenUsage(usage.path("promptTokenCount").asInt(),
+                            usage.path("candidatesTokenCount").asInt(), usage.path("totalTokenCount").asInt());
+                }
+            } catch (Exception e) {
+                cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (finished.compareAndSet(false, true)) {
+                handler.onComplete(Response.from(AiMessage.from(answer.toString()), tokenUsage, finishReason));
+            }
+        }
+
+        void fail(Throwable error) {
+            if (finished.compareAndSet(false, true)) {
+                handler.onError(error);
+            }
+        }
+
+        void cancel() {
+            finished.set(true);
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private static FinishReason toFinishReason(String reason) {
+        return switch (reason) {
+            case "STOP" -> FinishReason.STOP;
+            case "MAX_TOKENS" -> FinishReason.LENGTH;
+            case "SAFETY", "RECITATION", "BLOCKLIST", "PROHIBITED_CONTENT", "SPII" -> FinishReason.CONTENT_FILTER;
+            default -> FinishReason.OTHER;
+        };
+    }
+}
@@ -0,0 +1,437 @@
+package com.example.urooz.service.llm;
+
+import com.example.urooz.exception.DependencyUnavailableException;
+import com.example.urooz.exception.LlmBusyException;
+import com.example.urooz.service.client.DependencyGuard;
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.llm.AdaptiveConcurrencyLimiter.Outcome;
+import com.example.urooz.service.llm.AdaptiveConcurrencyLimiter.Permit;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Single entry point for Gemini calls.
+ * <p>
+ * All calls share an adaptive concurrency limit ({@link AdaptiveConcurrencyLimiter})
+ * in which interactive answers are admitted ahead of background extraction.
+ * Identical prompts that are already in flight wait for that call instead of
+ * starting their own. Rate-limited, overloaded and timed-out calls are retried
+ * with full-jitter exponential backoff while the {@link RetryBudget} allows;
+ * a call that stays rate limited, or cannot be admitted in time, fails with
+ * {@link LlmBusyException}. So does every call while Gemini's circuit
+ * breaker ({@code clients.gemini.*}) is open after repeated timeouts and
+ * server errors, so callers stop waiting on an unavailable provider.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LlmGateway {
+
+    /** Admission priority of a call. */
+    public enum Lane {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    enum Failure {
+        RATE_LIMITED,
+        UNAVAILABLE,
+        FATAL
+    }
+
+    private static final Pattern RATE_LIMITED = Pattern.compile("(code|HTTP) 429\\b|RESOURCE_EXHAUSTED");
+    private static final Pattern UNAVAILABLE = Pattern.compile("(code|HTTP) 50[0234]\\b|\\bUNAVAILABLE\\b|DEADLINE_EXCEEDED");
+
+    private final ChatLanguageModel chatLanguageModel;
+    private final CancellableStreamingChatModel streamingChatModel;
+    private final StageMetrics stageMetrics;
+    private final MeterRegistry meterRegistry;
+    private final DependencyGuards dependencyGuards;
+
+    @Value("${llm.gateway.initial-limit:4}")
+    private int initialLimit;
+
+    @Value("${llm.gateway.min-limit:1}")
+    private int minLimit;
+
+    @Value("${llm.gateway.max-limit:32}")
+    private int maxLimit;
+
+    @Value("${llm.gateway.backoff-ratio:0.5}")
+    private double backoffRatio;
+
+    @Value("${llm.gateway.background-share:0.75}")
+    private double backgroundShare;
+
+    @Value("${llm.gateway.interactive.queue-timeout-ms:10000}")
+    private long interactiveQueueTimeoutMs;
+
+    @Value("${llm.gateway.background.queue-timeout-ms:120000}")
+    private long backgroundQueueTimeoutMs;
+
+    @Value("${llm.gateway.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${llm.gateway.retry.base-delay-ms:250}")
+    private long baseDelayMs;
+
+    @Value("${llm.gateway.retry.max-delay-ms:8000}")
+    private long maxDelayMs;
+
+    @Value("${llm.gateway.retry.ratio:0.1}")
+    private double retryRatio;
+
+    @Value("${llm.gateway.retry.budget-max:20}")
+    private double retryBudgetMax;
+
+    @Value("${llm.gateway.json.timeout-ms:180000}")
+    private long jsonTimeoutMs;
+
+    private final Map<String, CompletableFuture<Response<AiMessage>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Lane, Counter> rejected = new EnumMap<>(Lane.class);
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private RetryBudget retryBudget;
+    private DependencyGuard gemini;
+    private Counter retries;
+    private Counter coalesced;
+
+    @PostConstruct
+    void start() {
+        limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, backgroundShare);
+        retryBudget = new RetryBudget(retryRatio, retryBudgetMax);
+        gemini = dependencyGuards.guard(DependencyGuards.GEMINI);
+
+        Gauge.builder("llm.gateway.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit for LLM calls")
+                .register(meterRegistry);
+        Gauge.builder("llm.gateway.in-use", limiter, AdaptiveConcurrencyLimiter::inUse)
+                .description("LLM calls holding a concurrency slot")
+                .register(meterRegistry);
+        Gauge.builder("llm.gateway.retry-budget", retryBudget, RetryBudget::balance)
+                .description("Retries currently allowed by the retry budget")
+                .register(meterRegistry);
+        for (Lane lane : Lane.values()) {
+            String tag = lane.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("llm.gateway.waiting", limiter, l -> l.waiting(lane))
+                    .description("LLM calls waiting for a concurrency slot")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            rejected.put(lane, Counter.builder("llm.gateway.rejected")
+                    .description("LLM calls not admitted within the queue timeout")
+                    .tag("lane", tag)
+                    .register(meterRegistry));
+        }
+        retries = Counter.builder("llm.gateway.retries").description("Retried LLM calls").register(meterRegistry);
+        coalesced = Counter.builder("llm.gateway.coalesced")
+                .description("LLM calls served by an identical call already in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Generates a response to a single user prompt.
+     *
+     * @param operation The kind of call, used to tag metrics, e.g. {@code answer}.
+     * @param lane      The admission priority.
+     * @param prompt    The prompt text.
+     * @return The model's response.
+     * @throws LlmBusyException if the call is not admitted in time or stays rate limited.
+     */
+    public Response<AiMessage> generate(String operation, Lane lane, String prompt) {
+        CompletableFuture<Response<AiMessage>> flight = new CompletableFuture<>();
+        CompletableFuture<Response<AiMessage>> leader = inFlight.putIfAbsent(prompt, flight);
+        if (leader != null) {
+            coalesced.increment();
+            log.debug("Joining identical in-flight {} call", operation);
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            Response<AiMessage> response = callWithRetry(operation, lane,
+                    () -> chatLanguageModel.generate(UserMessage.from(prompt)), () -> true);
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(prompt, flight);
+        }
+    }
+
+    /**
+     * Streams a response to a single user prompt. The call holds its
+     * concurrency slot until it completes, fails or is cancelled; streams
+     * are neither coalesced nor retried, since tokens may already have been
+     * delivered.
+     *
+     * @param operation The kind of call, used to tag metrics.
+     * @param lane      The admission priority.
+     * @param prompt    The prompt text.
+     * @param handler   Receives partial tokens, then completion or an error.
+     * @return A handle that cancels the generation.
+     * @throws LlmBusyException if the call is not admitted in time.
+     */
+    public StreamingHandle stream(String operation, Lane lane, String prompt,
+                                  StreamingResponseHandler<AiMessage> handler) {
+        Permit permit = admit(lane);
+        DependencyGuard.Permit call;
+        try {
+            call = acquireGemini();
+        } catch (RuntimeException e) {
+            permit.release(Outcome.IGNORE);
+            throw e;
+        }
+        AtomicInteger calls = stageMetrics.llmCallsInFlight(operation);
+        calls.incrementAndGet();
+        AtomicBoolean finished = new AtomicBoolean();
+        Consumer<Outcome> finish = outcome -> {
+            if (finished.compareAndSet(false, true)) {
+                permit.release(outcome);
+                calls.decrementAndGet();
+            }
+        };
+
+        StreamingHandle upstream;
+        try {
+            upstream = streamingChatModel.stream(prompt, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    call.success();
+                    finish.accept(Outcome.SUCCESS);
+                    stageMetrics.recordTokens(operation, response.tokenUsage());
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Failure kind = classify(error);
+                    report(call, kind);
+                    finish.accept(kind == Failure.FATAL ? Outcome.IGNORE : Outcome.OVERLOAD);
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            report(call, classify(e));
+            finish.accept(Outcome.IGNORE);
+            throw e;
+        }
+        return () -> {
+            call.abandon();
+            finish.accept(Outcome.IGNORE);
+            upstream.cancel();
+        };
+    }
+
+    /**
+     * Generates a JSON response constrained by a schema, passing each token to
+     * {@code tokens} as it arrives so the caller can parse the response
+     * incrementally. The call blocks until the response is complete. It is
+     * retried like {@link #generate} until the first token is delivered; a
+     * later failure is rethrown so the caller can keep what it has received.
+     *
+     * @param operation      The kind of call, used to tag metrics.
+     * @param lane           The admission priority.
+     * @param prompt         The prompt text.
+     * @param responseSchema The schema the response must match.
+     * @param tokens         Receives the response text as it arrives.
+     * @return The complete response.
+     * @throws LlmBusyException if the call is not admitted in time or stays rate limited.
+     */
+    public Response<AiMessage> generateJson(String operation, Lane lane, String prompt, JsonNode responseSchema,
+                                            Consumer<String> tokens) {
+        AtomicBoolean delivered = new AtomicBoolean();
+        return callWithRetry(operation, lane, () -> awaitStream(prompt, responseSchema, token -> {
+            delivered.set(true);
+            tokens.accept(token);
+        }), () -> !delivered.get());
+    }
+
+    private Response<AiMessage> awaitStream(String prompt, JsonNode responseSchema, Consumer<String> tokens) {
+        CompletableFuture<Response<AiMessage>> result = new CompletableFuture<>();
+        StreamingHandle handle = streamingChatModel.stream(List.of(UserMessage.from(prompt)), responseSchema,
+                new StreamingResponseHandler<>() {
+                    @Override
+                    public void onNext(String token) {
+                        tokens.accept(token);
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                        result.complete(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        result.completeExceptionally(error);
+                    }
+                });
+        try {
+            return result.get(jsonTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            handle.cancel();
+            throw new IllegalStateException("LLM response did not complete within " + jsonTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            handle.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM response", e);
+        }
+    }
+
+    private Response<AiMessage> callWithRetry(String operation, Lane lane, Supplier<Response<AiMessage>> call,
+                                              BooleanSupplier retryable) {
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            // Calls queue in the limiter's lanes, not the guard's bulkhead, so the lanes keep their priority.
+            Permit permit = admit(lane);
+            DependencyGuard.Permit upstream;
+            try {
+                upstream = acquireGemini();
+            } catch (RuntimeException e) {
+                permit.release(Outcome.IGNORE);
+                throw e;
+            }
+            AtomicInteger calls = stageMetrics.llmCallsInFlight(operation);
+            Outcome outcome = Outcome.IGNORE;
+            RuntimeException failure;
+            Failure kind;
+            calls.incrementAndGet();
+            try {
+                Response<AiMessage> response = call.get();
+                upstream.success();
+                outcome = Outcome.SUCCESS;
+                stageMetrics.recordTokens(operation, response.tokenUsage());
+                return response;
+            } catch (RuntimeException e) {
+                failure = e;
+                kind = classify(e);
+                report(upstream, kind);
+                outcome = kind == Failure.FATAL ? Outcome.IGNORE : Outcome.OVERLOAD;
+            } finally {
+                calls.decrementAndGet();
+                permit.release(outcome);
+            }
+
+            if (kind == Failure.FATAL || !retryable.getAsBoolean()) {
+                throw failure;
+            }
+            if (attempt >= maxAttempts || !retryBudget.tryWithdraw()) {
+                if (kind == Failure.RATE_LIMITED) {
+                    throw new LlmBusyException("Gemini is rate limiting " + operation + " calls, gave up after "
+                            + attempt + " attempts", failure);
+                }
+                throw failure;
+            }
+
+            long delay = ThreadLocalRandom.current().nextLong(Math.min(maxDelayMs, baseDelayMs << (attempt - 1)) + 1);
+            retries.increment();
+            log.warn("LLM {} call failed ({}), retrying in {} ms: {}", operation, kind, delay, failure.getMessage());
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    /** Passes Gemini's circuit breaker, reporting an open breaker like any other busy provider. */
+    private DependencyGuard.Permit acquireGemini() {
+        try {
+            return gemini.acquire();
+        } catch (DependencyUnavailableException e) {
+            throw new LlmBusyException(e.getMessage(), e);
+        }
+    }
+
+    /** Only timeouts, unreachable servers and 5xx responses count against Gemini's circuit breaker. */
+    private static void report(DependencyGuard.Permit call, Failure kind) {
+        if (kind == Failure.UNAVAILABLE) {
+            call.failure();
+        } else {
+            call.success();
+        }
+    }
+
+    private Permit admit(Lane lane) {
+        long timeoutMs = lane == Lane.INTERACTIVE ? interactiveQueueTimeoutMs : backgroundQueueTimeoutMs;
+        try {
+            Permit permit = limiter.acquire(lane, timeoutMs);
+            if (permit == null) {
+                rejected.get(lane).increment();
+                throw new LlmBusyException("No LLM capacity for " + lane.name().toLowerCase(Locale.ROOT)
+                        + " calls within " + timeoutMs + " ms. Retry later.");
+            }
+            return permit;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmBusyException("Interrupted while waiting for LLM capacity", e);
+        }
+    }
+
+    /**
+     * Classifies a failed call by the status the Gemini clients put in their
+     * exception messages; I/O errors and timeouts count as unavailable.
+     */
+    static Failure classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IOException || t instanceof TimeoutException) {
+                return Failure.UNAVAILABLE;
+            }
+            String message = t.getMessage();
+            if (message == null) {
+                continue;
+            }
+            if (RATE_LIMITED.matcher(message).find()) {
+                return Failure.RATE_LIMITED;
+            }
+            if (UNAVAILABLE.matcher(message).find()) {
+                return Failure.UNAVAILABLE;
+            }
+        }
+        return Failure.FATAL;
+    }
+}
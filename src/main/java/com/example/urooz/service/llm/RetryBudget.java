@@ -0,0 +1,36 @@
+package com.example.urooz.service.llm;
+
+/**
+ * Token bucket that caps retries at a fraction of the call rate. Every call
+ * deposits {@code ratio} tokens, up to {@code max}; every retry withdraws
+ * one. When the provider is failing most calls the bucket drains and calls
+ * fail fast instead of multiplying the load.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double max;
+    private double balance;
+
+    RetryBudget(double ratio, double max) {
+        this.ratio = ratio;
+        this.max = max;
+        this.balance = max;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(max, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+
+    synchronized double balance() {
+        return balance;
+    }
+}
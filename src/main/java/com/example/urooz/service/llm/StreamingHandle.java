@@ -0,0 +1,14 @@
+package com.example.urooz.service.llm;
+
+/**
+ * Handle to an in-flight streaming generation.
+ */
+@FunctionalInterface
+public interface StreamingHandle {
+
+    /**
+     * Aborts the upstream generation. No further callbacks are delivered to
+     * the handler after this returns. Calling it more than once is harmless.
+     */
+    void cancel();
+}
@@ -0,0 +1,117 @@
+package com.example.urooz.service.llm;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental, tolerant reader for a JSON object streamed by an LLM.
+ * <p>
+ * Chunks are fed to Jackson's non-blocking parser as they arrive, so the
+ * response is parsed once while it is generated instead of being buffered
+ * and parsed at the end. Anything before the first {@code '{'} (prose, a
+ * markdown fence) and after the object closes is ignored. Each top-level
+ * field is kept as soon as its value is complete, so a truncated or
+ * malformed response still yields every field that finished before the
+ * problem. Not thread-safe; feed chunks from one thread at a time.
+ */
+@Slf4j
+public final class StreamingJsonObjectReader {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final ObjectNode fields;
+
+    private boolean started;
+    private boolean complete;
+    private boolean failed;
+    private int depth;
+    private String field;
+    private TokenBuffer value;
+
+    public StreamingJsonObjectReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.fields = objectMapper.createObjectNode();
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the next chunk of the response. Malformed input stops parsing
+     * but never throws; fields completed so far are kept.
+     */
+    public void feed(String chunk) {
+        if (complete || failed || chunk.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            chunk = chunk.substring(start);
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            failed = true;
+            log.debug("Stopped reading malformed JSON after {} fields: {}", fields.size(), e.getMessage());
+        }
+    }
+
+    /** The top-level fields whose values have been read completely. */
+    public ObjectNode fields() {
+        return fields;
+    }
+
+    /** Whether the whole object, including its closing brace, has been read. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (depth == 0) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object but found " + token);
+                }
+                depth = 1;
+            } else if (value == null) {
+                if (token == JsonToken.END_OBJECT) {
+                    complete = true;
+                    return;
+                }
+                field = parser.currentName();
+                value = new TokenBuffer(objectMapper, false);
+            } else {
+                value.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                if (depth == 1) {
+                    JsonNode node = objectMapper.readTree(value.asParser());
+                    fields.set(field, node);
+                    value = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.urooz.service.metrics;
+
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency and usage meters for the processing stages of the ingestion and
+ * search paths.
+ * <p>
+ * Every stage is timed under {@value #STAGE_TIMER}, tagged with the stage and
+ * the endpoint whose work it is, so percentiles can be read per stage and
+ * endpoint. Work done on the request thread picks the endpoint up from
+ * {@link #currentEndpoint()}, which is set per request by
+ * {@code EndpointTagInterceptor}; asynchronous pipelines pass theirs
+ * explicitly. LLM calls additionally record prompt and response token counts
+ * and an in-flight gauge per operation.
+ */
+@Component
+@RequiredArgsConstructor
+public class StageMetrics {
+
+    public static final String STAGE_TIMER = "judgment.stage";
+    public static final String LLM_TOKENS = "llm.tokens";
+
+    public static final String EXTRACT = "/extract";
+    public static final String BULK = "/bulk";
+    public static final String NO_ENDPOINT = "none";
+
+    public static final String PDF_PARSE = "pdf_parse";
+    public static final String LLM_EXTRACTION = "llm_extraction";
+    public static final String MONGO_SAVE = "mongo_save";
+    public static final String SPLITTING = "splitting";
+    public static final String EMBEDDING = "embedding";
+    public static final String QUERY_EMBEDDING = "query_embedding";
+    public static final String VECTOR_SEARCH = "vector_search";
+    public static final String LEXICAL_SEARCH = "lexical_search";
+    public static final String METADATA_JOIN = "metadata_join";
+    public static final String ANSWER_GENERATION = "answer_generation";
+
+    private static final ThreadLocal<String> CURRENT_ENDPOINT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public static String currentEndpoint() {
+        String endpoint = CURRENT_ENDPOINT.get();
+        return endpoint != null ? endpoint : NO_ENDPOINT;
+    }
+
+    public static void setCurrentEndpoint(String endpoint) {
+        CURRENT_ENDPOINT.set(endpoint);
+    }
+
+    public static void clearCurrentEndpoint() {
+        CURRENT_ENDPOINT.remove();
+    }
+
+    public Timer timer(String stage, String endpoint) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent in one processing stage")
+                .tags("stage", stage, "endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs and times one stage.
+     *
+     * @param stage    The stage name, e.g. {@link #PDF_PARSE}.
+     * @param endpoint The endpoint the work belongs to.
+     * @param call     The stage's work.
+     * @return The stage's result.
+     */
+    public <T, E extends Exception> T time(String stage, String endpoint, StageCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            timer(stage, endpoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Times a stage on the current request's endpoint. */
+    public <T, E extends Exception> T time(String stage, StageCall<T, E> call) throws E {
+        return time(stage, currentEndpoint(), call);
+    }
+
+    /** Records a stage that started at {@code startNanos} ({@link System#nanoTime()}) and just finished. */
+    public void recordSince(String stage, String endpoint, long startNanos) {
+        timer(stage, endpoint).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the token counts an LLM call reported, if any.
+     *
+     * @param operation The kind of call, e.g. {@code extraction} or {@code answer}.
+     * @param usage     The reported usage, possibly {@code null}.
+     */
+    public void recordTokens(String operation, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.inputTokenCount() != null) {
+            tokens(operation, "prompt").record(usage.inputTokenCount());
+        }
+        if (usage.outputTokenCount() != null) {
+            tokens(operation, "response").record(usage.outputTokenCount());
+        }
+    }
+
+    /**
+     * The number of LLM calls of one kind currently waiting for a response;
+     * callers increment it before the call and decrement it afterwards.
+     */
+    public AtomicInteger llmCallsInFlight(String operation) {
+        return inFlight.computeIfAbsent(operation, key ->
+                meterRegistry.gauge("llm.calls.in-flight", Tags.of("operation", key), new AtomicInteger()));
+    }
+
+    private DistributionSummary tokens(String operation, String type) {
+        return DistributionSummary.builder(LLM_TOKENS)
+                .description("Tokens per LLM call")
+                .baseUnit("tokens")
+                .tags("operation", operation, "type", type)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+}
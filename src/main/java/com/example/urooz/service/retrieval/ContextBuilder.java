@@ -0,0 +1,204 @@
+package com.example.urooz.service.retrieval;
+
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.RetrievedSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Assembles the context of an answer prompt within a token budget.
+ * <p>
+ * Segments of the same judgment that overlap (the splitter repeats up to 50
+ * characters between neighbours) or contain one another are merged into one
+ * passage. Passages whose SimHash lies within
+ * {@code answer.context.near-duplicate-bits} of a more relevant passage are
+ * dropped, wherever they come from. The remaining passages are taken in
+ * score order while they fit {@code answer.context.max-tokens}, with tokens
+ * estimated as {@code answer.context.chars-per-token} characters.
+ * <p>
+ * Each judgment with a passage in the budget becomes one block, numbered by
+ * its position in the retrieval result so that {@code [n]} in the answer
+ * matches the n-th source returned to the client; its passages appear in
+ * page order.
+ */
+@Component
+@Slf4j
+public class ContextBuilder {
+
+    private static final int MAX_OVERLAP_CHARS = 200;
+
+    @Value("${answer.context.max-tokens:3000}")
+    private int maxTokens;
+
+    @Value("${answer.context.chars-per-token:4}")
+    private int charsPerToken;
+
+    @Value("${answer.context.min-overlap-chars:20}")
+    private int minOverlapChars;
+
+    @Value("${answer.context.near-duplicate-bits:6}")
+    private int nearDuplicateBits;
+
+    private record Passage(int document, String text, Integer pageNumber, double score, int order) {
+
+        Passage withText(String newText) {
+            return new Passage(document, newText, pageNumber, score, order);
+        }
+    }
+
+    /**
+     * Builds one context block per judgment that fits the budget.
+     *
+     * @param documents Retrieved judgments, in the order they are returned to the client.
+     * @return Context blocks, empty if nothing was retrieved.
+     */
+    public List<String> build(List<RetrievedDocument> documents) {
+        List<Passage> passages = new ArrayList<>();
+        for (int document = 0; document < documents.size(); document++) {
+            passages.addAll(merge(document, documents.get(document).segments(), passages.size()));
+        }
+        passages.sort(Comparator.comparingDouble(Passage::score).reversed().thenComparingInt(Passage::order));
+
+        List<Passage> included = new ArrayList<>();
+        List<Long> fingerprints = new ArrayList<>();
+        boolean[] headed = new boolean[documents.size()];
+        int tokens = 0;
+        int dropped = 0;
+        for (Passage passage : passages) {
+            long fingerprint = SimHash.of(passage.text());
+            if (fingerprints.stream().anyMatch(kept -> SimHash.distance(kept, fingerprint) <= nearDuplicateBits)) {
+                dropped++;
+                continue;
+            }
+            int cost = tokens(passage.text()) + (headed[passage.document()] ? 0 : tokens(header(passage.document(),
+                    documents.get(passage.document()))));
+            if (tokens + cost > maxTokens) {
+                if (!included.isEmpty()) {
+                    continue;
+                }
+                // Never send an empty context: cut the best passage down to the budget instead.
+                int room = Math.max(0, maxTokens - (cost - tokens(passage.text()))) * charsPerToken;
+                passage = passage.withText(passage.text().substring(0, Math.min(room, passage.text().length())));
+                cost = maxTokens;
+            }
+            tokens += cost;
+            headed[passage.document()] = true;
+            included.add(passage);
+            fingerprints.add(fingerprint);
+        }
+        log.debug("Answer context: {} of {} passages, {} near-duplicates dropped, ~{} tokens",
+                included.size(), passages.size(), dropped, tokens);
+
+        List<String> blocks = new ArrayList<>();
+        for (int document = 0; document < documents.size(); document++) {
+            int index = document;
+            List<Passage> own = included.stream()
+                    .filter(passage -> passage.document() == index)
+                    .sorted(Comparator.comparing(Passage::pageNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+                            .thenComparingInt(Passage::order))
+                    .toList();
+            if (own.isEmpty()) {
+                continue;
+            }
+            StringBuilder block = new StringBuilder(header(document, documents.get(document)));
+            for (Passage passage : own) {
+                block.append('\n');
+                if (passage.pageNumber() != null) {
+                    block.append("(p. ").append(passage.pageNumber()).append(") ");
+                }
+                block.append(passage.text());
+            }
+            blocks.add(block.toString());
+        }
+        return blocks;
+    }
+
+    int tokens(String text) {
+        return (text.length() + charsPerToken - 1) / charsPerToken;
+    }
+
+    /**
+     * Merges segments of one judgment that overlap or contain one another.
+     *
+     * @param firstOrder Retrieval order of the first segment, used to break score ties.
+     */
+    private List<Passage> merge(int document, List<RetrievedSegment> segments, int firstOrder) {
+        List<Passage> passages = new ArrayList<>(segments.size());
+        for (RetrievedSegment segment : segments) {
+            passages.add(new Passage(document, segment.text().strip(), segment.pageNumber(), segment.score(),
+                    firstOrder + passages.size()));
+        }
+        while (mergeOnce(passages)) {
+            // Repeat until no pair overlaps; chains of three or more segments merge over several passes.
+        }
+        return passages;
+    }
+
+    private boolean mergeOnce(List<Passage> passages) {
+        for (int i = 0; i < passages.size(); i++) {
+            for (int j = 0; j < passages.size(); j++) {
+                Passage first = passages.get(i);
+                Passage second = passages.get(j);
+                String joined = i != j ? join(first.text(), second.text()) : null;
+                if (joined != null) {
+                    passages.set(i, new Passage(first.document(), joined, minPage(first, second),
+                            Math.max(first.score(), second.score()), Math.min(first.order(), second.order())));
+                    passages.remove(j);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Joins {@code first} and {@code second} if one contains the other or a
+     * suffix of {@code first} of at least {@code min-overlap-chars} is a
+     * prefix of {@code second}.
+     *
+     * @return The joined text, or {@code null} if they do not overlap.
+     */
+    String join(String first, String second) {
+        if (first.contains(second)) {
+            return first;
+        }
+        if (second.contains(first)) {
+            return second;
+        }
+        for (int overlap = Math.min(MAX_OVERLAP_CHARS, Math.min(first.length(), second.length()));
+             overlap >= minOverlapChars; overlap--) {
+            if (first.regionMatches(first.length() - overlap, second, 0, overlap)) {
+                return first + second.substring(overlap);
+            }
+        }
+        return null;
+    }
+
+    private static Integer minPage(Passage first, Passage second) {
+        if (first.pageNumber() == null) {
+            return second.pageNumber();
+        }
+        if (second.pageNumber() == null) {
+            return first.pageNumber();
+        }
+        return Math.min(first.pageNumber(), second.pageNumber());
+    }
+
+    private static String header(int document, RetrievedDocument source) {
+        StringBuilder header = new StringBuilder()
+                .append('[').append(document + 1).append("] ")
+                .append(source.title() != null ? source.title() : "Untitled judgment");
+        if (source.court() != null) {
+            header.append(" — ").append(source.court());
+        }
+        if (source.date() != null) {
+            header.append(", ").append(source.date());
+        }
+        return header.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.urooz.service.retrieval;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maximal marginal relevance selection of retrieved segments.
+ * <p>
+ * Each step picks the candidate maximizing
+ * {@code lambda * relevance - (1 - lambda) * maxSimilarityToSelected}, so
+ * near-identical passages (overlapping chunks of one page, the same
+ * paragraph quoted in several judgments) do not crowd out the rest of the
+ * context. At most {@code maxPerDocument} segments are taken from any one
+ * judgment. Similarity is the cosine of the embeddings, or the Jaccard
+ * overlap of the lexical terms when either candidate came from lexical
+ * retrieval only.
+ */
+public final class MmrSelector {
+
+    /**
+     * A segment competing for selection.
+     *
+     * @param documentId Judgment of the segment; {@code null} if unknown, which exempts it from the per-document cap.
+     * @param relevance  Relevance to the query, normalized so the best candidate scores 1.
+     * @param embedding  Segment embedding, or {@code null} if unknown.
+     * @param terms      Distinct lexical terms; only used when an embedding is missing.
+     */
+    public record Candidate(String documentId, double relevance, Embedding embedding, Set<String> terms) {
+    }
+
+    private MmrSelector() {
+    }
+
+    /**
+     * Selects up to {@code limit} candidates.
+     *
+     * @param candidates     Candidates, in any order.
+     * @param limit          Maximum number of candidates to select.
+     * @param maxPerDocument Maximum number of candidates from one judgment.
+     * @param lambda         Weight of relevance against novelty; 1 ranks by relevance alone.
+     * @return Indexes into {@code candidates}, in selection order.
+     */
+    public static List<Integer> select(List<Candidate> candidates, int limit, int maxPerDocument, double lambda) {
+        int count = candidates.size();
+        double[] redundancy = new double[count];
+        boolean[] taken = new boolean[count];
+        Map<String, Integer> perDocument = new HashMap<>();
+        List<Integer> selected = new ArrayList<>(Math.min(limit, count));
+
+        while (selected.size() < limit) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                Candidate candidate = candidates.get(i);
+                if (taken[i] || (candidate.documentId() != null
+                        && perDocument.getOrDefault(candidate.documentId(), 0) >= maxPerDocument)) {
+                    continue;
+                }
+                double score = lambda * candidate.relevance() - (1 - lambda) * redundancy[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            Candidate chosen = candidates.get(best);
+            taken[best] = true;
+            selected.add(best);
+            if (chosen.documentId() != null) {
+                perDocument.merge(chosen.documentId(), 1, Integer::sum);
+            }
+            if (lambda < 1) {
+                for (int i = 0; i < count; i++) {
+                    if (!taken[i]) {
+                        redundancy[i] = Math.max(redundancy[i], similarity(candidates.get(i), chosen));
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    static double similarity(Candidate a, Candidate b) {
+        if (a.embedding() != null && b.embedding() != null) {
+            return CosineSimilarity.between(a.embedding(), b.embedding());
+        }
+        Set<String> smaller = a.terms().size() <= b.terms().size() ? a.terms() : b.terms();
+        Set<String> larger = smaller == a.terms() ? b.terms() : a.terms();
+        if (smaller.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (String term : smaller) {
+            if (larger.contains(term)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.terms().size() + b.terms().size() - shared);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.urooz.service.retrieval;
+
+import com.example.urooz.service.lexical.LegalTokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 64-bit SimHash fingerprints of passages. Every occurrence of a term votes
+ * on each bit with the term's hash, so passages that differ in a few words
+ * end up a few bits apart, while unrelated passages of the same domain
+ * differ in a third or more of the bits.
+ */
+public final class SimHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    public static long of(String text) {
+        List<String> tokens = LegalTokenizer.tokenize(text);
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        int[] votes = new int[64];
+        for (String token : tokens) {
+            long hash = FNV_OFFSET;
+            for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+            }
+            for (int bit = 0; bit < 64; bit++) {
+                votes[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.urooz.service.tenant;
+
+import com.example.urooz.exception.AdminAccessDeniedException;
+import com.example.urooz.exception.InvalidTenantException;
+import com.example.urooz.exception.TenantQuotaExceededException;
+import com.example.urooz.exception.UnknownTenantException;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.service.VectorStoreService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the tenant a request acts for and enforces per-tenant limits.
+ * <p>
+ * Tenants share the judgments collection and the vector collection, which
+ * are partitioned by tenant: every judgment records its {@code tenantId} and
+ * every segment carries it as the {@code tenant_id} payload key, which
+ * searches, the lexical index, deduplication and the catalog always filter
+ * on. Requests name their tenant in the {@value #HEADER} header; requests
+ * without it act for {@code tenants.default}, which also owns everything
+ * stored before tenants existed ({@link #adoptUnassigned()}).
+ * <p>
+ * Only the default tenant and those listed in {@code tenants.allowed} are
+ * accepted, so meters and quotas exist for a fixed set of tenants. The
+ * header itself is not authenticated: deployments serving several firms
+ * must set it in an authenticating gateway and strip it from client
+ * requests.
+ * <p>
+ * A tenant may have at most {@code tenants.ingest.max-in-flight} documents
+ * in ingestion at once, across uploads and bulk loads, so one tenant's
+ * backfill cannot fill the ingestion queues and the embedding engine that
+ * every other tenant's uploads pass through. Search latency, documents in
+ * ingestion and quota rejections are recorded per tenant.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TenantService {
+
+    public static final String HEADER = "X-Tenant-Id";
+
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+    private static final int ADOPT_BATCH_SIZE = 500;
+
+    /** Per-tenant quota and meters, created on the tenant's first request. */
+    private record TenantState(Semaphore ingestion, Timer searches, Counter rejections) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final MongoTemplate mongoTemplate;
+    private final VectorStoreService vectorStoreService;
+
+    @Value("${tenants.default:default}")
+    private String defaultTenant = "default";
+
+    @Value("${tenants.allowed:}")
+    private List<String> allowedTenants = List.of();
+
+    @Value("${tenants.admin:}")
+    private List<String> adminTenants = List.of();
+
+    @Value("${tenants.ingest.max-in-flight:20}")
+    private int maxInFlight = 20;
+
+    private final Map<String, TenantState> tenants = new ConcurrentHashMap<>();
+
+    public String defaultTenant() {
+        return defaultTenant;
+    }
+
+    /**
+     * The tenant a request acts for.
+     *
+     * @param requested The {@value #HEADER} header, or {@code null}.
+     * @return The lower-cased tenant ID, or the default tenant if none was requested.
+     * @throws InvalidTenantException if the ID is not 1 to 64 letters, digits, {@code _} or {@code -}.
+     * @throws UnknownTenantException  if the tenant is not configured.
+     */
+    public String resolve(String requested) {
+        if (requested == null || requested.isBlank()) {
+            return defaultTenant;
+        }
+        String tenant = requested.trim().toLowerCase(Locale.ROOT);
+        if (!TENANT_ID.matcher(tenant).matches()) {
+            throw new InvalidTenantException("Tenant ID must be 1 to 64 letters, digits, '_' or '-': " + requested);
+        }
+        requireAllowed(tenant);
+        return tenant;
+    }
+
+    /**
+     * The tenant a request to an operator endpoint acts for, such as a
+     * vector store rebuild, which affects every tenant.
+     *
+     * @param requested The {@value #HEADER} header, or {@code null}.
+     * @return The tenant, if it is listed in {@code tenants.admin}.
+     * @throws AdminAccessDeniedException if it is not; with none listed, every tenant is refused.
+     */
+    public String resolveAdmin(String requested) {
+        String tenant = resolve(requested);
+        if (adminTenants.stream().noneMatch(tenant::equalsIgnoreCase)) {
+            throw new AdminAccessDeniedException("Tenant " + tenant + " may not call operator endpoints");
+        }
+        return tenant;
+    }
+
+    /**
+     * Reserves a place for one document in the tenant's ingestion quota
+     * without waiting. Release it with {@link #releaseIngestion}.
+     *
+     * @throws TenantQuotaExceededException if the tenant's quota is used up.
+     */
+    public void reserveIngestion(String tenant) {
+        TenantState state = state(tenant);
+        if (!state.ingestion().tryAcquire()) {
+            state.rejections().increment();
+            throw new TenantQuotaExceededException("Tenant " + tenant + " already has " + maxInFlight
+                    + " documents in ingestion. Retry later.");
+        }
+    }
+
+    /**
+     * Reserves a place for one document in the tenant's ingestion quota,
+     * waiting for one to be released. Used by bulk loads, which feed
+     * documents in as earlier ones finish.
+     */
+    public void awaitIngestion(String tenant) throws InterruptedException {
+        state(tenant).ingestion().acquire();
+    }
+
+    /** Releases places reserved with {@link #reserveIngestion} or {@link #awaitIngestion}. */
+    public void releaseIngestion(String tenant, int documents) {
+        if (documents > 0) {
+            state(tenant).ingestion().release(documents);
+        }
+    }
+
+    /** Runs a search and records its latency for the tenant. */
+    public <T> T timeSearch(String tenant, Supplier<T> search) {
+        return state(tenant).searches().record(search);
+    }
+
+    /**
+     * Assigns judgments and segments stored without a tenant to the default
+     * tenant, in batches. The segments are updated first, so a judgment
+     * whose segments could not be updated is picked up again next time.
+     *
+     * @return The number of judgments assigned.
+     */
+    public int adoptUnassigned() {
+        String collection = mongoTemplate.getCollectionName(JudgmentMetadata.class);
+        int adopted = 0;
+        while (true) {
+            Query query = Query.query(Criteria.where("tenantId").exists(false)).limit(ADOPT_BATCH_SIZE);
+            query.fields().include("_id");
+            List<String> ids = mongoTemplate.find(query, Document.class, collection).stream()
+                    .map(document -> String.valueOf(document.get("_id")))
+                    .toList();
+            if (ids.isEmpty()) {
+                return adopted;
+            }
+            vectorStoreService.assignTenant(ids, defaultTenant);
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                    Update.update("tenantId", defaultTenant), JudgmentMetadata.class);
+            adopted += ids.size();
+        }
+    }
+
+    private TenantState state(String tenant) {
+        TenantState state = tenants.get(tenant);
+        if (state != null) {
+            return state;
+        }
+        // Meters are only ever registered for configured tenants.
+        requireAllowed(tenant);
+        return tenants.computeIfAbsent(tenant, this::register);
+    }
+
+    private void requireAllowed(String tenant) {
+        if (!tenant.equals(defaultTenant) && allowedTenants.stream().noneMatch(tenant::equalsIgnoreCase)) {
+            throw new UnknownTenantException("Unknown tenant: " + tenant);
+        }
+    }
+
+    private TenantState register(String tenant) {
+        Semaphore ingestion = new Semaphore(maxInFlight > 0 ? maxInFlight : Integer.MAX_VALUE);
+        if (maxInFlight > 0) {
+            Gauge.builder("tenant.ingest.in-flight", ingestion, permits -> maxInFlight - permits.availablePermits())
+                    .description("Documents of a tenant being ingested")
+                    .tag("tenant", tenant)
+                    .register(meterRegistry);
+        }
+        Timer searches = Timer.builder("tenant.search.duration")
+                .description("Retrieval latency of a tenant's searches")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        Counter rejections = Counter.builder("tenant.ingest.rejected")
+                .description("Uploads refused because the tenant's ingestion quota was used up")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        log.debug("Tenant {} seen for the first time", tenant);
+        return new TenantState(ingestion, searches, rejections);
+    }
+}
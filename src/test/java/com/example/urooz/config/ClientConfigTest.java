@@ -0,0 +1,105 @@
+package com.example.urooz.config;
+
+import com.example.urooz.exception.DependencyUnavailableException;
+import com.example.urooz.service.client.DependencyGuard;
+import com.example.urooz.service.client.DependencyGuard.Settings;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the Qdrant REST client against a local fake Qdrant whose response
+ * latency is set per test.
+ */
+class ClientConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong latencyMs = new AtomicLong();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private DependencyGuard guard;
+    private RestTemplate restTemplate;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/collections", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                Thread.sleep(latencyMs.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"result\":{\"status\":\"green\"},\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/collections/legal_judgments";
+
+        guard = new DependencyGuard("qdrant", new Settings(4, 100, 4, 2, 0.5, 60_000, 0), registry,
+                Executors.defaultThreadFactory());
+        restTemplate = ClientConfig.pooledRestTemplate(4, 1000, 200, 60_000, guard);
+    }
+
+    @AfterEach
+    void stopServer() {
+        guard.close();
+        server.stop(0);
+    }
+
+    @Test
+    void reusesPooledConnections() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(restTemplate.getForObject(baseUrl, String.class)).contains("green");
+        }
+
+        assertThat(requests).hasValue(5);
+        assertThat(clientPorts).hasSize(1);
+        assertThat(registry.get("client.calls").tag("outcome", "success").timer().count()).isEqualTo(5);
+    }
+
+    @Test
+    void stalledServerTimesOutThenCircuitOpens() {
+        latencyMs.set(1_000);
+
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> restTemplate.getForObject(baseUrl, String.class))
+                    .isInstanceOf(ResourceAccessException.class);
+            assertThat(System.nanoTime() - start).isLessThan(800_000_000L);
+        }
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> restTemplate.getForObject(baseUrl, String.class))
+                .isInstanceOf(DependencyUnavailableException.class);
+        assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+        assertThat(requests).hasValue(2);
+        assertThat(registry.get("client.calls").tag("outcome", "failure").timer().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.urooz.controller;
+
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.RetrievedSegment;
+import com.example.urooz.model.SearchFacets;
+import com.example.urooz.model.SearchFilter;
+import com.example.urooz.model.SearchResult;
+import com.example.urooz.service.AnswerGeneratorService;
+import com.example.urooz.service.QueryCacheService;
+import com.example.urooz.service.SearchService;
+import com.example.urooz.service.llm.FakeStreamingChatModel;
+import com.example.urooz.service.llm.StreamingHandle;
+import com.example.urooz.service.llm.TestLlmGateway;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.retrieval.ContextBuilder;
+import com.example.urooz.service.tenant.TenantService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class StreamingSearchTest {
+
+    @Test
+    void sendsSourcesBeforeAnswerTokens() throws Exception {
+        FakeStreamingChatModel streamingModel = new FakeStreamingChatModel(List.of("Bail ", "granted."), 5);
+        SearchService searchService = mock(SearchService.class);
+        when(searchService.retrieve(anyString(), anyString(), any(SearchFilter.class), anyBoolean())).thenReturn(new SearchResult(
+                List.of(new RetrievedDocument("doc-1", "State v. Kumar", "High Court", "2020", 1.0,
+                        List.of(new RetrievedSegment("s1", "The accused was released.", 4, 1.0)))),
+                new SearchFacets(Map.of("High Court", 1L), Map.of(2020, 1L))));
+
+        TenantService tenantService = new TenantService(new SimpleMeterRegistry(), null, null);
+        ReflectionTestUtils.setField(tenantService, "allowedTenants", List.of("acme-law"));
+        JudgmentController controller = new JudgmentController(null, null, searchService,
+                answerGenerator(streamingModel), null, null, tenantService);
+        ReflectionTestUtils.setField(controller, "streamTimeoutMs", 5000L);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/judgment/search/stream").param("query", "bail?")
+                        .param("court", "High Court").param("from", "2019-01-01")
+                        .header(TenantService.HEADER, "Acme-Law"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamingModel.awaitFinished();
+        String body = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString();
+
+        assertThat(body.indexOf("event:sources")).isGreaterThanOrEqualTo(0);
+        assertThat(body.indexOf("event:sources")).isLessThan(body.indexOf("event:facets"));
+        assertThat(body.indexOf("event:facets")).isLessThan(body.indexOf("event:token"));
+        assertThat(body).contains("\"title\":\"State v. Kumar\"", "\"pageNumber\":4");
+        assertThat(body).contains("\"text\":\"Bail \"", "\"text\":\"granted.\"", "event:done");
+        assertThat(body).contains("\"courts\":{\"High Court\":1}", "\"years\":{\"2020\":1}");
+        verify(searchService).retrieve("bail?", "acme-law",
+                new SearchFilter(List.of("High Court"), LocalDate.of(2019, 1, 1).toEpochDay(), null), true);
+    }
+
+    @Test
+    void cancellingStopsUpstreamGeneration() throws Exception {
+        FakeStreamingChatModel streamingModel = new FakeStreamingChatModel(List.of("a", "b", "c", "d"), 50);
+        CountDownLatch firstToken = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        List<RetrievedDocument> context = List.of(new RetrievedDocument(null, null, null, null, 1.0,
+                List.of(new RetrievedSegment("s1", "ctx", null, 1.0))));
+
+        StreamingHandle handle = answerGenerator(streamingModel).streamAnswer("q", context, false,
+                new StreamingResponseHandler<>() {
+                    @Override
+                    public void onNext(String token) {
+                        received.add(token);
+                        firstToken.countDown();
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                    }
+                });
+
+        assertThat(firstToken.await(5, TimeUnit.SECONDS)).isTrue();
+        handle.cancel();
+        streamingModel.awaitFinished();
+
+        assertThat(streamingModel.isCancelled()).isTrue();
+        assertThat(received).hasSizeLessThan(4);
+    }
+
+    @Test
+    void cancelsUpstreamWhenStreamClosesBeforeHandleIsReturned() throws Exception {
+        SearchService searchService = mock(SearchService.class);
+        when(searchService.retrieve(anyString(), anyString(), any(SearchFilter.class), anyBoolean()))
+                .thenReturn(new SearchResult(List.of(), new SearchFacets(Map.of(), Map.of())));
+        AnswerGeneratorService answerGenerator = mock(AnswerGeneratorService.class);
+        StreamingHandle handle = mock(StreamingHandle.class);
+        when(answerGenerator.streamAnswer(anyString(), anyList(), anyBoolean(), any())).thenAnswer(invocation -> {
+            StreamingResponseHandler<AiMessage> handler = invocation.getArgument(3);
+            // A token that cannot be sent, as when the client has gone, arrives before the handle is returned.
+            handler.onError(new IllegalStateException("Upstream refused"));
+            handler.onNext("late");
+            return handle;
+        });
+
+        JudgmentController controller = new JudgmentController(null, null, searchService, answerGenerator,
+                null, null, new TenantService(new SimpleMeterRegistry(), null, null));
+        ReflectionTestUtils.setField(controller, "streamTimeoutMs", 5000L);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/judgment/search/stream").param("query", "bail?"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result));
+
+        verify(handle).cancel();
+    }
+
+    private static AnswerGeneratorService answerGenerator(FakeStreamingChatModel streamingModel) {
+        QueryCacheService cache = new QueryCacheService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        ContextBuilder contextBuilder = new ContextBuilder();
+        ReflectionTestUtils.setField(contextBuilder, "maxTokens", 3000);
+        ReflectionTestUtils.setField(contextBuilder, "charsPerToken", 4);
+        ReflectionTestUtils.setField(contextBuilder, "minOverlapChars", 20);
+        ReflectionTestUtils.setField(contextBuilder, "nearDuplicateBits", 6);
+        return new AnswerGeneratorService(TestLlmGateway.create(mock(ChatLanguageModel.class), streamingModel), cache,
+                new StageMetrics(new SimpleMeterRegistry()), contextBuilder);
+    }
+}
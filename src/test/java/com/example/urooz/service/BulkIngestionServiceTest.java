@@ -0,0 +1,303 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.exception.FileProcessingException;
+import com.example.urooz.model.BulkIngestionReport;
+import com.example.urooz.model.BulkIngestionReport.FileResult;
+import com.example.urooz.model.BulkIngestionReport.FileStatus;
+import com.example.urooz.model.BulkSource;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.dedupe.DeduplicationService;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.SegmentStore;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs bulk loads over PDFs on disk with a fake PDF parser, LLM and vector
+ * store.
+ */
+class BulkIngestionServiceTest {
+
+    private static final String TENANT = "default";
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PdfExtractionService pdfExtractionService = mock(PdfExtractionService.class);
+    private final LlmExtractionService llmExtractionService = mock(LlmExtractionService.class);
+    private final JudgmentRepository judgmentRepository = mock(JudgmentRepository.class);
+    private final EmbeddingEngine embeddingEngine = mock(EmbeddingEngine.class);
+    private final SegmentStore segmentStore = mock(SegmentStore.class);
+
+    private TenantService tenantService;
+    private BulkIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        DeduplicationService deduplicationService = new DeduplicationService(judgmentRepository);
+        ReflectionTestUtils.setField(deduplicationService, "enabled", true);
+        ReflectionTestUtils.setField(deduplicationService, "minPageChars", 100);
+        ReflectionTestUtils.setField(deduplicationService, "nearDuplicateMinOverlap", 0.8);
+        tenantService = new TenantService(registry, null, null);
+        ReflectionTestUtils.setField(tenantService, "maxInFlight", 10);
+
+        service = new BulkIngestionService(pdfExtractionService, llmExtractionService, judgmentRepository,
+                mock(JudgmentTextService.class),
+                new VectorStoreService(embeddingEngine, segmentStore, mock(ApplicationEventPublisher.class)),
+                deduplicationService, tenantService, new StageMetrics(registry),
+                new BlockingIoThreads(new MockEnvironment()));
+        ReflectionTestUtils.setField(service, "parseThreads", 1);
+        ReflectionTestUtils.setField(service, "extractConcurrency", 1);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "maxInFlight", 200);
+        ReflectionTestUtils.setField(service, "maxBatchWaitMs", 5000L);
+        ReflectionTestUtils.setField(service, "maxZipEntries", 10);
+        ReflectionTestUtils.setField(service, "maxZipEntryBytes", 1024L);
+        ReflectionTestUtils.setField(service, "maxZipTotalBytes", 2048L);
+        service.startExecutors();
+
+        when(pdfExtractionService.extractText(any(Path.class), anyString()))
+                .thenAnswer(invocation -> text(invocation.getArgument(1)));
+        when(llmExtractionService.extractMetadata(anyString())).thenAnswer(invocation -> {
+            JudgmentMetadata metadata = new JudgmentMetadata();
+            metadata.setTitle("State v. Sharma");
+            return metadata;
+        });
+        when(judgmentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(embeddingEngine.ingest(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopExecutors();
+    }
+
+    @Test
+    void persistsAndEmbedsInBatchesThenReleasesQuota() throws IOException {
+        List<BulkSource> sources = sources("a.pdf", "b.pdf", "c.pdf");
+
+        BulkIngestionReport report = service.ingest(sources, TENANT);
+
+        assertThat(report.getTotalFiles()).isEqualTo(3);
+        assertThat(report.getSucceeded()).isEqualTo(3);
+        assertThat(report.getFailed()).isZero();
+        assertThat(report.getFiles()).extracting(FileResult::getStatus).containsOnly(FileStatus.INDEXED);
+        assertThat(report.getFiles()).extracting(FileResult::getDocumentId).doesNotContainNull().doesNotHaveDuplicates();
+        verify(judgmentRepository).saveAll(argThat(batch -> batch instanceof List<?> list && list.size() == 2));
+        verify(judgmentRepository).saveAll(argThat(batch -> batch instanceof List<?> list && list.size() == 1));
+        verify(embeddingEngine, times(2)).ingest(anyList());
+        assertThat(sources).allSatisfy(source -> assertThat(source.path()).doesNotExist());
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void flushesPartialBatchWhileTenantQuotaIsUsedUp() throws IOException {
+        ReflectionTestUtils.setField(tenantService, "maxInFlight", 1);
+        ReflectionTestUtils.setField(service, "maxBatchWaitMs", 50L);
+
+        BulkIngestionReport report = service.ingest(sources("a.pdf", "b.pdf", "c.pdf"), TENANT);
+
+        // Only one document fits in the quota, so each batch is stored once the wait runs out.
+        assertThat(report.getFiles()).extracting(FileResult::getStatus).containsOnly(FileStatus.INDEXED);
+        verify(judgmentRepository, times(3)).saveAll(argThat(batch -> batch instanceof List<?> list && list.size() == 1));
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void reportsStoredFilesAsDuplicatesWithoutExtracting() throws IOException {
+        JudgmentMetadata existing = new JudgmentMetadata();
+        existing.setId("doc-1");
+        existing.setSegmentIds(List.of("segment"));
+        List<BulkSource> sources = sources("a.pdf", "b.pdf");
+        String contentHash = new DeduplicationService(judgmentRepository).hashFile(sources.get(0).path());
+        when(judgmentRepository.findByContentHash(eq(contentHash), eq(TENANT), any())).thenReturn(List.of(existing));
+
+        BulkIngestionReport report = service.ingest(sources, TENANT);
+
+        assertThat(report.getSucceeded()).isEqualTo(2);
+        assertThat(report.getDuplicates()).isEqualTo(1);
+        assertThat(result(report, "a.pdf").getStatus()).isEqualTo(FileStatus.DUPLICATE);
+        assertThat(result(report, "a.pdf").getDocumentId()).isEqualTo("doc-1");
+        assertThat(result(report, "b.pdf").getStatus()).isEqualTo(FileStatus.INDEXED);
+        verify(pdfExtractionService, never()).extractText(any(Path.class), eq("a.pdf"));
+        verify(llmExtractionService).extractMetadata(anyString());
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void failedExtractionFailsOnlyThatFile() throws IOException {
+        when(llmExtractionService.extractMetadata(text("b.pdf"))).thenThrow(new IllegalStateException("Gemini unavailable"));
+
+        BulkIngestionReport report = service.ingest(sources("a.pdf", "b.pdf"), TENANT);
+
+        assertThat(report.getSucceeded()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(result(report, "a.pdf").getStatus()).isEqualTo(FileStatus.INDEXED);
+        assertThat(result(report, "b.pdf").getStatus()).isEqualTo(FileStatus.FAILED);
+        assertThat(result(report, "b.pdf").getError()).isEqualTo("Gemini unavailable");
+        verify(judgmentRepository).saveAll(argThat(batch -> batch instanceof List<?> list && list.size() == 1));
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void failedEmbeddingMarksBatchUnindexed() throws IOException {
+        when(embeddingEngine.ingest(anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Qdrant unavailable")));
+
+        BulkIngestionReport report = service.ingest(sources("a.pdf", "b.pdf"), TENANT);
+
+        assertThat(report.getFiles()).extracting(FileResult::getStatus)
+                .containsOnly(FileStatus.STORED_WITHOUT_EMBEDDINGS);
+        assertThat(report.getFiles()).extracting(FileResult::getError).allSatisfy(error ->
+                assertThat(error).startsWith("Embedding failed:").contains("Qdrant unavailable"));
+        List<String> documentIds = report.getFiles().stream().map(FileResult::getDocumentId).toList();
+        verify(judgmentRepository).clearSegmentIds(argThat(ids -> new ArrayList<>(ids).containsAll(documentIds)
+                && ids.size() == documentIds.size()));
+        verify(segmentStore, never()).setMetadata(any());
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void failedPersistFailsWholeBatch() throws IOException {
+        when(judgmentRepository.saveAll(anyList())).thenThrow(new IllegalStateException("MongoDB unavailable"));
+
+        BulkIngestionReport report = service.ingest(sources("a.pdf", "b.pdf"), TENANT);
+
+        assertThat(report.getFailed()).isEqualTo(2);
+        assertThat(report.getFiles()).extracting(FileResult::getError)
+                .containsOnly("Persist failed: MongoDB unavailable");
+        verify(embeddingEngine, never()).ingest(anyList());
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void refusedSubmitFailsRemainingFilesInsteadOfHanging() throws IOException {
+        List<BulkSource> sources = sources("a.pdf", "b.pdf", "c.pdf");
+        service.stopExecutors();
+
+        BulkIngestionReport report = service.ingest(sources, TENANT);
+
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getFiles()).extracting(FileResult::getError)
+                .allSatisfy(error -> assertThat(error).startsWith("Not processed:"));
+        assertThat(sources).allSatisfy(source -> assertThat(source.path()).doesNotExist());
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void ingestsPdfsFromZipArchive() throws IOException {
+        BulkIngestionReport report = service.ingestZip(zip(Map.of("a.pdf", 100, "notes.txt", 100, "b.pdf", 100)), TENANT);
+
+        assertThat(report.getFiles()).extracting(FileResult::getFileName).containsExactlyInAnyOrder("a.pdf", "b.pdf");
+        assertThat(report.getFiles()).extracting(FileResult::getStatus).containsOnly(FileStatus.INDEXED);
+    }
+
+    @Test
+    void rejectsZipBombsAndDeletesSpooledEntries() throws IOException {
+        long spooled = spooledFiles();
+
+        assertThatThrownBy(() -> service.ingestZip(zip(Map.of("a.pdf", 100, "b.pdf", 5000)), TENANT))
+                .isInstanceOf(FileProcessingException.class)
+                .hasMessageContaining("larger than 1024 bytes");
+        assertThatThrownBy(() -> service.ingestZip(zip(Map.of("a.pdf", 1000, "b.pdf", 1000, "c.pdf", 1000)), TENANT))
+                .isInstanceOf(FileProcessingException.class)
+                .hasMessageContaining("inflates to more than 2048 bytes");
+        Map<String, Integer> manyEntries = new LinkedHashMap<>();
+        for (int i = 0; i < 11; i++) {
+            manyEntries.put("empty-" + i + ".txt", 0);
+        }
+        assertThatThrownBy(() -> service.ingestZip(zip(manyEntries), TENANT))
+                .isInstanceOf(FileProcessingException.class)
+                .hasMessageContaining("more than 10 entries");
+
+        assertThat(spooledFiles()).isEqualTo(spooled);
+        verify(pdfExtractionService, never()).extractText(any(Path.class), anyString());
+    }
+
+    private static MockMultipartFile zip(Map<String, Integer> entrySizes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(entrySizes).entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                byte[] content = new byte[entry.getValue()];
+                Arrays.fill(content, (byte) entry.getKey().charAt(0));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("archive", "judgments.zip", "application/zip", bytes.toByteArray());
+    }
+
+    private static long spooledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(path -> path.getFileName().toString().startsWith("bulk-")).count();
+        }
+    }
+
+    private List<BulkSource> sources(String... fileNames) throws IOException {
+        List<BulkSource> sources = new ArrayList<>();
+        for (String fileName : fileNames) {
+            Path path = Files.writeString(directory.resolve(fileName), "%PDF-1.4 " + fileName);
+            sources.add(new BulkSource(fileName, path, true));
+        }
+        return sources;
+    }
+
+    private static String text(String fileName) {
+        return ("Judgment " + fileName + ": the appellant was convicted under section 302. ").repeat(10);
+    }
+
+    private static FileResult result(BulkIngestionReport report, String fileName) {
+        return report.getFiles().stream()
+                .filter(file -> file.getFileName().equals(fileName))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /** Documents reserved in the tenant's ingestion quota; the gauge only exists once one was reserved. */
+    private double inFlight() {
+        Gauge gauge = registry.find("tenant.ingest.in-flight").tag("tenant", TENANT).gauge();
+        return gauge != null ? gauge.value() : 0;
+    }
+}
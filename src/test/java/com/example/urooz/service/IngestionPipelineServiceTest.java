@@ -0,0 +1,262 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.exception.PipelineBusyException;
+import com.example.urooz.model.IngestionJob;
+import com.example.urooz.model.IngestionStage;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.PageText;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.dedupe.DeduplicationService;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.SegmentStore;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs uploads through the staged pipeline with a fake PDF parser, LLM and
+ * vector store, one worker per stage.
+ */
+class IngestionPipelineServiceTest {
+
+    private static final String TENANT = "default";
+    private static final List<String> PAGES = List.of(
+            "The appellant was convicted under section 302 of the Penal Code. ".repeat(10),
+            "The High Court affirmed the conviction and the appeal is dismissed. ".repeat(10));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PdfExtractionService pdfExtractionService = mock(PdfExtractionService.class);
+    private final LlmExtractionService llmExtractionService = mock(LlmExtractionService.class);
+    private final JudgmentRepository judgmentRepository = mock(JudgmentRepository.class);
+    private final EmbeddingEngine embeddingEngine = mock(EmbeddingEngine.class);
+    private final SegmentStore segmentStore = mock(SegmentStore.class);
+    private final List<KeyedSegment> embedded = new CopyOnWriteArrayList<>();
+
+    private TenantService tenantService;
+    private IngestionPipelineService pipeline;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment();
+        for (IngestionStage stage : IngestionStage.values()) {
+            environment.setProperty("pipeline." + stage.name().toLowerCase() + ".threads", "1");
+            environment.setProperty("pipeline." + stage.name().toLowerCase() + ".queue-capacity", "1");
+        }
+        DeduplicationService deduplicationService = new DeduplicationService(judgmentRepository);
+        ReflectionTestUtils.setField(deduplicationService, "enabled", true);
+        ReflectionTestUtils.setField(deduplicationService, "minPageChars", 100);
+        ReflectionTestUtils.setField(deduplicationService, "nearDuplicateMinOverlap", 0.8);
+        tenantService = new TenantService(registry, null, null);
+        ReflectionTestUtils.setField(tenantService, "maxInFlight", 2);
+
+        pipeline = new IngestionPipelineService(pdfExtractionService, llmExtractionService, judgmentRepository,
+                mock(JudgmentTextService.class),
+                new VectorStoreService(embeddingEngine, segmentStore, mock(ApplicationEventPublisher.class)),
+                deduplicationService, tenantService, new StageMetrics(registry), registry,
+                new BlockingIoThreads(environment), environment);
+        ReflectionTestUtils.setField(pipeline, "handoffTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pipeline, "jobRetentionMinutes", 60L);
+        pipeline.startExecutors();
+
+        parsePages(PAGES);
+        when(embeddingEngine.ingest(anyList())).thenAnswer(invocation -> {
+            embedded.addAll(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+        when(llmExtractionService.extractMetadata(anyString())).thenAnswer(invocation -> {
+            JudgmentMetadata metadata = new JudgmentMetadata();
+            metadata.setTitle("State v. Sharma");
+            metadata.setCourt("Supreme Court of India");
+            return metadata;
+        });
+        when(judgmentRepository.save(any(JudgmentMetadata.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stopExecutors();
+    }
+
+    @Test
+    void runsEveryStageThenPublishesSegmentsAndReleasesQuota() throws InterruptedException {
+        IngestionJob job = pipeline.submit(upload("judgment.pdf"), TENANT);
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(IngestionJob.Status.COMPLETED);
+        assertThat(job.getStages().values())
+                .allSatisfy(progress -> assertThat(progress.getState()).isEqualTo(IngestionJob.StageState.DONE));
+        assertThat(job.getDocumentId()).isNotNull();
+        assertThat(job.getTitle()).isEqualTo("State v. Sharma");
+        assertThat(embedded).isNotEmpty()
+                .allSatisfy(segment -> assertThat(JudgmentFacets.isPending(segment.segment())).isTrue());
+
+        InOrder order = inOrder(judgmentRepository, segmentStore);
+        order.verify(judgmentRepository).save(any(JudgmentMetadata.class));
+        order.verify(segmentStore).setMetadata(Map.of(job.getDocumentId(),
+                Map.of(JudgmentFacets.TENANT, TENANT, JudgmentFacets.COURT, "Supreme Court of India",
+                        JudgmentFacets.TITLE, "State v. Sharma")));
+        order.verify(segmentStore).setMetadata(Map.of(job.getDocumentId(), Map.of(JudgmentFacets.PENDING, "false")));
+        verify(embeddingEngine).publish(job.getDocumentId());
+        waitUntil(() -> inFlight() == 0);
+    }
+
+    @Test
+    void refusesUploadsWhileParseQueueIsFull() throws InterruptedException {
+        CountDownLatch parsing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            parsing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return feed(invocation.getArgument(2), PAGES);
+        }).when(pdfExtractionService).extractPages(any(Path.class), any(), any());
+        ReflectionTestUtils.setField(tenantService, "maxInFlight", 10);
+
+        IngestionJob running = pipeline.submit(upload("first.pdf"), TENANT);
+        assertThat(parsing.await(5, TimeUnit.SECONDS)).isTrue();
+        IngestionJob queued = pipeline.submit(upload("second.pdf"), TENANT);
+
+        assertThatThrownBy(() -> pipeline.submit(upload("third.pdf"), TENANT))
+                .isInstanceOf(PipelineBusyException.class)
+                .hasMessageContaining("PARSE");
+        assertThat(queued.getStages().get(IngestionStage.PARSE).getState()).isEqualTo(IngestionJob.StageState.QUEUED);
+        assertThat(inFlight()).isEqualTo(2);
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+        assertThat(queued.getStatus()).isEqualTo(IngestionJob.Status.COMPLETED);
+        waitUntil(() -> inFlight() == 0);
+    }
+
+    @Test
+    void failedExtractionDiscardsStreamedSegments() throws InterruptedException {
+        when(llmExtractionService.extractMetadata(anyString())).thenThrow(new IllegalStateException("Gemini unavailable"));
+
+        IngestionJob job = pipeline.submit(upload("judgment.pdf"), TENANT);
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(IngestionJob.Status.FAILED);
+        assertThat(job.getCurrentStage()).isEqualTo(IngestionStage.EXTRACT);
+        assertThat(job.getError()).isEqualTo("Gemini unavailable");
+        assertThat(job.getStages().get(IngestionStage.PERSIST).getState()).isEqualTo(IngestionJob.StageState.PENDING);
+        assertThat(deletedIds()).containsExactlyInAnyOrderElementsOf(embedded.stream().map(KeyedSegment::id).toList());
+        verify(judgmentRepository, never()).save(any(JudgmentMetadata.class));
+        verify(embeddingEngine, never()).publish(any());
+        waitUntil(() -> inFlight() == 0);
+    }
+
+    @Test
+    void failedEmbeddingMarksPersistedJudgmentUnindexed() throws InterruptedException {
+        when(embeddingEngine.ingest(anyList())).thenAnswer(invocation -> {
+            embedded.addAll(invocation.getArgument(0));
+            return CompletableFuture.failedFuture(new IllegalStateException("Qdrant unavailable"));
+        });
+
+        IngestionJob job = pipeline.submit(upload("judgment.pdf"), TENANT);
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(IngestionJob.Status.FAILED);
+        assertThat(job.getCurrentStage()).isEqualTo(IngestionStage.EMBED);
+        assertThat(job.getError()).isEqualTo("Qdrant unavailable");
+        verify(judgmentRepository).clearSegmentIds(List.of(job.getDocumentId()));
+        assertThat(deletedIds()).containsExactlyInAnyOrderElementsOf(embedded.stream().map(KeyedSegment::id).toList());
+        verify(embeddingEngine, never()).publish(any());
+        waitUntil(() -> inFlight() == 0);
+    }
+
+    @Test
+    void identicalUploadCompletesAsDuplicateWithoutParsing() {
+        JudgmentMetadata existing = new JudgmentMetadata();
+        existing.setId("doc-1");
+        existing.setSegmentIds(List.of("segment"));
+        when(judgmentRepository.findByContentHash(any(), any(), any())).thenReturn(List.of(existing));
+
+        IngestionJob job = pipeline.submit(upload("judgment.pdf"), TENANT);
+
+        assertThat(job.getStatus()).isEqualTo(IngestionJob.Status.COMPLETED);
+        assertThat(job.getDuplicate()).isTrue();
+        assertThat(job.getDocumentId()).isEqualTo("doc-1");
+        assertThat(inFlight()).isZero();
+        verify(pdfExtractionService, never()).extractPages(any(Path.class), any(), any());
+    }
+
+    private void parsePages(List<String> pages) {
+        doAnswer(invocation -> feed(invocation.getArgument(2), pages))
+                .when(pdfExtractionService).extractPages(any(Path.class), any(), any());
+    }
+
+    private static int feed(Consumer<PageText> consumer, List<String> pages) {
+        for (int i = 0; i < pages.size(); i++) {
+            consumer.accept(new PageText(i + 1, pages.get(i)));
+        }
+        return pages.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> deletedIds() {
+        ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(segmentStore, timeout(5000)).delete(deleted.capture());
+        return new ArrayList<>(deleted.getValue());
+    }
+
+    /** Documents reserved in the tenant's ingestion quota; the gauge only exists once one was reserved. */
+    private double inFlight() {
+        Gauge gauge = registry.find("tenant.ingest.in-flight").tag("tenant", TENANT).gauge();
+        return gauge != null ? gauge.value() : 0;
+    }
+
+    private static MockMultipartFile upload(String fileName) {
+        return new MockMultipartFile("file", fileName, "application/pdf",
+                ("%PDF-1.4 " + fileName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitFinished(IngestionJob job) throws InterruptedException {
+        waitUntil(job::isFinished);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
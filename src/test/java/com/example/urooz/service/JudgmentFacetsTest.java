@@ -0,0 +1,42 @@
+package com.example.urooz.service;
+
+import com.example.urooz.model.JudgmentMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class JudgmentFacetsTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2019-03-12", "12/03/2019", "12-3-2019", "12.03.2019", "12th March, 2019",
+            "12 MARCH 2019", "March 12, 2019", "Mar 12 2019"})
+    void parsesExtractedDates(String date) {
+        assertThat(JudgmentFacets.epochDay(date)).isEqualTo(LocalDate.of(2019, 3, 12).toEpochDay());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "2019", "March 2019", "31/02/2019", "not stated"})
+    void leavesIncompleteDatesUnparsed(String date) {
+        assertThat(JudgmentFacets.epochDay(date)).isNull();
+    }
+
+    @Test
+    void buildsSegmentMetadataFromKnownFieldsOnly() {
+        JudgmentMetadata metadata = new JudgmentMetadata();
+        metadata.setCourt(" High Court of Delhi ");
+        metadata.setDate("March 2019");
+        metadata.setTitle("State v. Kumar");
+        metadata.setTenantId("acme");
+
+        assertThat(JudgmentFacets.of(metadata))
+                .containsOnly(entry(JudgmentFacets.TENANT, "acme"),
+                        entry(JudgmentFacets.COURT, "High Court of Delhi"),
+                        entry(JudgmentFacets.TITLE, "State v. Kumar"));
+        assertThat(JudgmentFacets.year(metadata.getDate())).isEqualTo(2019);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.urooz.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JudgmentTextServiceTest {
+
+    private static final String TEXT = "IN THE SUPREME COURT OF INDIA — Criminal Appeal No. 1 of 2020\n"
+            + "The appellant was convicted under section 302 of the Penal Code. ".repeat(200);
+
+    @Test
+    void compressedTextRoundTrips() {
+        byte[] compressed = JudgmentTextService.compress(TEXT);
+
+        assertThat(compressed.length).isLessThan(TEXT.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertThat(JudgmentTextService.decompress(compressed, TEXT.length())).isEqualTo(TEXT);
+        assertThat(JudgmentTextService.decompress(JudgmentTextService.compress(""), 0)).isEmpty();
+    }
+
+    @Test
+    void truncatedContentIsRejected() {
+        byte[] compressed = JudgmentTextService.compress(TEXT);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        assertThatThrownBy(() -> JudgmentTextService.decompress(truncated, TEXT.length()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.service.llm.CancellableStreamingChatModel;
+import com.example.urooz.service.llm.TestLlmGateway;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmExtractionServiceTest {
+
+    private static final Pattern PART = Pattern.compile("part (\\d+) of (\\d+)");
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private LlmExtractionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = service(prompt -> {
+            Matcher matcher = PART.matcher(prompt);
+            if (!matcher.find()) {
+                return "{\"title\":\"Whole\",\"holding\":\"Allowed\"}";
+            }
+            return partial(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopExecutor();
+    }
+
+    private LlmExtractionService service(Function<String, String> reply) {
+        CancellableStreamingChatModel model = (messages, handler) -> {
+            calls.incrementAndGet();
+            String prompt = ((UserMessage) messages.get(0)).singleText();
+            prompts.add(prompt);
+            String answer = reply.apply(prompt);
+            for (int i = 0; i < answer.length(); i += 7) {
+                handler.onNext(answer.substring(i, Math.min(answer.length(), i + 7)));
+            }
+            handler.onComplete(Response.from(AiMessage.from(answer)));
+            return () -> { };
+        };
+        LlmExtractionService extraction = new LlmExtractionService(TestLlmGateway.create(null, model),
+                new ObjectMapper(), new BlockingIoThreads(new MockEnvironment()));
+        ReflectionTestUtils.setField(extraction, "windowTokens", 25);
+        ReflectionTestUtils.setField(extraction, "overlapTokens", 2);
+        ReflectionTestUtils.setField(extraction, "charsPerToken", 4);
+        ReflectionTestUtils.setField(extraction, "maxInFlight", 2);
+        ReflectionTestUtils.setField(extraction, "repairAttempts", 1);
+        ReflectionTestUtils.setField(extraction, "repairContextTokens", 10);
+        extraction.startExecutor();
+        return extraction;
+    }
+
+    @Test
+    void extractsShortTextWithSingleCall() {
+        JudgmentMetadata metadata = service.extractMetadata("A short judgment.");
+
+        assertThat(calls).hasValue(1);
+        assertThat(metadata.getTitle()).isEqualTo("Whole");
+        assertThat(metadata.getHolding()).isEqualTo("Allowed");
+    }
+
+    @Test
+    void mergesWindowsDeterministically() {
+        String text = "Paragraph one of the judgment.\n\n".repeat(20);
+
+        JudgmentMetadata metadata = service.extractMetadata(text);
+
+        assertThat(calls.get()).isGreaterThan(2);
+        assertThat(metadata.getTitle()).isEqualTo("State v. Kumar");
+        assertThat(metadata.getIssues()).containsExactly("Jurisdiction", "Limitation");
+        assertThat(metadata.getCitations()).containsExactly("AIR 1973 SC 1461", "(2017) 10 SCC 1");
+        assertThat(metadata.getHolding()).isEqualTo("Appeal dismissed");
+        assertThat(metadata.getArguments()).containsEntry("petitioner", "Lack of jurisdiction");
+    }
+
+    @Test
+    void reAsksOnlyForFieldsMissingFromTruncatedResponse() {
+        service.stopExecutor();
+        service = service(prompt -> prompt.contains("Extract ONLY")
+                ? "{\"issues\":[\"Limitation\"],\"ratio\":null,\"holding\":\"Appeal allowed\",\"citations\":[]}"
+                : "Here is the JSON:\n```json\n{\"title\":\"State v. Kumar\",\"court\":\"High Court\",\"date\":\"2020\","
+                + "\"facts\":\"Delay\",\"arguments\":{\"petitioner\":\"Time-barred\"},\"issues\":[\"Limi");
+
+        JudgmentMetadata metadata = service.extractMetadata("A short judgment.");
+
+        assertThat(calls).hasValue(2);
+        assertThat(prompts.get(1)).contains("1. issues", "2. ratio", "3. holding", "4. citations", "A short judgment.",
+                        "\"title\":\"State v. Kumar\"")
+                .doesNotContain("Case Title", "Brief summary of facts");
+        assertThat(metadata.getTitle()).isEqualTo("State v. Kumar");
+        assertThat(metadata.getArguments()).containsEntry("petitioner", "Time-barred");
+        assertThat(metadata.getIssues()).containsExactly("Limitation");
+        assertThat(metadata.getHolding()).isEqualTo("Appeal allowed");
+    }
+
+    @Test
+    void repairSendsOnlyTheClosingOfALongWindow() {
+        service.stopExecutor();
+        service = service(prompt -> prompt.contains("Extract ONLY")
+                ? "{\"ratio\":\"Delay is fatal\",\"holding\":\"Appeal dismissed\"}"
+                : "{\"title\":\"State v. Kumar\",\"court\":\"High Court\",\"date\":\"2020-01-01\",\"facts\":\"Delay\","
+                + "\"issues\":[],\"arguments\":{},\"citations\":[],\"ratio\":\"Del");
+        ReflectionTestUtils.setField(service, "windowTokens", 100);
+        String text = "Opening recitals of the parties.\n\n" + "Discussion. ".repeat(20) + "\n\nAppeal dismissed.";
+
+        JudgmentMetadata metadata = service.extractMetadata(text);
+
+        assertThat(calls).hasValue(2);
+        assertThat(prompts.get(1)).contains("1. ratio", "2. holding", "Appeal dismissed.")
+                .doesNotContain("Opening recitals", LlmExtractionService.OMITTED);
+        assertThat(prompts.get(1).length()).isLessThan(prompts.get(0).length());
+        assertThat(metadata.getRatio()).isEqualTo("Delay is fatal");
+    }
+
+    @Test
+    void splitsAtParagraphBoundariesWithinBudget() {
+        String text = "aaaa bbbb\n\ncccc dddd\n\neeee";
+
+        List<String> windows = LlmExtractionService.splitIntoWindows(text, 12, 0);
+
+        assertThat(windows).containsExactly("aaaa bbbb\n\n", "cccc dddd\n\n", "eeee");
+    }
+
+    private static String partial(int part, int parts) {
+        if (part == 1) {
+            return """
+                    {"title":"State v. Kumar","court":"Supreme Court","issues":["Jurisdiction"],
+                     "citations":["AIR 1973 SC 1461"],"arguments":{"petitioner":"Lack of jurisdiction"}}""";
+        }
+        if (part == parts) {
+            return """
+                    {"title":"Kumar","issues":["limitation"],"citations":["(2017) 10 SCC 1"],
+                     "holding":"Appeal dismissed","ratio":"Delay is fatal"}""";
+        }
+        return """
+                {"issues":["Jurisdiction.","Limitation"],"citations":["AIR 1973 SC 1461"],
+                 "holding":"Remanded","arguments":{"petitioner":"lack of jurisdiction"}}""";
+    }
+}
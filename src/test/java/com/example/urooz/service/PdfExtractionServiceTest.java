@@ -0,0 +1,79 @@
+package com.example.urooz.service;
+
+import com.example.urooz.model.PageText;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfExtractionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PdfExtractionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PdfExtractionService();
+        ReflectionTestUtils.setField(service, "parallelism", 3);
+        ReflectionTestUtils.setField(service, "pagesPerTask", 2);
+        ReflectionTestUtils.setField(service, "maxMainMemoryBytes", 1024L * 1024);
+        service.startExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopExecutor();
+    }
+
+    @Test
+    void deliversPagesInOrderAcrossParallelRanges() throws Exception {
+        Path pdf = writePdf(11);
+
+        List<PageText> pages = new ArrayList<>();
+        int pageCount = service.extractPages(pdf, "test.pdf", pages::add);
+
+        assertThat(pageCount).isEqualTo(11);
+        assertThat(pages).extracting(PageText::pageNumber).containsExactlyElementsOf(IntStream.rangeClosed(1, 11).boxed().toList());
+        assertThat(pages).allSatisfy(page -> assertThat(page.text()).isEqualTo("Page " + page.pageNumber()));
+    }
+
+    @Test
+    void separatesPagesInFullText() throws Exception {
+        Path pdf = writePdf(3);
+
+        assertThat(service.extractText(pdf, "test.pdf")).isEqualTo("Page 1\fPage 2\fPage 3");
+    }
+
+    private Path writePdf(int pages) throws Exception {
+        Path path = tempDir.resolve("doc-" + pages + ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i);
+                    content.endText();
+                }
+            }
+            document.save(path.toFile());
+        }
+        return path;
+    }
+}
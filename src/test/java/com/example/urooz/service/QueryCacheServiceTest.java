@@ -0,0 +1,107 @@
+package com.example.urooz.service;
+
+import com.example.urooz.event.SegmentsIndexedEvent;
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.RetrievedSegment;
+import com.example.urooz.service.QueryCacheService.QueryEntry;
+import com.example.urooz.service.embedding.KeyedSegment;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryCacheServiceTest {
+
+    private QueryCacheService cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new QueryCacheService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "queryCacheSize", 100L);
+        ReflectionTestUtils.setField(cache, "answerCacheSize", 100L);
+        ReflectionTestUtils.setField(cache, "selectiveInvalidationMaxPairs", 1000L);
+        ReflectionTestUtils.setField(cache, "maxResults", 2);
+        ReflectionTestUtils.setField(cache, "minScore", 0.30);
+        cache.init();
+    }
+
+    @Test
+    void normalizesCaseWhitespaceAndTrailingPunctuation() {
+        assertThat(cache.normalize("  What was  the VERDICT?? ")).isEqualTo("what was the verdict");
+    }
+
+    @Test
+    void keepsResultsWhenNewSegmentCannotEnterTopResults() {
+        Embedding query = Embedding.from(new float[]{1, 0});
+        cache.putQuery("q", new QueryEntry(query, results("a", "b"), List.of("1", "2"), 0.9, Set.of()), cache.currentGeneration());
+
+        // Orthogonal segment: relevance 0.5, below the weakest cached hit.
+        cache.onSegmentsIndexed(indexed("unrelated text", 0, 1));
+
+        assertThat(cache.getQuery("q")).get().matches(QueryEntry::hasResults);
+    }
+
+    @Test
+    void dropsResultsWhenNewSegmentOutscoresWeakestHit() {
+        Embedding query = Embedding.from(new float[]{1, 0});
+        cache.putQuery("q", new QueryEntry(query, results("a", "b"), List.of("1", "2"), 0.9, Set.of()), cache.currentGeneration());
+
+        cache.onSegmentsIndexed(indexed("unrelated text", 1, 0));
+
+        assertThat(cache.getQuery("q")).get()
+                .matches(entry -> !entry.hasResults())
+                .matches(entry -> entry.embedding().equals(query));
+    }
+
+    @Test
+    void dropsResultsWhenNewSegmentContainsQueryTerm() {
+        Embedding query = Embedding.from(new float[]{1, 0});
+        cache.putQuery("q", new QueryEntry(query, results("a", "b"), List.of("1", "2"), 0.9, Set.of("498a")),
+                cache.currentGeneration());
+
+        // Dense score is too low, but a lexical retrieval would now find it.
+        cache.onSegmentsIndexed(indexed("Conviction under Section 498A IPC", 0, 1));
+
+        assertThat(cache.getQuery("q")).get().matches(entry -> !entry.hasResults());
+    }
+
+    @Test
+    void doesNotCacheResultsRetrievedBeforeConcurrentIndexing() {
+        long generation = cache.currentGeneration();
+        cache.onSegmentsIndexed(indexed("unrelated text", 1, 0));
+
+        cache.putQuery("q", new QueryEntry(Embedding.from(new float[]{1, 0}), results("a"), List.of("1"), 0.9, Set.of()), generation);
+
+        assertThat(cache.getQuery("q")).get().matches(entry -> !entry.hasResults());
+    }
+
+    @Test
+    void answerCacheIsKeyedByChunkSet() {
+        cache.putAnswer("q", List.of("a", "b"), "answer");
+
+        assertThat(cache.getAnswer("q", List.of("a", "b"))).contains("answer");
+        assertThat(cache.getAnswer("q", List.of("a", "c"))).isEmpty();
+    }
+
+    private static List<RetrievedDocument> results(String... texts) {
+        List<RetrievedSegment> segments = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            segments.add(new RetrievedSegment(String.valueOf(i + 1), texts[i], 1, 1.0));
+        }
+        return List.of(new RetrievedDocument("doc", "Title", "Court", "2020", 1.0, segments));
+    }
+
+    private static SegmentsIndexedEvent indexed(String text, float... vector) {
+        return new SegmentsIndexedEvent(List.of(new KeyedSegment("new", TextSegment.from(text))),
+                List.of(Embedding.from(vector)));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.urooz.service;
+
+import com.example.urooz.event.VectorCollectionSwitchedEvent;
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.model.JudgmentText;
+import com.example.urooz.model.ReindexJob;
+import com.example.urooz.repository.ReindexJobRepository;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.QdrantCollections;
+import com.example.urooz.service.embedding.QdrantSegmentStore;
+import com.example.urooz.service.embedding.SegmentStore;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs rebuilds against mocked MongoDB and Qdrant clients and checks when
+ * the judgments' segment IDs change.
+ */
+class ReindexServiceTest {
+
+    private static final String ALIAS = "legal_judgments";
+    private static final String TEXT = "The appellant was convicted under section 302. ".repeat(15);
+
+    private final ReindexJobRepository reindexJobRepository = mock(ReindexJobRepository.class);
+    private final JudgmentTextService judgmentTextService = mock(JudgmentTextService.class);
+    private final EmbeddingEngine embeddingEngine = mock(EmbeddingEngine.class);
+    private final QdrantCollections qdrantCollections = mock(QdrantCollections.class);
+    private final QdrantSegmentStore qdrantSegmentStore = mock(QdrantSegmentStore.class);
+    private final QdrantSegmentStore target = mock(QdrantSegmentStore.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private ReindexService service;
+
+    @BeforeEach
+    void setUp() {
+        VectorStoreService vectorStoreService = new VectorStoreService(mock(EmbeddingEngine.class),
+                mock(SegmentStore.class), mock(ApplicationEventPublisher.class));
+        service = new ReindexService(reindexJobRepository, judgmentTextService, vectorStoreService, embeddingEngine,
+                qdrantCollections, qdrantSegmentStore, mongoTemplate, eventPublisher);
+        ReflectionTestUtils.setField(service, "alias", ALIAS);
+        ReflectionTestUtils.setField(service, "defaultTenant", "default");
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        ReflectionTestUtils.setField(service, "splitThreads", 1);
+        ReflectionTestUtils.setField(service, "resumeOnStartup", true);
+        service.startExecutors();
+
+        when(reindexJobRepository.save(any(ReindexJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(qdrantSegmentStore.forCollection(any())).thenReturn(target);
+        when(embeddingEngine.ingest(anyList(), eq(target))).thenReturn(CompletableFuture.completedFuture(null));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(JudgmentMetadata.class)))
+                .thenReturn(bulkOperations);
+        when(mongoTemplate.find(any(Query.class), eq(JudgmentMetadata.class)))
+                .thenReturn(List.of(judgment("doc-1"), judgment("doc-2")));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(JudgmentMetadata.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopExecutors();
+    }
+
+    @Test
+    void appliesStagedSegmentIdsOnlyAfterAliasSwitches() throws InterruptedException {
+        when(judgmentTextService.count()).thenReturn(2L);
+        when(judgmentTextService.streamAfter(null, 1)).thenReturn(Stream.of(text("doc-1"), text("doc-2")));
+        when(qdrantCollections.switchAlias(eq(ALIAS), any())).thenReturn(Optional.of(ALIAS + "_previous"));
+
+        ReindexJob job = service.start();
+        awaitRun();
+
+        ArgumentCaptor<Update> staged = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), staged.capture());
+        assertThat(staged.getAllValues()).allSatisfy(update -> {
+            assertThat(update.modifies("stagedSegmentIds")).isTrue();
+            assertThat(update.modifies("segmentIds")).isFalse();
+            assertThat(update.getUpdateObject().get("$set", Document.class).get("stagedFor"))
+                    .isEqualTo(job.getId());
+        });
+
+        InOrder order = inOrder(bulkOperations, qdrantCollections, mongoTemplate, eventPublisher);
+        order.verify(bulkOperations, times(2)).execute();
+        order.verify(qdrantCollections).switchAlias(ALIAS, job.getId());
+        order.verify(mongoTemplate).updateMulti(argThat(stagedBy(job.getId())), any(UpdateDefinition.class),
+                eq(JudgmentMetadata.class));
+        order.verify(eventPublisher).publishEvent(new VectorCollectionSwitchedEvent(job.getId(), true));
+        verify(qdrantCollections).delete(ALIAS + "_previous");
+        assertThat(job.getStatus()).isEqualTo(ReindexJob.Status.COMPLETED);
+        assertThat(job.getDocuments()).isEqualTo(2);
+    }
+
+    @Test
+    void resumesInterruptedRebuildAfterLastSavedDocument() throws InterruptedException {
+        ReindexJob interrupted = new ReindexJob(ALIAS + "_20240101000000", ALIAS, 2);
+        interrupted.setLastDocumentId("doc-1");
+        interrupted.setDocuments(1);
+        when(reindexJobRepository.findFirstByStatusOrderByStartedAtDesc(ReindexJob.Status.RUNNING))
+                .thenReturn(Optional.of(interrupted));
+        when(reindexJobRepository.findFirstByStatusNotOrderByStartedAtDesc(ReindexJob.Status.COMPLETED))
+                .thenReturn(Optional.of(interrupted));
+        when(qdrantCollections.exists(interrupted.getId())).thenReturn(true);
+        when(judgmentTextService.streamAfter("doc-1", 1)).thenReturn(Stream.of(text("doc-2")));
+        when(qdrantCollections.switchAlias(ALIAS, interrupted.getId())).thenReturn(Optional.empty());
+
+        service.resumeInterrupted();
+        awaitRun();
+
+        verify(qdrantCollections, never()).create(any());
+        verify(judgmentTextService, never()).streamAfter(eq(null), anyInt());
+        verify(embeddingEngine).ingest(anyList(), eq(target));
+        // Judgments staged before the crash are applied along with the rest.
+        verify(mongoTemplate).updateMulti(argThat(stagedBy(interrupted.getId())), any(UpdateDefinition.class),
+                eq(JudgmentMetadata.class));
+        assertThat(interrupted.getStatus()).isEqualTo(ReindexJob.Status.COMPLETED);
+        assertThat(interrupted.getLastDocumentId()).isEqualTo("doc-2");
+        assertThat(interrupted.getDocuments()).isEqualTo(2);
+    }
+
+    @Test
+    void failedRebuildKeepsLiveSegmentIds() throws InterruptedException {
+        when(judgmentTextService.streamAfter(null, 1)).thenReturn(Stream.of(text("doc-1"), text("doc-2")));
+        when(embeddingEngine.ingest(anyList(), eq(target)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Qdrant unavailable")));
+
+        ReindexJob job = service.start();
+        awaitRun();
+
+        verify(qdrantCollections, never()).switchAlias(any(), any());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class),
+                eq(JudgmentMetadata.class));
+        verify(qdrantSegmentStore).mirrorTo(null);
+        assertThat(job.getStatus()).isEqualTo(ReindexJob.Status.FAILED);
+        assertThat(job.getLastDocumentId()).isNull();
+    }
+
+    private void awaitRun() throws InterruptedException {
+        ExecutorService runner = (ExecutorService) ReflectionTestUtils.getField(service, "runner");
+        runner.shutdown();
+        assertThat(runner.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static ArgumentMatcher<Query> stagedBy(String jobId) {
+        return query -> jobId.equals(query.getQueryObject().get("stagedFor"));
+    }
+
+    private static JudgmentMetadata judgment(String id) {
+        JudgmentMetadata judgment = new JudgmentMetadata();
+        judgment.setId(id);
+        judgment.setSegmentIds(List.of(id + "-old"));
+        return judgment;
+    }
+
+    private static JudgmentText text(String id) {
+        return new JudgmentText(id, JudgmentTextService.compress(TEXT), TEXT.length());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.urooz.service;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.model.SearchFilter;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.lexical.Bm25Index;
+import com.example.urooz.service.metrics.StageMetrics;
+import com.example.urooz.service.tenant.TenantService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchServiceTest {
+
+    private static final String TENANT = "default";
+    private static final SearchFilter SUPREME_COURT = new SearchFilter(List.of("Supreme Court of India"), null, null);
+
+    @SuppressWarnings("unchecked")
+    private final EmbeddingStore<TextSegment> embeddingStore = mock(EmbeddingStore.class);
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final QueryCacheService queryCacheService = mock(QueryCacheService.class);
+    private final Bm25Index lexicalIndex = mock(Bm25Index.class);
+    private final JudgmentCatalogService judgmentCatalogService = mock(JudgmentCatalogService.class);
+
+    private SearchService service;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment();
+        service = new SearchService(embeddingStore, embeddingModel, queryCacheService, lexicalIndex,
+                new StageMetrics(registry), mock(JudgmentRepository.class), judgmentCatalogService,
+                new TenantService(registry, null, null),
+                new DependencyGuards(environment, registry, new BlockingIoThreads(environment)));
+        ReflectionTestUtils.setField(service, "maxResults", 15);
+        ReflectionTestUtils.setField(service, "minScore", 0.3);
+        ReflectionTestUtils.setField(service, "candidates", 40);
+        ReflectionTestUtils.setField(service, "maxSegmentsPerDocument", 4);
+        ReflectionTestUtils.setField(service, "mmrLambda", 0.7);
+        ReflectionTestUtils.setField(service, "hybridEnabled", true);
+        ReflectionTestUtils.setField(service, "rrfK", 60);
+
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(Embedding.from(new float[]{1, 0, 0})));
+        when(embeddingStore.search(any(EmbeddingSearchRequest.class))).thenReturn(new EmbeddingSearchResult<>(List.of()));
+        when(lexicalIndex.search(anyString(), anyInt(), eq(TENANT), any())).thenReturn(List.of());
+        when(judgmentCatalogService.ids(eq(TENANT), any(SearchFilter.class))).thenReturn(Set.of("doc-1"));
+    }
+
+    @Test
+    void readsAllowedJudgmentsOncePerFilterUntilIndexChanges() {
+        when(queryCacheService.currentGeneration()).thenReturn(1L);
+        service.retrieve("murder conviction", TENANT, SUPREME_COURT, true);
+        service.retrieve("bail conditions", TENANT, SUPREME_COURT, true);
+        verify(judgmentCatalogService, times(1)).ids(TENANT, SUPREME_COURT);
+
+        SearchFilter lastYear = SearchFilter.of(List.of(), LocalDate.of(2023, 1, 1), null);
+        service.retrieve("murder conviction", TENANT, lastYear, true);
+        verify(judgmentCatalogService, times(1)).ids(TENANT, lastYear);
+
+        when(queryCacheService.currentGeneration()).thenReturn(2L);
+        service.retrieve("murder conviction", TENANT, SUPREME_COURT, true);
+        verify(judgmentCatalogService, times(2)).ids(TENANT, SUPREME_COURT);
+        verify(lexicalIndex, times(4)).search(anyString(), anyInt(), eq(TENANT), any());
+    }
+}
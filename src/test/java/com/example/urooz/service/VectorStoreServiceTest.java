@@ -0,0 +1,74 @@
+package com.example.urooz.service;
+
+import com.example.urooz.service.VectorStoreService.SegmentPlan;
+import com.example.urooz.service.embedding.EmbeddingEngine;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.SegmentStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class VectorStoreServiceTest {
+
+    private final VectorStoreService service = new VectorStoreService(mock(EmbeddingEngine.class),
+            mock(SegmentStore.class), mock(ApplicationEventPublisher.class));
+
+    private static final String PAGE_ONE = "The appellant was convicted under section 302. ".repeat(15);
+    private static final String PAGE_TWO = "The High Court affirmed the conviction on appeal. ".repeat(15);
+
+    @Test
+    void assignsDeterministicIdsWithPageMetadata() {
+        SegmentPlan first = service.plan("doc-1", "default", PAGE_ONE + "\f" + PAGE_TWO, List.of());
+        SegmentPlan second = service.plan("doc-1", "default", PAGE_ONE + "\f" + PAGE_TWO, List.of());
+
+        assertThat(first.segmentIds()).isNotEmpty().isEqualTo(second.segmentIds());
+        assertThat(first.toEmbed()).hasSameSizeAs(first.segmentIds());
+        assertThat(first.toEmbed().get(0).segment().metadata().getInteger("page_number")).isEqualTo(1);
+        assertThat(first.toEmbed().get(first.toEmbed().size() - 1).segment().metadata().getInteger("page_number"))
+                .isEqualTo(2);
+    }
+
+    @Test
+    void pagePlansMatchWholeTextButStayPending() {
+        SegmentPlan whole = service.plan("doc-1", "default", PAGE_ONE + "\f\f" + PAGE_TWO, List.of());
+
+        List<KeyedSegment> pages = new ArrayList<>();
+        pages.addAll(service.planPage("doc-1", "default", 1, PAGE_ONE).toEmbed());
+        assertThat(service.planPage("doc-1", "default", 2, "").segmentIds()).isEmpty();
+        pages.addAll(service.planPage("doc-1", "default", 3, PAGE_TWO).toEmbed());
+
+        assertThat(pages).extracting(KeyedSegment::id).containsExactlyElementsOf(whole.segmentIds());
+        assertThat(pages).allSatisfy(segment -> assertThat(JudgmentFacets.isPending(segment.segment())).isTrue());
+        assertThat(whole.toEmbed()).noneSatisfy(segment ->
+                assertThat(JudgmentFacets.isPending(segment.segment())).isTrue());
+    }
+
+    @Test
+    void onlyEmbedsChangedPagesOfNewVersion() {
+        SegmentPlan original = service.plan("doc-1", "default", PAGE_ONE + "\f" + PAGE_TWO, List.of());
+        String revisedPageTwo = PAGE_TWO.replace("affirmed", "set aside");
+
+        SegmentPlan revision = service.plan("doc-1", "default", PAGE_ONE + "\f" + revisedPageTwo, original.segmentIds());
+
+        assertThat(revision.toEmbed()).isNotEmpty()
+                .allSatisfy(segment -> assertThat(segment.segment().metadata().getInteger("page_number")).isEqualTo(2));
+        assertThat(revision.staleIds()).isNotEmpty().doesNotContainAnyElementsOf(revision.segmentIds());
+        assertThat(revision.reusedCount()).isPositive();
+    }
+
+    @Test
+    void unchangedTextNeedsNoWork() {
+        SegmentPlan original = service.plan("doc-1", "default", PAGE_ONE, List.of());
+
+        SegmentPlan again = service.plan("doc-1", "default", PAGE_ONE, original.segmentIds());
+
+        assertThat(again.toEmbed()).isEmpty();
+        assertThat(again.staleIds()).isEmpty();
+        assertThat(original.toEmbed()).extracting(KeyedSegment::id).containsExactlyElementsOf(original.segmentIds());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.urooz.service.client;
+
+import com.example.urooz.exception.DependencyUnavailableException;
+import com.example.urooz.service.client.DependencyGuard.Permit;
+import com.example.urooz.service.client.DependencyGuard.Settings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DependencyGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DependencyGuard guard;
+
+    @AfterEach
+    void tearDown() {
+        guard.close();
+    }
+
+    @Test
+    void opensAfterFailuresAndClosesAfterSuccessfulTrialCall() throws Exception {
+        guard = guard(new Settings(0, 0, 4, 4, 0.5, 100, 0));
+        AtomicInteger calls = new AtomicInteger();
+
+        guard.call(() -> "ok");
+        guard.call(() -> "ok");
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(() -> {
+                throw new IllegalStateException("timed out");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThatThrownBy(() -> guard.call(calls::incrementAndGet))
+                .isInstanceOf(DependencyUnavailableException.class);
+        assertThat(calls).hasValue(0);
+        assertThat(registry.get("client.rejected").tag("reason", "circuit_open").counter().count()).isEqualTo(1);
+
+        Thread.sleep(150);
+        Permit trial = guard.acquire();
+        assertThatThrownBy(guard::acquire).isInstanceOf(DependencyUnavailableException.class);
+        trial.success();
+
+        assertThat(guard.call(calls::incrementAndGet)).isEqualTo(1);
+        assertThat(registry.get("client.circuit.state").gauge().value()).isZero();
+    }
+
+    @Test
+    void bulkheadRefusesCallsBeyondItsLimit() {
+        guard = guard(new Settings(2, 20, 10, 10, 0.5, 1000, 0));
+        Permit first = guard.acquire();
+        Permit second = guard.acquire();
+
+        assertThatThrownBy(guard::acquire)
+                .isInstanceOf(DependencyUnavailableException.class)
+                .hasMessageContaining("2 calls in flight");
+
+        first.success();
+        guard.acquire().success();
+        second.failure();
+        assertThat(registry.get("client.calls").tag("outcome", "success").timer().count()).isEqualTo(2);
+        assertThat(registry.get("client.calls").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgesSlowCallAndReturnsFirstAnswer() {
+        guard = guard(new Settings(4, 0, 10, 10, 0.5, 1000, 30));
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean slowAttemptInterrupted = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        String result = guard.hedged(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    slowAttemptInterrupted.set(true);
+                    throw new IllegalStateException(e);
+                }
+                return "slow";
+            }
+            return "fast";
+        });
+
+        assertThat(result).isEqualTo("fast");
+        assertThat(System.nanoTime() - start).isLessThan(2_000_000_000L);
+        assertThat(registry.get("client.hedges").counter().count()).isEqualTo(1);
+        // The slow attempt is cancelled, and being cancelled does not count against the dependency.
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (!slowAttemptInterrupted.get() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(slowAttemptInterrupted).isTrue();
+        assertThat(registry.get("client.calls").tag("outcome", "failure").timer().count()).isZero();
+    }
+
+    @Test
+    void fastCallsAreNotHedged() {
+        guard = guard(new Settings(4, 0, 10, 10, 0.5, 1000, 500));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThat(guard.hedged(attempts::incrementAndGet)).isEqualTo(1);
+        assertThat(attempts).hasValue(1);
+        assertThat(registry.get("client.hedges").counter().count()).isZero();
+    }
+
+    @Test
+    void refusedHedgedCallGivesBackItsBulkheadSlot() {
+        guard = guard(new Settings(1, 0, 10, 10, 0.5, 1000, 30));
+        guard.close();
+
+        assertThatThrownBy(() -> guard.hedged(() -> "ok")).isInstanceOf(RejectedExecutionException.class);
+        assertThat(registry.get("client.in-flight").gauge().value()).isZero();
+        guard.acquire().success();
+    }
+
+    private DependencyGuard guard(Settings settings) {
+        return new DependencyGuard("qdrant", settings, registry, Executors.defaultThreadFactory());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.urooz.service.dedupe;
+
+import com.example.urooz.model.JudgmentMetadata;
+import com.example.urooz.repository.JudgmentRepository;
+import com.example.urooz.service.dedupe.DeduplicationService.Fingerprint;
+import com.example.urooz.service.dedupe.DeduplicationService.Fingerprinter;
+import com.example.urooz.service.dedupe.DeduplicationService.MatchType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeduplicationServiceTest {
+
+    private static final String TENANT = "default";
+    private static final String PAGE = "The appellant was convicted under section 302 of the Penal Code. ".repeat(10);
+
+    private final JudgmentRepository repository = mock(JudgmentRepository.class);
+    private DeduplicationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DeduplicationService(repository);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "minPageChars", 100);
+        ReflectionTestUtils.setField(service, "nearDuplicateMinOverlap", 0.6);
+        when(repository.findByTextHash(any(), any(), any())).thenReturn(List.of());
+        when(repository.findByPageHashesIn(anyCollection(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void textHashIgnoresWhitespaceAndCase() {
+        Fingerprint first = service.fingerprint("a", "Hello   World\n" + PAGE);
+        Fingerprint second = service.fingerprint("b", "hello world " + PAGE.toUpperCase());
+
+        assertThat(first.textHash()).isEqualTo(second.textHash());
+        assertThat(first.pageHashes()).isEqualTo(second.pageHashes()).hasSize(1);
+    }
+
+    @Test
+    void pageByPageFingerprintMatchesJoinedText() {
+        List<String> pages = List.of(page(1), "", page(2), "", "");
+        Fingerprinter fingerprinter = service.fingerprinter("a");
+        pages.forEach(fingerprinter::addPage);
+
+        assertThat(fingerprinter.finish()).isEqualTo(service.fingerprint("a", String.join("\f", pages)));
+    }
+
+    @Test
+    void sameTextIsExactOnlyOnceIndexed() {
+        Fingerprint fingerprint = service.fingerprint("a", PAGE);
+        JudgmentMetadata indexed = document("doc-1", List.of("segment"));
+        when(repository.findByTextHash(eq(fingerprint.textHash()), eq(TENANT), any())).thenReturn(List.of(indexed));
+        assertThat(service.match(TENANT, fingerprint).type()).isEqualTo(MatchType.EXACT);
+
+        indexed.setSegmentIds(null);
+        assertThat(service.match(TENANT, fingerprint).type()).isEqualTo(MatchType.NEAR);
+    }
+
+    @Test
+    void documentsOfOtherTenantsAreNotDuplicates() {
+        Fingerprint fingerprint = service.fingerprint("a", PAGE);
+        when(repository.findByTextHash(eq(fingerprint.textHash()), eq(TENANT), any()))
+                .thenReturn(List.of(document("doc-1", List.of("segment"))));
+
+        assertThat(service.match("other-firm", fingerprint).type()).isEqualTo(MatchType.NEW);
+    }
+
+    @Test
+    void mostlyUnchangedPagesMakeNewVersion() {
+        String original = String.join("\f", page(1), page(2), page(3));
+        String revised = String.join("\f", page(1), page(2), page(3).replace("dismissed", "allowed"));
+        JudgmentMetadata stored = document("doc-1", List.of("segment"));
+        stored.setPageHashes(service.fingerprint("a", original).pageHashes());
+        when(repository.findByPageHashesIn(anyCollection(), eq(TENANT), any())).thenReturn(List.of(stored));
+
+        assertThat(service.match(TENANT, service.fingerprint("b", revised)).existing()).isSameAs(stored);
+        assertThat(service.match(TENANT, service.fingerprint("c", page(1) + "\f" + page(4) + "\f" + page(5))).type())
+                .isEqualTo(MatchType.NEW);
+    }
+
+    private static String page(int number) {
+        return ("Page " + number + ": the appeal is dismissed for the reasons recorded above. ").repeat(5);
+    }
+
+    private static JudgmentMetadata document(String id, List<String> segmentIds) {
+        JudgmentMetadata metadata = new JudgmentMetadata();
+        metadata.setId(id);
+        metadata.setSegmentIds(segmentIds);
+        return metadata;
+    }
+}
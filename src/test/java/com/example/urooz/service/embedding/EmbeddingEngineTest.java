@@ -0,0 +1,180 @@
+package com.example.urooz.service.embedding;
+
+import com.example.urooz.event.DocumentVectorsRemovedEvent;
+import com.example.urooz.event.SegmentsIndexedEvent;
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.cache.EmbeddingCache;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the engine with one worker over a fake embedding model that records
+ * the size of each micro-batch.
+ */
+class EmbeddingEngineTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SegmentStore segmentStore = mock(SegmentStore.class);
+    private final EmbeddingCache embeddingCache = mock(EmbeddingCache.class);
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    private EmbeddingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModel model = textSegments -> {
+            batchSizes.add(textSegments.size());
+            if (failing.get()) {
+                throw new IllegalStateException("ONNX session closed");
+            }
+            return Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length()}))
+                    .toList());
+        };
+        when(embeddingCache.wrap(any(), any())).thenReturn(model);
+
+        engine = new EmbeddingEngine(segmentStore, registry, events::add, embeddingCache);
+        ReflectionTestUtils.setField(engine, "workers", 1);
+        ReflectionTestUtils.setField(engine, "threadsPerWorker", 1);
+        ReflectionTestUtils.setField(engine, "batchSize", 4);
+        ReflectionTestUtils.setField(engine, "maxWaitMs", 50L);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void flushesPartialBatchOnceMaxWaitRunsOut() throws Exception {
+        engine.start();
+
+        long start = System.nanoTime();
+        await(engine.ingest(List.of(segment("doc-1", 1, false), segment("doc-1", 2, false))));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(batchSizes).containsExactly(2);
+        assertThat(registry.get("embedding.engine.batch.fill").summary().mean()).isEqualTo(0.5);
+        verify(segmentStore).upsert(anyList(), anyList());
+    }
+
+    @Test
+    void fullBatchFlushesWithoutWaiting() throws Exception {
+        ReflectionTestUtils.setField(engine, "maxWaitMs", 60_000L);
+        engine.start();
+
+        await(engine.ingest(List.of(segment("doc-1", 1, false), segment("doc-1", 2, false),
+                segment("doc-1", 3, false), segment("doc-1", 4, false))));
+
+        assertThat(batchSizes).containsExactly(4);
+        assertThat(registry.get("embedding.engine.segments").counter().count()).isEqualTo(4);
+        assertThat(registry.get("embedding.engine.batches").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void holdsPendingSegmentsUntilDocumentIsPublished() throws Exception {
+        engine.start();
+        KeyedSegment pending = segment("doc-1", 1, true);
+        KeyedSegment searchable = segment("doc-2", 1, false);
+
+        await(engine.ingest(List.of(pending, searchable)));
+
+        assertThat(indexed()).containsExactly(List.of(searchable));
+        engine.publish("doc-1");
+        assertThat(indexed()).containsExactly(List.of(searchable), List.of(pending));
+        engine.publish("doc-1");
+        assertThat(indexed()).hasSize(2);
+    }
+
+    @Test
+    void dropsHeldSegmentsRemovedBeforePublish() throws Exception {
+        engine.start();
+        KeyedSegment first = segment("doc-1", 1, true);
+        KeyedSegment second = segment("doc-1", 2, true);
+        await(engine.ingest(List.of(first, second)));
+
+        engine.onDocumentVectorsRemoved(new DocumentVectorsRemovedEvent("doc-1", List.of(first.id())));
+        engine.publish("doc-1");
+
+        assertThat(indexed()).containsExactly(List.of(second));
+    }
+
+    @Test
+    void failedBatchFailsItsFuturesAndEngineKeepsRunning() throws Exception {
+        engine.start();
+        failing.set(true);
+
+        CompletableFuture<Void> failed = engine.ingest(List.of(segment("doc-1", 1, false)));
+        assertThatThrownBy(() -> await(failed))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("ONNX session closed");
+        verify(segmentStore, never()).upsert(anyList(), anyList());
+
+        failing.set(false);
+        await(engine.ingest(List.of(segment("doc-1", 1, false))));
+        verify(segmentStore).upsert(anyList(), anyList());
+    }
+
+    @Test
+    void rebuildTargetGetsSegmentsWithoutEvents() throws Exception {
+        engine.start();
+        SegmentStore target = mock(SegmentStore.class);
+        KeyedSegment segment = segment("doc-1", 1, false);
+
+        await(engine.ingest(List.of(segment), target));
+
+        verify(target).upsert(eq(List.of(segment)), anyList());
+        verify(segmentStore, never()).upsert(anyList(), anyList());
+        assertThat(events).isEmpty();
+    }
+
+    private List<List<KeyedSegment>> indexed() {
+        return events.stream()
+                .filter(SegmentsIndexedEvent.class::isInstance)
+                .map(event -> ((SegmentsIndexedEvent) event).segments())
+                .toList();
+    }
+
+    private static void await(CompletableFuture<Void> future)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static KeyedSegment segment(String documentId, int index, boolean pending) {
+        Metadata metadata = Metadata.from(Map.of(
+                "document_id", documentId,
+                JudgmentFacets.PENDING, String.valueOf(pending)));
+        return new KeyedSegment(documentId + "-" + index,
+                TextSegment.from("Segment " + index + " of judgment " + documentId, metadata));
+    }
+}
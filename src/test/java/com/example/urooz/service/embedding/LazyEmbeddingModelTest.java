@@ -0,0 +1,38 @@
+package com.example.urooz.service.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyEmbeddingModelTest {
+
+    @Test
+    void loadsOnFirstUseAndRetriesFailedLoads() {
+        AtomicInteger loads = new AtomicInteger();
+        LazyEmbeddingModel model = new LazyEmbeddingModel(() -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("model files missing");
+            }
+            return textSegments -> Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length()}))
+                    .toList());
+        });
+
+        assertThat(model.isLoaded()).isFalse();
+        assertThat(loads).hasValue(0);
+        assertThatThrownBy(() -> model.embed("bail")).hasMessage("model files missing");
+
+        assertThat(model.embed("bail").content().vector()).containsExactly(4f);
+        assertThat(model.embedAll(List.of(TextSegment.from("appeal"))).content()).hasSize(1);
+        assertThat(model.isLoaded()).isTrue();
+        assertThat(loads).hasValue(2);
+    }
+}
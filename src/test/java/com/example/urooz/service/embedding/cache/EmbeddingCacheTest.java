@@ -0,0 +1,91 @@
+package com.example.urooz.service.embedding.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> embedded = new CopyOnWriteArrayList<>();
+
+    @Test
+    void embedsOnlyTextNotSeenBefore() {
+        EmbeddingCache cache = cache();
+        EmbeddingModel model = cache.wrap("test-model", countingModel());
+
+        model.embedAll(segments("appeal dismissed", "delay condoned"));
+        List<Embedding> embeddings = model.embedAll(segments("delay condoned", "notice served", "appeal dismissed"))
+                .content();
+        cache.close();
+
+        assertThat(embedded).containsExactly("appeal dismissed", "delay condoned", "notice served");
+        assertThat(embeddings).extracting(embedding -> embedding.vector()[0])
+                .containsExactly((float) "delay condoned".length(), (float) "notice served".length(),
+                        (float) "appeal dismissed".length());
+    }
+
+    @Test
+    void servesVectorsFromDiskAfterReopening() {
+        EmbeddingCache first = cache();
+        List<Embedding> computed = first.wrap("test-model", countingModel())
+                .embedAll(segments("appeal dismissed")).content();
+        first.close();
+        embedded.clear();
+
+        EmbeddingCache reopened = cache();
+        List<Embedding> cached = reopened.wrap("test-model", countingModel())
+                .embedAll(segments("appeal dismissed")).content();
+        List<Embedding> otherModel = reopened.wrap("other-model", countingModel())
+                .embedAll(segments("appeal dismissed")).content();
+        reopened.close();
+
+        assertThat(cached.get(0).vector()).containsExactly(computed.get(0).vector());
+        assertThat(otherModel).hasSize(1);
+        assertThat(embedded).containsExactly("appeal dismissed");
+    }
+
+    private EmbeddingCache cache() {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "path", directory.toString());
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        cache.start();
+        return cache;
+    }
+
+    private EmbeddingModel countingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                return Response.from(textSegments.stream().map(segment -> {
+                    embedded.add(segment.text());
+                    return Embedding.from(new float[]{segment.text().length(), 1, 2, 3});
+                }).toList());
+            }
+
+            @Override
+            public int dimension() {
+                return 4;
+            }
+        };
+    }
+
+    private static List<TextSegment> segments(String... texts) {
+        return Arrays.stream(texts).map(TextSegment::from).toList();
+    }
+}
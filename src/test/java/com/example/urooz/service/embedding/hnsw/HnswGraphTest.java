@@ -0,0 +1,122 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import com.example.urooz.service.embedding.hnsw.HnswGraph.Scored;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks HNSW recall against a brute-force scan on 384-dimensional vectors
+ * with a low intrinsic dimension (as sentence embeddings have). Latency is
+ * compared in the benchmarks module ({@code VectorSearchBenchmark}).
+ */
+class HnswGraphTest {
+
+    private static final int DIMENSION = 384;
+    private static final int VECTORS = 500;
+    private static final int QUERIES = 50;
+    private static final int K = 15;
+    private static final int LATENT_DIMENSION = 24;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recallAt15AgainstBruteForce() throws Exception {
+        Random random = new Random(7);
+        float[][] projection = projection(random);
+
+        try (MappedVectors vectors = new MappedVectors(tempDir.resolve("vectors.f32"), DIMENSION)) {
+            HnswGraph graph = build(vectors, random, projection);
+
+            double recall = 0;
+            for (int q = 0; q < QUERIES; q++) {
+                float[] query = embed(random, projection);
+                List<Scored> approximate = graph.search(query, K, 64, node -> true);
+                Set<Integer> exact = bruteForce(vectors, query, node -> true);
+                recall += approximate.stream().filter(hit -> exact.contains(hit.node())).count() / (double) K;
+            }
+
+            assertThat(recall / QUERIES).isGreaterThan(0.95);
+        }
+    }
+
+    @Test
+    void selectiveFilterStillFindsKNodes() throws Exception {
+        Random random = new Random(3);
+        float[][] projection = projection(random);
+
+        try (MappedVectors vectors = new MappedVectors(tempDir.resolve("vectors.f32"), DIMENSION)) {
+            HnswGraph graph = build(vectors, random, projection);
+            IntPredicate everyTwentieth = node -> node % 20 == 0;
+            float[] query = embed(random, projection);
+
+            List<Scored> hits = graph.search(query, K, 16, everyTwentieth);
+
+            assertThat(hits).hasSize(K).allMatch(hit -> everyTwentieth.test(hit.node()));
+            Set<Integer> exact = bruteForce(vectors, query, everyTwentieth);
+            assertThat(hits.stream().filter(hit -> exact.contains(hit.node())).count()).isGreaterThanOrEqualTo(K - 2);
+        }
+    }
+
+    private static HnswGraph build(MappedVectors vectors, Random random, float[][] projection) throws Exception {
+        HnswGraph graph = new HnswGraph(vectors, 16, 100);
+        for (int node = 0; node < VECTORS; node++) {
+            float[] vector = embed(random, projection);
+            vectors.set(node, vector);
+            graph.insert(node, vector);
+        }
+        return graph;
+    }
+
+    private static Set<Integer> bruteForce(MappedVectors vectors, float[] query, IntPredicate accept) {
+        float[] scores = new float[VECTORS];
+        for (int node = 0; node < VECTORS; node++) {
+            scores[node] = vectors.dot(node, query);
+        }
+        return IntStream.range(0, VECTORS).filter(accept).boxed()
+                .sorted((a, b) -> Float.compare(scores[b], scores[a]))
+                .limit(K)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static float[][] projection(Random random) {
+        float[][] projection = new float[LATENT_DIMENSION][DIMENSION];
+        for (float[] row : projection) {
+            for (int i = 0; i < DIMENSION; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+        }
+        return projection;
+    }
+
+    /** A random latent point projected to {@link #DIMENSION}, plus a little noise, normalized. */
+    private static float[] embed(Random random, float[][] projection) {
+        float[] vector = new float[DIMENSION];
+        for (float[] row : projection) {
+            float weight = (float) random.nextGaussian();
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] += weight * row[i];
+            }
+        }
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] += (float) random.nextGaussian() * 0.5f;
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
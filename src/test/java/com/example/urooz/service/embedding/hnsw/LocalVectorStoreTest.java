@@ -0,0 +1,339 @@
+package com.example.urooz.service.embedding.hnsw;
+
+import com.example.urooz.service.JudgmentFacets;
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.embedding.VectorQuantization;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LocalVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void searchesWithDocumentFilter() throws Exception {
+        LocalVectorStore store = open();
+        store.upsert(List.of(segment("a1", "doc-a", "alpha"), segment("b1", "doc-b", "beta")),
+                List.of(vector(1, 0, 0), vector(0.9f, 0.1f, 0)));
+
+        List<EmbeddingMatch<TextSegment>> all = search(store, null);
+        List<EmbeddingMatch<TextSegment>> onlyB = search(store, new IsEqualTo("document_id", "doc-b"));
+
+        assertThat(all).extracting(EmbeddingMatch::embeddingId).containsExactly("a1", "b1");
+        assertThat(onlyB).extracting(EmbeddingMatch::embeddingId).containsExactly("b1");
+        assertThat(onlyB.get(0).embedded().metadata().getInteger("page_number")).isEqualTo(1);
+        store.close();
+    }
+
+    @Test
+    void recoversFromLogAfterCrashAndDropsTornTail() throws Exception {
+        LocalVectorStore crashed = open();
+        crashed.upsert(List.of(segment("a1", "doc-a", "alpha"), segment("a2", "doc-a", "gamma")),
+                List.of(vector(1, 0, 0), vector(0, 1, 0)));
+        crashed.delete(List.of("a2"));
+        // Simulate a crash half-way through appending the next record.
+        try (FileChannel wal = FileChannel.open(tempDir.resolve("vectors.wal"), StandardOpenOption.APPEND)) {
+            wal.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+        }
+
+        LocalVectorStore recovered = open();
+
+        assertThat(recovered.size()).isEqualTo(1);
+        assertThat(search(recovered, null)).extracting(match -> match.embedded().text()).containsExactly("alpha");
+        recovered.close();
+    }
+
+    @Test
+    void reopensFromSnapshotAndNewerLog() throws Exception {
+        LocalVectorStore store = open();
+        store.upsert(List.of(segment("a1", "doc-a", "alpha")), List.of(vector(1, 0, 0)));
+        store.close();
+        assertThat(tempDir.resolve("index.snapshot")).exists();
+
+        LocalVectorStore reopened = open();
+        reopened.upsert(List.of(segment("b1", "doc-b", "beta")), List.of(vector(0, 0, 1)));
+        LocalVectorStore afterCrash = open();
+
+        assertThat(afterCrash.size()).isEqualTo(2);
+        assertThat(search(afterCrash, new IsEqualTo("document_id", "doc-a")))
+                .extracting(EmbeddingMatch::embeddingId).containsExactly("a1");
+        assertThat(Files.size(tempDir.resolve("vectors.wal"))).isPositive();
+        afterCrash.close();
+    }
+
+    @Test
+    void filtersOnFacetsSetAfterIndexing() throws Exception {
+        LocalVectorStore store = open();
+        store.upsert(List.of(segment("a1", "doc-a", "alpha"), segment("b1", "doc-b", "beta"),
+                        segment("c1", "doc-c", "gamma")),
+                List.of(vector(1, 0, 0), vector(0.9f, 0.1f, 0), vector(0.8f, 0.2f, 0)));
+        store.setMetadata(Map.of(
+                "doc-a", Map.of(JudgmentFacets.COURT, "High Court", JudgmentFacets.DATE, 18_000L),
+                "doc-b", Map.of(JudgmentFacets.COURT, "Supreme Court", JudgmentFacets.DATE, 19_000L),
+                "doc-c", Map.of(JudgmentFacets.COURT, "High Court", JudgmentFacets.DATE, 19_500L)));
+        Filter filter = new And(new IsIn(JudgmentFacets.COURT, List.of("High Court")),
+                new IsGreaterThanOrEqualTo(JudgmentFacets.DATE, 19_000L));
+
+        assertThat(search(store, filter)).extracting(EmbeddingMatch::embeddingId).containsExactly("c1");
+        // Reopen without closing, so the facets are replayed from the log.
+        LocalVectorStore recovered = open();
+        List<EmbeddingMatch<TextSegment>> matches = search(recovered, filter);
+
+        assertThat(matches).extracting(EmbeddingMatch::embeddingId).containsExactly("c1");
+        assertThat(matches.get(0).embedded().metadata().getString("document_id")).isEqualTo("doc-c");
+        assertThat(matches.get(0).embedded().metadata().getLong(JudgmentFacets.DATE)).isEqualTo(19_500L);
+        recovered.close();
+    }
+
+    @Test
+    void searchesSmallTenantsExactlyAndSelectiveFiltersInOneWalk() throws Exception {
+        Random random = new Random(5);
+        List<KeyedSegment> segments = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String tenant = i % 40 == 0 ? "small" : "large";
+            segments.add(new KeyedSegment("s" + i, TextSegment.from("text " + i, Metadata.from("document_id", "doc-" + i)
+                    .put(JudgmentFacets.TENANT, tenant).put(JudgmentFacets.COURT, i % 50 == 1 ? "Supreme Court" : "High Court"))));
+            embeddings.add(randomVector(random, 16));
+        }
+        LocalVectorStore store = open(VectorQuantization.NONE, 16);
+        store.upsert(segments, embeddings);
+
+        List<EmbeddingMatch<TextSegment>> small = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(3)).maxResults(15).minScore(0.0)
+                .filter(new And(new IsEqualTo(JudgmentFacets.TENANT, "small"),
+                        new IsIn(JudgmentFacets.COURT, List.of("High Court"))))
+                .build()).matches();
+        List<EmbeddingMatch<TextSegment>> rareCourt = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(3)).maxResults(15).minScore(0.0)
+                .filter(new And(new IsEqualTo(JudgmentFacets.TENANT, "large"),
+                        new IsIn(JudgmentFacets.COURT, List.of("Supreme Court"))))
+                .build()).matches();
+
+        assertThat(small).hasSize(10)
+                .allSatisfy(match -> assertThat(match.embedded().metadata().getString(JudgmentFacets.TENANT)).isEqualTo("small"));
+        assertThat(rareCourt).hasSize(8)
+                .allSatisfy(match -> assertThat(match.embedded().metadata().getString(JudgmentFacets.COURT)).isEqualTo("Supreme Court"));
+
+        store.setMetadata(Map.of("doc-1", Map.of(JudgmentFacets.TENANT, "small")));
+        assertThat(store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(1)).maxResults(15).minScore(0.0)
+                .filter(new IsEqualTo(JudgmentFacets.TENANT, "small"))
+                .build()).matches()).hasSize(11).extracting(EmbeddingMatch::embeddingId).startsWith("s1");
+        store.close();
+    }
+
+    @Test
+    void compactsDeletedSlotsInTheBackgroundAndOnClose() throws Exception {
+        Random random = new Random(9);
+        List<KeyedSegment> segments = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            segments.add(segment("s" + i, "doc-" + i % 5, "text " + i));
+            embeddings.add(randomVector(random, 16));
+        }
+        LocalVectorStore store = open(VectorQuantization.NONE, 16);
+        store.upsert(segments, embeddings);
+        // Re-ingesting replaces segments, which leaves their old slots behind.
+        store.upsert(segments.subList(0, 20), embeddings.subList(0, 20));
+        ReflectionTestUtils.setField(store, "checkpointOps", 10);
+        store.delete(List.of("s40", "s41", "s42", "s43", "s44", "s45", "s46", "s47", "s48", "s49"));
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (ReflectionTestUtils.getField(store, "vectorFile").equals("vectors.f32") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(ReflectionTestUtils.getField(store, "slotCount")).isEqualTo(40);
+        assertThat(tempDir.resolve("vectors.f32")).doesNotExist();
+        store.delete(List.of("s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7", "s8", "s9"));
+        store.close();
+
+        LocalVectorStore reopened = open(VectorQuantization.NONE, 16);
+        assertThat(reopened.size()).isEqualTo(30);
+        assertThat(ReflectionTestUtils.getField(reopened, "slotCount")).isEqualTo(30);
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.filter(file -> file.getFileName().toString().endsWith(".f32"))).hasSize(1);
+        }
+        List<EmbeddingMatch<TextSegment>> matches = reopened.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddings.get(12)).maxResults(3).minScore(0.0).build()).matches();
+        assertThat(matches.get(0).embeddingId()).isEqualTo("s12");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, within(1e-5));
+        assertThat(reopened.search(EmbeddingSearchRequest.builder().queryEmbedding(embeddings.get(10)).maxResults(10)
+                        .minScore(0.0).filter(new IsEqualTo("document_id", "doc-0")).build()).matches())
+                .extracting(EmbeddingMatch::embeddingId).containsExactlyInAnyOrder("s10", "s15", "s20", "s25", "s30", "s35");
+        reopened.close();
+    }
+
+    @Test
+    void installsCompactionWhileWritesKeepArriving() throws Exception {
+        Random random = new Random(5);
+        LocalVectorStore store = open(VectorQuantization.NONE, 16);
+        for (int i = 0; i < 50; i++) {
+            store.upsert(List.of(segment("s" + i, "doc-" + i % 5, "text " + i)), List.of(randomVector(random, 16)));
+        }
+        store.delete(List.of("s40", "s41", "s42", "s43", "s44", "s45", "s46", "s47", "s48", "s49"));
+        ReflectionTestUtils.setField(store, "checkpointOps", 5);
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random writes = new Random(6);
+            for (int i = 0; writing.get(); i++) {
+                store.upsert(List.of(segment("w" + i % 10, "doc-w", "write " + i)), List.of(randomVector(writes, 16)));
+            }
+        });
+        writer.start();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (ReflectionTestUtils.getField(store, "vectorFile").equals("vectors.f32") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        writing.set(false);
+        writer.join();
+
+        assertThat(ReflectionTestUtils.getField(store, "vectorFile")).isNotEqualTo("vectors.f32");
+        assertThat(store.size()).isEqualTo(50);
+        store.close();
+    }
+
+    @Test
+    void scrollVisitsEverySegmentOnceAcrossCompaction() throws Exception {
+        Random random = new Random(7);
+        List<KeyedSegment> segments = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            segments.add(segment("s" + i, "doc-" + i % 5, "text " + i));
+            embeddings.add(randomVector(random, 16));
+        }
+        LocalVectorStore store = open(VectorQuantization.NONE, 16);
+        store.upsert(segments, embeddings);
+        store.delete(List.of("s40", "s41", "s42", "s43", "s44", "s45", "s46", "s47", "s48", "s49"));
+
+        List<String> scrolled = new ArrayList<>();
+        store.scroll(5, page -> {
+            if (scrolled.isEmpty()) {
+                // Compacting renumbers every slot after the deleted one.
+                ReflectionTestUtils.setField(store, "checkpointOps", 1);
+                store.delete(List.of("s0"));
+                awaitCompaction(store);
+            }
+            page.forEach(segment -> scrolled.add(segment.id()));
+        });
+
+        assertThat(scrolled).doesNotHaveDuplicates().hasSize(40)
+                .containsExactlyElementsOf(segments.subList(0, 40).stream().map(KeyedSegment::id).toList());
+        store.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = VectorQuantization.class, names = {"INT8", "BINARY"})
+    void quantizedSearchReturnsExactScoresAndSurvivesReopen(VectorQuantization quantization) throws Exception {
+        Random random = new Random(11);
+        List<KeyedSegment> segments = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            segments.add(segment("s" + i, "doc-" + i % 7, "text " + i));
+            embeddings.add(randomVector(random, 64));
+        }
+        LocalVectorStore store = open(quantization, 64);
+        store.upsert(segments, embeddings);
+        store.close();
+
+        LocalVectorStore reopened = open(quantization, 64);
+        Embedding query = embeddings.get(42);
+        List<EmbeddingMatch<TextSegment>> matches = reopened.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(10)
+                .minScore(0.0)
+                .build()).matches();
+
+        assertThat(matches.get(0).embeddingId()).isEqualTo("s42");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, within(1e-5));
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            double exact = RelevanceScore.fromCosineSimilarity(CosineSimilarity.between(query, match.embedding()));
+            assertThat(match.score()).isCloseTo(exact, within(1e-5));
+        }
+        assertThat(matches).extracting(EmbeddingMatch::score).isSortedAccordingTo(Comparator.reverseOrder());
+        reopened.close();
+    }
+
+    private static void awaitCompaction(LocalVectorStore store) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (ReflectionTestUtils.getField(store, "vectorFile").equals("vectors.f32")) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private LocalVectorStore open() throws Exception {
+        return open(VectorQuantization.NONE, 3);
+    }
+
+    private LocalVectorStore open(VectorQuantization quantization, int dimension) throws Exception {
+        LocalVectorStore store = new LocalVectorStore();
+        ReflectionTestUtils.setField(store, "path", tempDir.toString());
+        ReflectionTestUtils.setField(store, "dimension", dimension);
+        ReflectionTestUtils.setField(store, "quantization", quantization);
+        ReflectionTestUtils.setField(store, "m", 4);
+        ReflectionTestUtils.setField(store, "efConstruction", 16);
+        ReflectionTestUtils.setField(store, "efSearch", 16);
+        ReflectionTestUtils.setField(store, "checkpointOps", 1000);
+        store.open();
+        return store;
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(LocalVectorStore store,
+                                                            dev.langchain4j.store.embedding.filter.Filter filter) {
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(vector(1, 0, 0))
+                .maxResults(5)
+                .minScore(0.0)
+                .filter(filter)
+                .build()).matches();
+    }
+
+    private static KeyedSegment segment(String id, String documentId, String text) {
+        return new KeyedSegment(id, TextSegment.from(text, Metadata.from("document_id", documentId).put("page_number", 1)));
+    }
+
+    private static Embedding randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+
+    private static Embedding vector(float... values) {
+        return Embedding.from(values);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.urooz.service.lexical;
+
+import com.example.urooz.service.embedding.KeyedSegment;
+import com.example.urooz.service.lexical.Bm25Index.LexicalHit;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class Bm25IndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void ranksRareExactTermsFirst() {
+        Bm25Index index = newIndex();
+        index.addAll(List.of(
+                segment("1", "The appellant was convicted under Section 302 of the Penal Code."),
+                segment("2", "The appellant challenged the order of the High Court."),
+                segment("3", "Dowry harassment under Section 498A was alleged by the appellant.")));
+
+        List<LexicalHit> hits = index.search("section 498A", 10);
+
+        assertThat(hits).extracting(LexicalHit::id).containsExactly("3", "1");
+        assertThat(index.search("appellant", 10)).hasSize(3);
+    }
+
+    @Test
+    void replacesAndRemovesSegmentsById() {
+        Bm25Index index = newIndex();
+        index.addAll(List.of(segment("1", "bail granted"), segment("2", "bail refused")));
+
+        index.addAll(List.of(segment("1", "anticipatory relief granted")));
+        index.removeAll(List.of("2"));
+
+        assertThat(index.search("bail", 10)).isEmpty();
+        assertThat(index.search("granted", 10)).extracting(LexicalHit::text).containsExactly("anticipatory relief granted");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void searchesOnlyTheRequestedTenant() {
+        Bm25Index index = newIndex();
+        index.addAll(List.of(
+                new KeyedSegment("1", TextSegment.from("bail granted",
+                        Metadata.from("document_id", "doc-1").put("tenant_id", "acme"))),
+                new KeyedSegment("2", TextSegment.from("bail refused",
+                        Metadata.from("document_id", "doc-2").put("tenant_id", "globex"))),
+                segment("3", "bail cancelled")));
+
+        assertThat(index.search("bail", 10, "acme", document -> true)).extracting(LexicalHit::id).containsExactly("1");
+        assertThat(index.search("bail", 10, "default", document -> true)).extracting(LexicalHit::id).containsExactly("3");
+        assertThat(index.search("bail", 10)).hasSize(3);
+    }
+
+    @Test
+    void survivesFlushAndReload() throws Exception {
+        Bm25Index index = newIndex();
+        for (int i = 0; i < 200; i++) {
+            index.addAll(List.of(new KeyedSegment("s" + i, TextSegment.from(
+                    "judgment number " + i + " cites AIR 1973 SC " + (1000 + i),
+                    Metadata.from("document_id", "doc-" + i % 3).put("page_number", i % 10 + 1)))));
+        }
+        index.removeAll(List.of("s7"));
+        index.flush();
+
+        Bm25Index reloaded = newIndex();
+        reloaded.start();
+        try {
+            assertThat(reloaded.size()).isEqualTo(199);
+            assertThat(reloaded.search("1042", 5))
+                    .extracting(LexicalHit::id, LexicalHit::documentId, LexicalHit::pageNumber)
+                    .containsExactly(tuple("s42", "doc-0", 3));
+            assertThat(reloaded.search("1007", 5)).isEmpty();
+            assertThat(reloaded.search("1973", 500)).hasSize(199);
+        } finally {
+            reloaded.stop();
+        }
+    }
+
+    private Bm25Index newIndex() {
+        Bm25Index index = new Bm25Index(null);
+        ReflectionTestUtils.setField(index, "path", tempDir.resolve("lexical-index.bin").toString());
+        ReflectionTestUtils.setField(index, "flushIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(index, "rebuildIfMissing", false);
+        ReflectionTestUtils.setField(index, "k1", 1.2);
+        ReflectionTestUtils.setField(index, "b", 0.75);
+        return index;
+    }
+
+    private static KeyedSegment segment(String id, String text) {
+        return new KeyedSegment(id, TextSegment.from(text));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.urooz.service.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local streaming model for tests: emits the configured tokens on a background
+ * thread with a fixed delay between them and honours cancellation.
+ */
+public class FakeStreamingChatModel implements CancellableStreamingChatModel {
+
+    private final List<String> tokens;
+    private final long delayMs;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    public FakeStreamingChatModel(List<String> tokens, long delayMs) {
+        this.tokens = tokens;
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public StreamingHandle stream(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        Thread thread = new Thread(() -> {
+            try {
+                StringBuilder answer = new StringBuilder();
+                for (String token : tokens) {
+                    Thread.sleep(delayMs);
+                    if (cancelled.get()) {
+                        return;
+                    }
+                    answer.append(token);
+                    handler.onNext(token);
+                }
+                handler.onComplete(Response.from(AiMessage.from(answer.toString())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        });
+        thread.start();
+        return () -> cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public void awaitFinished() throws InterruptedException {
+        finished.await();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.urooz.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiStreamingChatModelTest {
+
+    private HttpServer server;
+    private GeminiStreamingChatModel model;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1beta/models/test-model:streamGenerateContent", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                writeEvent(body, "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"The appeal \"}]}}]}");
+                writeEvent(body, "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"is dismissed.\"}]},"
+                        + "\"finishReason\":\"STOP\"}],\"usageMetadata\":{\"promptTokenCount\":12,"
+                        + "\"candidatesTokenCount\":4,\"totalTokenCount\":16}}");
+            }
+        });
+        server.start();
+
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/v1beta";
+        model = new GeminiStreamingChatModel(HttpClient.newHttpClient(), new ObjectMapper(), baseUrl,
+                "test-key", "test-model", 0.0, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void forwardsTokensAsEventsArriveAndReportsUsage() throws Exception {
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        CompletableFuture<Response<AiMessage>> completed = new CompletableFuture<>();
+
+        model.stream("question", new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                completed.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                completed.completeExceptionally(error);
+            }
+        });
+
+        Response<AiMessage> response = completed.get(5, TimeUnit.SECONDS);
+        assertThat(tokens).containsExactly("The appeal ", "is dismissed.");
+        assertThat(response.content().text()).isEqualTo("The appeal is dismissed.");
+        assertThat(response.tokenUsage().totalTokenCount()).isEqualTo(16);
+    }
+
+    private static void writeEvent(OutputStream body, String json) throws IOException {
+        body.write(("data: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+}
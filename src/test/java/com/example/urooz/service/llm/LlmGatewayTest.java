@@ -0,0 +1,183 @@
+package com.example.urooz.service.llm;
+
+import com.example.urooz.exception.LlmBusyException;
+import com.example.urooz.service.llm.LlmGateway.Lane;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmGatewayTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void identicalPromptsInFlightShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LlmGateway gateway = TestLlmGateway.create(model(prompt -> {
+            calls.incrementAndGet();
+            await(release);
+            return "answer";
+        }), null, registry, 4);
+
+        List<CompletableFuture<Response<AiMessage>>> results = List.of(
+                CompletableFuture.supplyAsync(() -> gateway.generate("answer", Lane.INTERACTIVE, "question"), executor),
+                CompletableFuture.supplyAsync(() -> gateway.generate("answer", Lane.INTERACTIVE, "question"), executor),
+                CompletableFuture.supplyAsync(() -> gateway.generate("answer", Lane.BACKGROUND, "question"), executor));
+        waitUntil(() -> registry.get("llm.gateway.coalesced").counter().count() == 2);
+        release.countDown();
+
+        for (CompletableFuture<Response<AiMessage>> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS).content().text()).isEqualTo("answer");
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void rateLimitedCallsAreRetriedAndShrinkTheLimit() {
+        AtomicInteger calls = new AtomicInteger();
+        LlmGateway gateway = TestLlmGateway.create(model(prompt -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new RuntimeException("RESOURCE_EXHAUSTED (code 429) Quota exceeded");
+            }
+            return "answer";
+        }), null, registry, 8);
+
+        assertThat(gateway.generate("extraction", Lane.BACKGROUND, "prompt").content().text()).isEqualTo("answer");
+        assertThat(calls).hasValue(3);
+        assertThat(registry.get("llm.gateway.retries").counter().count()).isEqualTo(2);
+        assertThat(registry.get("llm.gateway.limit").gauge().value()).isLessThan(8);
+    }
+
+    @Test
+    void persistentRateLimitingFailsAsBusyAndOtherErrorsAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        LlmGateway gateway = TestLlmGateway.create(model(prompt -> {
+            calls.incrementAndGet();
+            if (prompt.equals("invalid")) {
+                throw new RuntimeException("INVALID_ARGUMENT (code 400) Bad prompt");
+            }
+            throw new RuntimeException("RESOURCE_EXHAUSTED (code 429) Quota exceeded");
+        }), null, registry, 4);
+
+        assertThatThrownBy(() -> gateway.generate("answer", Lane.INTERACTIVE, "prompt"))
+                .isInstanceOf(LlmBusyException.class);
+        assertThat(calls).hasValue(4);
+
+        calls.set(0);
+        assertThatThrownBy(() -> gateway.generate("answer", Lane.INTERACTIVE, "invalid"))
+                .hasMessageContaining("code 400");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void unavailableGeminiOpensTheCircuitSoCallsFailFast() {
+        AtomicInteger calls = new AtomicInteger();
+        LlmGateway gateway = TestLlmGateway.create(model(prompt -> {
+            calls.incrementAndGet();
+            throw new RuntimeException("UNAVAILABLE (code 503) The model is overloaded");
+        }), null, registry, 4);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> gateway.generate("answer", Lane.INTERACTIVE, "prompt"));
+        }
+        int sent = calls.get();
+
+        assertThatThrownBy(() -> gateway.generate("answer", Lane.INTERACTIVE, "prompt"))
+                .isInstanceOf(LlmBusyException.class)
+                .hasMessageContaining("circuit breaker for gemini is open");
+        assertThat(calls).hasValue(sent);
+        assertThat(registry.get("client.circuit.state").tag("client", "gemini").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void interactiveCallsAreAdmittedBeforeWaitingBackgroundCalls() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        LlmGateway gateway = TestLlmGateway.create(model(prompt -> {
+            order.add(prompt);
+            if (prompt.equals("first")) {
+                await(release);
+            }
+            return prompt;
+        }), null, registry, 1);
+
+        CompletableFuture<?> first = CompletableFuture.runAsync(
+                () -> gateway.generate("extraction", Lane.BACKGROUND, "first"), executor);
+        waitUntil(() -> order.contains("first"));
+        CompletableFuture<?> background = CompletableFuture.runAsync(
+                () -> gateway.generate("extraction", Lane.BACKGROUND, "background"), executor);
+        waitUntil(() -> registry.get("llm.gateway.waiting").tag("lane", "background").gauge().value() == 1);
+        CompletableFuture<?> interactive = CompletableFuture.runAsync(
+                () -> gateway.generate("answer", Lane.INTERACTIVE, "interactive"), executor);
+        waitUntil(() -> registry.get("llm.gateway.waiting").tag("lane", "interactive").gauge().value() == 1);
+
+        release.countDown();
+        CompletableFuture.allOf(first, background, interactive).get(5, TimeUnit.SECONDS);
+
+        assertThat(order).containsExactly("first", "interactive", "background");
+    }
+
+    @Test
+    void classifiesProviderErrors() {
+        assertThat(LlmGateway.classify(new RuntimeException("RESOURCE_EXHAUSTED (code 429) Quota")))
+                .isEqualTo(LlmGateway.Failure.RATE_LIMITED);
+        assertThat(LlmGateway.classify(new IllegalStateException("Gemini streaming call failed with HTTP 503: busy")))
+                .isEqualTo(LlmGateway.Failure.UNAVAILABLE);
+        assertThat(LlmGateway.classify(new RuntimeException("An error occurred when calling the Gemini API endpoint.",
+                new SocketTimeoutException("timeout")))).isEqualTo(LlmGateway.Failure.UNAVAILABLE);
+        assertThat(LlmGateway.classify(new RuntimeException("INVALID_ARGUMENT (code 400) Bad")))
+                .isEqualTo(LlmGateway.Failure.FATAL);
+    }
+
+    private static ChatLanguageModel model(Function<String, String> answer) {
+        return new ChatLanguageModel() {
+            @Override
+            public Response<AiMessage> generate(List<ChatMessage> messages) {
+                return Response.from(AiMessage.from(answer.apply(((UserMessage) messages.get(0)).singleText())));
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.urooz.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingJsonObjectReaderTest {
+
+    private final StreamingJsonObjectReader reader = new StreamingJsonObjectReader(new ObjectMapper());
+
+    @Test
+    void readsObjectSplitAtArbitraryPointsAndIgnoresSurroundingProse() {
+        String response = "Sure, here it is:\n```json\n{\"title\":\"State v. Kumar\",\"issues\":[\"Jurisdiction\",\"Delay\"],"
+                + "\"arguments\":{\"petitioner\":\"No \\\"notice\\\" — time-barred\"},\"ratio\":null}\n```\nDone.";
+        for (int i = 0; i < response.length(); i += 3) {
+            reader.feed(response.substring(i, Math.min(response.length(), i + 3)));
+        }
+
+        assertThat(reader.isComplete()).isTrue();
+        assertThat(reader.fields().get("title").asText()).isEqualTo("State v. Kumar");
+        assertThat(reader.fields().get("issues")).hasSize(2);
+        assertThat(reader.fields().at("/arguments/petitioner").asText()).isEqualTo("No \"notice\" — time-barred");
+        assertThat(reader.fields().get("ratio").isNull()).isTrue();
+    }
+
+    @Test
+    void keepsCompletedFieldsOfTruncatedResponse() {
+        reader.feed("{\"title\":\"State v. Kumar\",\"arguments\":{\"petitioner\":\"Delay\"},");
+        reader.feed("\"issues\":[\"Jurisdiction\",\"Limi");
+
+        assertThat(reader.isComplete()).isFalse();
+        assertThat(reader.fields().properties()).extracting(Map.Entry::getKey)
+                .containsExactly("title", "arguments");
+    }
+
+    @Test
+    void stopsAtMalformedInputWithoutThrowing() {
+        reader.feed("{\"court\":\"Supreme Court\",\"date\": March 12, \"holding\":\"Allowed\"}");
+
+        assertThat(reader.isComplete()).isFalse();
+        assertThat(reader.fields().properties()).extracting(Map.Entry::getKey).containsExactly("court");
+    }
+}
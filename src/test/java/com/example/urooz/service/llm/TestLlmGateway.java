@@ -0,0 +1,46 @@
+package com.example.urooz.service.llm;
+
+import com.example.urooz.config.BlockingIoThreads;
+import com.example.urooz.service.client.DependencyGuards;
+import com.example.urooz.service.metrics.StageMetrics;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Builds started {@link LlmGateway}s with the default settings and short
+ * retry delays for tests.
+ */
+public final class TestLlmGateway {
+
+    private TestLlmGateway() {
+    }
+
+    public static LlmGateway create(ChatLanguageModel model, CancellableStreamingChatModel streamingModel) {
+        return create(model, streamingModel, new SimpleMeterRegistry(), 4);
+    }
+
+    public static LlmGateway create(ChatLanguageModel model, CancellableStreamingChatModel streamingModel,
+                                    MeterRegistry registry, int initialLimit) {
+        MockEnvironment environment = new MockEnvironment();
+        LlmGateway gateway = new LlmGateway(model, streamingModel, new StageMetrics(registry), registry,
+                new DependencyGuards(environment, registry, new BlockingIoThreads(environment)));
+        ReflectionTestUtils.setField(gateway, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(gateway, "minLimit", 1);
+        ReflectionTestUtils.setField(gateway, "maxLimit", 32);
+        ReflectionTestUtils.setField(gateway, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(gateway, "backgroundShare", 0.75);
+        ReflectionTestUtils.setField(gateway, "interactiveQueueTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(gateway, "backgroundQueueTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(gateway, "maxAttempts", 4);
+        ReflectionTestUtils.setField(gateway, "baseDelayMs", 5L);
+        ReflectionTestUtils.setField(gateway, "maxDelayMs", 20L);
+        ReflectionTestUtils.setField(gateway, "retryRatio", 0.1);
+        ReflectionTestUtils.setField(gateway, "retryBudgetMax", 20.0);
+        ReflectionTestUtils.setField(gateway, "jsonTimeoutMs", 5000L);
+        gateway.start();
+        return gateway;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.urooz.service.metrics;
+
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StageMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StageMetrics metrics = new StageMetrics(registry);
+
+    @AfterEach
+    void tearDown() {
+        StageMetrics.clearCurrentEndpoint();
+    }
+
+    @Test
+    void timesStagesPerEndpointEvenWhenTheyFail() {
+        StageMetrics.setCurrentEndpoint("/search");
+        assertThat(metrics.time(StageMetrics.VECTOR_SEARCH, () -> "hits")).isEqualTo("hits");
+        assertThatThrownBy(() -> metrics.time(StageMetrics.VECTOR_SEARCH, () -> {
+            throw new IllegalStateException("store down");
+        })).isInstanceOf(IllegalStateException.class);
+        metrics.time(StageMetrics.PDF_PARSE, StageMetrics.EXTRACT, () -> null);
+
+        assertThat(registry.get(StageMetrics.STAGE_TIMER)
+                .tags("stage", StageMetrics.VECTOR_SEARCH, "endpoint", "/search").timer().count()).isEqualTo(2);
+        assertThat(registry.get(StageMetrics.STAGE_TIMER)
+                .tags("stage", StageMetrics.PDF_PARSE, "endpoint", StageMetrics.EXTRACT).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsTokenUsageAndInFlightCalls() {
+        metrics.recordTokens("answer", new TokenUsage(120, 30));
+        metrics.recordTokens("answer", null);
+        metrics.llmCallsInFlight("answer").incrementAndGet();
+
+        assertThat(registry.get(StageMetrics.LLM_TOKENS).tags("operation", "answer", "type", "prompt")
+                .summary().totalAmount()).isEqualTo(120);
+        assertThat(registry.get(StageMetrics.LLM_TOKENS).tags("operation", "answer", "type", "response")
+                .summary().count()).isEqualTo(1);
+        assertThat(registry.get("llm.calls.in-flight").tag("operation", "answer").gauge().value()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.urooz.service.retrieval;
+
+import com.example.urooz.model.RetrievedDocument;
+import com.example.urooz.model.RetrievedSegment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextBuilderTest {
+
+    private static final String FIRST = "The appellant was convicted under Section 302 of the Penal Code by the Sessions Court.";
+    private static final String SECOND = "by the Sessions Court. The High Court confirmed the conviction and dismissed the appeal.";
+
+    private final ContextBuilder builder = new ContextBuilder();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(builder, "maxTokens", 3000);
+        ReflectionTestUtils.setField(builder, "charsPerToken", 4);
+        ReflectionTestUtils.setField(builder, "minOverlapChars", 20);
+        ReflectionTestUtils.setField(builder, "nearDuplicateBits", 6);
+    }
+
+    @Test
+    void mergesOverlappingSegmentsOfOneJudgmentInPageOrder() {
+        List<String> blocks = builder.build(List.of(document("State v. Kumar",
+                segment(SECOND, 4, 0.9), segment(FIRST, 3, 0.8))));
+
+        assertThat(blocks).containsExactly("[1] State v. Kumar — High Court, 2020\n(p. 3) "
+                + "The appellant was convicted under Section 302 of the Penal Code by the Sessions Court. "
+                + "The High Court confirmed the conviction and dismissed the appeal.");
+    }
+
+    @Test
+    void dropsNearDuplicatePassagesAcrossJudgments() {
+        String quoted = FIRST + " The High Court confirmed the conviction, holding that the testimony of the"
+                + " eyewitnesses was consistent and reliable, and that the medical evidence corroborated the"
+                + " prosecution case. Before us, learned counsel for the appellant contends that the eyewitnesses"
+                + " are interested witnesses and that the recovery of the weapon was not proved in accordance with law.";
+        List<String> blocks = builder.build(List.of(
+                document("State v. Kumar", segment(quoted, 3, 0.9)),
+                document("State v. Singh", segment(quoted.replace("consistent", "coherent"), 7, 0.8)),
+                document("State v. Rao", segment("Bail was granted subject to surety.", 1, 0.7))));
+
+        assertThat(blocks).hasSize(2);
+        assertThat(blocks.get(0)).startsWith("[1] State v. Kumar");
+        assertThat(blocks.get(1)).startsWith("[3] State v. Rao");
+    }
+
+    @Test
+    void fillsTheTokenBudgetInScoreOrder() {
+        ReflectionTestUtils.setField(builder, "maxTokens", 40);
+        String filler = "Detailed discussion of precedent on sentencing principles. ";
+        List<String> blocks = builder.build(List.of(
+                document("Low", segment("x".repeat(60) + filler, 1, 0.2)),
+                document("High", segment(filler, 2, 0.9))));
+
+        assertThat(blocks).hasSize(1);
+        assertThat(blocks.get(0)).startsWith("[2] High");
+    }
+
+    @Test
+    void joinsOnlyRealOverlaps() {
+        assertThat(builder.join(FIRST, SECOND)).endsWith("Sessions Court. The High Court confirmed the conviction and dismissed the appeal.");
+        assertThat(builder.join(FIRST, "Unrelated text about bail conditions imposed.")).isNull();
+        assertThat(builder.join(FIRST, "Section 302 of the Penal Code")).isEqualTo(FIRST);
+    }
+
+    private static RetrievedDocument document(String title, RetrievedSegment... segments) {
+        return new RetrievedDocument(title.toLowerCase(), title, "High Court", "2020", segments[0].score(),
+                List.of(segments));
+    }
+
+    private static RetrievedSegment segment(String text, int page, double score) {
+        return new RetrievedSegment(text + page, text, page, score);
+    }
+}
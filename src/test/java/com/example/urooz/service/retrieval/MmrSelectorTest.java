@@ -0,0 +1,49 @@
+package com.example.urooz.service.retrieval;
+
+import com.example.urooz.service.retrieval.MmrSelector.Candidate;
+import dev.langchain4j.data.embedding.Embedding;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MmrSelectorTest {
+
+    @Test
+    void skipsNearDuplicatesInFavourOfNovelSegments() {
+        List<Candidate> candidates = List.of(
+                dense("a", 1.0, 1, 0, 0),
+                dense("a", 0.95, 0.99f, 0.01f, 0),
+                dense("b", 0.8, 0, 1, 0));
+
+        assertThat(MmrSelector.select(candidates, 2, 10, 0.7)).containsExactly(0, 2);
+        assertThat(MmrSelector.select(candidates, 2, 10, 1.0)).containsExactly(0, 1);
+    }
+
+    @Test
+    void capsSegmentsPerDocument() {
+        List<Candidate> candidates = List.of(
+                dense("a", 1.0, 1, 0, 0),
+                dense("a", 0.9, 0, 1, 0),
+                dense("a", 0.8, 0, 0, 1),
+                dense("b", 0.5, 1, 1, 0),
+                dense(null, 0.4, 0, 1, 1));
+
+        assertThat(MmrSelector.select(candidates, 4, 2, 1.0)).containsExactly(0, 1, 3, 4);
+    }
+
+    @Test
+    void fallsBackToTermOverlapWithoutEmbeddings() {
+        Candidate lexical = new Candidate("a", 1.0, null, Set.of("section", "498a", "dowry"));
+        Candidate dense = new Candidate("b", 1.0, Embedding.from(new float[]{1, 0}), Set.of("section", "302"));
+
+        assertThat(MmrSelector.similarity(lexical, dense)).isCloseTo(0.25, within(1e-9));
+    }
+
+    private static Candidate dense(String documentId, double relevance, float... vector) {
+        return new Candidate(documentId, relevance, Embedding.from(vector), Set.of());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.urooz.service.tenant;
+
+import com.example.urooz.exception.AdminAccessDeniedException;
+import com.example.urooz.exception.InvalidTenantException;
+import com.example.urooz.exception.TenantQuotaExceededException;
+import com.example.urooz.exception.UnknownTenantException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private TenantService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new TenantService(registry, null, null);
+        ReflectionTestUtils.setField(service, "maxInFlight", 2);
+        ReflectionTestUtils.setField(service, "allowedTenants", List.of("acme", "globex", "acme-law"));
+    }
+
+    @Test
+    void resolvesMissingHeaderToDefaultTenant() {
+        assertThat(service.resolve(null)).isEqualTo("default");
+        assertThat(service.resolve(" ")).isEqualTo("default");
+        assertThat(service.resolve(" Acme-Law ")).isEqualTo("acme-law");
+    }
+
+    @Test
+    void rejectsMalformedTenantIds() {
+        assertThatThrownBy(() -> service.resolve("../other")).isInstanceOf(InvalidTenantException.class);
+        assertThatThrownBy(() -> service.resolve("-acme")).isInstanceOf(InvalidTenantException.class);
+        assertThatThrownBy(() -> service.resolve("a".repeat(65))).isInstanceOf(InvalidTenantException.class);
+    }
+
+    @Test
+    void rejectsTenantsThatAreNotConfiguredWithoutRegisteringMeters() {
+        assertThat(service.resolve("ACME")).isEqualTo("acme");
+
+        assertThatThrownBy(() -> service.resolve("initech")).isInstanceOf(UnknownTenantException.class);
+        assertThatThrownBy(() -> service.timeSearch("initech", () -> 1)).isInstanceOf(UnknownTenantException.class);
+        assertThatThrownBy(() -> service.reserveIngestion("initech")).isInstanceOf(UnknownTenantException.class);
+        assertThat(registry.find("tenant.search.duration").tag("tenant", "initech").timer()).isNull();
+        assertThat(registry.find("tenant.ingest.rejected").tag("tenant", "initech").counter()).isNull();
+    }
+
+    @Test
+    void admitsOnlyAdminTenantsToOperatorEndpoints() {
+        assertThatThrownBy(() -> service.resolveAdmin(null)).isInstanceOf(AdminAccessDeniedException.class);
+
+        ReflectionTestUtils.setField(service, "adminTenants", List.of("acme"));
+        assertThat(service.resolveAdmin("ACME")).isEqualTo("acme");
+        assertThatThrownBy(() -> service.resolveAdmin("globex")).isInstanceOf(AdminAccessDeniedException.class);
+        assertThatThrownBy(() -> service.resolveAdmin("initech")).isInstanceOf(UnknownTenantException.class);
+    }
+
+    @Test
+    void limitsDocumentsInIngestionPerTenant() {
+        service.reserveIngestion("acme");
+        service.reserveIngestion("acme");
+
+        assertThatThrownBy(() -> service.reserveIngestion("acme")).isInstanceOf(TenantQuotaExceededException.class);
+        service.reserveIngestion("globex");
+        assertThat(registry.get("tenant.ingest.in-flight").tag("tenant", "acme").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("tenant.ingest.rejected").tag("tenant", "acme").counter().count()).isEqualTo(1);
+
+        service.releaseIngestion("acme", 1);
+        service.reserveIngestion("acme");
+    }
+}